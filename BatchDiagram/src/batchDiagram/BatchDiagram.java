@@ -0,0 +1,361 @@
+package batchDiagram;
+
+import lib.kemi.chem.Chem;
+import lib.kemi.readDataLib.ReadDataLib;
+import lib.kemi.readWriteDataFiles.ReadChemSyst;
+import predominanceAreaDiagrams.PredomDiagram;
+import simpleEquilibriumDiagrams.SedDiagram;
+
+/** Makes chemical equilibrium diagrams without a graphic user interface.
+ * Each data file given in the command line, or each data file (with
+ * extension "dat") in a folder given in the command line, is read and
+ * the diagram is saved in a plot file. Predominance area diagrams are made
+ * with class <code>PredomDiagram</code> and other diagrams with class
+ * <code>SedDiagram</code>. All the diagrams are made in the same Java
+ * virtual machine, and no AWT or Swing classes are used, so this program
+ * may be run on a computer without display.
+ * <br>
+ * Copyright (C) 2014-2018  I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public class BatchDiagram {
+    static final String progName = "BatchDiagram";
+    private boolean dbg = false;
+    /** the folder where the plot files are saved. If null, each plot file
+     * is saved in the same folder as its data file */
+    private java.io.File outputDir = null;
+    private int nSteps = -1;
+    private int nThreads = 1;
+    private double temperature = Double.NaN;
+    private double ionicStrength = 0;
+    private int actCoeffsModel = 2;
+    private double tolHalta = Chem.TOL_HALTA_DEF;
+    private int dbgHalta = Chem.DBGHALTA_DEF;
+    private double tHeight = 1;
+    private boolean reversedConcs = false;
+    private boolean binaryPlotFile = false;
+    // options only for SED diagrams
+    private float threshold = 0.03f;
+    private boolean tableOutput = false;
+    private String tblExtension = "csv";
+    private String tblFieldSeparator = ";";
+    private String tblCommentStart = "\"";
+    private String tblCommentEnd = "\"";
+    // options only for Predom diagrams
+    private boolean aqu = false;
+    private boolean neutral_pH = false;
+    private boolean adaptiveGrid = false;
+    private boolean bisectFrontiers = false;
+    /** the data files to process */
+    private final java.util.List<java.io.File> dataFiles = new java.util.ArrayList<java.io.File>();
+    private final java.io.PrintStream out = System.out;
+    private final java.io.PrintStream err = System.err;
+    private static final String nl = System.getProperty("line.separator");
+    static final String LINE = "-------------------------------------";
+
+  //<editor-fold defaultstate="collapsed" desc="main">
+  /** The "main" method.
+   * @param args the command line arguments */
+  public static void main(String[] args) {
+    System.out.println(LINE+nl+progName+" (chemical equilibrium diagrams without display)");
+    if(args.length <= 0) {
+        System.out.println("Usage:   java -cp ... batchDiagram.BatchDiagram  data-file-or-folder ...  [-command=value]");
+        printInstructions(System.out);
+        System.exit(1);
+    }
+    for(String arg : args) {
+        if(arg.equals("-?") || arg.equals("/?") || arg.equals("?")) {
+            printInstructions(System.out);
+            return;
+        }
+    }
+    BatchDiagram b = new BatchDiagram();
+    for(String arg : args) {
+        if(!b.dispatchArg(arg)) {System.exit(1);}
+    }
+    int nbrErrors = b.run();
+    System.exit(nbrErrors > 0 ? 1 : 0);
+  } //main
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="run">
+  /** Makes a diagram for each data file.
+   * @return the number of data files for which no diagram could be made */
+  private int run() {
+    if(dataFiles.isEmpty()) {
+        err.println("Error: no data files given.");
+        return 1;
+    }
+    if(outputDir != null && !outputDir.isDirectory()) {
+        err.println("Error: the output folder \""+outputDir.getPath()+"\" does not exist.");
+        return dataFiles.size();
+    }
+    String pathApp = getPathApp();
+    int nbrErrors = 0;
+    long start = System.nanoTime();
+    for(java.io.File f : dataFiles) {
+        String name = f.getName();
+        java.io.File pltFile = new java.io.File(outputDir != null ? outputDir : f.getAbsoluteFile().getParentFile(),
+                name.substring(0, name.length()-3).concat("plt"));
+        if(!makeDiagram(f, pltFile, pathApp)) {
+            nbrErrors++;
+            err.println("Error: no diagram made for data file \""+f.getPath()+"\"");
+        }
+        out.println(LINE);
+    } //for f
+    long time = (System.nanoTime() - start)/1000000; //convert nano seconds to milli seconds
+    out.println((dataFiles.size()-nbrErrors)+" diagram(s) made, "+nbrErrors+" error(s), time="
+            +SedDiagram.millisToShortDHMS(time));
+    return nbrErrors;
+  } //run()
+
+  /** Reads the data file once, and makes the diagram with the calculation
+   * engine of program Predom if the file contains a Predominance Area Diagram
+   * (plot type zero), or with the engine of program SED otherwise.
+   * @param dataFile the input data file
+   * @param pltFile the output plot file
+   * @param pathApp where a file with SIT-coefficients is searched for
+   * @return false if an error occurs */
+  private boolean makeDiagram(java.io.File dataFile, java.io.File pltFile, String pathApp) {
+    if(!dataFile.getName().toLowerCase().endsWith(".dat")) {
+        err.println("Error: data file name must end with \".dat\": \""+dataFile.getPath()+"\"");
+        return false;
+    }
+    try {dataFile = dataFile.getCanonicalFile();}
+    catch (java.io.IOException ex) {dataFile = dataFile.getAbsoluteFile();}
+    out.println("Reading input data file \""+dataFile.getPath()+"\"");
+    ReadDataLib rd;
+    try {rd = new ReadDataLib(dataFile);}
+    catch (ReadDataLib.DataFileException ex) {err.println(ex.getMessage()); return false;}
+    Chem ch = null;
+    try {ch = ReadChemSyst.readChemSystAndPlotInfo(rd, dbg, false, out);}
+    catch (ReadChemSyst.ConcDataException ex) {err.println(ex.getMessage());}
+    catch (ReadChemSyst.DataLimitsException ex) {err.println(ex.getMessage());}
+    catch (ReadChemSyst.PlotDataException ex) {err.println(ex.getMessage());}
+    catch (ReadChemSyst.ReadDataFileException ex) {err.println(ex.getMessage());}
+    // if "ch" is null, SedDiagram closes "rd" and reports that the file could not be read
+    if(ch != null && ch.diag.plotType == 0) {return makePredomDiagram(dataFile, rd, ch, pltFile, pathApp);}
+    return makeSedDiagram(dataFile, rd, ch, pltFile, pathApp);
+  } //makeDiagram
+
+  private boolean makeSedDiagram(java.io.File dataFile, ReadDataLib rd, Chem ch,
+          java.io.File pltFile, String pathApp) {
+    SedDiagram sd = new SedDiagram(err, out);
+    sd.dbg = dbg;
+    sd.reversedConcs = reversedConcs;
+    sd.nSteps = nSteps > 0 ? Math.min(SedDiagram.NSTP_MAX, Math.max(SedDiagram.NSTP_MIN, nSteps)) : SedDiagram.NSTP_DEF;
+    sd.nThreads = nThreads;
+    sd.temperature = temperature;
+    sd.ionicStrength = ionicStrength;
+    sd.calcActCoeffs = Math.abs(ionicStrength) > 1e-10;
+    sd.actCoeffsModel = actCoeffsModel;
+    sd.tolHalta = tolHalta;
+    sd.dbgHalta = dbgHalta;
+    sd.tHeight = tHeight;
+    sd.threshold = threshold;
+    sd.tableOutput = tableOutput;
+    sd.tblExtension = tblExtension;
+    sd.tblFieldSeparator = tblFieldSeparator;
+    sd.tblCommentStart = tblCommentStart;
+    sd.tblCommentEnd = tblCommentEnd;
+    sd.consoleOutput = false;
+    sd.binaryPlotFile = binaryPlotFile;
+    sd.pathApp = pathApp;
+    sd.pathDef = dataFile.getAbsoluteFile().getParent();
+    return sd.readDataFile(dataFile, rd, ch) && sd.makeDiagram(pltFile);
+  } //makeSedDiagram
+
+  private boolean makePredomDiagram(java.io.File dataFile, ReadDataLib rd, Chem ch,
+          java.io.File pltFile, String pathApp) {
+    PredomDiagram pd = new PredomDiagram(err, out);
+    pd.dbg = dbg;
+    pd.reversedConcs = reversedConcs;
+    pd.nSteps = nSteps > 0 ? Math.min(PredomDiagram.NSTP_MAX, Math.max(PredomDiagram.NSTP_MIN, nSteps)) : PredomDiagram.NSTP_DEF;
+    pd.nThreads = nThreads;
+    pd.adaptiveGrid = adaptiveGrid;
+    pd.bisectFrontiers = bisectFrontiers;
+    pd.temperature = temperature;
+    pd.ionicStrength = ionicStrength;
+    pd.calcActCoeffs = Math.abs(ionicStrength) > 1e-10;
+    pd.actCoeffsModel = actCoeffsModel;
+    pd.tolHalta = tolHalta;
+    pd.dbgHalta = dbgHalta;
+    pd.tHeight = tHeight;
+    pd.aqu = aqu;
+    pd.neutral_pH = neutral_pH;
+    pd.consoleOutput = false;
+    pd.binaryPlotFile = binaryPlotFile;
+    pd.pathApp = pathApp;
+    pd.pathDef = dataFile.getAbsoluteFile().getParent();
+    return pd.readDataFile(dataFile, rd, ch) && pd.makeDiagram(pltFile);
+  } //makePredomDiagram
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="dispatchArg">
+  /** @param arg String containing a command-line argument
+   * @return false if there was an error associated with the command argument */
+  private boolean dispatchArg(String arg) {
+    if(arg == null || arg.trim().length() <= 0) {return true;}
+    if(dbg) {out.println("Command-line argument = \""+arg+"\"");}
+    // note: on Linux and macOS a file name may start with "/"
+    if((!arg.startsWith("-") && !arg.startsWith("/")) ||
+            (arg.startsWith("/") && new java.io.File(arg).exists())) {return addDataFile(arg);}
+    String a = arg.substring(1);
+    String key = a, val = null;
+    int i = a.indexOf('=');
+    if(i < 0) {i = a.indexOf(':');}
+    if(i > 0) {key = a.substring(0, i); val = a.substring(i+1);}
+    if(val != null && val.length() > 1 && val.startsWith("\"") && val.endsWith("\"")) { //remove enclosing quotes
+        val = val.substring(1, val.length()-1);
+    }
+    key = key.toLowerCase();
+    try {
+        if(val == null) {
+            if(key.equals("dbg")) {dbg = true; return true;}
+            if(key.equals("rev")) {reversedConcs = true; return true;}
+            if(key.equals("pltb")) {binaryPlotFile = true; return true;}
+            if(key.equals("tbl")) {tableOutput = true; return true;}
+            if(key.equals("aqu")) {aqu = true; return true;}
+            if(key.equals("ph")) {neutral_pH = true; return true;}
+            if(key.equals("adapt")) {adaptiveGrid = true; return true;}
+            if(key.equals("bisect")) {bisectFrontiers = true; return true;}
+        } else if(key.equals("d")) {return addDataFile(val);
+        } else if(key.equals("o")) {outputDir = new java.io.File(val); return true;
+        } else if(key.equals("n")) {nSteps = Integer.parseInt(val); return true;
+        } else if(key.equals("t")) {
+            temperature = Math.min(1000, Math.max(-50, Double.parseDouble(val)));
+            return true;
+        } else if(key.equals("i")) {
+            ionicStrength = Math.max(-1, Math.min(1000, Double.parseDouble(val)));
+            if(ionicStrength < 0) {ionicStrength = -1;}
+            return true;
+        } else if(key.equals("m")) {
+            actCoeffsModel = Math.min(2, Math.max(0, Integer.parseInt(val)));
+            return true;
+        } else if(key.equals("tol")) {
+            tolHalta = Math.min(0.01, Math.max(1e-9, Double.parseDouble(val)));
+            return true;
+        } else if(key.equals("dbgh")) {dbgHalta = Integer.parseInt(val); return true;
+        } else if(key.equals("h")) {
+            tHeight = Math.min(10, Math.max(0.3, Double.parseDouble(val)));
+            return true;
+        } else if(key.equals("threads")) {
+            nThreads = Integer.parseInt(val);
+            if(nThreads < 1) {nThreads = Runtime.getRuntime().availableProcessors();}
+            return true;
+        } else if(key.equals("thr")) {
+            threshold = Math.min(0.1f, Math.max(0.001f, Float.parseFloat(val)));
+            return true;
+        } else if(key.equals("tbls")) {
+            tblFieldSeparator = val.equals("\\t") ? "\u0009" : val;
+            return true;
+        } else if(key.equals("tble")) {tblExtension = val; return true;
+        } else if(key.equals("tblcs")) {tblCommentStart = val; return true;
+        } else if(key.equals("tblce")) {tblCommentEnd = val; return true;
+        }
+    } catch (NumberFormatException ex) {
+        err.println("Error: wrong numeric format in command-line argument \""+arg+"\"");
+        return false;
+    }
+    err.println("Error: command-line argument \""+arg+"\" not recognized."+nl+
+            "For a list of possible commands type:  BatchDiagram  -?");
+    return false;
+  } //dispatchArg
+
+  /** Adds a data file, or all the data files in a folder, to the list of
+   * files to process.
+   * @param name the name of a data file or of a folder
+   * @return false if the file or folder does not exist */
+  private boolean addDataFile(String name) {
+    java.io.File f = new java.io.File(name);
+    if(f.isDirectory()) {
+        java.io.File[] files = f.listFiles(new java.io.FileFilter() {
+            @Override public boolean accept(java.io.File p) {
+                return p.isFile() && p.getName().length() > 4
+                        && p.getName().toLowerCase().endsWith(".dat");
+            }});
+        if(files == null || files.length <= 0) {
+            err.println("Warning: no data files found in folder \""+f.getPath()+"\"");
+            return true;
+        }
+        java.util.Arrays.sort(files);
+        dataFiles.addAll(java.util.Arrays.asList(files));
+        return true;
+    }
+    if(!f.exists() && !name.toLowerCase().endsWith(".dat")) {f = new java.io.File(name.concat(".dat"));}
+    if(!f.isFile()) {
+        err.println("Error: data file \""+name+"\" not found.");
+        return false;
+    }
+    dataFiles.add(f);
+    return true;
+  } //addDataFile
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="getPathApp">
+  /** Get the path where the running jar file is located
+   * @return the path, or null if it can not be found */
+  private static String getPathApp() {
+    java.net.URL url = BatchDiagram.class.getProtectionDomain().getCodeSource().getLocation();
+    if(url == null) {return null;}
+    java.io.File f;
+    try {f = new java.io.File(url.toURI());}
+    catch (Exception ex) {return null;}
+    if(f.isFile()) {f = f.getParentFile();}
+    return f != null ? f.getAbsolutePath() : null;
+  } //getPathApp()
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="printInstructions">
+  private static void printInstructions(java.io.PrintStream out) {
+    out.println("Data files and folders (all \".dat\" files in the folder are used)"+nl+
+    "may be given with or without \"-d=\".  Possible commands are:"+nl+
+    "  -d=data-file-or-folder"+nl+
+    "  -o=output-folder  (for the plot files; default: the folder"+nl+
+    "            of each data file)"+nl+
+    "  -dbg     (output debug information)"+nl+
+    "  -dbgH=n  (level for debug output from HaltaFall"+nl+
+    "            in the first calculation point; default ="+Chem.DBGHALTA_DEF+")"+nl+
+    "  -h=nbr   (height factor for labels in the plot)"+nl+
+    "  -i=nbr   (ionic strength (the equil. constants are"+nl+
+    "            assumed for I=0). Requires a temperature."+nl+
+    "            Enter \"-i=-1\" to calculate I at each point)"+nl+
+    "  -m=nbr   (model to calculate activity coefficients:"+nl+
+    "            0 = Davies eqn; 1 = SIT; 2 = simplified HKF; default =2)"+nl+
+    "  -n=nbr   (calculation steps along the axes; default ="+SedDiagram.NSTP_DEF+")"+nl+
+    "  -pltb    (write also binary plot files with extension \"pltb\","+nl+
+    "            which are displayed faster)"+nl+
+    "  -rev     (allow reversed ranges in axes, as given in the data file)"+nl+
+    "  -t=nbr   (temperature in degrees C, ignored if not needed)"+nl+
+    "  -threads=nbr  (number of threads used in the calculations;"+nl+
+    "            default =1; enter zero to use all processors)"+nl+
+    "  -tol=nbr (tolerance when solving mass-balance equations in Haltafall,"+nl+
+    "            0.01 >= nbr >= 1e-9; default ="+Chem.TOL_HALTA_DEF+")"+nl+
+    "Only for SED diagrams:"+nl+
+    "  -tbl     (output also a table file with comma-separated values)"+nl+
+    "  -tbls=;  -tble=csv  -tblcs=\"  -tblce=\"  (see program SED)"+nl+
+    "  -thr=nbr (threshold to display curves in a fraction diagram,"+nl+
+    "            0.001 to 0.1)"+nl+
+    "Only for Predominance Area Diagrams:"+nl+
+    "  -adapt   (adaptive grid)"+nl+
+    "  -aqu     (plot only aqueous species; areas for solids not shown)"+nl+
+    "  -bisect  (locate the frontiers between areas by bisection)"+nl+
+    "  -pH      (show neutral pH as a dash line)"+nl+
+    "Example:   java -Djava.awt.headless=true -cp BatchDiagram.jar:SED.jar:Predom.jar:LibChemDiagr.jar"+nl+
+    "             batchDiagram.BatchDiagram  data  -o=plt  -t=25  -n=200");
+  } //printInstructions(out)
+  //</editor-fold>
+
+}
@@ -0,0 +1,193 @@
+package benchmarks;
+
+import lib.common.Util;
+import lib.kemi.chem.Chem;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+import lib.kemi.readDataLib.ReadDataLib;
+import lib.kemi.readWriteDataFiles.ReadChemSyst;
+
+/** The chemical systems used by the benchmarks.
+ * <p>The data files are stored as resources in the benchmark jar:
+ * <ul>
+ * <li>"small": Fe-H2O-e<sup>-</sup>, 3 components, 8 complexes, 3 solids
+ * (the system in "TestHaltaFall")</li>
+ * <li>"large": Fe-Ca-CO<sub>3</sub>-SO<sub>4</sub>-Cl-Na-H2O-e<sup>-</sup>,
+ * 8 components, 28 complexes, 9 solids</li>
+ * </ul>
+ * For each system there is a file with a fraction diagram (SED) and one
+ * with a predominance area diagram (Predom).
+ *
+ * Copyright (C) 2014-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @author Ignasi Puigdomenech */
+final class BenchmarkSystems {
+  /** where messages from the library are printed: nowhere */
+  static final java.io.PrintStream NO_OUTPUT = new java.io.PrintStream(
+          new java.io.OutputStream() {
+              @Override public void write(int b) {}
+              @Override public void write(byte[] b, int off, int len) {}
+          });
+  private static final double ln10 = Math.log(10);
+
+  private BenchmarkSystems() {}
+
+//<editor-fold defaultstate="collapsed" desc="dataFile">
+/** Copies a data file stored as a resource to a temporary file, which is
+ * deleted when the program exits.
+ * @param system either "small" or "large"
+ * @param diagram either "sed" or "predom"
+ * @return the temporary data file
+ * @throws java.io.IOException if the resource can not be copied */
+static java.io.File dataFile(String system, String diagram) throws java.io.IOException {
+    String name = system + "_" + diagram + ".dat";
+    if(system.equals("small")) {name = "fe_" + diagram + ".dat";}
+    java.io.File f = java.io.File.createTempFile("bench_", ".dat");
+    f.deleteOnExit();
+    java.io.InputStream is = BenchmarkSystems.class.getResourceAsStream(name);
+    if(is == null) {throw new java.io.FileNotFoundException("resource \""+name+"\" not found");}
+    try {
+        java.io.OutputStream os = new java.io.FileOutputStream(f);
+        try {
+            byte[] buf = new byte[8192];
+            int n;
+            while((n = is.read(buf)) > 0) {os.write(buf, 0, n);}
+        } finally {os.close();}
+    } finally {is.close();}
+    return f;
+} // dataFile
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="read">
+/** Reads a chemical system from a data file stored as a resource, and makes
+ * the same changes to the data as programs SED and Predom do before the
+ * calculations: electrons, water and gases are excluded from the mass
+ * balances, the electric charges are obtained from the names, and
+ * <code>kh[]</code> is set from the concentration types.
+ * @param system either "small" or "large"
+ * @param diagram either "sed" or "predom"
+ * @return the chemical system
+ * @throws Exception if the file can not be read */
+static Chem read(String system, String diagram) throws Exception {
+    // ReadDataLib reads files: copy the resource to a temporary file
+    java.io.File f = dataFile(system, diagram);
+    ReadDataLib rd = new ReadDataLib(f);
+    Chem ch;
+    try {ch = ReadChemSyst.readChemSystAndPlotInfo(rd, false, false, NO_OUTPUT);}
+    finally {rd.close();}
+    if(ch == null) {throw new Exception("Error reading the "+system+" "+diagram+" system");}
+    f.delete();
+
+    Chem.ChemSystem cs = ch.chemSystem;
+    Chem.ChemSystem.NamesEtc namn = cs.namn;
+    int mg = cs.Ms - cs.mSol;
+    for(int i = 0; i < cs.Ms; i++) {
+        if(Util.isElectron(namn.ident[i]) || Util.isWater(namn.ident[i])) {cs.noll[i] = true;}
+        if(i < mg) {
+            namn.z[i] = Util.chargeOf(namn.ident[i]);
+            if(Util.isGas(namn.ident[i]) || Util.isLiquid(namn.ident[i])) {cs.noll[i] = true;}
+        }
+    }
+    namn.z[mg] = 1;    //electroneutrality "Na+"
+    namn.z[mg+1] = -1; //electroneutrality "Cl-"
+    for(int j = 0; j < cs.Na; j++) {
+        if(ch.diagrConcs.hur[j] > 3) {cs.chemConcs.kh[j] = 2;} else {cs.chemConcs.kh[j] = 1;}
+    }
+    ch.diag.temperature = 25;
+    ch.diag.ionicStrength = 0;
+    ch.diag.activityCoeffsModel = -1; // ideal solution
+    cs.chemConcs.dbg = 0;
+    cs.chemConcs.tol = 1e-4;
+    return ch;
+} // read
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="noSolids">
+/** Excludes all solids from the calculations: they are never allowed to
+ * precipitate.
+ * @param ch the chemical system */
+static void noSolids(Chem ch) {
+    Chem.ChemSystem cs = ch.chemSystem;
+    for(int i = cs.Ms - cs.mSol; i < cs.Ms; i++) {cs.noll[i] = true;}
+}
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="concRange">
+/** The values for a component along an axis of the diagram,
+ * in the same way as in programs SED and Predom.
+ * @param ch the chemical system
+ * @param j the component
+ * @param nSteps the number of steps along the axis
+ * @return the <code>nSteps+1</code> values: either total concentrations
+ * (if <code>kh[j] = 1</code>) or log(activity) values (if <code>kh[j] = 2</code>) */
+static double[] concRange(Chem ch, int j, int nSteps) {
+    Chem.DiagrConcs dgrC = ch.diagrConcs;
+    double[] v = new double[nSteps+1];
+    if(dgrC.hur[j] ==1 || dgrC.hur[j] ==4) { //T or LA
+        for(int n = 0; n <= nSteps; n++) {v[n] = dgrC.cLow[j];}
+        return v;
+    }
+    double step = (dgrC.cHigh[j] - dgrC.cLow[j]) / nSteps;
+    v[0] = dgrC.cLow[j];
+    for(int n = 1; n < nSteps; n++) {v[n] = v[n-1] + step;}
+    v[nSteps] = dgrC.cHigh[j];
+    if(dgrC.hur[j] ==3) { // LTV
+        for(int n = 0; n <= nSteps; n++) {v[n] = Math.exp(ln10*v[n]);}
+    }
+    return v;
+} // concRange
+
+/** Sets the values of all components at the first point of a diagram.
+ * @param ch the chemical system */
+static void setFirstPoint(Chem ch) {
+    Chem.ChemSystem.ChemConcs c = ch.chemSystem.chemConcs;
+    for(int j = 0; j < ch.chemSystem.Na; j++) {
+        double v = ch.diagrConcs.cLow[j];
+        if(c.kh[j] == 1) {
+            if(ch.diagrConcs.hur[j] ==3) {v = Math.exp(ln10*v);}
+            c.tot[j] = v;
+            c.logA[j] = -10;
+            if(c.tot[j] > 0) {c.logA[j] = Math.log10(c.tot[j]) -3;}
+        } else {c.logA[j] = v;}
+    }
+} // setFirstPoint
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="calcPoint">
+/** Calculates one point, retrying as SED and Predom do if the
+ * calculation fails.
+ * @param h the HaltaFall object
+ * @param c the concentrations
+ * @param tol0 the tolerance normally used
+ * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+static void calcPoint(HaltaFall h, Chem.ChemSystem.ChemConcs c, double tol0)
+        throws Chem.ChemicalParameterException {
+    c.tol = tol0;
+    h.haltaCalc();
+    if(c.isErrFlagsSet(2)) { // too many iterations
+        do {
+            c.tol = c.tol * 0.1;
+            h.haltaCalc();
+        } while (c.isErrFlagsSet(2) && c.tol >= 1e-9);
+        c.tol = tol0;
+    }
+    if(c.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
+        c.cont = false;
+        h.haltaCalc();
+    }
+} // calcPoint
+// </editor-fold>
+
+} // class BenchmarkSystems
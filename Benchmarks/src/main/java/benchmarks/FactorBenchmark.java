@@ -0,0 +1,81 @@
+package benchmarks;
+
+import lib.kemi.chem.Chem;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Calls to <code>Factor.factor()</code> for the three models for activity
+ * coefficients (Davies, SIT and HKF), using the equilibrium composition of
+ * the large chemical system. The ionic strength is calculated at each call
+ * (<code>diag.ionicStrength = -1</code>), so that the activity coefficients
+ * are always calculated. No SIT-file is read: default SIT coefficients are used.
+ *
+ * Copyright (C) 2014-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @author Ignasi Puigdomenech */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactorBenchmark {
+  /** the model for activity coefficients */
+  @Param({"Davies", "SIT", "HKF"})
+  public String model;
+
+  private Factor factor;
+  private double[] C;
+  private double[] lnf;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Chem ch = BenchmarkSystems.read("large", "sed");
+    if(model.equals("Davies")) {ch.diag.activityCoeffsModel = 0;}
+    else if(model.equals("SIT")) {ch.diag.activityCoeffsModel = 1;}
+    else if(model.equals("HKF")) {ch.diag.activityCoeffsModel = 2;}
+    else {throw new IllegalArgumentException("model = \""+model+"\"");}
+    ch.diag.ionicStrength = -1;
+    Chem.ChemSystem cs = ch.chemSystem;
+    BenchmarkSystems.setFirstPoint(ch);
+    factor = new Factor(ch, null, null, null, BenchmarkSystems.NO_OUTPUT);
+    factor.factorPrint(false); // for SIT: sets the ion interaction coefficients
+    // get a realistic composition
+    HaltaFall h = new HaltaFall(cs, factor, BenchmarkSystems.NO_OUTPUT);
+    cs.chemConcs.cont = false;
+    BenchmarkSystems.calcPoint(h, cs.chemConcs, cs.chemConcs.tol);
+    C = cs.chemConcs.C.clone();
+    lnf = new double[cs.Ms - cs.mSol]; // as in HaltaFall: aqueous species only
+  }
+
+  @Benchmark
+  public double factor() throws Exception {
+    factor.factor(C, lnf);
+    return lnf[0];
+  }
+
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import lib.kemi.chem.Chem;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Single calls to <code>HaltaFall.haltaCalc()</code>, for a small and a large
+ * chemical system, with and without solids. The compositions are taken in
+ * turn from the points of a fraction diagram (21 points), going back and
+ * forth along the X-axis.
+ * <ul>
+ * <li><code>cold</code>: each calculation starts from scratch
+ * (<code>cont = false</code>), as for the first point of a diagram.</li>
+ * <li><code>warm</code>: each calculation starts from the results of the
+ * previous one (<code>cont = true</code>), as for the following points.</li>
+ * </ul>
+ * Run with "<code>-prof gc</code>" to see the memory allocated per call.
+ *
+ * Copyright (C) 2014-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @author Ignasi Puigdomenech */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HaltaFallBenchmark {
+  private static final int N_POINTS = 20;
+
+  /** "small" (3 components) or "large" (8 components) */
+  @Param({"small", "large"})
+  public String system;
+  /** if false, no solid is allowed to precipitate */
+  @Param({"true", "false"})
+  public boolean solids;
+
+  private Chem ch;
+  private Chem.ChemSystem.ChemConcs c;
+  private HaltaFall h;
+  private double[][] bt;
+  private double tol0;
+  private int point, direction;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    ch = BenchmarkSystems.read(system, "sed");
+    if(!solids) {BenchmarkSystems.noSolids(ch);}
+    Chem.ChemSystem cs = ch.chemSystem;
+    c = cs.chemConcs;
+    bt = new double[cs.Na][];
+    for(int j = 0; j < cs.Na; j++) {bt[j] = BenchmarkSystems.concRange(ch, j, N_POINTS);}
+    BenchmarkSystems.setFirstPoint(ch);
+    h = new HaltaFall(cs, new Factor(ch, null, null, null, BenchmarkSystems.NO_OUTPUT),
+                        BenchmarkSystems.NO_OUTPUT);
+    tol0 = c.tol;
+    c.cont = false;
+    point = 0; direction = 1;
+  }
+
+  /** sets the composition of the next point */
+  private void nextPoint() {
+    for(int j = 0; j < bt.length; j++) {
+        if(c.kh[j] == 1) {c.tot[j] = bt[j][point];} else {c.logA[j] = bt[j][point];}
+    }
+    if(point + direction < 0 || point + direction > N_POINTS) {direction = -direction;}
+    point = point + direction;
+  }
+
+  @Benchmark
+  public double cold() throws Chem.ChemicalParameterException {
+    nextPoint();
+    c.cont = false;
+    BenchmarkSystems.calcPoint(h, c, tol0);
+    return c.logA[0];
+  }
+
+  @Benchmark
+  public double warm() throws Chem.ChemicalParameterException {
+    nextPoint();
+    BenchmarkSystems.calcPoint(h, c, tol0);
+    return c.logA[0];
+  }
+
+}
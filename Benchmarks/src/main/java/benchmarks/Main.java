@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs the benchmarks. The arguments are the usual JMH command-line
+ * options (use "-h" to list them). Unless other options are given with
+ * "-rf" and "-rff", the results are written in JSON format to file
+ * "jmh-results.json", so that runs made with different versions of the
+ * library may be compared.
+ *
+ * Copyright (C) 2014-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @author Ignasi Puigdomenech */
+public class Main {
+  private static final String RESULTS_FILE = "jmh-results.json";
+
+  public static void main(String[] args) throws RunnerException, java.io.IOException {
+    CommandLineOptions cmdOptions;
+    try {cmdOptions = new CommandLineOptions(args);}
+    catch (CommandLineOptionException ex) {
+        System.err.println("Error parsing command line:"+System.getProperty("line.separator")
+                +" "+ex.getMessage());
+        System.exit(1);
+        return;
+    }
+    if(cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListWithParams()
+            || cmdOptions.shouldListProfilers() || cmdOptions.shouldListResultFormats()) {
+        org.openjdk.jmh.Main.main(args);
+        return;
+    }
+    ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+    if(!cmdOptions.getResultFormat().hasValue()) {builder.resultFormat(ResultFormatType.JSON);}
+    if(!cmdOptions.getResult().hasValue()) {builder.result(RESULTS_FILE);}
+    new Runner(builder.build()).run();
+  } //main
+
+}
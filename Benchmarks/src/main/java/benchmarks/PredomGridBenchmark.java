@@ -0,0 +1,89 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import predominanceAreaDiagrams.PredomDiagram;
+
+/** All the points of a predominance area diagram for the small chemical
+ * system (an Eh/pH-diagram for Fe), calculated by the calculation engine of
+ * program Predom (<code>PredomDiagram</code>). The data file is read once,
+ * and each operation is a call to <code>prepare</code> and <code>calculate</code>,
+ * without saving the diagram. A grid with 1000 steps has about one million
+ * points: each operation takes several seconds, so the time of single
+ * operations is measured.
+ * <p>
+ * The way to calculate the grid is the parameter "mode": the number of
+ * steps followed by any of "/threads=n", "/adapt" and "/bisect" (see the
+ * options <code>nThreads</code>, <code>adaptiveGrid</code> and
+ * <code>bisectFrontiers</code> in <code>PredomDiagram</code>). Not all
+ * the combinations are run by default, as that would take hours: the grid
+ * is calculated with 50, 200 and 1000 steps using the default options, and
+ * each option is switched on, one at a time, at 200 steps. Note that the
+ * adaptive grid is always calculated with one thread. Other modes are run
+ * with the JMH option "-p", with the modes separated by commas, for example:
+ * <pre>   java -jar target/benchmarks.jar PredomGrid -p mode=1000/threads=4,1000/adapt/bisect</pre>
+ *
+ * Copyright (C) 2014-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @author Ignasi Puigdomenech */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PredomGridBenchmark {
+  /** the number of steps along each axis, followed by the options:
+   * "/threads=n" (see <code>PredomDiagram.nThreads</code>), "/adapt" (see
+   * <code>PredomDiagram.adaptiveGrid</code>) and "/bisect" (see
+   * <code>PredomDiagram.bisectFrontiers</code>) */
+  @Param({"50", "200", "200/threads=4", "200/adapt", "200/bisect", "1000"})
+  public String mode;
+
+  private PredomDiagram predom;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    predom = new PredomDiagram(BenchmarkSystems.NO_OUTPUT, BenchmarkSystems.NO_OUTPUT);
+    String[] options = mode.split("/");
+    predom.nSteps = Integer.parseInt(options[0].trim());
+    for(int i = 1; i < options.length; i++) {
+        String o = options[i].trim().toLowerCase();
+        if(o.startsWith("threads=")) {predom.nThreads = Integer.parseInt(o.substring(8));}
+        else if(o.equals("adapt")) {predom.adaptiveGrid = true;}
+        else if(o.equals("bisect")) {predom.bisectFrontiers = true;}
+        else {throw new Exception("Unknown option \""+options[i]+"\" in mode \""+mode+"\"");}
+    }
+    if(!predom.readDataFile(BenchmarkSystems.dataFile("small", "predom"))) {
+        throw new Exception("Error reading the small system");
+    }
+  }
+
+  @Benchmark
+  public boolean grid() throws Exception {
+    return predom.prepare() && predom.calculate();
+  }
+
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import simpleEquilibriumDiagrams.SedDiagram;
+
+/** A full sweep along the X-axis of a fraction diagram, made by the
+ * calculation engine of program SED (<code>SedDiagram</code>) for the small
+ * and the large chemical systems. The data file is read once, and each
+ * operation is a call to <code>prepare</code> and <code>calculate</code>,
+ * without saving the diagram. With more than one thread the X-axis is
+ * divided in segments calculated in parallel.
+ *
+ * Copyright (C) 2014-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @author Ignasi Puigdomenech */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SedSweepBenchmark {
+  /** "small" (3 components) or "large" (8 components) */
+  @Param({"small", "large"})
+  public String system;
+  /** the number of steps along the X-axis (the default in SED is 50) */
+  @Param({"50"})
+  public int steps;
+  /** the number of threads, see <code>SedDiagram.nThreads</code> */
+  @Param({"1", "4"})
+  public int threads;
+
+  private SedDiagram sed;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    sed = new SedDiagram(BenchmarkSystems.NO_OUTPUT, BenchmarkSystems.NO_OUTPUT);
+    sed.nSteps = steps;
+    sed.nThreads = threads;
+    if(!sed.readDataFile(BenchmarkSystems.dataFile(system, "sed"))) {
+        throw new Exception("Error reading the "+system+" system");
+    }
+  }
+
+  @Benchmark
+  public boolean sweep() throws Exception {
+    return sed.prepare() && sed.calculate();
+  }
+
+}
@@ -45,27 +45,21 @@ public class DBSearch {
   private ProgramConf pc;
   private ProgramDataDB pd;
   private FrameDBmain dbF;
-  /** counter: the database being read */
-  private int db;
-  /** name of the database being read */
+  /** all the reactions in the databases */
+  private ReactionStore store;
+  /** the reactions in <code>store</code> that might be formed by the selected components */
+  private int[] candidates;
+  /** counter: the next reaction in <code>candidates</code> */
+  private int candidate;
+  /** name of the database where the last reaction found was read */
   private String complxFileName;
-  /** the size in bytes of the file being read */
-  private long complxFileNameSize;
-  /** a counter indicating how many reactions have been read so far */
-  private long cmplxNbr = 0;
-  private final double SIZE_FACTOR_TXT = 54.675;
-  private final double SIZE_FACTOR_BIN = 124.929;
-  /** the binary database being read */
-  private java.io.DataInputStream dis;
-  /** the text database being read */
-  private java.io.BufferedReader br;
   /** is "e-" among the components selected by the user? */
   private boolean redox;
   /** the data bases are searched again when new redoc components are found */
   private int nLoops;
-  /** if <code>binaryOrText</code> = 2 reading a binary database<br>
-   * if <code>binaryOrText</code> = 1 reading text database<br>
-   * if <code>binaryOrText</code> = 0 then all files are closed (because they have been read) */
+  /** if <code>binaryOrText</code> = 2 the last reaction found was read from a binary database<br>
+   * if <code>binaryOrText</code> = 1 the last reaction found was read from a text database<br>
+   * if <code>binaryOrText</code> = 0 then all reactions have been searched */
   private int binaryOrText;
   /** Contains the selected components, both the original,
    * selected by the user, and new redox components
@@ -85,12 +79,9 @@ public class DBSearch {
    * <code>rRedox[]</code> will contain the new redox components (Fe+3).
    * @see SearchData#selectedComps selectedComps */
   private java.util.ArrayList<Complex> rRedox = new java.util.ArrayList<Complex>();
-  /** true if the current database has been searched to the end and therefore the next
-   * database must be opened (if there are any databases left to be searched) */
-  private boolean openNextFile;
-  /** true if no databases could be openend and searched */
-  private boolean noFilesFound;
-  
+  /** the text shown when some solids are excluded from the search */
+  private String solidsExcluded = " ";
+
   /** New-line character(s) to substitute "\n" */
   private static final String nl = System.getProperty("line.separator");
   //</editor-fold>
@@ -102,8 +93,6 @@ public class DBSearch {
   public DBSearch(ProgramConf programConf, ProgramDataDB programData)
           throws DBSearch.SearchException {
     binaryOrText = 0;
-    noFilesFound = true;
-    openNextFile = true;
     if(programConf == null) {throw new SearchException("Error: programConf = null in \"DBSearch\" constructor");}
     this.pc = programConf;
     if(programData == null) {throw new SearchException("Error: programDataDB = null in \"DBSearch\" constructor");}
@@ -117,6 +106,11 @@ public class DBSearch {
   * the databases may have to be scanned repeated times if new redox components
   * are found. For example, if {Fe+2, e-} are selected, after the first database
   * scan Fe+3 is found, and the databases must be scanned again for {Fe+2, Fe+3, e-}.
+  * The databases are read only once: the reactions are kept in a
+  * <code>ReactionStore</code>, indexed by component, and each scan only
+  * looks at the reactions formed by the selected components.
+  * If the same search has been made before, with the same database files,
+  * the reactions are taken from the <code>SearchCache</code>.
   * 
   * The reactions found in the search are stored in ArrayList "dat".
   * The progress bars in the lower half of the FrameDBmain show the search progress.
@@ -192,20 +186,16 @@ If redox And RedoxAsk Then  */
     // --------------- Redox loop: new components ----------------------------------
     if(redox) {
       boolean excluded;
-      String[] elemComp; String selCompName; String el;
+      String selCompName; String el;
       for(int i =0; i< selectedComps.size(); i++) {
         selCompName = selectedComps.get(i).toString();
-        for(int k0 =0; k0< pd.elemComp.size(); k0++) { //loop through all components in the database (CO3-2,SO4-2,HS-,etc)
-          elemComp = pd.elemComp.get(k0);
-          if(Util.nameCompare(elemComp[1],selCompName)) { //got the component selected by the user
+        for(String[] selComp : pd.elemCompIndex.withComponent(selCompName)) { //the component selected by the user in the database (CO3-2,SO4-2,HS-,etc)
             //Note: array elemComp[0] contains: the name-of-the-element (e.g. "C"),
             //  the formula-of-the-component ("CN-"), and
             //  the name-of-the-component ("cyanide")
-              el = elemComp[0]; //get the element corresponding to the component: e.g. "S" for SO4-2
-              for(int k1 =0; k1< pd.elemComp.size(); k1++) { //loop through all components in the database (CO3-2,SO4-2,HS-,etc)
-                elemComp = pd.elemComp.get(k1);
-                if(elemComp[0].equals(el)) { //got the right element
-                  if(k1 != k0) {
+              el = selComp[0]; //get the element corresponding to the component: e.g. "S" for SO4-2
+              for(String[] elemComp : pd.elemCompIndex.withElement(el)) { //all components in the database for the right element
+                  if(elemComp != selComp) {
                     excluded = false;
                     if((el.equals("N") && !pd.redoxN) || (el.equals("S") && !pd.redoxS)
                             || (el.equals("P") && !pd.redoxP)) {
@@ -232,11 +222,9 @@ If redox And RedoxAsk Then  */
                         }
                         if(!found) {comps_X.add(elemComp[1]);}
                     } //excluded?
-                  } //if k1 != k0
-                } //elemComp[0] = el
-              } //for k1;  list of all available components
-          } //if elemComp[1] = selCompName
-        } //for k0;  list of all available components
+                  } //if elemComp != selComp
+              } //for elemComp;  components for the element
+        } //for selComp
       } //for i;   all selected components
       if(pc.dbg) {
         int n = comps.size();
@@ -250,6 +238,27 @@ If redox And RedoxAsk Then  */
     } //if redox
     //-------- end of make lists for redox systems ----------
 
+    // --- Has this search been done before?
+    java.util.ArrayList<String> userComps = new java.util.ArrayList<String>(selectedComps);
+    String cacheKey = SearchCache.key(userComps, comps, comps_X, pd.allSolids, pd.dataBasesList);
+    SearchCache.Entry cached = SearchCache.get(cacheKey, pc.dbg);
+    if(cached != null) {
+        dat.addAll(cached.dat);
+        nx = cached.nx;
+        nf = cached.nf;
+        final String s = cached.solidsExcluded;
+        javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
+            dbF.jLabel_cr_solids.setText(s);
+        }});
+        if(pc.dbg) {System.out.println("--- Search results read from the search cache: "+dat.size()+" reactions.");}
+        return;
+    }
+
+    // --- Read the databases (or use the reactions already read in a previous search)
+    try {store = ReactionStore.getStore(pd.dataBasesList, dbF, pc.dbg);}
+    catch (ReactionStore.StoreException ex) {throw new SearchException(ex.getMessage());}
+    if(store.size() <= 0 && pc.dbg) {System.out.println("Note: no reactions found in the databases.");}
+
     // --------------------------------------------------
     // -------- Redox loop: new species -----------------
     //   loop searching database for redox systems
@@ -270,6 +279,7 @@ If redox And RedoxAsk Then  */
         // ---------------------------------------------
 
         if(!redox) {
+            putInCache(cacheKey);
             if(pc.dbg) {System.out.println("--- Search reactions ended.");}
             return;
         }
@@ -452,16 +462,33 @@ If redox And RedoxAsk Then  */
     //   end of database search
     // ---------------------------------------------
 
+    putInCache(cacheKey);
     if(pc.dbg) {System.out.println("--- Search reactions ended.");}
   } //searchComplexes
 
   //</editor-fold>
 
+  //<editor-fold defaultstate="collapsed" desc="putInCache">
+  /** Saves the reactions found in the search cache, to be used if the same
+   * search is made again.
+   * @param cacheKey the key of this search, null if the search can not be cached
+   * @see SearchCache SearchCache */
+  private void putInCache(String cacheKey) {
+    if(cacheKey == null) {return;}
+    SearchCache.Entry e = new SearchCache.Entry();
+    e.dat.addAll(dat);
+    e.nx = nx;
+    e.nf = nf;
+    e.solidsExcluded = solidsExcluded;
+    SearchCache.put(cacheKey, e, pc.dbg);
+  } //putInCache
+  //</editor-fold>
+
   //<editor-fold defaultstate="collapsed" desc="private methods">
 
   //<editor-fold defaultstate="collapsed" desc="scanDataBases">
- /** Reads all databases looking for all reaction products formed by the components
-  * in the selectedComps[] list. The reactions found are stored in ArrayList "dat".
+ /** Searches the reactions in all databases looking for all reaction products formed
+  * by the components in the selectedComps[] list. The reactions found are stored in ArrayList "dat".
   * @throws DBSearch.SearchInternalException */
   private void scanDataBases() throws DBSearch.SearchInternalException {
     if(pc.dbg) {
@@ -491,13 +518,7 @@ If redox And RedoxAsk Then  */
                 for(i=0; i < Complex.NDIM; i++) {
                     //check if the component is in the list of possible components
                     if(rr.component[i] != null && rr.component[i].length() >0) {
-                        found = false;
-                        String[] elemComp;
-                        for(j=0; j < pd.elemComp.size(); j++) {
-                            elemComp = pd.elemComp.get(j);
-                            if(Util.nameCompare(rr.component[i],elemComp[1])) {found = true; break;}
-                        } //for j
-                        if(!found) {
+                        if(!pd.elemCompIndex.contains(rr.component[i])) {
                             t = "Component \""+rr.component[i]+"\" in complex \""+rr.name+"\""+nl+"not found in the element-files.";
                             if(msg.length() > 0) {msg = msg +nl+ t;} else {msg = t;}
                         }//not found
@@ -513,10 +534,6 @@ If redox And RedoxAsk Then  */
                                 pc.progName, javax.swing.JOptionPane.YES_NO_OPTION,
                                 javax.swing.JOptionPane.WARNING_MESSAGE, null, opt, opt[1]);
                         if(answer != javax.swing.JOptionPane.YES_OPTION) {
-                            try{
-                                if(binaryOrText ==2 && dis != null) {dis.close();}
-                                else if(binaryOrText ==1 && br != null) {br.close();}
-                            } catch (java.io.IOException e) {}
                             throw new SearchInternalException();
                         }
                 } //if msg !=null
@@ -596,6 +613,7 @@ If redox And RedoxAsk Then  */
                             final String s; if(pd.allSolids == 1) {s="(cr) solids excluded!";}
                             else if(pd.allSolids == 2) {s="(c) solids excluded!";}
                             else if(pd.allSolids == 3) {s="(cr) & (c) solids excluded!";} else {s = " ";}
+                            solidsExcluded = s;
                             javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
                               dbF.jLabel_cr_solids.setText(s);
                             }});
@@ -667,10 +685,6 @@ If redox And RedoxAsk Then  */
     // -----------------------------------------------
     //  end of database search
     // -----------------------------------------------
-    try{
-        if(binaryOrText ==2 && dis != null) {dis.close();}
-        else if(binaryOrText ==1 && br != null) {br.close();}
-    } catch (java.io.IOException e) {}
     dbF.updateProgressBarLabel(" ", 0);
     dbF.updateProgressBar(0);
 
@@ -680,140 +694,58 @@ If redox And RedoxAsk Then  */
   //<editor-fold defaultstate="collapsed" desc="getOneComplex">
   /** This routine will get the next "complex" with the condition that
    * all its components must be in the "selected-components" list.
-   * Both binary and text files will be read.
-   * This routine is NOT called to convert database files (Text <=> Binary).
+   * Only the reactions in the <code>ReactionStore</code> where the selected
+   * components take part are looked at, in the order they were read
+   * from the databases.
    * <p> On output:<br>
-   * if <code>binaryOrText</code> = 2 reading binary database<br>
-   * if <code>binaryOrText</code> = 1 reading text database<br>
-   * if <code>binaryOrText</code> = 0 then all files are closed
-   *   (because they have been read)
+   * if <code>binaryOrText</code> = 2 the complex is from a binary database<br>
+   * if <code>binaryOrText</code> = 1 the complex is from a text database<br>
+   * if <code>binaryOrText</code> = 0 then all reactions have been searched
    * 
-   * @param firstComplex if true the first file is opened and the first complex
-   * is searched for; if false then find the next complex from the list of
-   * database files
-   * @return
-   * @see lib.database.LibSearch#getComplex(boolean) getComplex
+   * @param firstComplex if true the search starts with the first reaction
+   * in the databases; if false then find the next complex
+   * @return a copy of the complex found, or null if there are no more reactions
+   * @see ReactionStore#candidates(java.util.List) candidates
    * @throws DBSearch.SearchInternalException */
   private Complex getOneComplex(boolean firstComplex) throws DBSearch.SearchInternalException {
     boolean protonPresent;
     if(firstComplex) {
-        //open the first file
-        openNextFile = true;
-        db = 0;
+        candidates = store.candidates(selectedComps);
+        candidate = 0;
+        this.dbF.updateProgressBarLabel("Searching "+candidates.length+" reactions", nLoops);
+        this.dbF.updateProgressBar(0);
+        if(pc.dbg) {System.out.println("Searching "+candidates.length+" out of "+store.size()+" reactions");}
     }
 
-    while (db < pd.dataBasesList.size()) {
-      if(openNextFile) {
-        try{
-            if(dis != null) {dis.close();} else if(br != null) {br.close();}
-        } catch (java.io.IOException ioe) {MsgExceptn.msg(ioe.getMessage());}
-        complxFileName = pd.dataBasesList.get(db);
-        if(complxFileName == null || complxFileName.length() <=0) {continue;}
-        java.io.File dbf = new java.io.File(complxFileName);
-        if(!dbf.exists() || !dbf.canRead()) {
-            String msg = "Error: can not open file"+nl+
-                         "    \""+complxFileName+"\".";
-            if(!dbf.exists()) {msg = msg +nl+ "(the file does not exist)."+nl+
-                                              "Search terminated";}
-            throw new SearchInternalException(msg);
-        }
-        complxFileNameSize = dbf.length();
-        cmplxNbr = 0;
-        this.dbF.updateProgressBarLabel("Searching \""+complxFileName+"\"", nLoops);
-        this.dbF.updateProgressBar(0);
-        //--- text or binary?
-        try{
-            if(binaryOrText ==2 && dis != null) {dis.close();}
-            else if(binaryOrText ==1 && br != null) {br.close();}
-        } catch (java.io.IOException e) {}
-        try{
-            if(complxFileName.toLowerCase().endsWith("db")) { //--- binary file
-                binaryOrText = 2;
-                dis = new java.io.DataInputStream(new java.io.FileInputStream(dbf));
-            } else { //--- text file
-                binaryOrText = 1;
-                br = new java.io.BufferedReader(new java.io.FileReader(dbf));
-                // -- comments at the top of the file
-                // topComments = rd.dataLineComment.toString();
-            } //--- text or binary?
-        }
-        catch (java.io.FileNotFoundException ex) {
-            try{
-                if(dis != null) {dis.close();} else if(br != null) {br.close();}
-            } catch (java.io.IOException ioe) {MsgExceptn.msg(ioe.getMessage());}
-            String msg = "Error: "+ex.toString()+nl+
-                    "while trying to open file: \""+complxFileName+"\"."+nl+"search terminated";
-            throw new SearchInternalException(msg);
+    loopComplex:
+    while (candidate < candidates.length) {
+        int r = candidates[candidate];
+        candidate++;
+        Complex complex = store.reaction(r);
+        boolean found = complex.name.startsWith("@");
+        if(!found) {
+            // --- is this a species formed from the selected components?
+            protonPresent = false;
+            for(int i=0; i < Complex.NDIM; i++) {
+                if(complex.component[i].length() <=0 ||
+                   Util.isWater(complex.component[i])) {continue;} //H2O
+                if(!isComponentSelected(complex.component[i]) &&
+                   Math.abs(complex.numcomp[i]) >0.001) {continue loopComplex;}
+                if(Util.isProton(complex.component[i])) {protonPresent = true;}
+            } //for i
+            if(!protonPresent && Math.abs(complex.proton) > 0.001 &&
+               !isComponentSelected("H+") &&
+               !isComponentSelected("H +")) {continue;} // loopComplex
         }
-        noFilesFound = false;
-        openNextFile = false;
-        if(pc.dbg) {System.out.println("Scanning database \""+complxFileName+"\"");}
-      } //if sd.openNextFile
-
-      Complex complex = null;
-      loopComplex:
-      while (true) {
-        cmplxNbr++;
-        if(binaryOrText ==2) { //Binary complex database
-            try {
-                complex = LibDB.getBinComplex(dis);
-                dbF.updateProgressBar((int)(100*(double)cmplxNbr*SIZE_FACTOR_BIN
-                        /(double)complxFileNameSize));
-            }
-            catch (LibDB.ReadBinCmplxException ex) {
-                String msg = "Error: in \"getOneComplex\", cmplxNbr = "+cmplxNbr+nl+
-                    "ReadBinCmplxException: "+ex.getMessage()+nl+
-                    "in file: \""+complxFileName+"\"";
-                throw new SearchInternalException(msg);
-            }
-        } //binaryOrText =2 (Binary file)
-        else if(binaryOrText ==1) { // Text  complex database
-            try {
-                try{
-                    complex = LibDB.getTxtComplex(br);
-                    dbF.updateProgressBar((int)(100*(double)cmplxNbr*SIZE_FACTOR_TXT
-                            /(double)complxFileNameSize));
-                }
-                catch (LibDB.EndOfFileException ex) {complex = null;}                    
-            }
-            catch (LibDB.ReadTxtCmplxException ex) {
-                String msg = "Error: in \"getOneComplex\", cmplxNbr = "+cmplxNbr+nl+
-                    ex.getMessage()+nl+
-                    "in file: \""+complxFileName+"\"";
-                throw new SearchInternalException(msg);
-            }
-        } //binaryOrText =1 (Text file)
-
-        if(complex == null || complex.name == null) {break;} //  loopComplex // end-of-file, open next database
-        if(complex.name.startsWith("@")) {return complex;}
-        // --- is this a species formed from the selected components?
-        protonPresent = false;
-        for(int i=0; i < Complex.NDIM; i++) {
-            if(complex.component[i].length() <=0 ||
-               Util.isWater(complex.component[i])) {continue;} //H2O
-            if(!isComponentSelected(complex.component[i]) &&
-               Math.abs(complex.numcomp[i]) >0.001) {continue loopComplex;}
-            if(Util.isProton(complex.component[i])) {protonPresent = true;}
-        } //for i
-        if(!protonPresent && Math.abs(complex.proton) > 0.001 &&
-           !isComponentSelected("H+") &&
-           !isComponentSelected("H +")) {continue;} // loopComplex
         // all components are selected: select complex
-        return complex;
-      } //while (true)  --- loopComplex:
-
-      // ----- no complex found: end-of-file, or error. Get next file
-      db++;
-      openNextFile = true;
-    } //while sd.db < pd.dataBasesList.size()
+        complxFileName = store.fileName(r);
+        binaryOrText = store.isFromTextFile(r) ? 1 : 2;
+        this.dbF.updateProgressBar((int)(100*(double)candidate/(double)candidates.length));
+        // the reactions in the store must not be modified
+        try {return (Complex)complex.clone();}
+        catch (CloneNotSupportedException ex) {throw new SearchInternalException(ex.toString());}
+    } //while
 
-    if(noFilesFound) { // this should not happen...
-        MsgExceptn.exception("Error: none of the databases could be found.");
-        throw new SearchInternalException();
-    }
-    try{
-        if(dis != null) {dis.close();} else if(br != null) {br.close();}
-    } catch (java.io.IOException ioe) {MsgExceptn.msg(ioe.getMessage());}
     binaryOrText = 0;
     return null; //return null if no more reactions
   } //getOneComplex
@@ -925,28 +857,24 @@ If redox And RedoxAsk Then  */
     //----------
     // This is done with the function  "is_redox" that =True if the component
     //    only contains one element and H/O. For example: SO4-2 contains only "S" is_redox%=True; but for CN- is_redox%=False
-    String[] elemComp; String selCompName, el; boolean problem = false;
+    String selCompName, el; boolean problem = false;
     for(int i =0; i< selectedComps.size(); i++) { //loop through all components selected by the user (e.g.: H+,CO3-,Fe+3)
       selCompName = selectedComps.get(i).toString();
-      for(int k0 =0; k0< pd.elemComp.size(); k0++) { //loop through all components in the database (CO3-2,SO4-2,HS-,etc)
-        elemComp = pd.elemComp.get(k0);
-        if(Util.nameCompare(elemComp[1],selCompName)) { //this component has been selected by the user
+      for(String[] selComp : pd.elemCompIndex.withComponent(selCompName)) { //this component in the database (CO3-2,SO4-2,HS-,etc)
             //Note: array ElemComp[0] contains: the name-of-the-element (e.g. "C"),
             //  the formula-of-the-component ("CN-"), and
             //  the name-of-the-component ("cyanide")
-            el = elemComp[0]; //get the element corresponding to the component: e.g. "S" for SO4-2
-            if(!isRedox(el, selCompName)) {break;} // k0
+            el = selComp[0]; //get the element corresponding to the component: e.g. "S" for SO4-2
+            if(!isRedox(el, selCompName)) {break;} // selComp
             if(!pd.redoxAsk || redox) {
-                if(el.equals("N") && !pd.redoxN) {break;} // k0
-                else if(el.equals("P") && !pd.redoxP) {break;} // k0
-                else if(el.equals("S") && !pd.redoxS) {break;} // k0
+                if(el.equals("N") && !pd.redoxN) {break;} // selComp
+                else if(el.equals("P") && !pd.redoxP) {break;} // selComp
+                else if(el.equals("S") && !pd.redoxS) {break;} // selComp
             }
             //the component selected by the user "is redox": it only contains one element in addition to H/O
             //  such as H+, SO4-2 or Fe+3.
             //Look and see if there are other components for the same element
-            for(int k1 =0; k1< pd.elemComp.size(); k1++) { //loop through all components in the database (CO3-2,SO4-2,HS-,etc)
-              elemComp = pd.elemComp.get(k1);
-              if(elemComp[0].equals(el)) { //got the right element
+            for(String[] elemComp : pd.elemCompIndex.withElement(el)) { //all components in the database for the right element
                   if(!Util.nameCompare(elemComp[1],selCompName)) { //look at all other components with the same element
                       if(isRedox(el, elemComp[1])) {
                         // this component also "is redox".
@@ -979,10 +907,8 @@ If redox And RedoxAsk Then  */
                         } //for k2
                       }//isRedox(el, elemComp[1])
                   }//elemComp[1] != selCompName
-              }//elemComp[0] = el
-            } //for k1
-        } //if elemComp[1] = selCompName
-      } //for k0
+            } //for elemComp
+      } //for selComp
     } //for i
     //---------- check ends
     if(pc.dbg && !problem) {System.out.println("Checks ok.");}
@@ -1881,11 +1881,7 @@ public class FrameDBmain extends javax.swing.JFrame {
         dbND.setVisible(true); //this will wait for the modal dialog to close
         if(!dbND.cancel) {
             //---- read the elements/components for the databases
-            LibDB.getElements(this, pc.dbg, pd.dataBasesList, pd.elemComp);
-            pd.foundH2O = false;
-            for(int i=0; i < pd.elemComp.size(); i++) {
-              if(Util.isWater(pd.elemComp.get(i)[1])) {pd.foundH2O = true; break;}
-            }
+            LibDB.getElements(this, pc.dbg, pd);
             //---- show which elements have data
             setupFrame();
         }
@@ -1937,11 +1933,7 @@ public class FrameDBmain extends javax.swing.JFrame {
                 jMenuAddData.setEnabled(true);
                 addData = null;
                 //---- read the elements/components for the databases
-                LibDB.getElements(dbf, pc.dbg, pd.dataBasesList, pd.elemComp);
-                pd.foundH2O = false;
-                for(int i=0; i < pd.elemComp.size(); i++) {
-                  if(Util.isWater(pd.elemComp.get(i)[1])) {pd.foundH2O = true; break;}
-                }
+                LibDB.getElements(dbf, pc.dbg, pd);
                 //---- show which elements have data
                 setupFrame();
                 bringToFront();
@@ -2635,13 +2627,7 @@ private static boolean askH2O(java.awt.Frame parent, final String title, final b
   void disclaimerAccepted() {
     if(pc.dbg) {System.out.println("--- disclaimerAccepted()");}
     if(noDataBasesFound) {jMenuDBFiles.doClick();}
-    LibDB.getElements(dbf, pc.dbg, pd.dataBasesList, pd.elemComp);
-    pd.foundH2O = false;
-    for(String[] elemComp : pd.elemComp) {
-        if (Util.isWater(elemComp[1])) {
-            pd.foundH2O = true; break;
-        }
-    }
+    LibDB.getElements(dbf, pc.dbg, pd);
 
     setupFrame();
 
@@ -2780,13 +2766,9 @@ private static boolean askH2O(java.awt.Frame parent, final String title, final b
     modelAvailableComps.clear();
     availableComponentsNames.clear();
     String element = LibDB.elementSymb[index];
-    String[] elemComp;
-    for(int i = 0; i < pd.elemComp.size(); i++) {
-        elemComp = pd.elemComp.get(i);
-        if(elemComp[0].equals(element)) {
-            modelAvailableComps.addElement(elemComp[1]);
-            availableComponentsNames.add(elemComp[2]);
-        }
+    for(String[] elemComp : pd.elemCompIndex.withElement(element)) {
+        modelAvailableComps.addElement(elemComp[1]);
+        availableComponentsNames.add(elemComp[2]);
     }
     jLabelAvailableComp.setText("<html><u>A</u>vailable for "+element+":</html>");
   } //getAvailableComponents(i)
@@ -3659,19 +3641,8 @@ private static boolean askH2O(java.awt.Frame parent, final String title, final b
   private void setupFrame() {
     java.awt.Font fN = buttonFont.deriveFont(java.awt.Font.PLAIN);
     java.awt.Font fB = buttonFont.deriveFont(java.awt.Font.BOLD);
-    String[] elemComp;
-    int jN = pd.elemComp.size();
-    boolean found;
     for(javax.swing.JButton button : this.buttons) {
-        found = false;
-        for(int j = 0; j<jN; j++) {
-            elemComp = pd.elemComp.get(j);
-            if(button.getText().equals(elemComp[0])) {
-                found = true;
-                break;
-            }
-        } //for j
-        if(found) {
+        if(!pd.elemCompIndex.withElement(button.getText()).isEmpty()) {
             button.setEnabled(true);
             button.setFocusable(true);
             button.setFont(fB);
@@ -0,0 +1,434 @@
+package database;
+
+import lib.common.Util;
+import lib.database.Complex;
+import lib.database.IndexedDB;
+import lib.database.LibDB;
+import lib.database.LibSearch;
+import lib.database.TxtDBparser;
+
+/** All the reactions in a list of databases, read once and kept in memory,
+ * with an index from each component to the reactions where it takes part.
+ * A search for the reactions formed by a set of selected components then
+ * only needs to look at the reactions that contain the selected components,
+ * without reading the database files again. This is used by <code>DBSearch</code>,
+ * where the databases are searched repeated times in redox systems.
+ * <br>
+ * The reactions in indexed binary databases (see <code>IndexedDB</code>) are
+ * not read in advance: the file is mapped into memory, the reactions where
+ * the selected components take part are found with the index in the file,
+ * and each reaction is read the first time it is needed.
+ * <br>
+ * The last store that was read is kept, and it is used again for another
+ * search if the list of databases is the same and the files have not been
+ * modified.
+ * <br>
+ * Copyright (C) 2016-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see DBSearch DBSearch
+ * @author Ignasi Puigdomenech */
+class ReactionStore {
+  /** the last store read */
+  private static ReactionStore lastStore = null;
+  /** the database files, in the order they were read */
+  private final String[] fileNames;
+  /** the length of each file when it was read */
+  private final long[] fileLength;
+  /** the modification time of each file when it was read */
+  private final long[] fileModified;
+  /** true for the text files, false for the binary files */
+  private final boolean[] fileIsText;
+  /** the indexed binary databases, null for the other files */
+  private final IndexedDB[] fileIndexed;
+  /** the position in the store of the first reaction of each file */
+  private final int[] fileStart;
+  /** all reactions in all the databases, in the order they were read.
+   * The reactions of indexed binary databases are null until they are needed,
+   * see <code>reaction(int)</code> */
+  private final java.util.ArrayList<Complex> reactions = new java.util.ArrayList<Complex>();
+  /** the database file (the index in <code>fileNames</code>) of each reaction */
+  private int[] fileOf;
+  /** the number of different components (excluding H2O and components with
+   * zero stoichiometric coefficient) in each reaction */
+  private int[] nbrComps;
+  /** the reactions that must always be looked at: those with names starting
+   * with "@", and those without components */
+  private int[] always;
+  /** for each component key (see <code>key(String)</code>), the reactions
+   * where the component takes part, in increasing order. The reactions in
+   * indexed binary databases are not included: the index in the file is used */
+  private final java.util.HashMap<String, int[]> index = new java.util.HashMap<String, int[]>();
+  private static final double SIZE_FACTOR_TXT = 54.675;
+  private static final double SIZE_FACTOR_BIN = 124.929;
+  private static final String nl = System.getProperty("line.separator");
+
+  private ReactionStore(java.util.List<String> dataBasesList) {
+    java.util.ArrayList<String> names = new java.util.ArrayList<String>();
+    for(String n : dataBasesList) {
+        if(n != null && n.length() >0) {names.add(n);}
+    }
+    int n = names.size();
+    fileNames = names.toArray(new String[n]);
+    fileLength = new long[n];
+    fileModified = new long[n];
+    fileIsText = new boolean[n];
+    fileIndexed = new IndexedDB[n];
+    fileStart = new int[n];
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="getStore">
+  /** Returns a store with all the reactions in the databases. If the last
+   * store read is for the same list of databases, and none of the files has
+   * been modified, it is returned, otherwise all the files are read.
+   * @param dataBasesList the names of the database files
+   * @param dbF the main frame, used to show the progress while reading the files. It may be null
+   * @param dbg if true some debug information is printed
+   * @return the reactions in the databases
+   * @throws ReactionStore.StoreException if a file can not be read */
+  static synchronized ReactionStore getStore(java.util.List<String> dataBasesList,
+          FrameDBmain dbF, boolean dbg) throws StoreException {
+    ReactionStore store = lastStore;
+    if(store != null && store.isUpToDate(dataBasesList)) {
+        if(dbg) {System.out.println("Using the "+store.reactions.size()+" reactions already read from the databases.");}
+        return store;
+    }
+    lastStore = null;
+    store = new ReactionStore(dataBasesList);
+    store.read(dbF, dbg);
+    store.makeIndex();
+    lastStore = store;
+    return store;
+  } //getStore
+
+  /** Forgets the last store read, so that the databases are read again in the next search. */
+  static synchronized void clear() {lastStore = null;}
+
+  /** @return true if this store was read from the same list of files, and
+   * none of the files has been modified since */
+  private boolean isUpToDate(java.util.List<String> dataBasesList) {
+    int n = 0;
+    for(String name : dataBasesList) {
+        if(name == null || name.length() <=0) {continue;}
+        if(n >= fileNames.length || !name.equals(fileNames[n])) {return false;}
+        java.io.File f = new java.io.File(name);
+        if(f.length() != fileLength[n] || f.lastModified() != fileModified[n]) {return false;}
+        n++;
+    }
+    return n == fileNames.length;
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="read">
+  /** Reads all reactions in the database files */
+  private void read(FrameDBmain dbF, boolean dbg) throws StoreException {
+    java.util.ArrayList<Integer> files = new java.util.ArrayList<Integer>();
+    if(fileNames.length > 1 && Runtime.getRuntime().availableProcessors() > 1) {
+        readParallel(files, dbF, dbg);
+        return;
+    }
+    for(int db = 0; db < fileNames.length; db++) {
+        String complxFileName = fileNames[db];
+        java.io.File dbf = new java.io.File(complxFileName);
+        if(!dbf.exists() || !dbf.canRead()) {
+            String msg = "Error: can not open file"+nl+
+                         "    \""+complxFileName+"\".";
+            if(!dbf.exists()) {msg = msg +nl+ "(the file does not exist)."+nl+
+                                              "Search terminated";}
+            throw new StoreException(msg);
+        }
+        // note: length and date are taken before reading, so that
+        // a file modified while being read is read again next time
+        fileLength[db] = dbf.length();
+        fileModified[db] = dbf.lastModified();
+        fileIsText[db] = !complxFileName.toLowerCase().endsWith("db");
+        fileStart[db] = reactions.size();
+        if(dbF != null) {
+            dbF.updateProgressBarLabel("Reading \""+complxFileName+"\"", 0);
+            dbF.updateProgressBar(0);
+        }
+        if(dbg) {System.out.println("Reading database \""+complxFileName+"\"");}
+        final double sizeFactor = fileIsText[db] ? SIZE_FACTOR_TXT : SIZE_FACTOR_BIN;
+        if(!fileIsText[db] && IndexedDB.isIndexedDB(dbf)) {
+            readIndexed(dbf, db, files);
+            continue;
+        }
+        java.io.DataInputStream dis = null;
+        java.io.Reader br = null;
+        TxtDBparser txt = null;
+        long cmplxNbr = 0;
+        int percent = -1;
+        try {
+            if(fileIsText[db]) {
+                br = new java.io.FileReader(dbf);
+                txt = new TxtDBparser(br);
+            } else {
+                dis = new java.io.DataInputStream(new java.io.BufferedInputStream(new java.io.FileInputStream(dbf)));
+            }
+            Complex complex;
+            while(true) {
+                cmplxNbr++;
+                if(fileIsText[db]) {
+                    try {complex = txt.next();}
+                    catch (LibDB.ReadTxtCmplxException ex) {
+                        throw new StoreException("Error: in \"ReactionStore.read\", cmplxNbr = "+cmplxNbr+nl+
+                            ex.getMessage()+nl+
+                            "in file: \""+complxFileName+"\"");
+                    }
+                } else {
+                    try {complex = LibDB.getBinComplex(dis);}
+                    catch (LibDB.ReadBinCmplxException ex) {
+                        throw new StoreException("Error: in \"ReactionStore.read\", cmplxNbr = "+cmplxNbr+nl+
+                            "ReadBinCmplxException: "+ex.getMessage()+nl+
+                            "in file: \""+complxFileName+"\"");
+                    }
+                }
+                // end-of-file (a reaction without name also ends the file)
+                if(complex == null || complex.name == null) {break;}
+                reactions.add(complex);
+                files.add(db);
+                if(dbF != null && fileLength[db] > 0) {
+                    int p = (int)(100*(double)cmplxNbr*sizeFactor/(double)fileLength[db]);
+                    if(p != percent) {percent = p; dbF.updateProgressBar(p);}
+                }
+            } //while
+        } catch (java.io.FileNotFoundException ex) {
+            throw new StoreException("Error: "+ex.toString()+nl+
+                    "while trying to open file: \""+complxFileName+"\"."+nl+"search terminated");
+        } finally {
+            try {
+                if(dis != null) {dis.close();}
+                if(br != null) {br.close();}
+            } catch (java.io.IOException ex) {}
+        }
+    } //for db
+    fileOf = new int[files.size()];
+    for(int i = 0; i < fileOf.length; i++) {fileOf[i] = files.get(i);}
+    if(dbF != null) {
+        dbF.updateProgressBarLabel(" ", 0);
+        dbF.updateProgressBar(0);
+    }
+    if(dbg) {System.out.println("Read "+reactions.size()+" reactions from "+fileNames.length+" database(s).");}
+  } //read
+
+  /** Reads all the database files at the same time, using <code>LibSearch</code>.
+   * The indexed binary databases are only opened, see <code>readIndexed</code> */
+  private void readParallel(java.util.ArrayList<Integer> files, FrameDBmain dbF, boolean dbg) throws StoreException {
+    java.util.ArrayList<String> toRead = new java.util.ArrayList<String>();
+    boolean[] indexed = new boolean[fileNames.length];
+    for(int db = 0; db < fileNames.length; db++) {
+        // note: length and date are taken before reading, so that
+        // a file modified while being read is read again next time
+        java.io.File dbf = new java.io.File(fileNames[db]);
+        fileLength[db] = dbf.length();
+        fileModified[db] = dbf.lastModified();
+        fileIsText[db] = !fileNames[db].toLowerCase().endsWith("db");
+        indexed[db] = !fileIsText[db] && IndexedDB.isIndexedDB(dbf);
+        if(!indexed[db]) {toRead.add(fileNames[db]);}
+    }
+    if(dbF != null) {
+        dbF.updateProgressBarLabel("Reading "+fileNames.length+" databases", 0);
+        dbF.updateProgressBar(0);
+    }
+    if(dbg) {System.out.println("Reading "+fileNames.length+" databases in parallel");}
+    java.util.List<java.util.List<Complex>> byFile = new java.util.ArrayList<java.util.List<Complex>>();
+    if(!toRead.isEmpty()) {
+        try {
+            LibSearch ls = new LibSearch(toRead);
+            byFile = ls.getComplexesByFile();
+        } catch (LibSearch.LibSearchException ex) {
+            throw new StoreException("Error: in \"ReactionStore.read\""+nl+ex.getMessage());
+        }
+    }
+    int j = 0;
+    for(int db = 0; db < fileNames.length; db++) {
+        fileStart[db] = reactions.size();
+        if(indexed[db]) {readIndexed(new java.io.File(fileNames[db]), db, files); continue;}
+        if(j >= byFile.size()) {break;} // interrupted
+        for(Complex complex : byFile.get(j)) {
+            if(complex.name == null) {break;}
+            reactions.add(complex);
+            files.add(db);
+        }
+        j++;
+    }
+    fileOf = new int[files.size()];
+    for(int i = 0; i < fileOf.length; i++) {fileOf[i] = files.get(i);}
+    if(dbF != null) {
+        dbF.updateProgressBarLabel(" ", 0);
+        dbF.updateProgressBar(0);
+    }
+    if(dbg) {System.out.println("Read "+reactions.size()+" reactions from "+fileNames.length+" database(s).");}
+  } //readParallel
+
+  /** Opens an indexed binary database. The reactions are not read: their
+   * places in the store are left empty, see <code>reaction(int)</code> */
+  private void readIndexed(java.io.File dbf, int db, java.util.ArrayList<Integer> files) throws StoreException {
+    IndexedDB idb;
+    try {idb = IndexedDB.open(dbf);}
+    catch (IndexedDB.IndexedDBException ex) {throw new StoreException(ex.getMessage()+nl+"search terminated");}
+    fileIndexed[db] = idb;
+    final int n = idb.size();
+    reactions.ensureCapacity(reactions.size() + n);
+    files.ensureCapacity(files.size() + n);
+    for(int r = 0; r < n; r++) {
+        reactions.add(null);
+        files.add(db);
+    }
+  } //readIndexed
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="makeIndex">
+  /** Makes the index from each component to the reactions where it takes part */
+  private void makeIndex() {
+    int n = reactions.size();
+    nbrComps = new int[n];
+    java.util.HashMap<String, java.util.ArrayList<Integer>> lists =
+            new java.util.HashMap<String, java.util.ArrayList<Integer>>();
+    java.util.ArrayList<Integer> alwaysList = new java.util.ArrayList<Integer>();
+    java.util.HashSet<String> keys = new java.util.HashSet<String>();
+    for(int r = 0; r < n; r++) {
+        Complex c = reactions.get(r);
+        IndexedDB idb = fileIndexed[fileOf[r]];
+        keys.clear();
+        if(idb != null) {
+            // the reaction is not read: the names and coefficients are taken from the file
+            int rr = r - fileStart[fileOf[r]];
+            if(!idb.getName(rr).startsWith("@")) {
+                for(int i = 0; i < Complex.NDIM; i++) {
+                    String comp = idb.getComponent(rr, i);
+                    if(comp.length() <=0 || Util.isWater(comp)
+                            || Math.abs(idb.getNumcomp(rr, i)) <= 0.001) {continue;}
+                    keys.add(key(comp));
+                }
+            }
+        } else if(!c.name.startsWith("@")) {
+            for(int i = 0; i < Complex.NDIM; i++) {
+                String comp = c.component[i];
+                if(comp == null || comp.length() <=0 || Util.isWater(comp)
+                        || Math.abs(c.numcomp[i]) <= 0.001) {continue;}
+                keys.add(key(comp));
+            }
+        }
+        nbrComps[r] = keys.size();
+        if(keys.isEmpty()) {alwaysList.add(r); continue;}
+        // the reactions in indexed files are found with the index in the file
+        if(idb != null) {continue;}
+        for(String k : keys) {
+            java.util.ArrayList<Integer> l = lists.get(k);
+            if(l == null) {l = new java.util.ArrayList<Integer>(); lists.put(k, l);}
+            l.add(r);
+        }
+    } //for r
+    for(java.util.Map.Entry<String, java.util.ArrayList<Integer>> e : lists.entrySet()) {
+        java.util.ArrayList<Integer> l = e.getValue();
+        int[] a = new int[l.size()];
+        for(int i = 0; i < a.length; i++) {a[i] = l.get(i);}
+        index.put(e.getKey(), a);
+    }
+    always = new int[alwaysList.size()];
+    for(int i = 0; i < always.length; i++) {always[i] = alwaysList.get(i);}
+  } //makeIndex
+
+  /** A key for a component name, such that two names have the same key
+   * if (and only if) <code>Util.nameCompare</code> is true for them:
+   * the electric charge and the name without charge, ignoring case.
+   * @param name the name of a component
+   * @return the key */
+  static String key(String name) {
+    String bare = Util.nameOf(name);
+    StringBuilder sb = new StringBuilder(bare.length()+4);
+    sb.append(Util.chargeOf(name)).append(' ');
+    for(int i = 0; i < bare.length(); i++) {
+        // the same comparison as in String.equalsIgnoreCase
+        sb.append(Character.toLowerCase(Character.toUpperCase(bare.charAt(i))));
+    }
+    return sb.toString();
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="candidates">
+  /** Finds the reactions that might be formed by the selected components:
+   * those where all components (excluding H2O and components with zero
+   * stoichiometric coefficient) are among the selected components, and
+   * those whose names start with "@". Only the reactions where the selected
+   * components take part are looked at: for the indexed binary databases
+   * they are found with <code>IndexedDB.recordsWith</code>.
+   * @param selectedComps the names of the selected components
+   * @return the reactions (their position in the store) in the order they
+   * were read from the databases */
+  int[] candidates(java.util.List<String> selectedComps) {
+    // a name for each key
+    java.util.HashMap<String, String> keys = new java.util.HashMap<String, String>();
+    for(String s : selectedComps) {
+        if(s != null && !Util.isWater(s) && !keys.containsKey(key(s))) {keys.put(key(s), s);}
+    }
+    // count for each reaction how many of its components are selected
+    java.util.HashMap<Integer, int[]> count = new java.util.HashMap<Integer, int[]>();
+    for(java.util.Map.Entry<String, String> k : keys.entrySet()) {
+        int[] rs = index.get(k.getKey());
+        if(rs != null) {count(count, rs, 0);}
+        for(int db = 0; db < fileIndexed.length; db++) {
+            if(fileIndexed[db] != null) {count(count, fileIndexed[db].recordsWith(k.getValue()), fileStart[db]);}
+        }
+    }
+    int[] res = new int[count.size() + always.length];
+    int n = 0;
+    for(java.util.Map.Entry<Integer, int[]> e : count.entrySet()) {
+        int r = e.getKey();
+        if(e.getValue()[0] == nbrComps[r]) {res[n++] = r;}
+    }
+    System.arraycopy(always, 0, res, n, always.length);
+    n += always.length;
+    res = java.util.Arrays.copyOf(res, n);
+    java.util.Arrays.sort(res);
+    return res;
+  } //candidates
+
+  private static void count(java.util.HashMap<Integer, int[]> count, int[] rs, int start) {
+    for(int r : rs) {
+        int[] c = count.get(start + r);
+        if(c == null) {count.put(start + r, new int[]{1});} else {c[0]++;}
+    }
+  }
+  //</editor-fold>
+
+  /** @return the number of reactions in the store */
+  int size() {return reactions.size();}
+  /** @param r the position of a reaction in the store
+   * @return the reaction. It must not be modified: use a copy if needed */
+  synchronized Complex reaction(int r) {
+    Complex c = reactions.get(r);
+    if(c == null) {
+        // a reaction in an indexed binary database not read yet
+        c = fileIndexed[fileOf[r]].getComplex(r - fileStart[fileOf[r]]);
+        reactions.set(r, c);
+    }
+    return c;
+  }
+  /** @param r the position of a reaction in the store
+   * @return the name of the database file where the reaction was read */
+  String fileName(int r) {return fileNames[fileOf[r]];}
+  /** @param r the position of a reaction in the store
+   * @return true if the reaction was read from a text file, false if it was read from a binary file */
+  boolean isFromTextFile(int r) {return fileIsText[fileOf[r]];}
+
+  static class StoreException extends Exception {
+    private static final long serialVersionUID = 1L;
+    public StoreException() {super();}
+    public StoreException(String txt) {super(txt);}
+  } //StoreException
+
+}
@@ -0,0 +1,163 @@
+package database;
+
+import lib.database.Complex;
+import lib.database.DiskCache;
+import lib.database.LibDB;
+
+/** A cache on disk with the results of previous database searches.
+ * The same components are often selected again and again, and the
+ * reactions found by <code>DBSearch</code> (after the redox corrections) are
+ * saved in a file. The next search with the same components, the same
+ * options and the same database files reads the reactions from this file
+ * instead of searching the databases.
+ * <p>
+ * The key of each entry contains: the components selected by the user, the
+ * possible redox components and the excluded redox components (both
+ * sorted), the option to exclude solids, and for each database file, in
+ * the order they are searched: the name, length, modification date and
+ * a checksum of its contents. If any database file is changed the key
+ * changes, and the old entry is not used any more.
+ * <p>
+ * The temperature and pressure are not in the key: the reactions found are
+ * those at 25°C, the temperature corrections are made when the data file
+ * is saved.
+ * <p>
+ * The cache files are in the folder ".config/eq-diagr/DataBase_cache" in the
+ * user's home directory. Only the <code>MAX_ENTRIES</code> most recently
+ * used entries are kept.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see DBSearch DBSearch
+ * @author Ignasi Puigdomenech */
+class SearchCache {
+  /** the maximum number of search results kept on disk */
+  static final int MAX_ENTRIES = 100;
+  private static final String HEADER = "DataBase search cache, version 1";
+  /** the search results on disk: the name of each file is a hash of the key */
+  private static final DiskCache cache = new DiskCache("DataBase_cache", ".cache", MAX_ENTRIES);
+  private static final String nl = System.getProperty("line.separator");
+
+  /** The reactions found in a search, as saved in the cache */
+  static class Entry {
+    /** the reactions found: first the soluble complexes, then the solids */
+    final java.util.ArrayList<Complex> dat = new java.util.ArrayList<Complex>();
+    /** number of soluble complexes */
+    int nx;
+    /** number of solid reaction products */
+    int nf;
+    /** the text shown if some solids were excluded, or " " */
+    String solidsExcluded = " ";
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="key">
+  /** Makes the key for a search.
+   * @param userComps the components selected by the user
+   * @param comps the possible new redox components
+   * @param compsX the redox components to exclude
+   * @param allSolids the option to exclude solids: 0=include all solids;
+   * 1=exclude (cr); 2=exclude (c); 3=exclude (cr)&amp;(c)
+   * @param dataBasesList the database files
+   * @return the key, or null if any of the database files can not be read */
+  static String key(java.util.List<String> userComps, java.util.List<String> comps,
+          java.util.List<String> compsX, int allSolids, java.util.List<String> dataBasesList) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("components:").append(sorted(userComps)).append(nl);
+    sb.append("redox components:").append(sorted(comps)).append(nl);
+    sb.append("excluded redox components:").append(sorted(compsX)).append(nl);
+    sb.append("all solids:").append(allSolids).append(nl);
+    for(String name : dataBasesList) {
+        if(name == null || name.length() <=0) {continue;}
+        java.io.File f = new java.io.File(name);
+        long[] fp = DiskCache.fingerprint(f);
+        if(fp == null) {return null;}
+        sb.append("database:").append(f.getAbsolutePath()).append(", ").append(fp[0])
+          .append(", ").append(fp[1]).append(", ").append(Long.toHexString(fp[2])).append(nl);
+    }
+    return sb.toString();
+  } //key
+
+  private static String sorted(java.util.List<String> list) {
+    java.util.ArrayList<String> l = new java.util.ArrayList<String>(list);
+    java.util.Collections.sort(l);
+    return l.toString();
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="get">
+  /** Reads the results of a previous search from the cache.
+   * @param key the key of the search, see <code>key</code>
+   * @param dbg if true some debug information is printed
+   * @return the reactions found, or null if there is no entry for this key */
+  static Entry get(String key, boolean dbg) {
+    java.io.File f = cache.entryFile(key);
+    if(f == null || !f.exists()) {return null;}
+    Entry e = new Entry();
+    java.io.DataInputStream dis = null;
+    try {
+        dis = new java.io.DataInputStream(new java.io.BufferedInputStream(new java.io.FileInputStream(f)));
+        if(!HEADER.equals(dis.readUTF())) {return null;}
+        byte[] k = new byte[dis.readInt()];
+        dis.readFully(k);
+        // the file name is a hash of the key: check that it is the same key
+        if(!key.equals(new String(k, "UTF-8"))) {return null;}
+        e.nx = dis.readInt();
+        e.nf = dis.readInt();
+        e.solidsExcluded = dis.readUTF();
+        int n = dis.readInt();
+        if(n != e.nx + e.nf) {return null;}
+        for(int i = 0; i < n; i++) {
+            Complex c = LibDB.getBinComplex(dis);
+            if(c == null) {return null;}
+            e.dat.add(c);
+        }
+    } catch (Exception ex) {
+        if(dbg) {System.out.println("Note: could not read search cache file \""+f.getPath()+"\""+nl+"   "+ex.toString());}
+        return null;
+    } finally {
+        if(dis != null) {try {dis.close();} catch (java.io.IOException ex) {}}
+    }
+    // keep the most recently used entries
+    cache.used(f);
+    return e;
+  } //get
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="put">
+  /** Saves the results of a search in the cache. Errors are ignored:
+   * the search results are then not cached.
+   * @param key the key of the search, see <code>key</code>
+   * @param e the reactions found
+   * @param dbg if true some debug information is printed */
+  static void put(final String key, final Entry e, boolean dbg) {
+    java.io.File f = cache.put(key, new DiskCache.EntryWriter() {
+        @Override public void write(java.io.DataOutputStream ds) throws Exception {
+            ds.writeUTF(HEADER);
+            byte[] k = key.getBytes("UTF-8");
+            ds.writeInt(k.length);
+            ds.write(k);
+            ds.writeInt(e.nx);
+            ds.writeInt(e.nf);
+            ds.writeUTF(e.solidsExcluded);
+            ds.writeInt(e.dat.size());
+            for(Complex c : e.dat) {LibDB.writeBinCmplx(ds, c);}
+        }
+    }, dbg);
+    if(f != null && dbg) {System.out.println("Search results saved in cache file \""+f.getName()+"\"");}
+  } //put
+  //</editor-fold>
+
+}
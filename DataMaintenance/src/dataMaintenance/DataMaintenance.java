@@ -42,13 +42,11 @@ public class DataMaintenance extends javax.swing.JFrame {
   private boolean working = false;
   /** a counter indicating how many reactions have been read so far */
   private long cmplxNbr = 0;
-  private final double F_TXT_CMPLX = 54.15; //=186863/3451
+  static final double F_TXT_CMPLX = 54.15; //=186863/3451
   private final double F_BIN_ELEM = 38.64;  //=3323/86  
-  private final double F_BIN_CMPLX =123.39; //=425835/3451  
+  static final double F_BIN_CMPLX =123.39; //=425835/3451  
   /** the length in bytes of the file being read */
   private double fLength;
-  /** the complexes and solid products found in the database search */
-  private final java.util.Set<Complex> dataList = new java.util.TreeSet<Complex>();
 
   private final java.awt.Color frgrnd;
   private final java.awt.Color bckgrnd;
@@ -61,6 +59,9 @@ public class DataMaintenance extends javax.swing.JFrame {
   private boolean doNotExit = false;
   private boolean dispatchingArgs = false;
   private String fileCmplxSaveName = null;
+  /** if true the binary database is written in the indexed format
+   * (see <code>IndexedDB</code>), otherwise in the original sequential format */
+  private boolean indexedFormat = false;
 
   /** New-line character(s) to substitute "\n" */
   private static final String nl = System.getProperty("line.separator");
@@ -187,7 +188,7 @@ public class DataMaintenance extends javax.swing.JFrame {
     for(int i=0; i < pd.dataBasesList.size(); i++) {
         modelFiles.addElement(pd.dataBasesList.get(i));
     }
-    LibDB.getElements(this, pc.dbg, pd.dataBasesList, pd.elemComp);
+    LibDB.getElements(this, pc.dbg, pd);
     setFrameEnabled(true);
     windowSize = this.getSize();
 
@@ -598,7 +599,7 @@ public class DataMaintenance extends javax.swing.JFrame {
         if(!dbND.cancel) {
             LibDB.checkDataBasesList(this, pd.dataBasesList, true);
             //---- read the elements/components for the databases
-            LibDB.getElements(this, pc.dbg, pd.dataBasesList, pd.elemComp);
+            LibDB.getElements(this, pc.dbg, pd);
             //---- 
             modelFiles.clear();
             for(int i=0; i < pd.dataBasesList.size(); i++) {modelFiles.addElement(pd.dataBasesList.get(i));}
@@ -725,7 +726,7 @@ public class DataMaintenance extends javax.swing.JFrame {
       // ---- Going to wait for another frame: Start a thread
       new javax.swing.SwingWorker<Void,Void>() {
           @Override protected Void doInBackground() throws Exception {
-            LibDB.getElements(DataMaintenance.this, pc.dbg, pd.dataBasesList, pd.elemComp);
+            LibDB.getElements(DataMaintenance.this, pc.dbg, pd);
             FrameSingleComponent sc = new FrameSingleComponent(DataMaintenance.this, pc, pd);
             setCursorDef();
             DataMaintenance.this.setVisible(false);
@@ -1223,7 +1224,9 @@ public class DataMaintenance extends javax.swing.JFrame {
 //</editor-fold>
 
  //<editor-fold defaultstate="collapsed" desc="toBinary">
-  /** Combines the information in all databases and stores it in a single binary file
+  /** Combines the information in all databases and stores it in a single binary file,
+   * either in the original sequential format or in the indexed format
+   * (see <code>indexedFormat</code>)
    * @param eComp array list of String[3] objects<br>
    * [0] contains the element name (e.g. "C"),<br>
    * [1] the component formula ("CN-" or "Fe+2"),<br>
@@ -1260,6 +1263,18 @@ public class DataMaintenance extends javax.swing.JFrame {
         MsgExceptn.showErrMsg(this, msg, 1);
         return;
     }
+    if(!dispatchingArgs) {
+        Object[] opt = {"Indexed", "Sequential", "Cancel"};
+        int m = javax.swing.JOptionPane.showOptionDialog(this,
+                "Format of the binary database:"+nl+
+                "- \"Indexed\" is faster to read, but it can not be"+nl+
+                "   read by older versions of the programs"+nl+
+                "- \"Sequential\" is the original format",
+                pc.progName, javax.swing.JOptionPane.YES_NO_CANCEL_OPTION,
+                javax.swing.JOptionPane.QUESTION_MESSAGE, null, opt, opt[0]);
+        if(m != javax.swing.JOptionPane.YES_OPTION && m != javax.swing.JOptionPane.NO_OPTION) {return;}
+        indexedFormat = (m == javax.swing.JOptionPane.YES_OPTION);
+    }
     if(pd.dataBasesList.size() >1) {
         System.out.println(LINE+nl+"Merging all files into a single binary database . . .");
     } else {
@@ -1310,374 +1325,55 @@ public class DataMaintenance extends javax.swing.JFrame {
                              "    \""+fileCmplxSaveName+"\"");
           // There is not need to ask permission to overwrite an existing file,
           // it has already been done in "Util.getSaveFileName"
-          Complex complex, oldCmplx;
-          dataList.clear();
-          java.io.File f;
-          java.io.BufferedReader br;
-          java.io.DataInputStream dis = null;
-          boolean binary, added, removed, found;
-          String msg;
-          int db = 0;
           publish(0);
           jLabelNbr.setText("0");   jLabelNbr.setVisible(true);
-          java.util.ArrayList<Complex> toRemove = new java.util.ArrayList<Complex>();
-
-          // -------------------------------------
-          // --- loop  through all databases  ----
-          // -------------------------------------
-          int converted = 0;
-          while (db < pd.dataBasesList.size()) {
-            if(!working) {return null;}
-            f = new java.io.File(pd.dataBasesList.get(db));
-            if(!f.exists() || !f.canRead()) {
-                msg = "Error - file \""+pd.dataBasesList.get(db)+"\""+nl;
-                if(f.exists()) {msg = msg.concat("    can not be read.");}
-                else {msg = msg.concat("    does not exist.");}
-                System.err.println(msg);
-                continue;
-            }
-            binary = false;
-            if(Div.getFileNameExtension(pd.dataBasesList.get(db)).equalsIgnoreCase("db")) {binary = true;}
-            publish(0);
-            System.out.println("Reading file \""+f.getName()+"\"");
-
-            // -- read a txt file
-            if(!binary) {
-                fLength = (double)f.length();
-                try{br = new java.io.BufferedReader(new java.io.FileReader(f));}
-                catch (java.io.FileNotFoundException ex) {
-                        msg = "Error: "+ex.toString()+nl+"while trying to open file: \""+f.getName()+"\"";
-                        System.err.println(msg+nl+"in procedure \"toBinary\".");
-                        javax.swing.JOptionPane.showMessageDialog(null, msg, pc.progName, javax.swing.JOptionPane.ERROR_MESSAGE);
-                        return null;
-                }
-
-                try{
-                cmplxNbr = 0;
-                loopComplex:
-                while (true) {
-                  if(!working) {return null;}
-                  try{complex = LibDB.getTxtComplex(br);}
-                  catch (LibDB.EndOfFileException ex) {complex = null;}
-                  catch (LibDB.ReadTxtCmplxException ex) {
-                      msg = "Error: in \"toBinary\", cmplxNbr = "+cmplxNbr+nl+ex.toString();
-                      MsgExceptn.exception(msg);
-                      javax.swing.JOptionPane.showMessageDialog(DataMaintenance.this, msg, pc.progName,
-                              javax.swing.JOptionPane.ERROR_MESSAGE);
-                      return null;
-                  }
-//try{Thread.sleep(1);} catch (InterruptedException ex) {}
-                  publish((int)(100*(double)cmplxNbr*F_TXT_CMPLX/fLength));
-                  jLabelNbr.setText(String.valueOf(cmplxNbr));
-                  if(complex == null) {break;} // loopComplex // end-of-file, open next database
-
-                  //if name starts with "@": remove any existing complex with this name
-                  if(complex.name.startsWith("@")) {
-                      complex.name = complex.name.substring(1);
-                      System.out.println("   removing any previous occurrences of species: \""+complex.name+"\"");
-                      // this is time consuming, but hopefully it is not done many times
-                      java.util.Iterator<Complex> datIt = dataList.iterator();
-                      toRemove.clear();
-                      while(datIt.hasNext()) {
-                          if(!working) {return null;} //this will go to finally
-                          oldCmplx = datIt.next();
-                          if(Util.nameCompare(oldCmplx.name, complex.name)) {toRemove.add(oldCmplx);}
-                      }
-                      if(!toRemove.isEmpty()) {
-                          for(Complex c : toRemove) {
-                            System.out.println("   - removing complex \""+c.toString()+"\"");
-                            removed = dataList.remove(c);
-                            if(!removed) {
-                                msg = "Error: in \"toBinary\", can not remove complex:"+nl+"  \""+c.toString()+"\"";
-                                MsgExceptn.exception(msg);
-                                javax.swing.JOptionPane.showMessageDialog(DataMaintenance.this, msg, pc.progName,
-                                        javax.swing.JOptionPane.ERROR_MESSAGE);
-                            }
-                          }
-                          System.out.println("   - finished searching for: \""+complex.name+"\"");
-                      } else {
-                          System.out.println("   - no previous occurrences of \""+complex.name+"\" were found.");
-                      }
-                  } else {
-                      //name does not start with "@": add complex...
-                      //check if the components are in the list of possible components
-                      msg = Complex.checkComplex(complex);
-                      for(int i=0; i < Complex.NDIM; i++) {
-                        if(complex.component[i] != null && complex.component[i].length() >0) {
-                            found = false;
-                            for(int j=0; j < eComp.size(); j++) {
-                                if(complex.component[i].equals(eComp.get(j)[1])) {found = true; break;}
-                            } //for j
-                            if(!found) {
-                                String t = "Component \""+complex.component[i]+"\" in complex \""+complex.name+"\""+nl+"not found in the element-files.";
-                                if(msg == null || msg.length() <= 0) {msg = t;} else {msg = msg +nl+ t;}
-                            }//not found
-                        }
-                      } // for i
-                      if(msg != null) {
-                        System.out.println("---- Error: "+msg);
-                        Object[] opt = {"OK", "Cancel"};
-                        int answer = javax.swing.JOptionPane.showOptionDialog(DataMaintenance.this,
-                                "Error in file \""+f.getName()+"\""+nl+msg,
-                                pc.progName, javax.swing.JOptionPane.YES_NO_OPTION,
-                                javax.swing.JOptionPane.WARNING_MESSAGE, null, opt, opt[1]);
-                        if(answer != javax.swing.JOptionPane.YES_OPTION) {
-                            return null; //this will go to finally
-                        }
-                      } //if msg !=null
-                      //if the complex already is in the list, replace it.
-                      // (this is perhaps time consuming)
-                      found = false;
-                      toRemove.clear();
-                      java.util.Iterator<Complex> datIt = dataList.iterator();
-                      while(datIt.hasNext()) {
-                          if(!working) {return null;} //this will go to finally
-                          oldCmplx = datIt.next();
-                          if(Complex.sameNameAndStoichiometry(oldCmplx, complex) ||
-                                (Util.nameCompare(oldCmplx.name, complex.name)
-                                && (!Complex.isRedox(oldCmplx) || !Complex.isRedox(complex)))
-                                ) { toRemove.add(oldCmplx); }
-                      }
-                      if(!toRemove.isEmpty()) {
-                          found = true;
-                          for(Complex c : toRemove) {
-                            System.out.println("   - removing complex \""+c.toString()+"\"");
-                            removed = dataList.remove(c);
-                            if(!removed) {
-                                msg = "Error: in \"toBinary\", can not remove complex:"+nl+"  \""+c.toString()+"\"";
-                                MsgExceptn.exception(msg);
-                                javax.swing.JOptionPane.showMessageDialog(DataMaintenance.this, msg, pc.progName,
-                                        javax.swing.JOptionPane.ERROR_MESSAGE);
-                            }
-                          }
-                      }
-                      if(found){
-                            System.out.println("   - adding complex \""+complex.toString()+"\"");
-                      }
-                      added = dataList.add(complex);
-                      if(!added) {
-                            msg = "Error: in \"toBinary\", can not add complex:"+nl+"  \""+complex.toString()+"\"";
-                            MsgExceptn.exception(msg);
-                            javax.swing.JOptionPane.showMessageDialog(DataMaintenance.this, msg, pc.progName,
-                                    javax.swing.JOptionPane.ERROR_MESSAGE);
-                      }
-                  } //starts with "@"?
-                  cmplxNbr++;
-                } //while - loopComplex:
-                } catch (Exception ex) {System.out.println("An exception occurred."); return null;}
-                converted++;
-                try{br.close();} catch (java.io.IOException ex) {System.err.println("Error "+ex.toString()); return null;}
-            } else {
-              // -- read a binary file
-              fLength = (double)f.length();
-              try{
-                dis = new java.io.DataInputStream(new java.io.FileInputStream(f));
-                cmplxNbr = 0;
-                while (true){
-                    if(!working) {return null;} //this will go to finally
-                    publish((int)(100*(double)cmplxNbr*F_BIN_CMPLX/fLength));
-                    javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
-                      jLabelNbr.setText(String.valueOf(cmplxNbr));
-                    }});
-                    complex = LibDB.getBinComplex(dis);
-                    if(complex == null) {break;} //end of file
-
-                    // this is perhaps time consuming
-                    for (java.util.Iterator<Complex> datIt = dataList.iterator(); datIt.hasNext(); ) {
-                        if(!working) {return null;} //this will go to finally
-                        oldCmplx = datIt.next();
-                        if(Util.nameCompare(oldCmplx.name, complex.name)) {
-                            System.out.println("   replacing \""+oldCmplx.name+"\" with: \""+complex.name+"\", logK="+Util.formatDbl3(complex.constant));
-                            removed = dataList.remove(complex);
-                            if(!removed) {
-                                msg = "Error: in \"toBinary\", can not remove complex:"+nl+"  \""+complex.toString()+"\"";
-                                MsgExceptn.exception(msg);
-                                javax.swing.JOptionPane.showMessageDialog(DataMaintenance.this, msg, pc.progName,
-                                    javax.swing.JOptionPane.ERROR_MESSAGE);
-                            }
-                        } // names are equivalent
-                        added = dataList.add(complex);
-                        if(!added) {
-                            msg = "Error: in \"toBinary\", can not add complex:"+nl+"  \""+complex.toString()+"\"";
-                            MsgExceptn.exception(msg);
-                            javax.swing.JOptionPane.showMessageDialog(DataMaintenance.this, msg, pc.progName,
-                                    javax.swing.JOptionPane.ERROR_MESSAGE);
-                        }
-                    } //for datIt-Iterator
-                    cmplxNbr++;
-                }// while(true) loop through the whole file
-                converted++;
-              } catch (Exception ex) {
-                System.err.println("Error: "+ex.getMessage()+nl+"with \""+f.getAbsolutePath()+"\"");
-                return null;
+          MergeDataBases merge = new MergeDataBases(pd.dataBasesList, eComp, pc.dbg);
+          MergeDataBases.Listener lst = new MergeDataBases.Listener() {
+              @Override public void progress(String file, final long nbr, int percent) {
+                  publish(percent);
+                  javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
+                      jLabelNbr.setText(String.valueOf(nbr));
+                  }});
               }
-              finally {
-                if(dis != null) {
-                  try{dis.close();}
-                  catch (java.io.IOException ex) {System.err.println("Input-Output error: "+ex.toString()); return null;}
-                }
-                publish(0);
+              @Override public boolean reactionError(String file, String msg) {
+                  Object[] opt = {"OK", "Cancel"};
+                  int answer = javax.swing.JOptionPane.showOptionDialog(DataMaintenance.this,
+                          "Error in file \""+file+"\""+nl+msg,
+                          pc.progName, javax.swing.JOptionPane.YES_NO_OPTION,
+                          javax.swing.JOptionPane.WARNING_MESSAGE, null, opt, opt[1]);
+                  return answer == javax.swing.JOptionPane.YES_OPTION;
               }
-              if(!working) {return null;}
-            } // binary?
-            // -- next database
-            db++;
-          } //while - db
-          // --- end database loop
-
-          // --- save all reactions that have been read from all files (in datIt)
-          //     into a single binary file
-          publish(0);
-          System.out.println("Writing file \""+fileCmplxSave.getName()+"\"");
-
-          java.io.DataOutputStream ds = null;
-          boolean fnd;
-          int eCompSize = eComp.size();
-          // only components (metals or ligands) that are used
-          // will be saved in the elements file
-          boolean[] eCompUsed = new boolean[eCompSize];
-          for(int i=0; i<eCompSize; i++) {eCompUsed[i] = false;}
-          try {
-            // Wrap the FileOutputStream with a DataOutputStream to obtain its writeInt(), etc methods
-            ds = new java.io.DataOutputStream(new java.io.FileOutputStream(fileCmplxSave));
-            cmplxNbr = 0;
-            System.out.println("total nbr of reactions: "+dataList.size());
-            double nTot = (double)dataList.size();
-            for (java.util.Iterator<Complex> datIt = dataList.iterator(); datIt.hasNext(); ) {
-              if(!working) {return null;} //this will go to finally
-              publish((int)(100*(double)cmplxNbr/nTot));
-              jLabelNbr.setText(String.valueOf(cmplxNbr));
-              complex = datIt.next();
-              LibDB.writeBinCmplx(ds,complex);
-              ds.flush();
-//try{Thread.sleep(1);} catch (InterruptedException ex) {}
-              //mark the components that are used as "needed"
-              loopNDIM:
-              for(int j=0; j<Complex.NDIM; j++) {
-                  if(Math.abs(complex.numcomp[j]) < 0.0001 ||
-                     complex.component[j] == null || complex.component[j].length() <=0) {continue;}
-                  fnd = false;
-                  for(int i = 0; i < eCompSize; i++) {
-                    if(eComp.get(i)[1].equals(complex.component[j])) {
-                        // only components (metals or ligands) that are used
-                        // will be saved in the elements file
-                        eCompUsed[i] = true;
-                        fnd = true;
-                        //no "break": a component (ligand) might be in under several elements
-                    }
-                  }//for i              
-                  if(!fnd) {MsgExceptn.exception("--- Component: "+complex.component[j]+" in complex "+complex.name+nl+" not found in the element files.");}
-              }//for j
-              cmplxNbr++;
-            } //for datIt-Iterator
-          }
-          catch (Exception ex) {
-               System.out.println(ex.toString()+nl+
-                       "while writing binary reactions database file:"+nl+"   \""+fileCmplxSaveName+"\"");
-               return null;
-          }
-          finally {
-            if(ds != null) {
-                try{ds.flush(); ds.close();}
-                catch (java.io.IOException ex) {System.err.println(ex.toString()); return null;}
-            }
-          }
-          if(!working) {return null;}
-
-          // --------------------------------------
-          // ----  Elements-Components file    ----
-          // --------------------------------------
-          //--- write the elements and components into a single database
-          publish(0);
-          System.out.println("Writing binary \"elements\"-file:"+nl+"   \""+fileElemSaveName+"\"");
-          int n;
-          StringBuilder elemSymbol = new StringBuilder();
-          java.io.DataOutputStream dos = null;
-          final int ELEMENTS = LibDB.ELEMENTS;
+              @Override public boolean cancelled() {return !working;}
+          };
+          int converted;
+          String msg;
           try {
-            dos = new java.io.DataOutputStream(new java.io.FileOutputStream(fileElemSave));
-            for(int i=0; i < ELEMENTS; i++) {
-              if(!working) {return null;} //a return here will enter "finally"
-              publish((int)(100*(double)i/(double)ELEMENTS));
-
-              elemSymbol.replace(0, elemSymbol.length(), LibDB.elementSymb[i]);
-              n=0;
-              for(int j=0; j < eCompSize; j++) {
-                if(!working) {return null;} //this would go to "finally"
-                if(eComp.get(j)[0].equals(elemSymbol.toString()) && eCompUsed[j]) {n++;}
-              }//for j
-
-              if(n > 0) {
-                dos.writeUTF(elemSymbol.toString());
-                dos.writeInt(n);
-                for(int j=0; j < eCompSize; j++) {
-                  if(!working) {return null;}
-                  if(eComp.get(j)[0].equals(elemSymbol.toString()) && eCompUsed[j]) {
-                    dos.writeUTF(eComp.get(j)[1]);
-                    dos.writeUTF(eComp.get(j)[2]);
-                  }
-                }//for j
-              }//if n>0
-            } //for i
-
-            //--- For components in the database not belonging to any element:
-            //    set all of them into "XX"
-            publish(100);
-            n = 0;
-            for(int j=0; j < eCompSize; j++) {
+              converted = merge.merge(lst);
+              // --- save all reactions that have been read from all files
+              //     into a single binary file
+              publish(0);
+              System.out.println("Writing file \""+fileCmplxSave.getName()+"\"");
+              boolean[] eCompUsed = merge.writeReactions(fileCmplxSave, indexedFormat, lst);
               if(!working) {return null;}
-              //if(eComp.get(j)[1].equals("H2O")) {eCompUsed[j] = true;}
-              if(!eCompUsed[j]) {
-                  System.out.println("   Component: "+eComp.get(j)[1]+" not used.");
-                  continue;
-              }
-              elemSymbol.replace(0, elemSymbol.length(), eComp.get(j)[0]);
-              found = false;
-              for(int i=0; i < ELEMENTS; i++) {
-                if(!working) {return null;}
-                if(LibDB.elementSymb[i].equals(elemSymbol.toString())) {
-                    found = true;
-                    break;
-                }
-              } //for i
-              if(!found) {
-                  System.out.println("   Component: "+eComp.get(j)[1]+" not connected to an element.");
-                  n++;
+              // --------------------------------------
+              // ----  Elements-Components file    ----
+              // --------------------------------------
+              //--- write the elements and components into a single database
+              publish(100);
+              merge.writeElements(fileElemSave, eCompUsed);
+          } catch (MergeDataBases.MergeException ex) {
+              msg = ex.getMessage();
+              System.err.println(msg);
+              if(working) {
+                  javax.swing.JOptionPane.showMessageDialog(DataMaintenance.this, msg, pc.progName,
+                          javax.swing.JOptionPane.ERROR_MESSAGE);
               }
-            }//for j
-            if(n > 0) {
-              if(!working) {return null;}
-              dos.writeUTF("XX");
-              dos.writeInt(n);
-              for(int j=0; j < eCompSize; j++) {
-                if(!working) {return null;}
-                if(!eCompUsed[j]) {continue;} //has it been used?
-                elemSymbol.replace(0, elemSymbol.length(), eComp.get(j)[0]);
-                found = false;
-                for(int i=0; i < ELEMENTS; i++) {
-                    if(!working) {return null;}
-                    if(LibDB.elementSymb[i].equals(elemSymbol.toString())) {
-                        found = true;
-                        break;
-                    }
-                }//for i
-                if(!found) {
-                  dos.writeUTF(eComp.get(j)[1]);
-                  dos.writeUTF(eComp.get(j)[2]);
-                }//if !found
-              }//for j
-            }//if n>0
-          } catch (Exception ioe) {
-              System.err.println("Error: "+ioe.toString()+nl+"with \""+fileElemSaveName+"\"");
+              return null;
+          } catch (java.io.IOException ex) {
+              System.err.println("Error: "+ex.toString()+nl+"with \""+fileElemSaveName+"\"");
               return null;
           }
-          finally {
-            if(dos != null) {
-              try{dos.flush(); dos.close();}
-              catch (java.io.IOException ex) {System.err.println("Error: "+ex.toString()); return null;}
-            }
-          }
-          
+
           if(converted > 1) {msg = "Finished merging "+converted+" text databases";}
           else {msg = "Finished converting the text database";}
           msg = msg+"."+nl+
@@ -1833,8 +1529,14 @@ public class DataMaintenance extends javax.swing.JFrame {
                   fLength = (double)fileRead.length();
                   dis = null;
                   pw = null;
+                  IndexedDB idb = null;
                   try{
-                    dis = new java.io.DataInputStream(new java.io.FileInputStream(fileRead));
+                    if(IndexedDB.isIndexedDB(fileRead)) {
+                        idb = IndexedDB.open(fileRead);
+                        fLength = (double)idb.size()*F_BIN_CMPLX;
+                    } else {
+                        dis = new java.io.DataInputStream(new java.io.BufferedInputStream(new java.io.FileInputStream(fileRead)));
+                    }
                     pw =  new java.io.PrintWriter(new java.io.BufferedWriter(new java.io.FileWriter(fileSave)));
                     pw.println(Complex.FILE_FIRST_LINE);
                     Complex cmplx;
@@ -1842,7 +1544,9 @@ public class DataMaintenance extends javax.swing.JFrame {
                     while (true){
                         if(!working) {return null;} //this will go to finally
                         publish((int)(100*(double)cmplxNbr*F_BIN_CMPLX/fLength));
-                        cmplx = LibDB.getBinComplex(dis);
+                        if(idb != null) {
+                            cmplx = (cmplxNbr < idb.size()) ? idb.getComplex((int)cmplxNbr) : null;
+                        } else {cmplx = LibDB.getBinComplex(dis);}
                         if(cmplx == null) {break;} //end of file
                         LibDB.writeTxtComplex(pw, cmplx);
                         cmplxNbr++;
@@ -1874,6 +1578,9 @@ public class DataMaintenance extends javax.swing.JFrame {
             catch (LibDB.WriteTxtCmplxException ex) {
                 System.err.println("Error: "+ex.toString()); ex.printStackTrace();
             }
+            catch (IndexedDB.IndexedDBException ex) {
+                System.err.println("Error: "+ex.toString()); ex.printStackTrace();
+            }
             finally {
                 msg = "---- Converted "+converted+" file";
                 if(converted > 1) {msg = msg+"s";}
@@ -1912,12 +1619,13 @@ public class DataMaintenance extends javax.swing.JFrame {
         msgFrame.setVisible(true);
         doNotExit = true;
         return;}
-    // ---- starts with "-bin"
+    // ---- starts with "-bin" or "-idb"
     if(arg.length() >3) {
         String arg0 = arg.substring(0, 4).toLowerCase();
         if((arg.charAt(0) == '-' || arg.charAt(0) == '/') &&
-            arg0.substring(1,4).equals("bin")) {
-                if(arg.charAt(4) == '=' || arg.charAt(4) == ':' && arg.length() >5) {
+            (arg0.substring(1,4).equals("bin") || arg0.substring(1,4).equals("idb"))) {
+                indexedFormat = arg0.substring(1,4).equals("idb");
+                if(arg.length() >5 && (arg.charAt(4) == '=' || arg.charAt(4) == ':')) {
                     setFrameEnabled(false);
                     fileCmplxSaveName = arg.substring(5);
                     if(fileCmplxSaveName.length() > 2 && fileCmplxSaveName.startsWith("\"")
@@ -1945,7 +1653,7 @@ public class DataMaintenance extends javax.swing.JFrame {
                 } // if a file name is given
                 toBinary(pd.elemComp);
                 return;
-        } // if it starts with "-bin" or "/bin" 
+        } // if it starts with "-bin" or "/bin" (or "-idb") 
     } // if length > 5
     String msg = "Error: bad format for"+nl+
                  "   command-line argument: \""+arg+"\"";
@@ -1979,6 +1687,13 @@ public class DataMaintenance extends javax.swing.JFrame {
     "  -bin:out-file-name  (as for \"-bin\", but the name of the output"+nl+
     "                       database (possibly including a path) is given."+nl+
     "                       Note: out-file-name must end with \".db\")"+nl+
+    "  -idb  (as \"-bin\", but the binary database is written in the indexed"+nl+
+    "         format, faster to read but not readable by older program versions)"+nl+
+    "  -idb:out-file-name  (as for \"-bin:out-file-name\", in the indexed format)"+nl+
+    "  -nogui  (merge the databases without windows; the names of the input"+nl+
+    "          files may be given after the other options)"+nl+
+    "  -check:report-file  (with \"-nogui\": check the databases and write"+nl+
+    "          the statistics report instead of merging them)"+nl+
     "Enclose file names with double quotes (\"\") it they contain blank space."+nl+
     "Example:   java -jar DataMaintenance.jar /dbg -bin=\"..\\plt\\db 2.db\"";
     System.out.println(msg);
@@ -1995,6 +1710,21 @@ public class DataMaintenance extends javax.swing.JFrame {
    * @param args the command line arguments
    */
   public static void main(final String[] args) {
+    //---- without a display, or with "-nogui": merge (or check) the databases without any windows
+    boolean noGUI = java.awt.GraphicsEnvironment.isHeadless();
+    for(String arg : args) {
+        if(arg.equalsIgnoreCase("-nogui") || arg.equalsIgnoreCase("/nogui")) {noGUI = true;}
+    }
+    if(noGUI) {
+        boolean check = false;
+        for(String arg : args) {
+            String a = arg.toLowerCase();
+            if(a.length() >5 && (a.charAt(0) == '-' || a.charAt(0) == '/') && a.startsWith("check", 1)) {check = true;}
+        }
+        int exit = check ? Statistics.commandLine(args) : MergeDataBases.commandLine(args);
+        System.exit(exit);
+        return;
+    }
     //---- create a local instance of ProgramConf.
     //     Contains information read from the configuration file.
     //     This variable can not be static because the program might be started
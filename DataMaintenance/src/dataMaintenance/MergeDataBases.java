@@ -0,0 +1,620 @@
+package dataMaintenance;
+
+import lib.common.Util;
+import lib.database.Complex;
+import lib.database.IndexedDB;
+import lib.database.LibDB;
+import lib.database.TxtDBparser;
+import lib.huvud.Div;
+
+/** Merges several database files (text or binary) into a single binary
+ * database. The work is done in stages connected by queues of limited size:
+ * the input files are read in parallel (each file by its own thread, as many
+ * at the same time as there are processors), the reactions are merged in
+ * the order in which the files are given, so that a reaction in a file
+ * replaces the equivalent reactions in the files before it, and finally the
+ * merged reactions are written by another thread.
+ * <p>
+ * This class does not use the graphical user interface: it is used by
+ * <code>DataMaintenance</code> and also from the command line (see
+ * <code>commandLine</code>), for example in a computer without a display.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see ReactionList ReactionList
+ * @author Ignasi Puigdomenech */
+class MergeDataBases {
+  /** the number of reactions passed at a time between the stages */
+  private static final int CHUNK = 512;
+  /** the number of chunks that a stage may be ahead of the next one */
+  private static final int QUEUE = 16;
+  private static final String FileINI_NAME = ".DataMaintenance.ini";
+  private static final String nl = System.getProperty("line.separator");
+  private static final String SLASH = java.io.File.separator;
+
+  private final java.util.List<String> dataBasesList;
+  /** the elements and components: [0] the element, [1] the component formula, [2] the component name */
+  private final java.util.ArrayList<String[]> eComp;
+  /** the component formulas in <code>eComp</code> */
+  private final java.util.HashSet<String> components = new java.util.HashSet<String>();
+  private final boolean dbg;
+  /** the merged reactions */
+  final ReactionList dataList = new ReactionList();
+
+  /** Receives the progress of the work, and decides what to do with reactions
+   * having errors. The methods are called from the thread doing the merge. */
+  interface Listener {
+    /** @param file the name of the file being read
+     * @param nbr the number of reactions read so far from this file, or written so far
+     * @param percent the percentage done */
+    void progress(String file, long nbr, int percent);
+    /** A reaction in a text file has errors (for example a component
+     * that is not in the elements files)
+     * @param file the name of the file
+     * @param msg the errors found
+     * @return true to continue, false to stop */
+    boolean reactionError(String file, String msg);
+    /** @return true if the work must be stopped */
+    boolean cancelled();
+  }
+
+  /** An error while merging: the merge is not finished */
+  static class MergeException extends Exception {
+    private static final long serialVersionUID = 1L;
+    MergeException(String txt) {super(txt);}
+  }
+
+  /** A part of the reactions in a file, passed between the stages */
+  private static class Chunk {
+    final java.util.ArrayList<Complex> reactions = new java.util.ArrayList<Complex>(CHUNK);
+    /** true in the last chunk of a file */
+    boolean last = false;
+    /** false if the file does not exist */
+    boolean found = true;
+    /** if not null, the file could not be read */
+    String error = null;
+  }
+
+  /** @param dataBasesList the input files, in the order they are merged
+   * @param eComp the elements and components, as read by <code>LibDB.getElements</code>
+   * @param dbg if true some debug information is printed */
+  MergeDataBases(java.util.List<String> dataBasesList, java.util.ArrayList<String[]> eComp, boolean dbg) {
+    this.dataBasesList = dataBasesList;
+    this.eComp = eComp;
+    for(String[] s : eComp) {components.add(s[1]);}
+    this.dbg = dbg;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="merge">
+  /** Reads all input files and merges their reactions into <code>dataList</code>
+   * @param lst receives the progress
+   * @return the number of files read
+   * @throws MergeException if a file can not be read, or the user stops the merge */
+  int merge(final Listener lst) throws MergeException {
+    dataList.clear();
+    final int nFiles = dataBasesList.size();
+    java.util.ArrayList<java.util.concurrent.BlockingQueue<Chunk>> queues =
+            new java.util.ArrayList<java.util.concurrent.BlockingQueue<Chunk>>(nFiles);
+    int nThreads = Math.max(1, Math.min(nFiles, Runtime.getRuntime().availableProcessors()));
+    if(dbg) {System.out.println("Reading "+nFiles+" files with "+nThreads+" threads");}
+    java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(nThreads);
+    int converted = 0;
+    try {
+        // the files are started in order: the merge below always waits for a file being read
+        for(String name : dataBasesList) {
+            java.util.concurrent.BlockingQueue<Chunk> q = new java.util.concurrent.ArrayBlockingQueue<Chunk>(QUEUE);
+            queues.add(q);
+            pool.execute(reader(name, q));
+        }
+        for(int db = 0; db < nFiles; db++) {
+            String name = dataBasesList.get(db);
+            java.io.File f = new java.io.File(name);
+            boolean binary = Div.getFileNameExtension(name).equalsIgnoreCase("db");
+            double total = Math.max(1, (double)f.length()/(binary ? DataMaintenance.F_BIN_CMPLX : DataMaintenance.F_TXT_CMPLX));
+            System.out.println("Reading file \""+f.getName()+"\"");
+            long cmplxNbr = 0;
+            java.util.concurrent.BlockingQueue<Chunk> q = queues.get(db);
+            while(true) {
+                if(lst.cancelled()) {throw new MergeException("---- Cancelled by the user.");}
+                Chunk c;
+                try {c = q.take();}
+                catch (InterruptedException ex) {throw new MergeException("---- Interrupted.");}
+                if(c.error != null) {throw new MergeException(c.error);}
+                for(Complex complex : c.reactions) {
+                    if(binary) {mergeBinary(complex);}
+                    else if(!mergeText(complex, f.getName(), lst)) {
+                        throw new MergeException("---- Cancelled by the user.");
+                    }
+                    cmplxNbr++;
+                }
+                lst.progress(f.getName(), cmplxNbr, (int)Math.min(100, 100*(double)cmplxNbr/total));
+                if(c.last) {
+                    if(c.found) {converted++;}
+                    break;
+                }
+            }
+            queues.set(db, null);
+        } //for db
+    } finally {
+        pool.shutdownNow();
+    }
+    return converted;
+  } //merge
+
+  /** @return a task that reads the reactions in a file and puts them in a queue */
+  private Runnable reader(final String name, final java.util.concurrent.BlockingQueue<Chunk> q) {
+    return new Runnable() {@Override public void run() {
+      Chunk c;
+      try {
+        try {
+            c = read(name, q);
+        } catch (InterruptedException ex) {
+            return;
+        } catch (Exception ex) {
+            c = new Chunk();
+            c.error = "Error: "+ex.getMessage()+nl+"with \""+name+"\"";
+        }
+        c.last = true;
+        q.put(c);
+      } catch (InterruptedException ex) {}
+    }};
+  } //reader
+
+  /** Reads the reactions in a file into chunks which are put in the queue
+   * @return the last chunk, which is not yet in the queue */
+  private Chunk read(String name, java.util.concurrent.BlockingQueue<Chunk> q)
+          throws InterruptedException, Exception {
+    Chunk c = new Chunk();
+    java.io.File f = new java.io.File(name);
+    if(!f.exists() || !f.canRead()) {
+        String msg = "Error - file \""+name+"\""+nl;
+        if(f.exists()) {msg = msg + "    can not be read.";} else {msg = msg + "    does not exist.";}
+        System.err.println(msg);
+        c.found = false;
+        return c;
+    }
+    boolean binary = Div.getFileNameExtension(name).equalsIgnoreCase("db");
+    java.io.Reader rd = null;
+    java.io.DataInputStream dis = null;
+    IndexedDB idb = null;
+    long cmplxNbr = 0;
+    try {
+        TxtDBparser txt = null;
+        if(!binary) {
+            rd = new java.io.FileReader(f);
+            txt = new TxtDBparser(rd);
+        } else if(IndexedDB.isIndexedDB(f)) {
+            idb = IndexedDB.open(f);
+        } else {
+            dis = new java.io.DataInputStream(new java.io.BufferedInputStream(new java.io.FileInputStream(f)));
+        }
+        while(true) {
+            if(Thread.interrupted()) {throw new InterruptedException();}
+            Complex complex;
+            if(txt != null) {
+                try {complex = txt.next();}
+                catch (LibDB.ReadTxtCmplxException ex) {
+                    throw new Exception("in \"toBinary\", cmplxNbr = "+cmplxNbr+nl+ex.toString());
+                }
+            } else if(idb != null) {
+                complex = (cmplxNbr < idb.size()) ? idb.getComplex((int)cmplxNbr) : null;
+            } else {
+                complex = LibDB.getBinComplex(dis);
+            }
+            if(complex == null) {break;} //end of file
+            c.reactions.add(complex);
+            if(c.reactions.size() >= CHUNK) {q.put(c); c = new Chunk();}
+            cmplxNbr++;
+        }
+    } finally {
+        if(rd != null) {try {rd.close();} catch (java.io.IOException ex) {}}
+        if(dis != null) {try {dis.close();} catch (java.io.IOException ex) {}}
+    }
+    return c;
+  } //read
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="mergeText / mergeBinary">
+  /** Adds a reaction read from a text file. If the name starts with "@"
+   * all reactions with this name are removed. Otherwise the reactions with the
+   * same name and reaction, or with the same name where either one is not a
+   * redox reaction, are replaced.
+   * @return false if the user wants to stop */
+  private boolean mergeText(Complex complex, String fileName, Listener lst) {
+    if(complex.name.startsWith("@")) {
+        complex.name = complex.name.substring(1);
+        System.out.println("   removing any previous occurrences of species: \""+complex.name+"\"");
+        java.util.List<Complex> toRemove = dataList.withName(complex);
+        if(!toRemove.isEmpty()) {
+            for(Complex c : toRemove) {
+                System.out.println("   - removing complex \""+c.toString()+"\"");
+                if(!dataList.remove(c)) {
+                    System.err.println("Error: in \"toBinary\", can not remove complex:"+nl+"  \""+c.toString()+"\"");
+                }
+            }
+            System.out.println("   - finished searching for: \""+complex.name+"\"");
+        } else {
+            System.out.println("   - no previous occurrences of \""+complex.name+"\" were found.");
+        }
+        return true;
+    }
+    //check if the components are in the list of possible components
+    String msg = Complex.checkComplex(complex);
+    for(int i=0; i < Complex.NDIM; i++) {
+        if(complex.component[i] != null && complex.component[i].length() >0
+                && !components.contains(complex.component[i])) {
+            String t = "Component \""+complex.component[i]+"\" in complex \""+complex.name+"\""+nl+"not found in the element-files.";
+            if(msg == null || msg.length() <= 0) {msg = t;} else {msg = msg +nl+ t;}
+        }
+    } // for i
+    if(msg != null) {
+        System.out.println("---- Error: "+msg);
+        if(!lst.reactionError(fileName, msg)) {return false;}
+    }
+    //if the complex already is in the list, replace it
+    java.util.List<Complex> toRemove = dataList.toReplace(complex);
+    for(Complex c : toRemove) {
+        System.out.println("   - removing complex \""+c.toString()+"\"");
+        if(!dataList.remove(c)) {
+            System.err.println("Error: in \"toBinary\", can not remove complex:"+nl+"  \""+c.toString()+"\"");
+        }
+    }
+    if(!toRemove.isEmpty()) {System.out.println("   - adding complex \""+complex.toString()+"\"");}
+    if(!dataList.add(complex)) {
+        System.err.println("Error: in \"toBinary\", can not add complex:"+nl+"  \""+complex.toString()+"\"");
+    }
+    return true;
+  } //mergeText
+
+  /** Adds a reaction read from a binary file, replacing the same reaction if it is already there */
+  private void mergeBinary(Complex complex) {
+    Complex old = dataList.equalTo(complex);
+    if(old != null) {
+        System.out.println("   replacing \""+old.name+"\" with: \""+complex.name+"\", logK="+Util.formatDbl3(complex.constant));
+        dataList.remove(old);
+    }
+    if(!dataList.add(complex)) {
+        System.err.println("Error: in \"toBinary\", can not add complex:"+nl+"  \""+complex.toString()+"\"");
+    }
+  } //mergeBinary
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="writeReactions">
+  /** Writes the merged reactions into a binary database. The file is written
+   * by another thread while the components used are found. If the work is
+   * cancelled, or there is an error, the file is deleted.
+   * @param fileCmplxSave the binary database
+   * @param indexedFormat if true the file is written in the indexed format,
+   * otherwise in the original sequential format
+   * @param lst receives the progress
+   * @return which components in <code>eComp</code> are used by the reactions
+   * @throws MergeException */
+  boolean[] writeReactions(final java.io.File fileCmplxSave, final boolean indexedFormat, Listener lst)
+          throws MergeException {
+    // the file is opened here: if it can not be written nothing else is done
+    final java.io.DataOutputStream ds;
+    try {
+        ds = new java.io.DataOutputStream(new java.io.BufferedOutputStream(new java.io.FileOutputStream(fileCmplxSave), 65536));
+    } catch (java.io.IOException ex) {
+        throw new MergeException("Error: "+ex.toString()+nl+
+                "while writing binary reactions database file:"+nl+"   \""+fileCmplxSave.getPath()+"\"");
+    }
+    final java.util.concurrent.BlockingQueue<Chunk> q = new java.util.concurrent.ArrayBlockingQueue<Chunk>(QUEUE);
+    final String[] error = new String[1];
+    Thread writer = new Thread("DataMaintenance writer") {@Override public void run() {
+      try {
+        if(indexedFormat) {
+            System.out.println("   using the indexed format");
+            IndexedDB.write(ds, fileCmplxSave.getPath(), dataList.sorted());
+            return;
+        }
+        while(true) {
+            Chunk c = q.take();
+            for(Complex complex : c.reactions) {LibDB.writeBinCmplx(ds, complex);}
+            if(c.last) {break;}
+        }
+      } catch (InterruptedException ex) {
+        error[0] = "Interrupted";
+      } catch (Exception ex) {
+        error[0] = ex.toString();
+      } finally {
+        try {ds.close();} catch (java.io.IOException ex) {if(error[0] == null) {error[0] = ex.toString();}}
+      }
+    }};
+    writer.start();
+    int eCompSize = eComp.size();
+    // only components (metals or ligands) that are used
+    // will be saved in the elements file
+    boolean[] eCompUsed = new boolean[eCompSize];
+    java.util.HashMap<String, java.util.ArrayList<Integer>> compIndex = new java.util.HashMap<String, java.util.ArrayList<Integer>>();
+    for(int i = 0; i < eCompSize; i++) {
+        java.util.ArrayList<Integer> l = compIndex.get(eComp.get(i)[1]);
+        if(l == null) {l = new java.util.ArrayList<Integer>(2); compIndex.put(eComp.get(i)[1], l);}
+        l.add(i);
+    }
+    System.out.println("total nbr of reactions: "+dataList.size());
+    double nTot = Math.max(1, (double)dataList.size());
+    long cmplxNbr = 0;
+    Chunk c = new Chunk();
+    boolean done = false;
+    try {
+        for(Complex complex : dataList.sorted()) {
+            if(lst.cancelled()) {throw new MergeException("---- Cancelled by the user.");}
+            if(!indexedFormat) {
+                c.reactions.add(complex);
+                if(c.reactions.size() >= CHUNK) {
+                    if(!put(q, c, writer)) {break;} // the writer has stopped: the error is reported below
+                    c = new Chunk();
+                }
+            }
+            //mark the components that are used as "needed"
+            for(int j=0; j<Complex.NDIM; j++) {
+                if(Math.abs(complex.numcomp[j]) < 0.0001 ||
+                   complex.component[j] == null || complex.component[j].length() <=0) {continue;}
+                // a component (ligand) might be in under several elements
+                java.util.ArrayList<Integer> l = compIndex.get(complex.component[j]);
+                if(l == null) {
+                    System.err.println("--- Component: "+complex.component[j]+" in complex "+complex.name+nl+" not found in the element files.");
+                } else {
+                    for(int i : l) {eCompUsed[i] = true;}
+                }
+            }//for j
+            cmplxNbr++;
+            if(cmplxNbr % CHUNK == 0) {lst.progress(fileCmplxSave.getName(), cmplxNbr, (int)(100*(double)cmplxNbr/nTot));}
+        }
+        if(!indexedFormat) {c.last = true; put(q, c, writer);}
+        writer.join();
+        done = (error[0] == null);
+    } catch (InterruptedException ex) {
+        throw new MergeException("---- Interrupted.");
+    } finally {
+        if(!done) {
+            // stop the writer and remove the unfinished file
+            writer.interrupt();
+            join(writer);
+            fileCmplxSave.delete();
+        }
+    }
+    if(error[0] != null) {
+        throw new MergeException(error[0]+nl+
+                "while writing binary reactions database file:"+nl+"   \""+fileCmplxSave.getPath()+"\"");
+    }
+    lst.progress(fileCmplxSave.getName(), cmplxNbr, 100);
+    return eCompUsed;
+  } //writeReactions
+
+  /** Puts a chunk in the queue of the writer, waiting while the queue is full
+   * @return false if the writer has stopped (after an error) */
+  private static boolean put(java.util.concurrent.BlockingQueue<Chunk> q, Chunk c, Thread writer)
+          throws InterruptedException {
+    while(!q.offer(c, 100, java.util.concurrent.TimeUnit.MILLISECONDS)) {
+        if(!writer.isAlive()) {return false;}
+    }
+    return true;
+  } //put
+
+  /** Waits until a thread has finished, even if the current thread is interrupted */
+  private static void join(Thread t) {
+    boolean interrupted = false;
+    while(t.isAlive()) {
+        try {t.join();} catch (InterruptedException ex) {interrupted = true;}
+    }
+    if(interrupted) {Thread.currentThread().interrupt();}
+  } //join
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="writeElements">
+  /** Writes the elements and components used by the merged reactions into a binary elements file
+   * @param fileElemSave the elements file
+   * @param eCompUsed which components in <code>eComp</code> are used, as given by <code>writeReactions</code>
+   * @throws java.io.IOException */
+  void writeElements(java.io.File fileElemSave, boolean[] eCompUsed) throws java.io.IOException {
+    System.out.println("Writing binary \"elements\"-file:"+nl+"   \""+fileElemSave.getPath()+"\"");
+    final int ELEMENTS = LibDB.ELEMENTS;
+    final int eCompSize = eComp.size();
+    java.util.HashSet<String> symbols = new java.util.HashSet<String>();
+    for(int i=0; i < ELEMENTS; i++) {symbols.add(LibDB.elementSymb[i]);}
+    java.io.DataOutputStream dos = null;
+    try {
+      dos = new java.io.DataOutputStream(new java.io.BufferedOutputStream(new java.io.FileOutputStream(fileElemSave)));
+      int n;
+      for(int i=0; i < ELEMENTS; i++) {
+        String elemSymbol = LibDB.elementSymb[i];
+        n=0;
+        for(int j=0; j < eCompSize; j++) {
+          if(eComp.get(j)[0].equals(elemSymbol) && eCompUsed[j]) {n++;}
+        }//for j
+        if(n > 0) {
+          dos.writeUTF(elemSymbol);
+          dos.writeInt(n);
+          for(int j=0; j < eCompSize; j++) {
+            if(eComp.get(j)[0].equals(elemSymbol) && eCompUsed[j]) {
+              dos.writeUTF(eComp.get(j)[1]);
+              dos.writeUTF(eComp.get(j)[2]);
+            }
+          }//for j
+        }//if n>0
+      } //for i
+      //--- For components in the database not belonging to any element:
+      //    set all of them into "XX"
+      n = 0;
+      for(int j=0; j < eCompSize; j++) {
+        if(!eCompUsed[j]) {
+            System.out.println("   Component: "+eComp.get(j)[1]+" not used.");
+            continue;
+        }
+        if(!symbols.contains(eComp.get(j)[0])) {
+            System.out.println("   Component: "+eComp.get(j)[1]+" not connected to an element.");
+            n++;
+        }
+      }//for j
+      if(n > 0) {
+        dos.writeUTF("XX");
+        dos.writeInt(n);
+        for(int j=0; j < eCompSize; j++) {
+          if(eCompUsed[j] && !symbols.contains(eComp.get(j)[0])) {
+            dos.writeUTF(eComp.get(j)[1]);
+            dos.writeUTF(eComp.get(j)[2]);
+          }
+        }//for j
+      }//if n>0
+    } finally {
+      if(dos != null) {dos.close();}
+    }
+  } //writeElements
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="main">
+  /** Merges databases from the command line, without any windows. Arguments:<br>
+   * <code>-bin:out-file-name</code> or <code>-idb:out-file-name</code> the
+   * binary database to write (in the sequential or in the indexed format),<br>
+   * <code>-dbg</code> print debug information,<br>
+   * and the names of the input files, in the order they are merged. If no
+   * input files are given, the databases selected the last time the program
+   * was run are used (from the ini-file).
+   * @param args the command line arguments
+   * @return 0 if the databases were merged, 1 otherwise */
+  static int commandLine(String[] args) {
+    boolean dbg = false, indexed = false;
+    String out = null;
+    java.util.ArrayList<String> inputs = new java.util.ArrayList<String>();
+    for(String arg : args) {
+        if(arg == null || arg.length() <= 0) {continue;}
+        String a = arg.toLowerCase();
+        if(a.equals("-dbg") || a.equals("/dbg")) {dbg = true; continue;}
+        if(a.equals("-nogui") || a.equals("/nogui")) {continue;}
+        if(a.length() >3 && (a.charAt(0) == '-' || a.charAt(0) == '/')
+                && (a.startsWith("bin", 1) || a.startsWith("idb", 1))
+                && (a.length() == 4 || a.charAt(4) == '=' || a.charAt(4) == ':')) {
+            indexed = a.startsWith("idb", 1);
+            if(a.length() > 5) {
+                out = arg.substring(5);
+                if(out.length() > 2 && out.startsWith("\"") && out.endsWith("\"")) {out = out.substring(1, out.length()-1);}
+            }
+            continue;
+        }
+        if(a.equals("-?") || a.equals("/?") || a.equals("?")) {printInstructions(); return 0;}
+        inputs.add(arg);
+    }
+    if(out == null) {out = "Reactions.db";}
+    if(!out.toLowerCase().endsWith(".db")) {
+        System.err.println("Error: the output file name must end with \".db\": \""+out+"\"");
+        printInstructions();
+        return 1;
+    }
+    if(inputs.isEmpty()) {inputs = iniDataBases(dbg);}
+    if(inputs.isEmpty()) {
+        System.err.println("Error: there are no databases to merge.");
+        printInstructions();
+        return 1;
+    }
+    java.io.File fileCmplxSave = new java.io.File(out);
+    for(String name : inputs) {
+        if(new java.io.File(name).getAbsoluteFile().equals(fileCmplxSave.getAbsoluteFile())) {
+            System.err.println("Error: the output file \""+out+"\" is also an input file.");
+            return 1;
+        }
+    }
+    long t0 = System.currentTimeMillis();
+    java.util.ArrayList<String[]> eComp = new java.util.ArrayList<String[]>();
+    try {
+        if(!LibDB.getElements(null, dbg, inputs, eComp)) {return 1;}
+    } catch (java.awt.HeadlessException ex) { // an error message could not be shown
+        return 1;
+    }
+    MergeDataBases m = new MergeDataBases(inputs, eComp, dbg);
+    Listener lst = new Listener() {
+        @Override public void progress(String file, long nbr, int percent) {}
+        @Override public boolean reactionError(String file, String msg) {
+            System.err.println("Error in file \""+file+"\""+nl+msg);
+            return true;
+        }
+        @Override public boolean cancelled() {return false;}
+    };
+    try {
+        int converted = m.merge(lst);
+        boolean[] used = m.writeReactions(fileCmplxSave, indexed, lst);
+        java.io.File fileElemSave = new java.io.File(Div.getFileNameWithoutExtension(out)+".elb");
+        m.writeElements(fileElemSave, used);
+        System.out.println("----"+nl+"Finished merging "+converted+" databases ("+m.dataList.size()+" reactions) in "
+                +(System.currentTimeMillis()-t0)+" ms."+nl+
+                "The following binary files were created:"+nl+
+                "     \""+fileElemSave.getPath()+"\""+nl+
+                "     \""+fileCmplxSave.getPath()+"\""+nl+"----");
+    } catch (MergeException ex) {
+        System.err.println(ex.getMessage());
+        return 1;
+    } catch (java.io.IOException ex) {
+        System.err.println("Error: "+ex.toString());
+        return 1;
+    }
+    return 0;
+  } //commandLine
+
+  /** @return the list of databases in the ini-file of DataMaintenance, either in the
+   * application path or in ".config/eq-diagr" in the user's home directory */
+  static java.util.ArrayList<String> iniDataBases(boolean dbg) {
+    java.util.ArrayList<String> list = new java.util.ArrayList<String>();
+    java.util.ArrayList<java.io.File> files = new java.util.ArrayList<java.io.File>();
+    String dir = Main.getPathApp();
+    if(dir != null && dir.trim().length() > 0) {
+        if(dir.endsWith(SLASH)) {dir = dir.substring(0, dir.length()-1);}
+        files.add(new java.io.File(dir + SLASH + FileINI_NAME));
+    }
+    String home = System.getProperty("user.home");
+    if(home != null && home.trim().length() > 0) {
+        if(home.endsWith(SLASH)) {home = home.substring(0, home.length()-1);}
+        files.add(new java.io.File(home+SLASH+".config"+SLASH+"eq-diagr"+SLASH+FileINI_NAME));
+    }
+    for(java.io.File f : files) {
+        if(!f.exists()) {continue;}
+        java.util.Properties p = new java.util.Properties();
+        java.io.FileInputStream is = null;
+        try {
+            is = new java.io.FileInputStream(f);
+            p.load(is);
+            int nbr = Integer.parseInt(p.getProperty("DataBases_Nbr"));
+            for(int i=0; i < nbr; i++) {
+                String dbName = p.getProperty("DataBase["+String.valueOf(i+1).trim()+"]");
+                if(dbName != null && dbName.length() >0) {list.add(dbName);}
+            }
+            if(dbg) {System.out.println("Databases read from ini-file: \""+f.getPath()+"\"");}
+            return list;
+        } catch (Exception ex) {
+            System.err.println("Error: \""+ex.toString()+"\""+nl+"   while reading INI-file:"+nl+"   \""+f.getPath()+"\"");
+            list.clear();
+        } finally {
+            if(is != null) {try {is.close();} catch (java.io.IOException ex) {}}
+        }
+    }
+    return list;
+  } //iniDataBases
+
+  private static void printInstructions() {
+    System.out.println("Merging databases without windows:"+nl+
+    "  java -Djava.awt.headless=true -jar DataMaintenance.jar -bin:out-file-name [input files]"+nl+
+    "or"+nl+
+    "  java -jar DataMaintenance.jar -nogui -bin:out-file-name [input files]"+nl+
+    "  -bin:out-file-name  the binary database to write (must end with \".db\")"+nl+
+    "  -idb:out-file-name  as \"-bin\", in the indexed format"+nl+
+    "  -dbg  print debugging information"+nl+
+    "The input files (text or binary) are merged in the order given: a reaction"+nl+
+    "replaces the equivalent reactions in the files before it. Without input files"+nl+
+    "the databases selected the last time the program was run are merged.");
+  }
+  //</editor-fold>
+
+}
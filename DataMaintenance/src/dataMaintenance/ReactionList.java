@@ -0,0 +1,117 @@
+package dataMaintenance;
+
+import lib.database.Complex;
+import lib.database.ReactionKey;
+
+/** The reactions read from several database files, when they are merged into
+ * a single file. The reactions are kept sorted (as given by
+ * <code>Complex.compareTo</code>), and they are also grouped by the name of
+ * the reaction product, so that the reactions to be replaced by a new one
+ * are found without going through the whole list.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see ReactionKey ReactionKey
+ * @author Ignasi Puigdomenech */
+class ReactionList {
+  /** the reactions, sorted */
+  private final java.util.TreeSet<Complex> sorted = new java.util.TreeSet<Complex>();
+  private final ReactionKey.Table table = new ReactionKey.Table();
+  /** the key of each reaction in <code>sorted</code> */
+  private final java.util.IdentityHashMap<Complex, ReactionKey> keys = new java.util.IdentityHashMap<Complex, ReactionKey>();
+  /** the reactions in <code>sorted</code> for each name of the reaction product */
+  private final java.util.HashMap<Integer, java.util.ArrayList<Complex>> byName =
+          new java.util.HashMap<Integer, java.util.ArrayList<Complex>>();
+
+  /** @return the reactions, sorted. The set must not be changed. */
+  java.util.Set<Complex> sorted() {return java.util.Collections.unmodifiableSet(sorted);}
+
+  int size() {return sorted.size();}
+
+  void clear() {
+    sorted.clear();
+    keys.clear();
+    byName.clear();
+    table.clear();
+  }
+
+  /** @param c a reaction
+   * @return the reactions in the list with a product name equivalent to that of "c" */
+  java.util.List<Complex> withName(Complex c) {
+    java.util.ArrayList<Complex> group = byName.get(table.id(c.name));
+    if(group == null) {return new java.util.ArrayList<Complex>();}
+    return new java.util.ArrayList<Complex>(group);
+  }
+
+  /** The reactions that are replaced when "c" is added from a text file: those
+   * with an equivalent product name and the same reaction, and those with an
+   * equivalent product name where either one is not a redox reaction.
+   * @param c a reaction
+   * @return the reactions to be replaced by "c" */
+  java.util.List<Complex> toReplace(Complex c) {
+    java.util.ArrayList<Complex> found = new java.util.ArrayList<Complex>();
+    ReactionKey k = table.keyOf(c);
+    java.util.ArrayList<Complex> group = byName.get(k.name);
+    if(group == null) {return found;}
+    for(Complex old : group) {
+      ReactionKey ko = keys.get(old);
+      if(ko.sameStoichiometry(k) || !ko.redox || !k.redox) {found.add(old);}
+    }
+    return found;
+  } //toReplace
+
+  /** @param c a reaction
+   * @return the reaction in the list that is equal to "c" (as given by
+   * <code>Complex.compareTo</code>), or null if there is none */
+  Complex equalTo(Complex c) {
+    Complex old = sorted.ceiling(c);
+    if(old != null && old.compareTo(c) == 0) {return old;}
+    return null;
+  }
+
+  /** Adds a reaction
+   * @param c a reaction
+   * @return false if the list already contains a reaction equal to "c"
+   * (as given by <code>Complex.compareTo</code>); "c" is then not added */
+  boolean add(Complex c) {
+    if(!sorted.add(c)) {return false;}
+    ReactionKey k = table.keyOf(c);
+    keys.put(c, k);
+    java.util.ArrayList<Complex> group = byName.get(k.name);
+    if(group == null) {
+        group = new java.util.ArrayList<Complex>(2);
+        byName.put(k.name, group);
+    }
+    group.add(c);
+    return true;
+  } //add
+
+  /** Removes a reaction
+   * @param c a reaction in the list
+   * @return false if "c" is not in the list */
+  boolean remove(Complex c) {
+    ReactionKey k = keys.remove(c);
+    if(k == null) {return false;}
+    sorted.remove(c);
+    java.util.ArrayList<Complex> group = byName.get(k.name);
+    for(int i = 0; i < group.size(); i++) {
+        if(group.get(i) == c) {group.remove(i); break;}
+    }
+    if(group.isEmpty()) {byName.remove(k.name);}
+    return true;
+  } //remove
+
+}
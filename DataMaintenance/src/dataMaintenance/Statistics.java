@@ -5,6 +5,7 @@ import lib.common.Util;
 import lib.database.Complex;
 import lib.database.CheckDatabases;
 import lib.database.ProgramDataDB;
+import lib.database.References;
 import lib.huvud.Div;
 import lib.huvud.ProgramConf;
 import lib.huvud.SortedListModel;
@@ -788,6 +789,279 @@ public class Statistics extends javax.swing.JFrame {
   } //reactString(cmplx)
 //</editor-fold>
 
+  //<editor-fold defaultstate="collapsed" desc="writeHeader / writeReport">
+  /** Writes the first lines of the statistics report: the date and the
+   * names of the database files and of their element-reactant files.
+   * @param pw where the report is written
+   * @param dataBasesList the names of the database files */
+  static void writeHeader(java.io.PrintWriter pw, java.util.List<String> dataBasesList) {
+    java.text.DateFormat dateFormatter =
+          java.text.DateFormat.getDateTimeInstance
+              (java.text.DateFormat.DEFAULT, java.text.DateFormat.DEFAULT, java.util.Locale.getDefault());
+    java.util.Date today = new java.util.Date();
+    String dateOut = dateFormatter.format(today);
+    pw.println("DataMaintenance (java) - "+dateOut+nl+
+            "Statistics for LogK databases:"+nl+nl+"Database(s) for reactions:");
+    java.io.File f;
+    String name;
+    java.text.DateFormat df = java.text.DateFormat.getDateTimeInstance(java.text.DateFormat.DEFAULT,
+                                 java.text.DateFormat.SHORT);
+    for(int i=0; i < dataBasesList.size(); i++) {
+      name = dataBasesList.get(i).trim();
+      if(name.length() >0) {
+          f = new java.io.File(name);
+          pw.println("  "+f.getAbsolutePath()+"   "+df.format(f.lastModified()));
+      }
+    }//for i
+    pw.println(nl+"Element-reactant file(s):");
+    for(int i=0; i < dataBasesList.size(); i++) {
+      name = dataBasesList.get(i).trim();
+      if(name.length() >0) {
+          f = new java.io.File(Div.getFileNameWithoutExtension(name)+".elt");
+          if(!f.exists()) {f = new java.io.File(Div.getFileNameWithoutExtension(name)+".elb");}
+          if(f.exists()) {pw.println("  "+f.getAbsolutePath()+"   "+df.format(f.lastModified()));}
+      }
+    }//for i
+  } //writeHeader
+
+  /** Writes the results of <code>CheckDatabases.checkDatabases</code>
+   * @param pw where the report is written
+   * @param lists the statistics and errors found
+   * @param refs the references available, or null
+   * @return the number of errors written in the report (each type of error
+   * is counted once), not counting warnings, notes or possible errors ("Error?") */
+  static int writeReport(java.io.PrintWriter pw, CheckDatabases.CheckDataBasesLists lists, References refs) {
+    int errors = 0;
+    java.util.ArrayList<String> arrayList;
+    java.util.TreeSet<String> treeSet;
+    pw.println(nl+"Total nbr reactions = "+lists.productsReactionsSet.size());
+    pw.println("Total nbr reactants found in reaction databases = "+lists.reactantsSet.size()+nl+
+            "      (nbr reactants in element-reactant files = "+lists.nbrCompsInElementFiles+")"+nl);
+    if(lists.reactantsSet.size()>0) {
+        pw.println(
+            "Reactants found in reaction database(s):"+nl+
+            "  Name     &    Nbr of reactions they participate in");
+        treeSet = new java.util.TreeSet<String>(lists.reactantsSet.keySet());
+        int j;
+        for(String t : treeSet) {
+            j = lists.reactantsSet.get(t);
+            if(t.length() <=20) {
+                pw.format("  %-20s   %d", t, j);
+                pw.println();
+            } else {
+                pw.format("  %s   %d",  t, j);
+                pw.println();
+            }
+        }
+    }
+    // --
+    if(lists.reactantsUnknown.size() > 0) {
+        errors++;
+        pw.println(nl+"Error: reactants (components) in the reactions database(s) NOT found"+nl+
+                        "   in the element-reactant file(s)."+nl+
+                        "   Note that any reaction involving these components"+nl+
+                        "   will NOT be found in a database search!");
+        treeSet = new java.util.TreeSet<String>(lists.reactantsUnknown);
+        for(String t : treeSet) {pw.println(" "+t);}
+    }
+    // --
+    if(lists.reactantsNotUsed.size()>0) {
+        pw.println(nl+"Warning: components in the element-reactant file(s)"+nl+
+                            "   not used in the reactions database(s):");
+        treeSet = new java.util.TreeSet<String>(lists.reactantsNotUsed);
+        for(String t : treeSet) {pw.println(" "+t);}
+    }
+    // --
+    if(lists.reactantsCompare.size()>0) {
+        errors++;
+        pw.println(nl+"Error: names of reactants in the database file(s)"+nl+
+                "   that are equivalent but will be treated as different:");
+        java.util.Collections.sort(lists.reactantsCompare,String.CASE_INSENSITIVE_ORDER);
+        for(String t : lists.reactantsCompare) {pw.println(" "+t);}
+    }
+    if(lists.elementReactantsCompare.size()>0) {
+        errors++;
+        pw.println(nl+"Error: names of reactants in the element-reactant file(s)"+nl+
+                "   that are equivalent but will be treated as different:");
+        java.util.Collections.sort(lists.elementReactantsCompare,String.CASE_INSENSITIVE_ORDER);
+        for(String t : lists.elementReactantsCompare) {pw.println(" "+t);}
+    }
+    // --
+    if(lists.reactantWithoutCoef.size() >0) {
+        errors++;
+        pw.println(nl+"Error: reactions having a reactant with name but without its stoich.coeff:");
+        treeSet = new java.util.TreeSet<String>(lists.reactantWithoutCoef);
+        for(String t : treeSet) {pw.println(" "+t);}
+    }
+    if(lists.coefWithoutReactant.size() >0) {
+        errors++;
+        pw.println(nl+"Error: reactions having a stoich.coeff with no reactant:");
+        treeSet = new java.util.TreeSet<String>(lists.coefWithoutReactant);
+        for(String t : treeSet) {pw.println(" "+t);}
+    }
+    if(lists.protonConflict.size() >0) {
+        errors++;
+        pw.println(nl+"Error: reactions having a confict between stoich.coeff for H+"+nl+
+                              "    and the nbr-protons:");
+        treeSet = new java.util.TreeSet<String>(lists.protonConflict);
+        for(String t : treeSet) {pw.println(" "+t);}
+    }
+    if(lists.chargeImbalance.size() >0) {
+        errors++;
+        pw.println(nl+"Error: reactions with charge imbalance:");
+        treeSet = new java.util.TreeSet<String>(lists.chargeImbalance);
+        for(String t : treeSet) {pw.println(" "+t);}
+    }
+    if(lists.duplReactionsSameProdctSet.size() > 0) {
+        pw.println(nl+"Warning: reactions found more than once"+nl+
+                              "    (with the same product):");
+        for(String t : lists.duplReactionsSameProdctSet) {pw.println(" "+t);}
+    }
+    if(lists.duplReactionsDifProductSet.size() > 0) {
+        pw.println(nl+"Warning: reactions found more than once"+nl+
+                              "    (with a different product):");
+        for(String t : lists.duplReactionsDifProductSet) {pw.println(" "+t);}
+    }
+    if(lists.duplProductsSet.size() > 0) {
+        pw.println(nl+"Warning: reaction products found more than once"+nl+
+                              "    (with a different reaction):");
+        for(String t : lists.duplProductsSet) {pw.println(" "+t);}
+    }
+    if(lists.duplSolidsSet.size() > 0) {
+        pw.println(nl+"Note: solids found more than once"+nl+
+                              "    (with different phase designator)");
+        for(String t : lists.duplSolidsSet) {pw.println(" "+t);}
+    }        
+    if(lists.itemsNames.size() >0) {
+        java.util.Collections.sort(lists.itemsNames,String.CASE_INSENSITIVE_ORDER);
+        pw.println(nl+"Error? reaction products where the name"+nl+
+                              "    does not contain one or more reactant(s):");
+        for(String t : lists.itemsNames) {pw.println(" "+t);}
+    }
+    // -- References
+    if(refs != null) {
+        if(lists.refsNotFnd != null && !lists.refsNotFnd.isEmpty()) {
+            errors++;
+            pw.println(nl+"Error: citations with no references:");
+            java.util.Collections.sort(lists.refsNotFnd,String.CASE_INSENSITIVE_ORDER);
+            for(String t : lists.refsNotFnd) {pw.println(" "+t);}
+        }
+        if(lists.refsFnd != null && !lists.refsFnd.isEmpty()) {
+            boolean ok;
+            arrayList = new java.util.ArrayList<String>();
+            for (Object k : refs.referenceKeys()) {
+                if(k != null) {
+                    ok = false;
+                    String t = k.toString().trim();
+                    for(String t2 : lists.refsFnd) {
+                        if(t2 != null && t2.equalsIgnoreCase(t)) {ok = true; break;}
+                    }
+                    if(!ok) {arrayList.add(t);}
+                }
+            } // for Object k
+            if(arrayList.size() >0) {
+                java.util.Collections.sort(arrayList,String.CASE_INSENSITIVE_ORDER);
+                pw.println(nl+"Warning: references not used in the database(s):");
+                for(String t : arrayList) {pw.println(" "+t);}
+            }
+        }
+    }// references
+    return errors;
+  } //writeReport
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="commandLine">
+  /** Checks the databases from the command line, without any windows, and
+   * writes the same report as the "Statistics" window. Arguments:<br>
+   * <code>-check:report-file</code> the report to write (default "Statistics.txt"),<br>
+   * <code>-dbg</code> print debug information,<br>
+   * and the names of the database files. If no files are given, the databases
+   * selected the last time the program was run are checked (from the ini-file).
+   * The citations are compared with the file "References.txt" in the
+   * application path, if it exists.
+   * @param args the command line arguments
+   * @return 0 if no errors are found, 1 if the databases could not be checked,
+   * and 2 if errors are written in the report */
+  static int commandLine(String[] args) {
+    boolean dbg = false;
+    String out = null;
+    java.util.ArrayList<String> inputs = new java.util.ArrayList<String>();
+    for(String arg : args) {
+        if(arg == null || arg.length() <= 0) {continue;}
+        String a = arg.toLowerCase();
+        if(a.equals("-dbg") || a.equals("/dbg")) {dbg = true; continue;}
+        if(a.equals("-nogui") || a.equals("/nogui")) {continue;}
+        if(a.length() >5 && (a.charAt(0) == '-' || a.charAt(0) == '/') && a.startsWith("check", 1)
+                && (a.length() == 6 || a.charAt(6) == '=' || a.charAt(6) == ':')) {
+            if(a.length() > 7) {
+                out = arg.substring(7);
+                if(out.length() > 2 && out.startsWith("\"") && out.endsWith("\"")) {out = out.substring(1, out.length()-1);}
+            }
+            continue;
+        }
+        if(a.equals("-?") || a.equals("/?") || a.equals("?")) {printInstructions(); return 0;}
+        inputs.add(arg);
+    }
+    if(out == null) {out = "Statistics.txt";}
+    if(inputs.isEmpty()) {inputs = MergeDataBases.iniDataBases(dbg);}
+    if(inputs.isEmpty()) {
+        System.err.println("Error: there are no databases to check.");
+        printInstructions();
+        return 1;
+    }
+    long t0 = System.currentTimeMillis();
+    References refs = new References(false);
+    String r;
+    String dir = Main.getPathApp();
+    if(dir != null) {
+        if(dir.endsWith(SLASH)) {dir = dir.substring(0, dir.length()-1);}
+        r = dir + SLASH + "References.txt";
+    } else {r = "References.txt";}
+    if(!refs.readRefsFile(r, dbg)) {refs = null;}
+    CheckDatabases.CheckDataBasesLists lists = new CheckDatabases.CheckDataBasesLists();
+    try {
+        if(!CheckDatabases.checkDatabases(dbg, null, inputs, null, refs, lists, true)) {return 1;}
+    } catch (java.awt.HeadlessException ex) { // an error message could not be shown
+        return 1;
+    }
+    if(lists.readError != null) {return 1;}
+    int errors;
+    java.io.PrintWriter pw = null;
+    try {
+        pw = new java.io.PrintWriter(new java.io.BufferedWriter(new java.io.FileWriter(out)));
+        writeHeader(pw, inputs);
+        errors = writeReport(pw, lists, refs);
+        pw.flush();
+        if(pw.checkError()) {
+            System.err.println("Error: could not write file \""+out+"\"");
+            return 1;
+        }
+    } catch (java.io.IOException ex) {
+        System.err.println("Error: "+ex.toString()+nl+"   while writing file \""+out+"\"");
+        return 1;
+    } finally {
+        if(pw != null) {pw.close();}
+    }
+    System.out.println("----"+nl+"Checked "+inputs.size()+" databases ("+lists.productsReactionsSet.size()+" reactions) in "
+            +(System.currentTimeMillis()-t0)+" ms."+nl+
+            "Written file:"+nl+"   \""+out+"\""+nl+
+            (errors > 0 ? "Errors found: "+errors : "No errors found.")+nl+"----");
+    return errors > 0 ? 2 : 0;
+  } //commandLine
+
+  private static void printInstructions() {
+    System.out.println("Checking databases without windows:"+nl+
+    "  java -Djava.awt.headless=true -jar DataMaintenance.jar -check:report-file [database files]"+nl+
+    "or"+nl+
+    "  java -jar DataMaintenance.jar -nogui -check:report-file [database files]"+nl+
+    "  -check:report-file  the statistics report to write (default \"Statistics.txt\")"+nl+
+    "  -dbg  print debugging information"+nl+
+    "Without database files, the databases selected the last time the program"+nl+
+    "was run are checked. The exit code is 0 if no errors are found, 1 if the"+nl+
+    "databases could not be checked, and 2 if errors are written in the report.");
+  }
+  //</editor-fold>
+
   //<editor-fold defaultstate="collapsed" desc="startStatistics">
  /** Performs the "real" work: checks and statistics
   * 
@@ -829,176 +1103,20 @@ public class Statistics extends javax.swing.JFrame {
       this.jButtonClose.setCursor(new java.awt.Cursor(java.awt.Cursor.DEFAULT_CURSOR));
       System.out.println("---- start scanning of databases, checking errors, calculating statistics...");
       // ----- scan the files
-      java.text.DateFormat dateFormatter =
-            java.text.DateFormat.getDateTimeInstance
-                (java.text.DateFormat.DEFAULT, java.text.DateFormat.DEFAULT, java.util.Locale.getDefault());
-      java.util.Date today = new java.util.Date();
-      String dateOut = dateFormatter.format(today);
-      outputPW.println("DataMaintenance (java) - "+dateOut+nl+
-              "Statistics for LogK databases:"+nl+nl+"Database(s) for reactions:");
-      java.io.File f;
-      String name;
-      java.text.DateFormat df = java.text.DateFormat.getDateTimeInstance(java.text.DateFormat.DEFAULT,
-                                   java.text.DateFormat.SHORT);
-      for(int i=0; i < pd.dataBasesList.size(); i++) {
-        name = pd.dataBasesList.get(i).trim();
-        if(name.length() >0) {
-            f = new java.io.File(name);
-            outputPW.println("  "+f.getAbsolutePath()+"   "+df.format(f.lastModified()));
-        }
-      }//for i
-      outputPW.println(nl+"Element-reactant file(s):");
-      for(int i=0; i < pd.dataBasesList.size(); i++) {
-        name = pd.dataBasesList.get(i).trim();
-        if(name.length() >0) {
-            f = new java.io.File(Div.getFileNameWithoutExtension(name)+".elt");
-            if(!f.exists()) {f = new java.io.File(Div.getFileNameWithoutExtension(name)+".elb");}
-            if(f.exists()) {outputPW.println("  "+f.getAbsolutePath()+"   "+df.format(f.lastModified()));}
-        }
-      }//for i
+      writeHeader(outputPW, pd.dataBasesList);
 
       final CheckDatabases.CheckDataBasesLists lists = new CheckDatabases.CheckDataBasesLists();
 
       new javax.swing.SwingWorker<Void,Void>() {
       @Override protected Void doInBackground() throws Exception {
         if(pc.dbg) {System.out.println("---- doInBackground(),  dbg = "+pc.dbg);}
-        CheckDatabases.checkDatabases(pc.dbg, Statistics.this,  pd.dataBasesList, pd.references, lists);
-        if(finished) { // if the user closed the window
-            System.out.println("---- startStatistics() - doInBackground() - cancelled by the user!");
-            outputPW.flush(); outputPW.close(); return null;
-        }
-
-        java.util.ArrayList<String> arrayList;
-        java.util.TreeSet<String> treeSet;
-        outputPW.println(nl+"Total nbr reactions = "+lists.productsReactionsSet.size());
-        outputPW.println("Total nbr reactants found in reaction databases = "+lists.reactantsSet.size()+nl+
-                "      (nbr reactants in element-reactant files = "+lists.nbrCompsInElementFiles+")"+nl);
-        if(lists.reactantsSet.size()>0) {
-            outputPW.println(
-                "Reactants found in reaction database(s):"+nl+
-                "  Name     &    Nbr of reactions they participate in");
-            treeSet = new java.util.TreeSet<String>(lists.reactantsSet.keySet());
-            int j;
-            for(String t : treeSet) {
-                j = lists.reactantsSet.get(t);
-                if(t.length() <=20) {
-                    outputPW.format("  %-20s   %d", t, j);
-                    outputPW.println();
-                } else {
-                    outputPW.format("  %s   %d",  t, j);
-                    outputPW.println();
-                }
-            }
-        }
-        // --
-        if(lists.reactantsUnknown.size() > 0) {
-            outputPW.println(nl+"Error: reactants (components) in the reactions database(s) NOT found"+nl+
-                            "   in the element-reactant file(s)."+nl+
-                            "   Note that any reaction involving these components"+nl+
-                            "   will NOT be found in a database search!");
-            treeSet = new java.util.TreeSet<String>(lists.reactantsUnknown);
-            for(String t : treeSet) {outputPW.println(" "+t);}
-        }
-        // --
-        if(lists.reactantsNotUsed.size()>0) {
-            outputPW.println(nl+"Warning: components in the element-reactant file(s)"+nl+
-                                "   not used in the reactions database(s):");
-            treeSet = new java.util.TreeSet<String>(lists.reactantsNotUsed);
-            for(String t : treeSet) {outputPW.println(" "+t);}
-        }
-        // --
-        if(lists.reactantsCompare.size()>0) {
-            outputPW.println(nl+"Error: names of reactants in the database file(s)"+nl+
-                    "   that are equivalent but will be treated as different:");
-            java.util.Collections.sort(lists.reactantsCompare,String.CASE_INSENSITIVE_ORDER);
-            for(String t : lists.reactantsCompare) {outputPW.println(" "+t);}
-        }
-        if(lists.elementReactantsCompare.size()>0) {
-            outputPW.println(nl+"Error: names of reactants in the element-reactant file(s)"+nl+
-                    "   that are equivalent but will be treated as different:");
-            java.util.Collections.sort(lists.elementReactantsCompare,String.CASE_INSENSITIVE_ORDER);
-            for(String t : lists.elementReactantsCompare) {outputPW.println(" "+t);}
-        }
-        // --
-        if(lists.reactantWithoutCoef.size() >0) {
-            outputPW.println(nl+"Error: reactions having a reactant with name but without its stoich.coeff:");
-            treeSet = new java.util.TreeSet<String>(lists.reactantWithoutCoef);
-            for(String t : treeSet) {outputPW.println(" "+t);}
-        }
-        if(lists.coefWithoutReactant.size() >0) {
-            outputPW.println(nl+"Error: reactions having a stoich.coeff with no reactant:");
-            treeSet = new java.util.TreeSet<String>(lists.coefWithoutReactant);
-            for(String t : treeSet) {outputPW.println(" "+t);}
-        }
-        if(lists.protonConflict.size() >0) {
-            outputPW.println(nl+"Error: reactions having a confict between stoich.coeff for H+"+nl+
-                                  "    and the nbr-protons:");
-            treeSet = new java.util.TreeSet<String>(lists.protonConflict);
-            for(String t : treeSet) {outputPW.println(" "+t);}
-        }
-        if(lists.chargeImbalance.size() >0) {
-            outputPW.println(nl+"Error: reactions with charge imbalance:");
-            treeSet = new java.util.TreeSet<String>(lists.chargeImbalance);
-            for(String t : treeSet) {outputPW.println(" "+t);}
-        }
-        if(lists.duplReactionsSameProdctSet.size() > 0) {
-            outputPW.println(nl+"Warning: reactions found more than once"+nl+
-                                  "    (with the same product):");
-            for(String t : lists.duplReactionsSameProdctSet) {outputPW.println(" "+t);}
-        }
-        if(lists.duplReactionsDifProductSet.size() > 0) {
-            outputPW.println(nl+"Warning: reactions found more than once"+nl+
-                                  "    (with a different product):");
-            for(String t : lists.duplReactionsDifProductSet) {outputPW.println(" "+t);}
-        }
-        if(lists.duplProductsSet.size() > 0) {
-            outputPW.println(nl+"Warning: reaction products found more than once"+nl+
-                                  "    (with a different reaction):");
-            for(String t : lists.duplProductsSet) {outputPW.println(" "+t);}
-        }
-        if(lists.duplSolidsSet.size() > 0) {
-            outputPW.println(nl+"Note: solids found more than once"+nl+
-                                  "    (with different phase designator)");
-            for(String t : lists.duplSolidsSet) {outputPW.println(" "+t);}
-        }        
-        if(lists.itemsNames.size() >0) {
-            java.util.Collections.sort(lists.itemsNames,String.CASE_INSENSITIVE_ORDER);
-            outputPW.println(nl+"Error? reaction products where the name"+nl+
-                                  "    does not contain one or more reactant(s):");
-            for(String t : lists.itemsNames) {outputPW.println(" "+t);}
-        }
+        CheckDatabases.checkDatabases(pc.dbg, Statistics.this, pd.dataBasesList, pd.elemComp, pd.references, lists, true);
         if(finished) { // if the user closed the window
             System.out.println("---- startStatistics() - doInBackground() - cancelled by the user!");
             outputPW.flush(); outputPW.close(); return null;
         }
 
-        // -- References
-        if(pd.references != null) {
-            if(lists.refsNotFnd != null && !lists.refsNotFnd.isEmpty()) {
-                outputPW.println(nl+"Error: citations with no references:");
-                java.util.Collections.sort(lists.refsNotFnd,String.CASE_INSENSITIVE_ORDER);
-                for(String t : lists.refsNotFnd) {outputPW.println(" "+t);}
-            }
-            if(lists.refsFnd != null && !lists.refsFnd.isEmpty()) {
-                boolean ok;
-                arrayList = new java.util.ArrayList<String>();
-                for (Object k : pd.references.referenceKeys()) {
-                    if(k != null) {
-                        ok = false;
-                        String t = k.toString().trim();
-                        for(String t2 : lists.refsFnd) {
-                            if(t2 != null && t2.equalsIgnoreCase(t)) {ok = true; break;}
-                        }
-                        if(!ok) {arrayList.add(t);}
-                    }
-                } // for Object k
-                if(arrayList.size() >0) {
-                    java.util.Collections.sort(arrayList,String.CASE_INSENSITIVE_ORDER);
-                    outputPW.println(nl+"Warning: references not used in the database(s):");
-                    for(String t : arrayList) {outputPW.println(" "+t);}
-                }
-            }
-        }// references
+        writeReport(outputPW, lists, pd.references);
 
         // -- close
         outputPW.flush();
@@ -49,6 +49,8 @@ public class MsgExceptn {
 
   //<editor-fold defaultstate="collapsed" desc="showErrMsg">
    /** Prints "msg" on System.out and displays it on a message box.
+    * If there is no display (for example when running from the command line
+    * with "-Djava.awt.headless=true") the message is only printed.
     * @param parent The owner of the modal dialog that shows the message.
     * If null or not enabled: a special frame (window) will be created
     * to show the message.
@@ -61,6 +63,7 @@ public class MsgExceptn {
         } else {
             System.out.println("----"+nl+msg+nl+"----");
         }
+        if(java.awt.GraphicsEnvironment.isHeadless()) {return;}
         if(parent == null || !parent.isEnabled()) {
             System.out.println("--- showErrMsg: parent is \"null\" or not enabled");
             ErrMsgBox mb = new ErrMsgBox(msg, null);
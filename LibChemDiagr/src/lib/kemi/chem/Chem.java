@@ -86,6 +86,67 @@ public Chem(int Na, int Ms, int mSol, int solidC)
     // eps = new SITepsilon(Ms - mSol);
 } // Chem constructor
 
+//<editor-fold defaultstate="collapsed" desc="copy()">
+/** Creates a new <code>Chem</code> object containing a copy of the data
+ * in this one: the chemical system, the concentrations (ChemConcs), the
+ * names of the species, and the diagram data (Diagr and DiagrConcs).
+ * No arrays are shared between the two objects, so the copy may be used,
+ * for example, by a <code>HaltaFall</code> object running on another thread.
+ * @return the new object
+ * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+public Chem copy() throws ChemicalParameterException {
+    ChemSystem cs = this.chemSystem;
+    Chem ch = new Chem(cs.Na, cs.Ms, cs.mSol, cs.solidC);
+    ChemSystem csNew = ch.chemSystem;
+    csNew.nx = cs.nx;
+    csNew.jWater = cs.jWater;
+    // note that arrays may be larger than needed (Ms may have been
+    // decreased after species with names starting with "*" were removed)
+    csNew.a = new double[cs.a.length][];
+    for(int i=0; i < cs.a.length; i++) {csNew.a[i] = cs.a[i].clone();}
+    csNew.lBeta = cs.lBeta.clone();
+    csNew.noll = cs.noll.clone();
+    ChemSystem.ChemConcs c = cs.chemConcs;
+    ChemSystem.ChemConcs cNew = csNew.chemConcs;
+    cNew.kh = c.kh.clone();
+    cNew.logA = c.logA.clone();
+    cNew.tot = c.tot.clone();
+    cNew.tol = c.tol;
+    cNew.solub = c.solub.clone();
+    cNew.C = c.C.clone();
+    cNew.logf = c.logf.clone();
+    cNew.dbg = c.dbg;
+    cNew.cont = c.cont;
+    cNew.errFlags = c.errFlags;
+    cNew.actCoefCalc = c.actCoefCalc;
+    cNew.tolLogF = c.tolLogF;
+    if(cs.namn != null) {
+        ChemSystem.NamesEtc n = cs.namn;
+        ChemSystem.NamesEtc nNew = csNew.namn;
+        nNew.identC = n.identC.clone();
+        nNew.ident = n.ident.clone();
+        nNew.nameLength = n.nameLength.clone();
+        nNew.iel = n.iel.clone();
+        nNew.z = n.z.clone();
+        nNew.comment = n.comment.clone();
+    } else {csNew.namn = null;}
+    if(this.diag != null) {
+        try {ch.diag = (Diagr)this.diag.clone();}
+        catch (CloneNotSupportedException ex) {
+            throw new ChemicalParameterException("Error in \"Chem.copy()\": "+ex.getMessage());
+        }
+        ch.diag.activityCoeffsModel = this.diag.activityCoeffsModel;
+    } else {ch.diag = null;}
+    if(this.diagrConcs != null) {
+        try {ch.diagrConcs = (DiagrConcs)this.diagrConcs.clone();}
+        catch (CloneNotSupportedException ex) {
+            throw new ChemicalParameterException("Error in \"Chem.copy()\": "+ex.getMessage());
+        }
+    } else {ch.diagrConcs = null;}
+    return ch;
+} // copy()
+//</editor-fold>
+
 /** The parameters supplied to a constructor are invalid: either outside the
  * allowed range or incompatible with each other.
  * The constractor can not be executed. */
@@ -59,6 +59,13 @@ public class DiagrPaintUtility {
   /** true if texts are to be displayed on the JPanel using a font, that is,
    * not by using the line-sketches stored in the plot file. */
   public boolean textWithFonts = true;
+  /** the lines of each diagram painted, see "linePaths". The same object
+   * may be used to paint several diagrams, for example in different windows */
+  private final java.util.WeakHashMap<GraphLib.PltData, LinePaths> paths =
+          new java.util.WeakHashMap<GraphLib.PltData, LinePaths>();
+  /** the image buffer of each component painted by "paintDiagramBuffered" */
+  private final java.util.WeakHashMap<java.awt.Component, ImageBuffer> buffers =
+          new java.util.WeakHashMap<java.awt.Component, ImageBuffer>();
 
   //<editor-fold defaultstate="collapsed" desc="class ChemFormula">
   /** Class used for input and output from method "chemF" */
@@ -83,6 +90,35 @@ public class DiagrPaintUtility {
     } // class ChemFormula
   //</editor-fold>
 
+  //<editor-fold defaultstate="collapsed" desc="class LineRun">
+  /** The lines drawn between two changes of colour (or pen) in a diagram,
+   * in the coordinates of the component */
+  private static class LineRun {
+      /** the colour (or pen) number given before the lines, or -1 if the
+       * lines are drawn before any change of colour */
+      final int colour;
+      final java.awt.geom.Path2D.Float path = new java.awt.geom.Path2D.Float();
+      LineRun(int colour) {this.colour = colour;}
+  } // class LineRun
+
+  /** The lines of a diagram, and the plot steps and scale used to make them */
+  private static class LinePaths {
+      final int[] steps;
+      final int size;
+      final float[] scale;
+      final java.util.ArrayList<LineRun> runs;
+      LinePaths(int[] steps, int size, float[] scale, java.util.ArrayList<LineRun> runs) {
+          this.steps = steps; this.size = size; this.scale = scale; this.runs = runs;}
+  } // class LinePaths
+
+  /** The image where the diagram of a component is painted, and the diagram
+   * and the options used to paint it */
+  private static class ImageBuffer {
+      java.awt.image.VolatileImage image = null;
+      Object[] key = null;
+  } // class ImageBuffer
+  //</editor-fold>
+
   //<editor-fold defaultstate="collapsed" desc="class FontInfo">
   /** Class used to store information: input and output for method "changeFont".
    * Having this class avoids creating new instances of font and fontmetrics
@@ -138,7 +174,6 @@ public class DiagrPaintUtility {
           GraphLib.PltData pltD, boolean printing) {
     if (compDim.width <=5 || compDim.height <=5) {return;}
     int i1, i2;
-    GraphLib.PltData.PlotStep ps;
     GraphLib.PltData.PlotText pt;
     int x_min; int x_max;  int y_min; int y_max;
     if(pltD == null || (fixedSize && !keepAspectRatio && !printing)) {
@@ -245,39 +280,19 @@ public class DiagrPaintUtility {
                 java.awt.BasicStroke.CAP_SQUARE, java.awt.BasicStroke.JOIN_BEVEL);
     g2D.setStroke(stroke);
 
-    int ix_start = 0, iy_start = 0;
     if(pltD != null) {
-      if(pltD.pltFileAList.size() > 0) {
-          ps = pltD.pltFileAList.get(0);
-          ix_start = ps.i1;
-          iy_start = ps.i2;
-      }
-      for(int j=0; j < pltD.pltFileAList.size(); j++) {
-        ps = pltD.pltFileAList.get(j);
-        //if(ps == null) {break;}
-        int i0 = ps.i0;
-        if (i0 == 1) {// draw line
-            int ix_new = ps.i1;
-            int iy_new = ps.i2;
-            int x0 = Math.round((float)(ix_start)*xScale) -xScale0;
-            int y0 = compDim.height - (Math.round((float)(iy_start)*yScale) -yScale0);
-            int x1 = Math.round((float)(ix_new)*xScale) -xScale0;
-            int y1 = compDim.height - (Math.round((float)(iy_new)*yScale) -yScale0);
-            //draw
-            g2D.drawLine(x0, y0, x1, y1);
-            ix_start = ix_new; iy_start = iy_new; } // I0=1
-        else if (i0 == 0) { // move to
-            ix_start = ps.i1;
-            iy_start = ps.i2; } // I0=0
-        else if ( (i0 ==5 || i0 ==8)
+      for(LineRun run : linePaths(pltD, xScale, yScale, xScale0, yScale0, compDim.height)) {
+        if(run.colour >= 0
                 && ((colourType ==0 && !printing) || (printing && printColour)) ) {  // set colour
-            i1 = ps.i1 - 1;
+            i1 = run.colour - 1;
             if(i1<0) {i1=0;}
             while (i1 >= MAX_COLOURS) {i1 = i1 - MAX_COLOURS;}
             if (i1<0) {i1=0;}
             g2D.setColor(colours[i1]);
-        } // I0 = 5 or 8
-      } // for j
+        }
+        //draw
+        if(run.path.getCurrentPoint() != null) {g2D.draw(run.path);}
+      } // for run
     } // if(pltD != null)
     //------------------------
     //----  paint all texts
@@ -370,6 +385,150 @@ public class DiagrPaintUtility {
     } // paintDiagram
 //</editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="paintDiagramBuffered">
+ /** Paints a diagram on a component on the screen. The diagram is painted
+  * with <code>paintDiagram</code> into an image, which is kept and copied
+  * to the component on the following calls, until either the size of the
+  * component, the diagram, or any of the painting options are changed.
+  * Each component has its own image, so several windows may be painted
+  * with the same <code>DiagrPaintUtility</code>.
+  * This is much faster for large diagrams, for example when the window
+  * is moved or resized. If an image can not be made, for example if
+  * there is no display, the diagram is painted directly.
+  * <p>
+  * The diagram is taken to be changed if it is another PltData object,
+  * or if steps or texts are added to it.
+  @param g2D Graphics2D context of the component
+  @param comp the Component to be painted
+  @param pltD PltData containing the data needed to plot the diagram */
+  public void paintDiagramBuffered(java.awt.Graphics2D g2D,
+          java.awt.Component comp, GraphLib.PltData pltD) {
+    java.awt.Dimension compDim = comp.getSize();
+    java.awt.GraphicsConfiguration gc = comp.getGraphicsConfiguration();
+    if(compDim.width <=5 || compDim.height <=5 || gc == null) {
+        paintDiagram(g2D, compDim, pltD, false);
+        return;
+    }
+    ImageBuffer b = buffers.get(comp);
+    if(b == null) {b = new ImageBuffer(); buffers.put(comp, b);}
+    Object[] key = bufferKey(compDim, pltD, comp.getBackground());
+    boolean paint = !java.util.Arrays.deepEquals(key, b.key);
+    do {
+      java.awt.image.VolatileImage buffer = b.image;
+      int status = (buffer == null) ? java.awt.image.VolatileImage.IMAGE_INCOMPATIBLE : buffer.validate(gc);
+      if(status == java.awt.image.VolatileImage.IMAGE_INCOMPATIBLE
+              || buffer.getWidth() != compDim.width || buffer.getHeight() != compDim.height) {
+          if(buffer != null) {buffer.flush();}
+          try {buffer = gc.createCompatibleVolatileImage(compDim.width, compDim.height);}
+          catch (Exception ex) {buffer = null;}
+          b.image = buffer;
+          if(buffer == null) {
+              b.key = null;
+              paintDiagram(g2D, compDim, pltD, false);
+              return;
+          }
+          paint = true;
+      } else if(status == java.awt.image.VolatileImage.IMAGE_RESTORED) {paint = true;}
+      if(paint) {
+          java.awt.Graphics2D bg = buffer.createGraphics();
+          try {
+              bg.setColor(comp.getBackground());
+              bg.fillRect(0, 0, compDim.width, compDim.height);
+              bg.setColor(comp.getForeground());
+              paintDiagram(bg, compDim, pltD, false);
+          } finally {bg.dispose();}
+          b.key = key;
+          paint = false;
+      }
+      g2D.drawImage(buffer, 0, 0, null);
+      if(buffer.contentsLost()) {paint = true;}
+    } while(paint);
+  } // paintDiagramBuffered
+
+ /** @return the values that define the contents of the image buffer: the
+  * diagram, the size of the component and the painting options */
+  private Object[] bufferKey(java.awt.Dimension compDim, GraphLib.PltData pltD,
+          java.awt.Color background) {
+    Object[] diagr;
+    if(pltD == null) {diagr = new Object[0];} else {
+        diagr = new Object[]{new IdentityKey(pltD), pltD.pltFileAList.size(),
+            pltD.pltTextAList.size(), new java.awt.Point(pltD.userSpaceMin),
+            new java.awt.Point(pltD.userSpaceMax)};
+    }
+    return new Object[]{diagr, new java.awt.Dimension(compDim), background,
+        colours.clone(), colourType, useBackgrndColour, backgrnd, antiAliasing,
+        antiAliasingText, fixedSize, fixedSizeWidth, fixedSizeHeight,
+        keepAspectRatio, penThickness, fontSize, fontFamily, fontStyle,
+        textWithFonts};
+  } // bufferKey
+
+  /** Compares objects by identity, and not with their "equals" method */
+  private static class IdentityKey {
+      private final Object o;
+      IdentityKey(Object o) {this.o = o;}
+      @Override public boolean equals(Object other) {
+          return other instanceof IdentityKey && ((IdentityKey)other).o == o;
+      }
+      @Override public int hashCode() {return System.identityHashCode(o);}
+  } // class IdentityKey
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="linePaths">
+/** The lines of a diagram: for each change of colour (or pen) the lines
+ * drawn afterwards, gathered into a single path. The paths are made once for
+ * each diagram and size of the component, and used again as long as
+ * no plot steps are added. The paths of each diagram are kept separately
+ * @param pltD the diagram
+ * @param xScale from user units to pixels
+ * @param yScale from user units to pixels
+ * @param xScale0 the position of x=0, in pixels
+ * @param yScale0 the position of y=0, in pixels
+ * @param height the height of the component, in pixels
+ * @return the lines, in the order they are to be drawn */
+private java.util.ArrayList<LineRun> linePaths(GraphLib.PltData pltD,
+        float xScale, float yScale, int xScale0, int yScale0, int height) {
+  synchronized(paths) {
+    // the steps are triples (i0, i1, i2)
+    final int[] steps = pltD.pltFileAList.array();
+    final int n = 3*pltD.pltFileAList.size();
+    final float[] scale = new float[]{xScale, yScale, xScale0, yScale0, height};
+    LinePaths lp = paths.get(pltD);
+    if(lp != null && steps == lp.steps && n == lp.size
+            && java.util.Arrays.equals(scale, lp.scale)) {return lp.runs;}
+    java.util.ArrayList<LineRun> runs = new java.util.ArrayList<LineRun>();
+    LineRun run = new LineRun(-1);
+    runs.add(run);
+    int ix_start = 0, iy_start = 0;
+    if(n > 0) {
+        ix_start = steps[1];
+        iy_start = steps[2];
+    }
+    // each line is a sub-path of its own, so that the lines look
+    // the same as when they are drawn one by one with "drawLine"
+    for(int j=0; j < n; j = j+3) {
+      int i0 = steps[j];
+      if (i0 == 1) {// draw line
+          run.path.moveTo(Math.round((float)(ix_start)*xScale) -xScale0,
+                      height - (Math.round((float)(iy_start)*yScale) -yScale0));
+          ix_start = steps[j+1];
+          iy_start = steps[j+2];
+          run.path.lineTo(Math.round((float)(ix_start)*xScale) -xScale0,
+                      height - (Math.round((float)(iy_start)*yScale) -yScale0));
+          } // I0=1
+      else if (i0 == 0) { // move to
+          ix_start = steps[j+1];
+          iy_start = steps[j+2]; } // I0=0
+      else if (i0 ==5 || i0 ==8) { // set colour
+          run = new LineRun(steps[j+1]);
+          runs.add(run);
+      } // I0 = 5 or 8
+    } // for j
+    paths.put(pltD, new LinePaths(steps, n, scale, runs));
+    return runs;
+  }
+} //linePaths
+//</editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="PrintFormula">
 private void PrintFormula (java.awt.Graphics2D g2D,
                             String textLine, int ix, int iy,
@@ -50,7 +50,7 @@ private static final boolean CHARACTER_SKETCH = true;
 private boolean sketching;
 /** true if texts are to be displayed on the JPanel using a font, that is,
  * not by using the line-sketches stored in the plot file.<br>
- * If true, text sketch information is not stored in the PlotStep ArrayList
+ * If true, text sketch information is not stored in the PlotStep list
  * of the PltData instance */
 private boolean textWithFonts;
 // ----
@@ -62,7 +62,7 @@ private int plotPen;
 private boolean isFormula;
 private String label;
 private boolean save;
-private java.io.PrintWriter outputFile;
+private PltFileWriter outputFile;
 private double xL =1; private double yL =1;
 private double xI =0; private double yI =0;
 private double sizeSym =0;
@@ -93,8 +93,8 @@ public void GraphLib() {
     public String pltFile_Name;
     /** last modification date for the plot file from which the data in this instance was read. */
     public java.util.Date fileLastModified;
-    /** the plot steps (move to / draw to) */
-    public java.util.ArrayList<PlotStep> pltFileAList = new java.util.ArrayList<PlotStep>();;
+    /** the plot steps (move to / draw to, and changes of pen or colour) */
+    public PlotStepList pltFileAList = new PlotStepList();
     /** the texts in the plot */
     public java.util.ArrayList<PlotText> pltTextAList = new java.util.ArrayList<PlotText>();
     /** the maximum values for x and y in user coordinates (0.1 mm) */
@@ -129,6 +129,65 @@ public void GraphLib() {
       }// class PlotStep
     //</editor-fold>
 
+  //<editor-fold defaultstate="collapsed" desc="class PlotStepList">
+  /** The plot steps of a diagram, stored as triples of int (i0, i1, i2) in a
+   * single array that grows as needed, instead of an object for each step.
+   * Large diagrams may have several hundred thousand steps, which are
+   * read at every repaint.
+   * @see PlotStep PlotStep */
+  public static class PlotStepList {
+      private int[] steps;
+      private int size;
+
+      public PlotStepList() {steps = new int[3*256]; size = 0;}
+      /** @param steps the steps as triples (i0, i1, i2), used without copying
+       * @param size the number of steps */
+      PlotStepList(int[] steps, int size) {this.steps = steps; this.size = size;}
+
+      /** Adds a step
+       * @param i0 int =0 for "move to", =1 for "draw to", =5 for a colour
+       * change and =8 for a pen change
+       * @param i1 int the new x-position, or the colour or pen number
+       * @param i2 int the new y-position */
+      public void add(int i0, int i1, int i2) {
+          int n = 3*size;
+          if(n+3 > steps.length) {steps = java.util.Arrays.copyOf(steps, Math.max(2*steps.length, 3*256));}
+          steps[n] = i0; steps[n+1] = i1; steps[n+2] = i2;
+          size++;
+      }
+      /** Adds a step
+       * @param ps the step */
+      public void add(PlotStep ps) {add(ps.i0, ps.i1, ps.i2);}
+      /** @param j the number of the step, from 0 to size()-1
+       * @return a new PlotStep with the values of step "j" */
+      public PlotStep get(int j) {return new PlotStep(i0(j), i1(j), i2(j));}
+      /** @param j the number of the step, from 0 to size()-1
+       * @return =0 for "move to", =1 for "draw to", =5 for a colour change
+       * and =8 for a pen change */
+      public int i0(int j) {check(j); return steps[3*j];}
+      /** @param j the number of the step, from 0 to size()-1
+       * @return the x-position, or the colour or pen number */
+      public int i1(int j) {check(j); return steps[3*j+1];}
+      /** @param j the number of the step, from 0 to size()-1
+       * @return the y-position */
+      public int i2(int j) {check(j); return steps[3*j+2];}
+      /** @return the steps as triples (i0, i1, i2): the first 3*size()
+       * values in the array. The array must not be changed, and it is
+       * replaced by another one when more steps are added */
+      public int[] array() {return steps;}
+      public int size() {return size;}
+      public boolean isEmpty() {return size == 0;}
+      public void clear() {size = 0;}
+      /** Makes the array as small as possible, when no more steps are to be added */
+      public void trimToSize() {
+          if(steps.length > 3*size) {steps = java.util.Arrays.copyOf(steps, 3*size);}
+      }
+      private void check(int j) {
+          if(j < 0 || j >= size) {throw new IndexOutOfBoundsException("Index: "+j+", Size: "+size);}
+      }
+      }// class PlotStepList
+    //</editor-fold>
+
   //<editor-fold defaultstate="collapsed" desc="class PlotText">
   /** Class to store data to draw a text string */
   public static class PlotText {
@@ -166,7 +225,8 @@ public void GraphLib() {
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="start(PltData, java.io.File)">
-/** Open the output plot file; set the PltData for storing the graphic
+/** Open the output plot file; set the PltData for storing the graphic.
+ * Same as <code>start(pD, plotFile, txtWithFonts, false)</code>
  * @param pD where the graphic information will be stored
  * for painting events. If null, the diagram will neither be saved
  * nor displayed
@@ -175,20 +235,64 @@ public void GraphLib() {
  * thrown, the file will not be saved, but the diagram will be displayed.
  * @param txtWithFonts true if texts are to be displayed on the JPanel using
  * a font, that is, not by using the line-sketches stored in the plot file.<br>
- * If true, text sketch information is not stored in the PlotStep ArrayList
+ * If true, text sketch information is not stored in the PlotStep list
  * of the PltData instance.
  * @throws lib.kemi.graph_lib.GraphLib.OpenPlotFileException  */
 public void start(PltData pD, java.io.File plotFile, boolean txtWithFonts)
         throws OpenPlotFileException {
+    start(pD, plotFile, txtWithFonts, false);
+} //start(pD, plotFile, txtWithFonts)
+/** Open the output plot file; set the PltData for storing the graphic
+ * @param pD where the graphic information will be stored
+ * for painting events. If null, the diagram will neither be saved
+ * nor displayed
+ * @param plotFile for storing graphic information, it may be "null".
+ * If an error occurs while opening the file for writing, an exception is
+ * thrown, the file will not be saved, but the diagram will be displayed.
+ * @param txtWithFonts true if texts are to be displayed on the JPanel using
+ * a font, that is, not by using the line-sketches stored in the plot file.<br>
+ * If true, text sketch information is not stored in the PlotStep list
+ * of the PltData instance.
+ * @param writeInBackground if true, the plot file is written by another
+ * thread after "end()" is called, so that the diagram may be displayed
+ * before the file is complete. Use "waitForPlotFile()" before the plot
+ * file is used, for example before the program exits.
+ * @throws lib.kemi.graph_lib.GraphLib.OpenPlotFileException  */
+public void start(PltData pD, java.io.File plotFile, boolean txtWithFonts,
+        boolean writeInBackground)
+        throws OpenPlotFileException {
+    start(pD, plotFile, txtWithFonts, writeInBackground, false);
+} //start(pD, plotFile, txtWithFonts, writeInBackground)
+/** Open the output plot file; set the PltData for storing the graphic
+ * @param pD where the graphic information will be stored
+ * for painting events. If null, the diagram will neither be saved
+ * nor displayed
+ * @param plotFile for storing graphic information, it may be "null".
+ * If an error occurs while opening the file for writing, an exception is
+ * thrown, the file will not be saved, but the diagram will be displayed.
+ * @param txtWithFonts true if texts are to be displayed on the JPanel using
+ * a font, that is, not by using the line-sketches stored in the plot file.<br>
+ * If true, text sketch information is not stored in the PlotStep list
+ * of the PltData instance.
+ * @param writeInBackground if true, the plot file is written by another
+ * thread after "end()" is called, so that the diagram may be displayed
+ * before the file is complete. Use "waitForPlotFile()" before the plot
+ * file is used, for example before the program exits.
+ * @param writeBinary if true, a binary companion file (with extension
+ * ".pltb") is written together with the plot file, so that the plot
+ * file may be read faster by "PltFile.read"
+ * @throws lib.kemi.graph_lib.GraphLib.OpenPlotFileException
+ * @see PltFile#read(java.io.File) PltFile.read */
+public void start(PltData pD, java.io.File plotFile, boolean txtWithFonts,
+        boolean writeInBackground, boolean writeBinary)
+        throws OpenPlotFileException {
     if(pD == null) {return;}
     this.pd = pD;
     this.textWithFonts = txtWithFonts; 
     String msg = null;
     if(plotFile != null && plotFile.getName().length()>0) {
         outputFile = null;
-        try{outputFile = new java.io.PrintWriter(
-                new java.io.BufferedWriter(
-                new java.io.FileWriter(plotFile)));
+        try{outputFile = new PltFileWriter(plotFile, writeInBackground, writeBinary);
                 pd.pltFile_Name = plotFile.getPath();
                 save = true;}
         catch (java.io.IOException ex) {
@@ -201,7 +305,7 @@ public void start(PltData pD, java.io.File plotFile, boolean txtWithFonts)
     } else {pd.pltFile_Name = null; save = false;}
     if (msg != null) {throw new OpenPlotFileException(msg);}
     //return;
-} //start(pD, plotFile)
+} //start(pD, plotFile, txtWithFonts, writeInBackground, writeBinary)
 public static class OpenPlotFileException extends Exception {
     public OpenPlotFileException() {}
     public OpenPlotFileException(String txt) {super(txt);}
@@ -227,19 +331,29 @@ public void end() {
     int yShift = Math.round(Math.max( (100f-userSpace_w)/2f, userSpace_w*xtra ) );
     pd.userSpaceMax.y = pd.userSpaceMax.y + yShift;
     pd.userSpaceMin.y = pd.userSpaceMin.y - yShift;
-    if(label != null && save) {outputFile.println("0   0   0 "+label);}
-    // close output file
+    pd.pltFileAList.trimToSize();
+    if(label != null && save) {outputFile.comment(label);}
+    // close output file (it might be written in the background)
     if(outputFile != null) {
-        save = false; outputFile.flush(); outputFile.close();}
+        save = false; outputFile.close();}
     //return;
 } // end()
+
+/** Waits until the plot file has been written, if it is written in the background
+ * @return null if the plot file was written (or if there is no plot file),
+ * or an error message otherwise
+ * @see #start(lib.kemi.graph_lib.GraphLib.PltData, java.io.File, boolean, boolean) start */
+public String waitForPlotFile() {
+    if(outputFile == null) {return null;}
+    return outputFile.waitFor();
+} // waitForPlotFile()
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="setLabel">
 /**  A comment to be written to the output file
  * @param txt String */
 public void setLabel(String txt) {
-    if(label != null && save) {outputFile.println("0   0   0 "+label);}
+    if(label != null && save) {outputFile.comment(label);}
     label = txt;
     //return;
 } //setLabel(txt)
@@ -254,13 +368,10 @@ public void setPen(int pen) {
     int n; int i;
     if(pen >=0) {n=8;  plotPen = Math.min(pen,9999); i=plotPen;}
     else {n=5;  screenColour = Math.min(-pen,9999); i=screenColour;}
-    pd.pltFileAList.add(new PltData.PlotStep(n,i,0));
+    pd.pltFileAList.add(n,i,0);
     if(save) {
-        if(label != null) {
-                outputFile.format("%1d%4d     %s%n", n,i,label);
-                label = null;
-        } else {outputFile.format("%1d%4d%n", n,i);}
-        outputFile.flush();
+        outputFile.pen(n,i,label);
+        label = null;
         } //if save
 } // setPen(pen)
 //</editor-fold>
@@ -681,13 +792,10 @@ public void moveToDrawTo(double x, double y, int flag) {
     if(i1 == i2Last && i2 == i3Last && label == null) {return;}
     i2Last = i1;  i3Last = i2;
     if(save) {
-        if(label != null) {
-            outputFile.format("%1d%4d%4d %s%n", i0,i1,i2,label);
-            label = null; }
-        else {outputFile.format("%1d%4d%4d%n", i0,i1,i2);}
-        outputFile.flush();
+        outputFile.step(i0,i1,i2,label);
+        label = null;
     } //if(save)
-    if(!sketching) {pd.pltFileAList.add(new PltData.PlotStep(i0, i1, i2));}
+    if(!sketching) {pd.pltFileAList.add(i0, i1, i2);}
     if(i1<pd.userSpaceMin.x) {pd.userSpaceMin.x = i1;}
     if(i1>pd.userSpaceMax.x) {pd.userSpaceMax.x = i1;}
     if(i2<pd.userSpaceMin.y) {pd.userSpaceMin.y = i2;}
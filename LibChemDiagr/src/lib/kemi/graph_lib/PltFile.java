@@ -0,0 +1,490 @@
+package lib.kemi.graph_lib;
+
+import lib.common.MsgExceptn;
+import lib.common.Util;
+
+/** The contents of a plot file, read either from the text (".plt") file or,
+ * if it is available and up to date, from its binary companion file
+ * (".pltb") written by <code>GraphLib</code>.
+ * <p>
+ * Each line of the text file is a record with three integers (i0, i1, i2),
+ * in fixed columns, and an optional comment. These are stored as "steps":
+ * i0 =0 for "move to", =1 for "draw to", =5 for a colour change and =8 for
+ * a pen change. The texts ("TextBegin" records), the axis information and
+ * the comments are found once when the file is read, so that the programs
+ * displaying or converting the diagram do not need to parse the comments.
+ * <p>
+ * The binary file contains: a header (the length and date of the text file
+ * it belongs to, the character set it was written with, the range of x and y values, and the axis information),
+ * the steps as packed integers (a byte and two short integers for each step,
+ * if the values are small enough), the texts, and the comments.
+ * If the binary file is missing, or if it does not match the text file
+ * (for example if the text file has been changed afterwards), or if the
+ * text file is to be read with another character set, the text file is
+ * read instead. The texts and comments in the binary file are those that
+ * are read from the text file, so both give the same contents.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public class PltFile {
+  /** the extension of the binary companion of a plot file */
+  public static final String BINARY_EXT = ".pltb";
+  private static final int MAGIC = 0x504c5442; // "PLTB"
+  private static final int VERSION = 2;
+  private static final String nl = System.getProperty("line.separator");
+
+  /** the plot file */
+  public final java.io.File file;
+  /** true if the contents were read from the binary companion file */
+  public boolean fromBinary = false;
+  /** all the steps (records) in the plot file, including those that
+   * sketch the texts, and the records holding the text lines */
+  public GraphLib.PltData.PlotStepList steps = new GraphLib.PltData.PlotStepList();
+  /** the minimum values for x and y of the "move to" and "draw to" steps,
+   * not counting the records holding the text lines */
+  public java.awt.Point stepMin = new java.awt.Point(Integer.MAX_VALUE,Integer.MAX_VALUE);
+  /** the maximum values for x and y of the "move to" and "draw to" steps,
+   * not counting the records holding the text lines */
+  public java.awt.Point stepMax = new java.awt.Point(Integer.MIN_VALUE,Integer.MIN_VALUE);
+  /** true if the plot file is a predominance area diagram */
+  public boolean predom = false;
+  /** true if the file contains information on the axes */
+  public boolean axisInfo = false;
+  public float xAxisL, yAxisL;
+  public float xAxis0, yAxis0;
+  public float xAxisMin, yAxisMin;
+  public float xAxisMax, yAxisMax;
+
+  /** the texts, in the order of their steps */
+  private final java.util.ArrayList<Text> texts = new java.util.ArrayList<Text>();
+  /** the steps having a comment, in increasing order */
+  private int[] commentSteps = new int[64];
+  private String[] comments = new String[64];
+  private int nComments = 0;
+  /** the name of the character set of the text file */
+  private String charset = null;
+
+  //<editor-fold defaultstate="collapsed" desc="class Text">
+  /** A text to be displayed with a font. It is given by a "TextBegin" step;
+   * the following step holds the text line, and the steps after it, until
+   * a step with the comment "TextEnd", sketch the text with lines. */
+  public static class Text {
+      /** the number of the "TextBegin" step */
+      public final int step;
+      public final boolean isFormula;
+      /** -1=Left  0=center  +1=right */
+      public final int alignment;
+      /** the size of the text in cm */
+      public final double txtSize;
+      /** the angle in degrees */
+      public final double txtAngle;
+      public String txtLine;
+      Text(int step, boolean isFormula, int alignment,
+              double txtSize, double txtAngle, String txtLine) {
+          this.step = step; this.isFormula = isFormula; this.alignment = alignment;
+          this.txtSize = txtSize; this.txtAngle = txtAngle; this.txtLine = txtLine;
+      }
+  } // class Text
+  //</editor-fold>
+
+  /** An empty plot file, to which records are added while it is written
+   * @param file the plot file
+   * @param charset the name of the character set of the text file */
+  PltFile(java.io.File file, String charset) {this.file = file; this.charset = charset;}
+
+  private PltFile(java.io.File file) {this.file = file;}
+
+  //<editor-fold defaultstate="collapsed" desc="read">
+  /** Reads a plot file (using the binary companion file if possible), with
+   * text files in the default character set of the platform
+   * @param f the plot file
+   * @return the contents of the plot file
+   * @throws java.io.IOException if the plot file can not be read */
+  public static PltFile read(java.io.File f) throws java.io.IOException {
+    return read(f, null);
+  } //read(f)
+
+  /** Reads a plot file (using the binary companion file if possible)
+   * @param f the plot file
+   * @param charset the character set of the text file, for example "UTF-8",
+   * or null for the default character set of the platform. The binary file
+   * is only used if the text file was written with this character set.
+   * @return the contents of the plot file
+   * @throws java.io.IOException if the plot file can not be read */
+  public static PltFile read(java.io.File f, String charset) throws java.io.IOException {
+    java.io.File b = binaryFile(f);
+    if(b.exists() && f.exists()) {
+        PltFile pf = new PltFile(f);
+        try {
+            String cs = charset == null ? java.nio.charset.Charset.defaultCharset().name()
+                                        : java.nio.charset.Charset.forName(charset).name();
+            if(pf.readBinary(b, cs)) {return pf;}
+        } catch (java.io.IOException ex) {
+            // the binary file can not be used: read the text file
+        } catch (RuntimeException ex) {
+            // the binary file is not valid: read the text file
+        }
+    }
+    PltFile pf = new PltFile(f);
+    pf.readText(charset);
+    return pf;
+  } //read(f, charset)
+
+  /** @param f a plot file
+   * @return the binary companion file of the plot file, which may not exist */
+  public static java.io.File binaryFile(java.io.File f) {
+    String name = f.getPath();
+    if(name.toLowerCase().endsWith(".plt")) {name = name.substring(0, name.length()-4);}
+    return new java.io.File(name + BINARY_EXT);
+  } //binaryFile
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="steps, texts and comments">
+  /** @param j the number of a step
+   * @return the text starting at step "j", or null if step "j" is not a "TextBegin" */
+  public Text text(int j) {
+    int lo = 0, hi = texts.size()-1;
+    while(lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        int s = texts.get(mid).step;
+        if(s < j) {lo = mid+1;} else if(s > j) {hi = mid-1;} else {return texts.get(mid);}
+    }
+    return null;
+  } //text
+
+  /** @return the texts, in the order of their steps. The list must not be changed. */
+  public java.util.List<Text> texts() {return java.util.Collections.unmodifiableList(texts);}
+
+  /** @param j the number of a step
+   * @return the comment of step "j" (without leading or trailing space),
+   * or null if the step has no comment */
+  public String comment(int j) {
+    int k = java.util.Arrays.binarySearch(commentSteps, 0, nComments, j);
+    return k < 0 ? null : comments[k];
+  } //comment
+
+  private void addComment(int j, String comment) {
+    if(nComments >= commentSteps.length) {
+        commentSteps = java.util.Arrays.copyOf(commentSteps, 2*commentSteps.length);
+        comments = java.util.Arrays.copyOf(comments, 2*comments.length);
+    }
+    commentSteps[nComments] = j;
+    comments[nComments] = comment;
+    nComments++;
+  } //addComment
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="records: the contents of the text file">
+  // ---- the state while adding records
+  private boolean textLine = false;
+  private boolean readingText = false;
+  private boolean axisInfo1 = false, axisInfo2 = false;
+  /** -1=Left  0=center  +1=right */
+  private int alignDef = 0;
+
+  /** Adds a record (a line of the text file)
+   * @param i0 0 for "move to", 1 for "draw to", 5 or 8 for colour or pen
+   * @param i1 the x-position, or the colour or pen number
+   * @param i2 the y-position
+   * @param rest the contents of the line after the first 9 characters,
+   * that is, the comment including its leading space, or null if the
+   * line has 9 characters or less */
+  void record(int i0, int i1, int i2, String rest) {
+    final int j = steps.size();
+    steps.add(i0, i1, i2);
+    String comment = null;
+    if(rest != null) {comment = rest.trim(); addComment(j, comment);}
+    if(textLine) { // the text of the previous "TextBegin"
+        textLine = false;
+        String t = "";
+        if(rest != null) {
+            t = Util.rTrim(rest);
+            if(t.startsWith(" ")) {t = t.substring(1);}
+        }
+        texts.get(texts.size()-1).txtLine = t;
+        return;
+    }
+    if(i0 == 0 || i0 == 1) {
+        if(i1<stepMin.x) {stepMin.x = i1;}
+        if(i1>stepMax.x) {stepMax.x = i1;}
+        if(i2<stepMin.y) {stepMin.y = i2;}
+        if(i2>stepMax.y) {stepMax.y = i2;}
+    }
+    if(comment == null) {return;}
+    if(comment.length()>12 && (comment.startsWith("-- PREDOM DI") ||
+                    comment.startsWith("-- PREDOM2 D"))) {predom = true;}
+    //---- axis information
+    if(comment.equals("-- AXIS --")) {axisInfo1 = true;}
+    if(axisInfo1 && i0 == 8 && comment.length()>64 && comment.startsWith("Size, X/Y")) {
+        axisInfo2 = true;
+        xAxisL = readFloat(comment.substring(34,42));
+        yAxisL = readFloat(comment.substring(42,50));
+        xAxis0 = readFloat(comment.substring(50,58));
+        yAxis0 = readFloat(comment.substring(58,comment.length()));
+    }
+    if(axisInfo1 && axisInfo2 && i0 == 0 && comment.length()>60 && comment.startsWith("X/Y low a")) {
+        axisInfo = true;
+        xAxisMin = readFloat(comment.substring(18,29));
+        xAxisMax = readFloat(comment.substring(29,40));
+        yAxisMin = readFloat(comment.substring(40,51));
+        yAxisMax = readFloat(comment.substring(51,comment.length()));
+    }
+    //---- texts
+    if(comment.equals("-- HEADING --")) {alignDef = -1;}
+    if(readingText) {
+        if(comment.equals("TextEnd")) {readingText = false;}
+        return;
+    }
+    if(i0 == 0 && comment.length()>41 && comment.startsWith("TextBegin")) {
+        boolean isFormula = comment.charAt(9) == 'C';
+        double txtSize = readDouble(comment.substring(17,24));
+        double txtAngle = readDouble(comment.substring(35,42));
+        int align = alignDef;
+        if(comment.length() > 55) {
+            char c = Character.toUpperCase(comment.charAt(55));
+            if(c == 'L') {align = -1;} else if(c == 'R') {align = 1;} else if(c == 'C') {align = 0;}
+        }
+        texts.add(new Text(j, isFormula, align, txtSize, txtAngle, null));
+        textLine = true;
+        readingText = true;
+    }
+  } //record
+
+  /** Called after the last record */
+  void endRecords() {
+    // a "TextBegin" at the end of the file, without a text line
+    if(textLine) {texts.remove(texts.size()-1); textLine = false;}
+    steps.trimToSize();
+  } //endRecords
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="readText">
+  private void readText(String charset) throws java.io.IOException {
+    java.io.InputStream in = new java.io.FileInputStream(file);
+    java.io.BufferedReader br;
+    try {
+        br = new java.io.BufferedReader(charset == null ?
+                new java.io.InputStreamReader(in) : new java.io.InputStreamReader(in, charset));
+    } catch (java.io.UnsupportedEncodingException ex) {in.close(); throw ex;}
+    try {
+        String line;
+        while((line = br.readLine()) != null) {
+            int len = line.length();
+            int i0 = len > 0 ? readField(line, 0, 1, -1) : -1;
+            int i1 = len > 4 ? readField(line, 1, 5, 0) : 0;
+            int i2 = len > 8 ? readField(line, 5, 9, 0) : 0;
+            record(i0, i1, i2, len > 9 ? line.substring(9) : null);
+        }
+    } finally {br.close();}
+    endRecords();
+  } //readText
+
+  /** Reads the integer in columns "from" to "to"-1 of a line
+   * @return the integer, or "empty" if there are only spaces */
+  private static int readField(String line, int from, int to, int empty) {
+    int i = from;
+    while(i < to && line.charAt(i) == ' ') {i++;}
+    if(i >= to) {return empty;}
+    boolean neg = false;
+    if(line.charAt(i) == '-') {neg = true; i++;}
+    int n = 0, start = i;
+    while(i < to) {
+        char c = line.charAt(i);
+        if(c < '0' || c > '9') {break;}
+        n = 10*n + (c - '0');
+        i++;
+    }
+    int k = i;
+    while(k < to && line.charAt(k) == ' ') {k++;}
+    if(i == start || k < to) { // not a simple integer
+        String t = line.substring(from, to).trim();
+        try {return Integer.parseInt(t);}
+        catch (NumberFormatException ex) {
+            MsgExceptn.exception("Error: "+ex.toString()+nl+
+                  "   while reading an integer from String: \""+t+"\"");
+            return 0;
+        }
+    }
+    return neg ? -n : n;
+  } //readField
+
+  private static float readFloat(String t) {
+    try {return Float.parseFloat(t.trim());}
+    catch (NumberFormatException ex) {
+        MsgExceptn.exception("Error: "+ex.toString()+nl+
+                  "   while reading a \"float\" from String: \""+t+"\"");
+        return 0f;
+    }
+  } //readFloat
+
+  private static double readDouble(String t) {
+    try {return Double.parseDouble(t.trim());}
+    catch (NumberFormatException ex) {
+        MsgExceptn.exception("Error: "+ex.toString()+nl+
+                  "   while reading a floating-point number from String: \""+t+"\"");
+        return 0;
+    }
+  } //readDouble
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="binary file">
+  /** Writes the binary companion of the plot file. The text file must
+   * have been written and closed: its length and date are stored in the
+   * binary file, which is only used if they do not change.
+   * @throws java.io.IOException if the file can not be written */
+  void writeBinary() throws java.io.IOException {
+    java.io.File b = binaryFile(file);
+    java.io.DataOutputStream out = new java.io.DataOutputStream(
+            new java.io.BufferedOutputStream(new java.io.FileOutputStream(b), 65536));
+    boolean ok = false;
+    try {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(file.length());
+        out.writeLong(file.lastModified());
+        writeString(out, charset);
+        // the steps are packed into a byte and two short integers if possible
+        final int n = 3*steps.size();
+        final int[] s = steps.array();
+        boolean packed = true;
+        for(int j = 0; j < n; j = j+3) {
+            if(s[j] != (byte)s[j] || s[j+1] != (short)s[j+1] || s[j+2] != (short)s[j+2]) {packed = false; break;}
+        }
+        out.writeInt((axisInfo ? 1 : 0) | (predom ? 2 : 0) | (packed ? 4 : 0));
+        out.writeInt(stepMin.x); out.writeInt(stepMin.y);
+        out.writeInt(stepMax.x); out.writeInt(stepMax.y);
+        out.writeFloat(xAxisL);   out.writeFloat(yAxisL);
+        out.writeFloat(xAxis0);   out.writeFloat(yAxis0);
+        out.writeFloat(xAxisMin); out.writeFloat(xAxisMax);
+        out.writeFloat(yAxisMin); out.writeFloat(yAxisMax);
+        // the steps
+        out.writeInt(steps.size());
+        java.nio.ByteBuffer bb;
+        if(packed) {
+            bb = java.nio.ByteBuffer.allocate(5*steps.size());
+            for(int j = 0; j < n; j = j+3) {
+                bb.put((byte)s[j]).putShort((short)s[j+1]).putShort((short)s[j+2]);
+            }
+        } else {
+            bb = java.nio.ByteBuffer.allocate(4*n);
+            bb.asIntBuffer().put(s, 0, n);
+        }
+        out.write(bb.array());
+        // the texts
+        out.writeInt(texts.size());
+        for(Text t : texts) {
+            out.writeInt(t.step);
+            out.writeByte(t.isFormula ? 1 : 0);
+            out.writeByte(t.alignment);
+            out.writeDouble(t.txtSize);
+            out.writeDouble(t.txtAngle);
+            writeString(out, t.txtLine);
+        }
+        // the comments
+        out.writeInt(nComments);
+        for(int k = 0; k < nComments; k++) {
+            out.writeInt(commentSteps[k]);
+            writeString(out, comments[k]);
+        }
+        ok = true;
+    } finally {
+        out.close();
+        if(!ok) {b.delete();}
+    }
+  } //writeBinary
+
+  private static void writeString(java.io.DataOutputStream out, String s) throws java.io.IOException {
+    byte[] a = s.getBytes("UTF-8");
+    out.writeInt(a.length);
+    out.write(a);
+  }
+
+  /** Reads the binary companion file
+   * @param b the binary file
+   * @param cs the name of the character set with which the text file is read
+   * @return false if the binary file does not belong to the text file,
+   * or if the text file was written with another character set
+   * @throws java.io.IOException */
+  private boolean readBinary(java.io.File b, String cs) throws java.io.IOException {
+    long len = b.length();
+    if(len < 92 || len > Integer.MAX_VALUE) {return false;}
+    byte[] a = new byte[(int)len];
+    java.io.DataInputStream in = new java.io.DataInputStream(new java.io.FileInputStream(b));
+    try {in.readFully(a);} finally {in.close();}
+    java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(a);
+    if(bb.getInt() != MAGIC || bb.getInt() != VERSION) {return false;}
+    if(bb.getLong() != file.length() || bb.getLong() != file.lastModified()) {return false;}
+    charset = readString(bb);
+    if(!charset.equals(cs)) {return false;}
+    int flags = bb.getInt();
+    axisInfo = (flags & 1) != 0;
+    predom = (flags & 2) != 0;
+    boolean packed = (flags & 4) != 0;
+    stepMin.x = bb.getInt(); stepMin.y = bb.getInt();
+    stepMax.x = bb.getInt(); stepMax.y = bb.getInt();
+    xAxisL = bb.getFloat();   yAxisL = bb.getFloat();
+    xAxis0 = bb.getFloat();   yAxis0 = bb.getFloat();
+    xAxisMin = bb.getFloat(); xAxisMax = bb.getFloat();
+    yAxisMin = bb.getFloat(); yAxisMax = bb.getFloat();
+    // the steps
+    int size = bb.getInt();
+    if(size < 0 || (packed ? 5L : 12L)*size > bb.remaining()) {return false;}
+    int[] s = new int[3*size];
+    if(packed) {
+        for(int j = 0; j < 3*size; j = j+3) {
+            s[j] = bb.get(); s[j+1] = bb.getShort(); s[j+2] = bb.getShort();
+        }
+    } else {
+        bb.asIntBuffer().get(s);
+        bb.position(bb.position() + 12*size);
+    }
+    steps = new GraphLib.PltData.PlotStepList(s, size);
+    // the texts
+    int nTexts = bb.getInt();
+    if(nTexts < 0 || nTexts > size) {return false;}
+    texts.ensureCapacity(nTexts);
+    for(int k = 0; k < nTexts; k++) {
+        int step = bb.getInt();
+        boolean isFormula = bb.get() != 0;
+        int align = bb.get();
+        double txtSize = bb.getDouble();
+        double txtAngle = bb.getDouble();
+        texts.add(new Text(step, isFormula, align, txtSize, txtAngle, readString(bb)));
+    }
+    // the comments
+    nComments = bb.getInt();
+    if(nComments < 0 || nComments > size) {nComments = 0; return false;}
+    commentSteps = new int[nComments];
+    comments = new String[nComments];
+    for(int k = 0; k < nComments; k++) {
+        commentSteps[k] = bb.getInt();
+        comments[k] = readString(bb);
+    }
+    fromBinary = true;
+    return true;
+  } //readBinary
+
+  private static String readString(java.nio.ByteBuffer bb) throws java.io.IOException {
+    int n = bb.getInt();
+    if(n < 0 || n > bb.remaining()) {throw new java.io.IOException("invalid binary plot file");}
+    String s = new String(bb.array(), bb.position(), n, "UTF-8");
+    bb.position(bb.position() + n);
+    return s;
+  }
+  //</editor-fold>
+
+}
@@ -0,0 +1,216 @@
+package lib.kemi.graph_lib;
+
+/** Writes the records of a plot file for <code>GraphLib</code>. The records
+ * have fixed width fields; they are formatted into a buffer of characters
+ * (without using <code>String.format</code>) and the buffer is written to
+ * the file only when it is full, and when the file is closed.
+ * <p>
+ * If the file is written in the background, all the records are kept in
+ * memory and they are written by another thread when the file is closed,
+ * so that the diagram may be displayed before the plot file is complete.
+ * Use <code>waitFor</code> to make sure that the file has been written.
+ * <p>
+ * A binary companion file (see <code>PltFile</code>) may also be written
+ * when the plot file is closed, so that the plot file may be read faster
+ * by the programs displaying or converting the diagram. The comments are
+ * stored in the binary file as they are read back from the text file, that
+ * is, characters that can not be written in the character set of the text
+ * file are replaced, as done by the <code>Writer</code>.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see GraphLib#start(lib.kemi.graph_lib.GraphLib.PltData, java.io.File, boolean, boolean, boolean) GraphLib.start
+ * @see PltFile PltFile
+ * @author Ignasi Puigdomenech */
+class PltFileWriter {
+  /** the size of the buffer (in characters) if the file is not written in the background */
+  private static final int BUFFER = 32768;
+  private static final String nl = System.getProperty("line.separator");
+  private final java.io.File file;
+  /** the character set of the text file: the default of the platform */
+  private final java.nio.charset.Charset charset = java.nio.charset.Charset.defaultCharset();
+  private final java.nio.charset.CharsetEncoder encoder = charset.newEncoder();
+  private final java.io.Writer w;
+  private final boolean background;
+  private char[] buf = new char[BUFFER];
+  private int n = 0;
+  private final char[] digits = new char[12];
+  private boolean closed = false;
+  /** the records, if a binary file is to be written, otherwise null */
+  private final PltFile binary;
+  /** false if a comment would not be read back as a single record
+   * (it contains an end of line): the binary file is then not written */
+  private boolean binaryValid = true;
+  private Thread writer = null;
+  /** the first error while writing the file, if any */
+  private java.io.IOException error = null;
+
+  /** Opens a plot file for writing
+   * @param file the plot file
+   * @param background if true the file is written by another thread when it is closed
+   * @param writeBinary if true a binary companion file is also written,
+   * otherwise an old binary companion file is deleted
+   * @throws java.io.IOException if the file can not be opened */
+  PltFileWriter(java.io.File file, boolean background, boolean writeBinary) throws java.io.IOException {
+    this.file = file;
+    this.background = background;
+    binary = writeBinary ? new PltFile(file, charset.name()) : null;
+    if(!writeBinary) {PltFile.binaryFile(file).delete();}
+    w = new java.io.OutputStreamWriter(new java.io.FileOutputStream(file), charset);
+  }
+
+  /** Writes a "move to" or "draw to" record, such as <code>"1 120 350"</code>
+   * @param i0 0 for "move to", 1 for "draw to"
+   * @param i1 the x-position (in units of 0.01 cm)
+   * @param i2 the y-position (in units of 0.01 cm)
+   * @param comment a comment written after the position, or null */
+  void step(int i0, int i1, int i2, String comment) {
+    appendInt(i0, 1);
+    appendInt(i1, 4);
+    appendInt(i2, 4);
+    if(comment != null) {append(' '); append(comment);}
+    append(nl);
+    if(binary != null) {binary.record(i0, i1, i2, comment == null ? null : asWritten(" "+comment));}
+  }
+
+  /** Writes a record changing the plotter pen or the screen colour
+   * @param i0 8 for the pen, 5 for the colour
+   * @param i1 the pen or colour number
+   * @param comment a comment written after the number, or null */
+  void pen(int i0, int i1, String comment) {
+    appendInt(i0, 1);
+    appendInt(i1, 4);
+    if(comment != null) {append("     "); append(comment);}
+    append(nl);
+    if(binary != null) {binary.record(i0, i1, 0, comment == null ? null : asWritten(" "+comment));}
+  }
+
+  /** Writes a record with only a comment
+   * @param comment the comment */
+  void comment(String comment) {
+    append("0   0   0 ");
+    append(comment);
+    append(nl);
+    if(binary != null) {binary.record(0, 0, 0, asWritten(" "+comment));}
+  }
+
+  /** @param s a comment
+   * @return the comment as it is read back from the text file */
+  private String asWritten(String s) {
+    int len = s.length();
+    for(int i = 0; i < len; i++) {
+        char c = s.charAt(i);
+        if(c >= 128 || c == '\n' || c == '\r') {
+            if(s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) {binaryValid = false;}
+            if(encoder.canEncode(s)) {return s;}
+            return new String(s.getBytes(charset), charset);
+        }
+    }
+    return s;
+  } //asWritten
+
+  //<editor-fold defaultstate="collapsed" desc="append">
+  /** Appends an integer right-aligned in a field of at least "width" characters,
+   * as done by <code>String.format("%4d", i)</code> */
+  private void appendInt(int i, int width) {
+    int k = digits.length;
+    long a = Math.abs((long)i);
+    do {
+        digits[--k] = (char)('0' + (int)(a % 10));
+        a = a / 10;
+    } while(a > 0);
+    if(i < 0) {digits[--k] = '-';}
+    int len = digits.length - k;
+    for(int j = len; j < width; j++) {append(' ');}
+    ensure(len);
+    System.arraycopy(digits, k, buf, n, len);
+    n = n + len;
+  }
+
+  private void append(char c) {
+    ensure(1);
+    buf[n++] = c;
+  }
+
+  private void append(String s) {
+    int len = s.length();
+    ensure(len);
+    s.getChars(0, len, buf, n);
+    n = n + len;
+  }
+
+  /** Makes room for "len" more characters in the buffer: either by writing
+   * the buffer to the file or, if the file is written in the background,
+   * by making the buffer larger */
+  private void ensure(int len) {
+    if(n + len <= buf.length) {return;}
+    if(!background) {
+        writeBuffer();
+        if(len <= buf.length) {return;}
+    }
+    buf = java.util.Arrays.copyOf(buf, Math.max(2*buf.length, n + len));
+  }
+
+  private void writeBuffer() {
+    if(n > 0 && error == null) {
+        try {w.write(buf, 0, n);} catch (java.io.IOException ex) {error = ex;}
+    }
+    n = 0;
+  }
+  //</editor-fold>
+
+  /** Writes the records still in the buffer and closes the file. If the file
+   * is written in the background, this method returns at once, and the file
+   * is written by another thread. No more records may be written afterwards. */
+  void close() {
+    if(closed) {return;}
+    closed = true;
+    if(!background) {finish(); return;}
+    writer = new Thread("plot file writer") {@Override public void run() {finish();}};
+    writer.start();
+  }
+
+  private void finish() {
+    writeBuffer();
+    buf = null;
+    try {w.close();} catch (java.io.IOException ex) {if(error == null) {error = ex;}}
+    if(binary == null) {return;}
+    java.io.File b = PltFile.binaryFile(file);
+    if(error != null || !binaryValid) {b.delete(); return;}
+    // the binary file is optional: if it can not be written the text file is used
+    binary.endRecords();
+    try {binary.writeBinary();} catch (java.io.IOException ex) {b.delete();}
+  }
+
+  /** Waits until the file has been written (if it is written in the background)
+   * @return null if the file was written, or an error message otherwise */
+  String waitFor() {
+    Thread t = writer;
+    if(t != null) {
+        boolean interrupted = false;
+        while(t.isAlive()) {
+            try {t.join();} catch (InterruptedException ex) {interrupted = true;}
+        }
+        if(interrupted) {Thread.currentThread().interrupt();}
+    }
+    if(error == null) {return null;}
+    return "Error: \""+error.toString()+"\","+nl+
+           "   in Graphics Library,"+nl+
+           "   while writing output file" +nl+
+           "   \""+file.getPath()+"\"";
+  }
+
+}
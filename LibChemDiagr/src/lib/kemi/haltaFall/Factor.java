@@ -196,6 +196,28 @@ private void beginFactor(Chem c, String path1, String path2, String path3) {
 } //constructor of Factor
 // </editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="copy">
+/** Creates a new instance of <code>Factor</code> for a copy of the chemical
+ * system used by this instance (see <code>Chem.copy()</code>), for example
+ * to be used by a <code>HaltaFall</code> object running on another thread.
+ * The directories for the SIT-file are the same, and if the SIT-file has
+ * already been read (for example by <code>factorPrint</code>) the
+ * ion interaction coefficients are shared (they are only read) by both
+ * instances.
+ * @param c0 pointer to an object storing the chemical data, a copy of
+ * the one used by this instance
+ * @return the new instance
+ * @see lib.kemi.chem.Chem#copy() Chem.copy() */
+public Factor copy(Chem c0) {
+  Factor f;
+  if(dataNotSupplied) {f = new Factor(); f.out = this.out; return f;}
+  f = new Factor(c0, pathToSITdataFile[0], pathToSITdataFile[1], pathToSITdataFile[2], this.out);
+  f.setDefaultValues = this.setDefaultValues;
+  if(eps != null && !Float.isNaN(eps.eps0[0][0])) {f.eps = this.eps;}
+  return f;
+} // copy(c0)
+// </editor-fold>
+
 // </editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="factor">
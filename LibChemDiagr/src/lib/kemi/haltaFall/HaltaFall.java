@@ -354,6 +354,18 @@ public class HaltaFall {
  /** <code>totBe[i]</code> = term for component <code>ibe[i]</code> (eqn. 15) used for calculating
   * <i>cf</i> after FallProv in procedure fasta() */
   private double[] totBe;
+ /** work array for procedure lnaBer2: <code>tot[]-C[]</code> for the
+  * components that are "be" */
+  private double[] totMi;
+ /** work arrays for procedure invert: row and column interchanges
+  * @see lib.kemi.haltaFall.HaltaFall#invert(double[][], int) invert */
+  private int[] invRow, invCol;
+ /** work array for procedure invert
+  * @see lib.kemi.haltaFall.HaltaFall#invert(double[][], int) invert */
+  private double[] invTemp;
+ /** thrown by procedure totBer when there are too many iterations. It is
+  * created only once, to avoid allocating memory during the calculations */
+  private final TooManyIterationsException tooManyIterations = new TooManyIterationsException();
  /** term of reduced total concentration in the
   * presence of solids at equilibrium (eqn. 16a, procedure lnaBer) */
   private double[] totVA;
@@ -416,52 +428,7 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
     if(c.dbg >=ERR_RESL_INPUT_3) {out.println(nl+"HaltaFall - object Constructor"+nl+
                                                  "            debug level = "+c.dbg);}
     c.errFlags = 0;
-// NYKO
-    //check the chemical system
-    if(cs.Na <=0 || cs.mSol <0 || cs.nx < 0 || cs.solidC < 0) {
-        throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": Na, nx, mSol, solidC ="+cs.Na+", "+cs.nx+", "+cs.mSol+", "+cs.solidC+nl+
-                    "   Na must be >0; nx, mSol and solidC must be >=0.");
-    }
-    if(cs.nx != (cs.Ms - cs.Na - cs.mSol)) {
-        throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": nx ="+cs.nx+", must be = "+(cs.Ms - cs.Na - cs.mSol)+" (= Ms-Na-mSol)");
-    }
-    //check length of arrays
-    //note that species with names starting with "*" are removed,
-    //     so length of arrays may be larger than needed
-    if(cs.lBeta.length < (cs.Ms-cs.Na)) {
-        throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": lBeta.length ="+cs.lBeta.length+
-                    "   must be >= "+(cs.Ms-cs.Na)+" (= Ms-Na)");
-    }
-    if(cs.noll.length < cs.Ms) {
-        throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": noll.length ="+cs.noll.length+
-                    "   must be >= "+cs.Ms+" (= Ms)");
-    }
-    if(c.kh.length != cs.Na) {
-        throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": kh.length ="+c.kh.length+
-                    "   must be = "+cs.Na+" (= Na)");
-    }
-    if(c.logA.length < cs.Ms) {
-        throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": logA.length ="+c.logA.length+
-                    "   must be >= "+cs.Ms+" (= Ms)");
-    }
-    //check values of kh[]
-    for(int i =0; i < cs.Na; i++) {
-        if(c.kh[i] <1 || c.kh[i] >2) {
-            throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": kh["+i+"]="+c.kh[i]+
-                    " (must be = 1 or 2). Note: component numbers start at zero.");
-        } } //for i
-    if(c.dbg >= ERR_RESL_INPUT_3) {
-        out.println("Debug output requested from HaltaFall at level "+c.dbg+nl+
-                    "   Note that arrays start at \"zero\":  numbers for"+nl+
-                    "   components, complexes and solids start with 0.");
-    }
+    checkChemSystem();
     MXA = cs.Na;   // nbr components
     MXS = cs.mSol; // nbr of solids
     MXX = cs.Ms;   // nbr species
@@ -497,6 +464,9 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
         ruta = new double[MXS][MXS];
         rut1 = new double[MXA][MXA];
         fscal = new double[MXS];
+        invRow = new int[MXS];
+        invCol = new int[MXS];
+        invTemp = new double[MXS];
     }
 
     pos = new boolean[MXA];
@@ -507,15 +477,123 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
     pva = new double[MXA][MXC];
 
     oldLnG = new double[MXAQ];
-    for(int lix =0; lix <MXAQ; lix++) {oldLnG[lix] = 0;}
     fut = new int[MXS];
     iber = new int[MXA+1];
     ifSpar = new int[MXS];
     totBe = new double[MXA];
+    totMi = new double[MXA];
+
+    initSystem();
+    initConcs();
+
+    if(c.dbg >=ERR_RESL_INPUT_3){
+        printInput();
+        out.println("HaltaFall object constructor ends");
+    }
 
- // The first time HaltaFall is called, a plan is made to solve the mass
- // balance equations, some variables are initialized, etc.
+} // HaltaFall - constructor
+// </editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="reset">
+/** Prepares this instance of <code>HaltaFall</code> to be used with another
+ * chemical system, or to start again with the same one, without allocating
+ * new working arrays. The chemical system must have the same number of
+ * components, species and solids (<code>Na</code>, <code>Ms</code> and
+ * <code>mSol</code>) as the system used to construct this instance.
+ * If <code>cs</code> is the same object as before, the chemical system is
+ * neither checked nor processed again: only the state of the calculation is
+ * reset, as if the next call to <code>haltaCalc</code> were the first one.
+ * @param cs an instance of chem.Chem.ChemSystem
+ * @param factor an instance of haltaFall.Factor
+ * @param ut where messages will be printed. It may be "System.out" or null
+ * @throws lib.kemi.chem.Chem.ChemicalParameterException if the chemical system
+ * is not valid, or if its size is different
+ * @see lib.kemi.haltaFall.HaltaFallPool HaltaFallPool */
+public void reset(Chem.ChemSystem cs, Factor factor, java.io.PrintStream ut)
+        throws Chem.ChemicalParameterException {
+    if(ut != null) {this.out = ut;} else {this.out = System.out;}
+    if(cs.Na != MXA || cs.Ms != MXX || cs.mSol != MXS) {
+        throw new Chem.ChemicalParameterException(
+                "Error in \"HaltaFall.reset\": Na, Ms, mSol ="+cs.Na+", "+cs.Ms+", "+cs.mSol+nl+
+                "   must be = "+MXA+", "+MXX+", "+MXS);
+    }
+    boolean sameSystem = (cs == this.cs);
+    this.cs = cs;
+    this.c = cs.chemConcs;
+    this.factor = factor;
+    c.errFlags = 0;
+    panic = false;
+    if(!sameSystem) {
+        checkChemSystem();
+        initSystem();
+    }
+    initConcs();
+} // reset
+
+/** @return the number of components of the chemical systems this instance may be used with */
+int nbrComponents() {return MXA;}
+/** @return the number of species of the chemical systems this instance may be used with */
+int nbrSpecies() {return MXX;}
+/** @return the number of solids of the chemical systems this instance may be used with */
+int nbrSolids() {return MXS;}
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="checkChemSystem">
+/** Checks the chemical system and the length of the arrays in it.
+ * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+private void checkChemSystem() throws Chem.ChemicalParameterException {
+// NYKO
+    //check the chemical system
+    if(cs.Na <=0 || cs.mSol <0 || cs.nx < 0 || cs.solidC < 0) {
+        throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": Na, nx, mSol, solidC ="+cs.Na+", "+cs.nx+", "+cs.mSol+", "+cs.solidC+nl+
+                    "   Na must be >0; nx, mSol and solidC must be >=0.");
+    }
+    if(cs.nx != (cs.Ms - cs.Na - cs.mSol)) {
+        throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": nx ="+cs.nx+", must be = "+(cs.Ms - cs.Na - cs.mSol)+" (= Ms-Na-mSol)");
+    }
+    //check length of arrays
+    //note that species with names starting with "*" are removed,
+    //     so length of arrays may be larger than needed
+    if(cs.lBeta.length < (cs.Ms-cs.Na)) {
+        throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": lBeta.length ="+cs.lBeta.length+
+                    "   must be >= "+(cs.Ms-cs.Na)+" (= Ms-Na)");
+    }
+    if(cs.noll.length < cs.Ms) {
+        throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": noll.length ="+cs.noll.length+
+                    "   must be >= "+cs.Ms+" (= Ms)");
+    }
+    if(c.kh.length != cs.Na) {
+        throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": kh.length ="+c.kh.length+
+                    "   must be = "+cs.Na+" (= Na)");
+    }
+    if(c.logA.length < cs.Ms) {
+        throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": logA.length ="+c.logA.length+
+                    "   must be >= "+cs.Ms+" (= Ms)");
+    }
+    //check values of kh[]
+    for(int i =0; i < cs.Na; i++) {
+        if(c.kh[i] <1 || c.kh[i] >2) {
+            throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": kh["+i+"]="+c.kh[i]+
+                    " (must be = 1 or 2). Note: component numbers start at zero.");
+        } } //for i
+    if(c.dbg >= ERR_RESL_INPUT_3) {
+        out.println("Debug output requested from HaltaFall at level "+c.dbg+nl+
+                    "   Note that arrays start at \"zero\":  numbers for"+nl+
+                    "   components, complexes and solids start with 0.");
+    }
+} // checkChemSystem
+// </editor-fold>
+//<editor-fold defaultstate="collapsed" desc="initSystem / initConcs">
+/** Processes the data for the chemical system: equilibrium constants,
+ * stoichiometric coefficients, etc. */
+private void initSystem() {
     nIon = cs.Na + cs.nx;
     int liax, liaf;
     for(int lix =0; lix <cs.nx; lix++) {lnBeta[lix] = ln10*cs.lBeta[lix];}
@@ -570,6 +648,14 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
             if(ober[li][lj]) nober[li] = nober[li] +1;
             } // for lj
         } // for li
+} // initSystem
+
+/** Initializes the state of the calculations for the concentrations given
+ * in <code>c</code>: the first time <code>haltaCalc</code> is called, a
+ * plan is made to solve the mass balance equations, some variables are
+ * initialized, etc. */
+private void initConcs() {
+    for(int lix =0; lix <MXAQ; lix++) {oldLnG[lix] = 0;}
     for(int ia=0; ia <cs.Na; ia++) {
         if(c.kh[ia] == 2) {continue;} //calculation not requested
         noCalc[ia] = false; // that is, calc = true, calculation is possible
@@ -582,13 +668,7 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
     } // for ia
 
     haltaGetIva();
-
-    if(c.dbg >=ERR_RESL_INPUT_3){
-        printInput();
-        out.println("HaltaFall object constructor ends");
-    }
-
-} // HaltaFall - constructor
+} // initConcs
 // </editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="haltaCalc">
@@ -939,6 +1019,108 @@ public void haltaCalc()
 public void haltaCancel() {panic = true;}
 // </editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="State: saveState / restoreState">
+/** The state of <code>HaltaFall</code> after a successful calculation:
+ * the set of solids found at equilibrium, the plan made to solve the
+ * mass balance equations, and the values of <code>logA</code> and
+ * <code>logf</code>. It may be used to start a "continuation run"
+ * (<code>c.cont = true</code>) from the results of a calculation other
+ * than the last one, for example from a neighbouring point in a diagram.
+ * @see lib.kemi.haltaFall.HaltaFall#saveState(lib.kemi.haltaFall.HaltaFall.State) saveState
+ * @see lib.kemi.haltaFall.HaltaFall#restoreState(lib.kemi.haltaFall.HaltaFall.State) restoreState */
+public static class State {
+    private int nfall, nvaf, nva;
+    private int[] ibe, iber, ifall, iva, ivaf, ivaBra, ivaNov;
+    private boolean[] ber, fall, falla, noCalc;
+    private double[][] ruta, rut1, pva;
+    private double[] logA, logf;
+    private boolean saved = false;
+    /** @return true if this object contains a saved state */
+    public boolean isSaved() {return saved;}
+    /** Marks this object as empty, for example if the calculation failed.
+     * The arrays are kept, to be reused by <code>saveState</code>. */
+    public void clear() {saved = false;}
+} // class State
+
+/** Saves the state of this instance after a calculation
+ * @param s where the state is saved. If null a new object is created.
+ * Arrays in <code>s</code> are reused if possible
+ * @return the saved state: <code>s</code> or a new object
+ * @see lib.kemi.haltaFall.HaltaFall.State State
+ * @see lib.kemi.haltaFall.HaltaFall#restoreState(lib.kemi.haltaFall.HaltaFall.State) restoreState */
+public State saveState(State s) {
+    if(s == null) {s = new State();}
+    s.nfall = nfall; s.nvaf = nvaf; s.nva = nva;
+    s.ibe = copyOf(ibe, s.ibe);     s.iber = copyOf(iber, s.iber);
+    s.ifall = copyOf(ifall, s.ifall); s.iva = copyOf(iva, s.iva);
+    s.ivaf = copyOf(ivaf, s.ivaf);  s.ivaBra = copyOf(ivaBra, s.ivaBra);
+    s.ivaNov = copyOf(ivaNov, s.ivaNov);
+    s.ber = copyOf(ber, s.ber);     s.fall = copyOf(fall, s.fall);
+    s.falla = copyOf(falla, s.falla); s.noCalc = copyOf(noCalc, s.noCalc);
+    if(nfall > 0) { // these arrays are used only if solids are present
+        s.ruta = copyOf(ruta, s.ruta);
+        s.rut1 = copyOf(rut1, s.rut1);  s.pva = copyOf(pva, s.pva);
+    }
+    s.logA = copyOf(c.logA, s.logA); s.logf = copyOf(c.logf, s.logf);
+    s.saved = true;
+    return s;
+} // saveState
+
+/** Restores a state saved by <code>saveState</code>, so that the next
+ * call to <code>haltaCalc</code> starts from it. The values of <code>logA</code>
+ * are restored only for the components whose total concentration is given
+ * (<code>kh=1</code>), and <code>c.cont</code> is set to <code>true</code>.
+ * The state must have been saved by an instance of <code>HaltaFall</code>
+ * for the same chemical system.
+ * @param s a saved state. Nothing is done if it is null or empty
+ * @see lib.kemi.haltaFall.HaltaFall.State State
+ * @see lib.kemi.haltaFall.HaltaFall#saveState(lib.kemi.haltaFall.HaltaFall.State) saveState */
+public void restoreState(State s) {
+    if(s == null || !s.saved) {return;}
+    nfall = s.nfall; nvaf = s.nvaf; nva = s.nva;
+    copyOf(s.ibe, ibe);     copyOf(s.iber, iber);
+    copyOf(s.ifall, ifall); copyOf(s.iva, iva);
+    copyOf(s.ivaf, ivaf);   copyOf(s.ivaBra, ivaBra);
+    copyOf(s.ivaNov, ivaNov);
+    copyOf(s.ber, ber);     copyOf(s.fall, fall);
+    copyOf(s.falla, falla); copyOf(s.noCalc, noCalc);
+    if(nfall > 0) {
+        copyOf(s.ruta, ruta);
+        copyOf(s.rut1, rut1);   copyOf(s.pva, pva);
+    }
+    for(int ia = 0; ia < cs.Na; ia++) {
+        if(c.kh[ia] == 1) {c.logA[ia] = s.logA[ia];}
+    }
+    copyOf(s.logf, c.logf);
+    c.cont = true;
+} // restoreState
+
+private static int[] copyOf(int[] from, int[] to) {
+    if(from == null) {return null;}
+    if(to == null || to.length != from.length) {return from.clone();}
+    System.arraycopy(from, 0, to, 0, from.length);
+    return to;
+}
+private static boolean[] copyOf(boolean[] from, boolean[] to) {
+    if(from == null) {return null;}
+    if(to == null || to.length != from.length) {return from.clone();}
+    System.arraycopy(from, 0, to, 0, from.length);
+    return to;
+}
+private static double[] copyOf(double[] from, double[] to) {
+    if(from == null) {return null;}
+    if(to == null || to.length != from.length) {return from.clone();}
+    System.arraycopy(from, 0, to, 0, from.length);
+    return to;
+}
+private static double[][] copyOf(double[][] from, double[][] to) {
+    if(from == null) {return null;}
+    if(to == null || to.length != from.length) {to = new double[from.length][];}
+    for(int i = 0; i < from.length; i++) {to[i] = copyOf(from[i], to[i]);}
+    return to;
+}
+// </editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="printConcs">
 /** Prints the data stored the instance of <code>Chem.ChemSystem.ChemConcs</code>
  * that is associated with this instance of <code>HaltaFall</code>. If called
@@ -2030,11 +2212,13 @@ private boolean hopp(int lista[], int max) {
 /** Invert: Matrix inversion.<br>
  * Adapted from "www.csee.umbc.edu/~squire/".<br>
  * Sets variable indik = 1 (matrix is singular)
- * otherwise indik = 0 (ok).  */
+ * otherwise indik = 0 (ok).<br>
+ * The work arrays (invRow, invCol and invTemp) are created in the constructor:
+ * n must not be larger than the number of solids. */
 private void invert(double a[][], int n) {
-    int row[] = new int[n];
-    int col[] = new int[n];
-    double temp[] = new double[n];
+    final int row[] = invRow;
+    final int col[] = invCol;
+    final double temp[] = invTemp;
     int hold , iPivot , jPivot;
     double pivot;
     if(c.dbg >= ERR_DEBUG_FASTA_4) {out.println("invert(ruta[][],"+n+") in");}
@@ -2334,7 +2518,7 @@ private void totBer() {
                 if(y0 <= 0 || y <= 0) {
                     indik = 3;
                     iter[ivar]++;
-                    if(iter[ivar] >= ITER_MAX) {throw new TooManyIterationsException();}
+                    if(iter[ivar] >= ITER_MAX) {throw tooManyIterations;}
                     if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =3 (not ok & not mono or solids); iter["+ivar+"]="+iter[ivar]);}
                     return;
                 }
@@ -2342,13 +2526,13 @@ private void totBer() {
                 x = lnA[ivar];
                 indik = 1;
                 iter[ivar]++;
-                if(iter[ivar] >= ITER_MAX) {throw new TooManyIterationsException();}
+                if(iter[ivar] >= ITER_MAX) {throw tooManyIterations;}
                 if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =1 (not ok & mono & no solids), mono["+ivar+"]=true, iter["+ivar+"]="+iter[ivar]);}
                 //return;
             } else { // !mono or nfall !=0
                 indik = 3;
                 iter[ivar]++;
-                if(iter[ivar] >= ITER_MAX) {throw new TooManyIterationsException();}
+                if(iter[ivar] >= ITER_MAX) {throw tooManyIterations;}
                 if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =3  (not ok & not mono or solids); iter["+ivar+"]="+iter[ivar]);}
                 //return;
             } //if !mono | nfall !=0
@@ -2377,9 +2561,9 @@ private void totBer() {
     } //catch //catch
 
 } // totBer()
-private class TooManyIterationsException extends Exception {
-    public TooManyIterationsException() {}
-    public TooManyIterationsException(String txt) {super(txt);}
+private static class TooManyIterationsException extends Exception {
+    // no message, no cause and no stack trace: the same instance is thrown every time
+    public TooManyIterationsException() {super(null, null, false, false);}
 } //TooManyIterationsException
 // </editor-fold>
 
@@ -2390,7 +2574,6 @@ private void lnaBer2() {
     if(c.dbg >=ERR_XTRA_DEBUG_6) {out.println("lnaBer2() in, nfall="+nfall);}
     int li, ia, lj;
     double w;
-    double[] totMi = new double[MXA];
     for (li=0; li < nfall; li++) {
         ia = ibe[li];
         totMi[li] = c.tot[ia] - c.C[ia];
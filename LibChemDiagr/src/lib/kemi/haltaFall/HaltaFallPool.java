@@ -0,0 +1,106 @@
+package lib.kemi.haltaFall;
+
+import lib.kemi.chem.Chem;
+
+/** A pool of idle <code>HaltaFall</code> objects. Creating a <code>HaltaFall</code>
+ * object allocates all its working arrays, checks the chemical system and
+ * makes a plan to solve the mass balance equations. Programs that calculate
+ * many points in several threads, or many diagrams one after the other, may
+ * instead take ("acquire") an instance from this pool, and give it back
+ * ("release") when the calculations are finished. An instance is reused only
+ * for a chemical system of the same size: same number of components, species
+ * and solids.
+ * <p>
+ * The pool may be used by several threads at the same time, but each
+ * <code>HaltaFall</code> instance must only be used by one thread at a time.
+ *
+ * Copyright (C) 2014-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @see lib.kemi.haltaFall.HaltaFall#reset(lib.kemi.chem.Chem.ChemSystem, lib.kemi.haltaFall.Factor, java.io.PrintStream) reset
+ * @author Ignasi Puigdomenech */
+public class HaltaFallPool {
+  /** the maximum number of idle instances kept for each size of chemical system */
+  private static final int MAX_IDLE = 16;
+  /** the idle instances, for each size of chemical system */
+  private static final java.util.concurrent.ConcurrentHashMap<Shape,
+          java.util.concurrent.ConcurrentLinkedDeque<HaltaFall>> idle =
+                new java.util.concurrent.ConcurrentHashMap<Shape,
+                        java.util.concurrent.ConcurrentLinkedDeque<HaltaFall>>();
+
+  private HaltaFallPool() {}
+
+//<editor-fold defaultstate="collapsed" desc="acquire">
+/** Returns a <code>HaltaFall</code> object ready to be used with the chemical
+ * system <code>cs</code>. An idle instance for a chemical system of the same
+ * size is reused if available, otherwise a new instance is created.
+ * @param cs an instance of chem.Chem.ChemSystem
+ * @param factor an instance of haltaFall.Factor
+ * @param out where messages will be printed. It may be "System.out" or null
+ * @return a <code>HaltaFall</code> object. It should be given back with
+ * <code>release</code> when it is no longer needed
+ * @throws lib.kemi.chem.Chem.ChemicalParameterException
+ * @see #release(lib.kemi.haltaFall.HaltaFall) release */
+public static HaltaFall acquire(Chem.ChemSystem cs, Factor factor, java.io.PrintStream out)
+        throws Chem.ChemicalParameterException {
+    java.util.concurrent.ConcurrentLinkedDeque<HaltaFall> q =
+            idle.get(new Shape(cs.Na, cs.Ms, cs.mSol));
+    HaltaFall h = (q != null) ? q.pollFirst() : null;
+    if(h == null) {return new HaltaFall(cs, factor, out);}
+    try {h.reset(cs, factor, out);}
+    catch (Chem.ChemicalParameterException ex) {release(h); throw ex;}
+    return h;
+} // acquire
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="release">
+/** Gives back a <code>HaltaFall</code> object to the pool. The object must
+ * not be used after this call.
+ * @param h a <code>HaltaFall</code> object. Nothing is done if it is null
+ * @see #acquire(lib.kemi.chem.Chem.ChemSystem, lib.kemi.haltaFall.Factor, java.io.PrintStream) acquire */
+public static void release(HaltaFall h) {
+    if(h == null) {return;}
+    Shape key = new Shape(h.nbrComponents(), h.nbrSpecies(), h.nbrSolids());
+    java.util.concurrent.ConcurrentLinkedDeque<HaltaFall> q = idle.get(key);
+    if(q == null) {
+        java.util.concurrent.ConcurrentLinkedDeque<HaltaFall> qNew =
+                new java.util.concurrent.ConcurrentLinkedDeque<HaltaFall>();
+        q = idle.putIfAbsent(key, qNew);
+        if(q == null) {q = qNew;}
+    }
+    // the size of a ConcurrentLinkedDeque is not a constant-time operation,
+    // but the deque is short
+    if(q.size() < MAX_IDLE) {q.offerFirst(h);}
+} // release
+// </editor-fold>
+
+/** Removes all idle instances from the pool. */
+public static void clear() {idle.clear();}
+
+//<editor-fold defaultstate="collapsed" desc="class Shape">
+/** The size of a chemical system: number of components, species and solids. */
+private static final class Shape {
+    private final int na, ms, mSol;
+    Shape(int na, int ms, int mSol) {this.na = na; this.ms = ms; this.mSol = mSol;}
+    @Override public boolean equals(Object o) {
+        if(this == o) {return true;}
+        if(!(o instanceof Shape)) {return false;}
+        Shape s = (Shape)o;
+        return na == s.na && ms == s.ms && mSol == s.mSol;
+    }
+    @Override public int hashCode() {return (na * 31 + ms) * 31 + mSol;}
+} // class Shape
+// </editor-fold>
+
+} // class HaltaFallPool
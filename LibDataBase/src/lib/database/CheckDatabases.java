@@ -68,13 +68,17 @@ public class CheckDatabases {
     public java.util.ArrayList<String> refsNotFnd;
     /** list of reference citations (key) that do match a known reference */
     public java.util.ArrayList<String> refsFnd;
+    /** a message if a database file could not be read to the end (the files
+     * after it are then not checked), null otherwise */
+    public String readError;
 
     public CheckDataBasesLists() {}
   }
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="checkDataBases">
-/** checks databses, writing statistics and errors in a CheckDataBasesLists object
+/** checks databses, writing statistics and errors in a CheckDataBasesLists object.
+ * Same as <code>checkDatabases(dbg, parent, dataBaseList, null, refs, lists, false)</code>
  * 
  * @param dbg write debug information?
  * @param parent as the owner of error messages
@@ -88,6 +92,37 @@ public class CheckDatabases {
           final java.util.ArrayList<String> dataBaseList,
           final References refs,
           final CheckDataBasesLists lists) {
+    return checkDatabases(dbg, parent, dataBaseList, null, refs, lists, false);
+  }
+
+/** checks databses, writing statistics and errors in a CheckDataBasesLists object.
+ * Each database file is read once, and the files are checked in parallel.
+ * The results for the files are then merged, and the duplicate reactions
+ * are searched for, also in parallel.
+ * No dialogs are shown if there is no display: the error messages are
+ * then only printed.
+ * 
+ * @param dbg write debug information?
+ * @param parent as the owner of error messages
+ * @param dataBaseList the list of file names to check
+ * @param elemComp the elements and components already read from the
+ * element-reactant files of the databases by <code>LibDB.getElements</code>.
+ * If null (or empty) the element-reactant files are read.
+ * @param refs the references available for the calling program. It may be "null".
+ * @param lists an object where the errors and statistics will be written
+ * @param useSaved if true, the results for a database file saved on disk
+ * are used if the file has not been changed since, and the results for
+ * the other files are saved
+ * @return <code>true</code> if no errors occurr, <code>false</code> otherwise
+ * @see DatabaseSummary DatabaseSummary
+ */
+  public static boolean checkDatabases(final boolean dbg,
+          final java.awt.Component parent,
+          final java.util.ArrayList<String> dataBaseList,
+          final java.util.ArrayList<String[]> elemComp,
+          final References refs,
+          final CheckDataBasesLists lists,
+          final boolean useSaved) {
     if(dbg) {System.out.println("---- checkDatabases, debug = true");}
     if(lists == null) {
         MsgExceptn.exception("Error in \"checkADatabase\":"+nl+
@@ -112,6 +147,7 @@ public class CheckDatabases {
     lists.itemsNames = new java.util.ArrayList<String>();
     lists.refsNotFnd = null;
     lists.refsFnd = null;
+    lists.readError = null;
     if(refs != null)  {
         lists.refsNotFnd = new java.util.ArrayList<String>();
         lists.refsFnd = new java.util.ArrayList<String>();
@@ -137,37 +173,381 @@ public class CheckDatabases {
             return false;
         }
     }
-    int nH, i, j;
-    boolean fnd, ok, isRedoxReaction;
-    Complex cmplx;
-    String product, reaction;
-    /** the reference text for each reaction is split into keys and each key
-     * is stored in array "rfs" */
-    java.util.ArrayList<String> rfs;
+    int i, j;
+    boolean fnd;
 
-    // -- get and prepare the search engine "LibSearch"    
-    final LibSearch libS;
-    try{libS = new LibSearch(dataBaseList);}
-    catch (LibSearch.LibSearchException ex) {
-        MsgExceptn.exception(ex.getMessage());
-        return false;
-    }
     // -- read the elements/components found in the database's element file
     /** array list of String[3] objects<br>
      * [0] contains the element name (e.g. "C"),<br>
      * [1] the component formula ("CN-" or "Fe+2"),<br>
      * [2] the component name ("cyanide" or null), which is not really needed,
      * but used to help the user */
-    java.util.ArrayList<String[]> elemsComps = new java.util.ArrayList<String[]>();
-
-
-    LibDB.getElements(parent, dbg, dataBaseList, elemsComps);
+    java.util.ArrayList<String[]> elemsComps = elemComp;
+    if(elemsComps == null || elemsComps.isEmpty()) {
+        elemsComps = new java.util.ArrayList<String[]>();
+        LibDB.getElements(parent, dbg, dataBaseList, elemsComps);
+    }
+    ElemCompIndex elemsCompsIndex = new ElemCompIndex(elemsComps);
     //the number of unique reactants in elemsComps
     lists.nbrCompsInElementFiles = elemsComps.size()+1;
-    for(i=0; i < (elemsComps.size()-1); i++) {
-        for(j=(i+1); j < elemsComps.size(); j++) {
-            if(elemsComps.get(i)[1].equals(elemsComps.get(j)[1])) {lists.nbrCompsInElementFiles--;}
+    for(String formula : elemsCompsIndex.formulas()) {
+        j = elemsCompsIndex.formulaCount(formula);
+        lists.nbrCompsInElementFiles = lists.nbrCompsInElementFiles - j*(j-1)/2;
+    }
+
+    java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool();
+    try {
+    // -- check the reactions in each file
+    //    (files without element-reactant file have been removed from the list)
+    DatabaseSummary[] summaries = checkFiles(pool, dbg, dataBaseList, useSaved);
+
+    // -- merge the results for all files
+    //    The reactions are grouped by the name of the product (equivalent
+    //    names, as given by Util.nameCompare, have the same number) and by
+    //    the reaction, so that only the reactions that may be duplicates
+    //    are compared.
+    int nbr = 0;
+    for(DatabaseSummary s : summaries) {nbr = nbr + s.size();}
+    /** all products/reactions, in the order they are found */
+    String[][] prs = new String[nbr][];
+    java.util.BitSet redox = new java.util.BitSet(nbr);
+    ReactionKey.Table names = new ReactionKey.Table();
+    java.util.HashMap<Integer, java.util.ArrayList<Integer>> sameProduct =
+            new java.util.HashMap<Integer, java.util.ArrayList<Integer>>();
+    java.util.HashMap<String, java.util.ArrayList<Integer>> sameReaction =
+            new java.util.HashMap<String, java.util.ArrayList<Integer>>();
+    java.util.HashSet<String> refsChecked = new java.util.HashSet<String>();
+    java.util.HashSet<String> refsListed = new java.util.HashSet<String>();
+    nbr = 0;
+    try{
+    for(DatabaseSummary s : summaries) {
+      for(int n = 0; n < s.size(); n++) {
+        // if the product starts with "@" the reaction is "" (empty)
+        String[] pr = new String[]{s.products.get(n), s.reactions.get(n)};
+        if(s.redox.get(n)) {redox.set(nbr);}
+        prs[nbr] = pr;
+        // -- keep a list of all products/reactions
+        lists.productsReactionsSet.add(pr);
+        addToGroup(sameProduct, names.id(pr[0]), nbr);
+        // (empty reaction products are not compared)
+        if(pr[1].length() > 0) {addToGroup(sameReaction, pr[1].trim(), nbr);}
+        nbr++;
+      } // for n
+
+      for(java.util.Map.Entry<String, Integer> e : s.reactants.entrySet()) {
+        Integer k = lists.reactantsSet.get(e.getKey());
+        lists.reactantsSet.put(e.getKey(), (k == null ? 0 : k) + e.getValue());
+      }
+      lists.reactantWithoutCoef.addAll(s.reactantWithoutCoef);
+      lists.coefWithoutReactant.addAll(s.coefWithoutReactant);
+      lists.chargeImbalance.addAll(s.chargeImbalance);
+      lists.protonConflict.addAll(s.protonConflict);
+      lists.itemsNames.addAll(s.itemsNames);
+
+      if(refs !=null && lists.refsNotFnd != null) {
+        for(String reference : s.references) {
+          if(!refsChecked.add(reference)) {continue;}
+          /** the reference text for each reaction is split into keys */
+          java.util.ArrayList<String> rfs = refs.splitRefs(reference);
+          for(String r : rfs) {
+            if(!refsListed.add(r)) {continue;}
+            if(refs.isRefThere(r) == null) {
+                lists.refsNotFnd.add(r);
+            } else if(lists.refsFnd != null) {
+                lists.refsFnd.add(r);
+            }
+          }
+        }
+      }
+
+      // -- the files after a file that could not be read are not checked
+      if(s.error != null) {
+        lists.readError = s.error;
+        if(s.exception) {MsgExceptn.exception(s.error);} else {MsgExceptn.showErrMsg(parent, s.error, 1);}
+        break;
+      }
+    } // for s
+
+    // -- find out duplicates, comparing the reactions in each group
+    java.util.ArrayList<int[]> productGroups = groupsToCompare(sameProduct.values());
+    java.util.ArrayList<int[]> reactionGroups = groupsToCompare(sameReaction.values());
+    sameProduct = null; sameReaction = null;
+    FindDuplicates byProduct = new FindDuplicates(prs, redox, productGroups, true, 0, productGroups.size());
+    FindDuplicates byReaction = new FindDuplicates(prs, redox, reactionGroups, false, 0, reactionGroups.size());
+    pool.execute(byProduct);
+    lists.duplProductsSet.addAll(pool.invoke(byReaction).products);
+    Duplicates d = byProduct.join();
+    lists.duplProductsSet.addAll(d.products);
+    d = byReaction.join();
+    lists.duplReactionsSameProdctSet.addAll(d.sameProduct);
+    lists.duplReactionsDifProductSet.addAll(d.difProduct);
+    lists.duplSolidsSet.addAll(d.solids);
+    } catch (Exception ex) {MsgExceptn.exception(ex.getMessage());}
+    } finally {
+        pool.shutdown();
+    }
+    // --
+    for(String component : lists.reactantsSet.keySet()) {
+        fnd = elemsCompsIndex.formulaCount(component) > 0;
+        if(!fnd) {lists.reactantsUnknown.add(component);}
+    }
+    // -- Components in element-reactant files not used in the databases for reactions
+    for(i=0; i < elemsComps.size(); i++) {
+        if(!lists.reactantsSet.containsKey(elemsComps.get(i)[1])) {
+            lists.reactantsNotUsed.add(elemsComps.get(i)[1]);
+        }
+    }
+    // -- Reactant names in the reaction database that are equivalent but will be treated as different
+    java.util.ArrayList<String> arrayList = new java.util.ArrayList<String>(lists.reactantsSet.keySet());
+    java.util.Collections.sort(arrayList, String.CASE_INSENSITIVE_ORDER);
+    for(j=0; j < (arrayList.size()-1); j++) {
+        for(i=(j+1); i < arrayList.size(); i++) {
+            if(Util.nameCompare(arrayList.get(j),arrayList.get(i))) {
+                lists.reactantsCompare.add(arrayList.get(j)+"   and:  "+arrayList.get(i));
+            }
+        }
+    }
+    // -- Reactant names in the elements-reactants file(s) that are equivalent but will be treated as different
+    arrayList = new java.util.ArrayList<String>();
+    for(i=0; i<elemsComps.size(); i++) {arrayList.add(elemsComps.get(i)[1]);}
+    java.util.Collections.sort(arrayList, String.CASE_INSENSITIVE_ORDER);
+    for(j=0; j < (arrayList.size()-1); j++) {
+        for(i=(j+1); i < arrayList.size(); i++) {
+            if(!arrayList.get(j).equals(arrayList.get(i))
+                    && Util.nameCompare(arrayList.get(j),arrayList.get(i))) {
+                lists.elementReactantsCompare.add(arrayList.get(j)+"   and:  "+arrayList.get(i));
+            }
+        }
+    }
+
+    return true;
+  }
+
+  private static <K> void addToGroup(java.util.HashMap<K, java.util.ArrayList<Integer>> groups, K key, int n) {
+    java.util.ArrayList<Integer> group = groups.get(key);
+    if(group == null) {
+        group = new java.util.ArrayList<Integer>(2);
+        groups.put(key, group);
+    }
+    group.add(n);
+  }
+
+  /** @return the groups with more than one reaction, each one as the
+   * reactions in the order they were found */
+  private static java.util.ArrayList<int[]> groupsToCompare(java.util.Collection<java.util.ArrayList<Integer>> groups) {
+    java.util.ArrayList<int[]> l = new java.util.ArrayList<int[]>();
+    for(java.util.ArrayList<Integer> group : groups) {
+      if(group.size() < 2) {continue;}
+      int[] g = new int[group.size()];
+      for(int i = 0; i < g.length; i++) {g[i] = group.get(i);}
+      l.add(g);
+    }
+    return l;
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="class FindDuplicates">
+  /** The duplicates found in some groups of reactions */
+  private static class Duplicates {
+    /** reaction products present in two or more different reactions */
+    final java.util.TreeSet<String> products = new java.util.TreeSet<String>();
+    /** duplicate reactions (with the same reaction product) */
+    final java.util.TreeSet<String> sameProduct = new java.util.TreeSet<String>();
+    /** duplicate reactions (with different reaction product) */
+    final java.util.TreeSet<String> difProduct = new java.util.TreeSet<String>();
+    /** duplicate solids (with different ending: "(s)" and "(cr)") */
+    final java.util.TreeSet<String> solids = new java.util.TreeSet<String>();
+
+    void addAll(Duplicates d) {
+      products.addAll(d.products);
+      sameProduct.addAll(d.sameProduct);
+      difProduct.addAll(d.difProduct);
+      solids.addAll(d.solids);
+    }
+  }
+
+  /** Compares the reactions in each group with the reactions found before
+   * them in the same group. The groups are split among the threads of a
+   * fork-join pool. */
+  private static class FindDuplicates extends java.util.concurrent.RecursiveTask<Duplicates> {
+    private static final long serialVersionUID = 1L;
+    /** the number of reactions compared in a task that is not split further */
+    private static final int THRESHOLD = 2000;
+    private final String[][] prs;
+    private final java.util.BitSet redox;
+    private final java.util.List<int[]> groups;
+    /** true if the reactions in a group have equivalent product names;
+     * false if they have the same reaction */
+    private final boolean byProduct;
+    private final int from, to;
+
+    FindDuplicates(String[][] prs, java.util.BitSet redox, java.util.List<int[]> groups,
+            boolean byProduct, int from, int to) {
+      this.prs = prs;
+      this.redox = redox;
+      this.groups = groups;
+      this.byProduct = byProduct;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override protected Duplicates compute() {
+      int n = 0;
+      for(int i = from; i < to; i++) {n = n + groups.get(i).length;}
+      if(to - from < 2 || n <= THRESHOLD) {
+          Duplicates d = new Duplicates();
+          for(int i = from; i < to; i++) {
+              if(byProduct) {sameProduct(groups.get(i), d);} else {sameReaction(groups.get(i), d);}
+          }
+          return d;
+      }
+      int mid = (from + to) / 2;
+      FindDuplicates first = new FindDuplicates(prs, redox, groups, byProduct, from, mid);
+      first.fork();
+      Duplicates d = new FindDuplicates(prs, redox, groups, byProduct, mid, to).compute();
+      d.addAll(first.join());
+      return d;
+    }
+
+    /** find out duplicate reaction products having different reactions */
+    private void sameProduct(int[] group, Duplicates d) {
+      for(int k = 1; k < group.length; k++) {
+        if(redox.get(group[k])) {continue;}
+        String product = prs[group[k]][0], reaction = prs[group[k]][1];
+        for(int k0 = 0; k0 < k; k0++) {
+          String[] r = prs[group[k0]];
+          if(!(r[1].length() > 0 && Util.stringsEqual(r[1], reaction))) {
+              d.products.add(product);
+              break;
+          }
         }
+      }
+    } //sameProduct
+
+    /** find out duplicate reactions */
+    private void sameReaction(int[] group, Duplicates d) {
+      for(int k = 1; k < group.length; k++) {
+        String product = prs[group[k]][0];
+        for(int k0 = 0; k0 < k; k0++) {
+          String[] r = prs[group[k0]];
+          // -- find out duplicate reactions (with the same reaction product)
+          if(Util.nameCompare(product, r[0])) {d.sameProduct.add(product);}
+          // -- find out duplicate reactions (with different reaction product)
+          //    Names that will not give a warning, for example:
+          //       - Fe(OH)2(s) and Fe(OH)2(cr) and Fe(OH)2
+          //       - CO2 and CO2(g)
+          //    but Fe(c) and Fe(cr) will give a warning
+          if(// both are solid but not equal, e.g. AmCO3OH(s) and AmOHCO3(cr)
+             (Util.isSolid(product) && Util.isSolid(r[0]) && 
+                  !Util.bareNameOf(product).equals(Util.bareNameOf(r[0])))
+             // both are solid and equal except for "(c)" and "(cr)"
+             || (Util.is_cr_or_c_solid(product) && Util.is_cr_or_c_solid(r[0])
+                  && Util.bareNameOf(product).equals(Util.bareNameOf(r[0])))
+             // both gas but different, e.g. H2S(g) and SH2(g)
+             || (Util.isGas(product) && Util.isGas(r[0]) && 
+                  !Util.bareNameOf(product).equals(Util.bareNameOf(r[0])))
+             // none is solid or gas, but different, such as VO2(OH)2- and VO3-
+             || (!Util.isSolid(product) && !Util.isSolid(r[0]) &&
+                 !Util.isGas(product) && !Util.isGas(r[0]) &&
+                        !Util.nameCompare(product, r[0]))) {
+              d.difProduct.add(product+"   and:  "+r[0]);
+          }
+          // -- find out duplicate solids (with different phase designation)
+          if(!product.equals(r[0]) && Util.isSolid(product) && Util.isSolid(r[0])
+                  && Util.bareNameOf(product).equals(Util.bareNameOf(r[0]))) {
+              if(product.endsWith("(am)")) {
+                    d.solids.add(r[0]+"   and:  "+product);
+              } else {
+                    d.solids.add(product+"   and:  "+r[0]);
+              }
+          }
+        }
+      }
+    } //sameReaction
+  } //class FindDuplicates
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="checkFiles">
+  /** Checks the reactions in each database file, the files in parallel
+   * @param pool the fork-join pool where the files are checked
+   * @param dbg write debug information?
+   * @param dataBaseList the database files
+   * @param useSaved if true, the summaries saved on disk are used for the files
+   * that have not been changed, and the summaries of the other files are saved
+   * @return the summary of each file, in the same order as in the list */
+  private static DatabaseSummary[] checkFiles(java.util.concurrent.ForkJoinPool pool,
+          final boolean dbg, final java.util.ArrayList<String> dataBaseList, final boolean useSaved) {
+    // a file given twice is checked once
+    java.util.ArrayList<String> names = new java.util.ArrayList<String>(new java.util.LinkedHashSet<String>(dataBaseList));
+    DatabaseSummary[] found = new DatabaseSummary[names.size()];
+    pool.invoke(new CheckFiles(dbg, names, useSaved, found, 0, found.length));
+    DatabaseSummary[] summaries = new DatabaseSummary[dataBaseList.size()];
+    for(int i = 0; i < summaries.length; i++) {
+        summaries[i] = found[names.indexOf(dataBaseList.get(i))];
+    }
+    return summaries;
+  } //checkFiles
+
+  /** Checks the database files from "from" to "to"-1, splitting the list
+   * until each task checks a single file */
+  private static class CheckFiles extends java.util.concurrent.RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final boolean dbg, useSaved;
+    private final java.util.List<String> names;
+    private final DatabaseSummary[] found;
+    private final int from, to;
+
+    CheckFiles(boolean dbg, java.util.List<String> names, boolean useSaved,
+            DatabaseSummary[] found, int from, int to) {
+      this.dbg = dbg;
+      this.names = names;
+      this.useSaved = useSaved;
+      this.found = found;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override protected void compute() {
+      if(to - from == 1) {
+          found[from] = checkAFile(dbg, names.get(from), useSaved);
+          return;
+      }
+      int mid = (from + to) / 2;
+      invokeAll(new CheckFiles(dbg, names, useSaved, found, from, mid),
+                new CheckFiles(dbg, names, useSaved, found, mid, to));
+    }
+  } //class CheckFiles
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="checkAFile">
+  /** Checks the reactions in a database file
+   * @param dbg write debug information?
+   * @param dbName the name of a database file
+   * @param useSaved if true, the summary saved on disk is used if the file
+   * has not been changed, otherwise the summary is saved
+   * @return the summary of the file */
+  private static DatabaseSummary checkAFile(final boolean dbg, final String dbName, final boolean useSaved) {
+    java.io.File f = new java.io.File(dbName);
+    long[] fp = null;
+    if(useSaved) {
+        fp = DiskCache.fingerprint(f);
+        DatabaseSummary s = DatabaseSummary.get(f, fp, dbg);
+        if(s != null) {return s;}
+    }
+    DatabaseSummary s = new DatabaseSummary();
+    int nH, i, j;
+    boolean ok, isRedoxReaction;
+    Complex cmplx;
+    String product, reaction;
+
+    // -- get and prepare the search engine "LibSearch"    
+    final LibSearch libS;
+    java.util.ArrayList<String> aFile = new java.util.ArrayList<String>(1);
+    aFile.add(dbName);
+    try{libS = new LibSearch(aFile);}
+    catch (LibSearch.LibSearchException ex) {
+        s.error = ex.getMessage();
+        return s;
     }
 
     // -- loop through all reactions
@@ -177,8 +557,7 @@ public class CheckDatabases {
         try {cmplx = libS.getComplex(fistComplex);}
         catch (LibSearch.LibSearchException ex) {
             libS.libSearchClose();
-            String msg = ex.getMessage();
-            MsgExceptn.showErrMsg(parent, msg, 1);
+            s.error = ex.getMessage();
             break;
         }
         fistComplex = false;
@@ -187,51 +566,10 @@ public class CheckDatabases {
         reaction = reactString(cmplx); // if it starts with "@" the reaction is "" (empty)
         isRedoxReaction = Complex.isRedox(cmplx);
 
-        for(String[] r : lists.productsReactionsSet) {
-            // -- find out duplicate reaction products having different reactions
-            if(Util.nameCompare(product, r[0])) {
-                if(!isRedoxReaction
-                        && !(r[1].length() > 0 && Util.stringsEqual(r[1], reaction))) {
-                    lists.duplProductsSet.add(product);
-                }
-            }
-            // (empty reaction products are not compared)
-            if(r[1].length() > 0 && Util.stringsEqual(r[1], reaction)) {
-                // -- find out duplicate reactions (with the same reaction product)
-                if(Util.nameCompare(product, r[0])) {lists.duplReactionsSameProdctSet.add(product);}
-                // -- find out duplicate reactions (with different reaction product)
-                //    Names that will not give a warning, for example:
-                //       - Fe(OH)2(s) and Fe(OH)2(cr) and Fe(OH)2
-                //       - CO2 and CO2(g)
-                //    but Fe(c) and Fe(cr) will give a warning
-                if(// both are solid but not equal, e.g. AmCO3OH(s) and AmOHCO3(cr)
-                   (Util.isSolid(product) && Util.isSolid(r[0]) && 
-                        !Util.bareNameOf(product).equals(Util.bareNameOf(r[0])))
-                   // both are solid and equal except for "(c)" and "(cr)"
-                   || (Util.is_cr_or_c_solid(product) && Util.is_cr_or_c_solid(r[0])
-                        && Util.bareNameOf(product).equals(Util.bareNameOf(r[0])))
-                   // both gas but different, e.g. H2S(g) and SH2(g)
-                   || (Util.isGas(product) && Util.isGas(r[0]) && 
-                        !Util.bareNameOf(product).equals(Util.bareNameOf(r[0])))
-                   // none is solid or gas, but different, such as VO2(OH)2- and VO3-
-                   || (!Util.isSolid(product) && !Util.isSolid(r[0]) &&
-                       !Util.isGas(product) && !Util.isGas(r[0]) &&
-                              !Util.nameCompare(product, r[0]))) {
-                    lists.duplReactionsDifProductSet.add(product+"   and:  "+r[0]);
-                }
-                // -- find out duplicate solids (with different phase designation)
-                if(!product.equals(r[0]) && Util.isSolid(product) && Util.isSolid(r[0])
-                        && Util.bareNameOf(product).equals(Util.bareNameOf(r[0]))) {
-                    if(product.endsWith("(am)")) {
-                          lists.duplSolidsSet.add(r[0]+"   and:  "+product);
-                    } else {
-                          lists.duplSolidsSet.add(product+"   and:  "+r[0]);
-                    }
-                }
-            }
-        }
         // -- keep a list of all products/reactions
-        lists.productsReactionsSet.add(new String[]{product,reaction});
+        if(isRedoxReaction) {s.redox.set(s.size());}
+        s.products.add(product);
+        s.reactions.add(reaction);
 
         // --
         if(cmplx.name.startsWith("@")) {continue;}
@@ -239,7 +577,7 @@ public class CheckDatabases {
         for(i=0; i<Complex.NDIM; i++) {
               if(cmplx.component[i] != null && cmplx.component[i].trim().length()>0
                       && Math.abs(cmplx.numcomp[i]) < 0.001) {
-                  lists.reactantWithoutCoef.add(cmplx.name);
+                  s.reactantWithoutCoef.add(cmplx.name);
                   break;
               }
         }
@@ -247,30 +585,29 @@ public class CheckDatabases {
         for(i=0; i<Complex.NDIM; i++) {
             if(Math.abs(cmplx.numcomp[i]) >= 0.001
                       && (cmplx.component[i] == null || cmplx.component[i].trim().length() <=0)) {
-                  lists.coefWithoutReactant.add(cmplx.name);
+                  s.coefWithoutReactant.add(cmplx.name);
                   break;
             }
         }
         // -- find reactions not charge balanced
-        if(!Complex.isChargeBalanced(cmplx)) {lists.chargeImbalance.add(cmplx.name);}
+        if(!Complex.isChargeBalanced(cmplx)) {s.chargeImbalance.add(cmplx.name);}
 
         // -- list reactants; keep track of H+
         nH = -1;
         for(i =0; i < Complex.NDIM; i++) {
             if(cmplx.component[i] == null || cmplx.component[i].trim().length() <=0) {continue;}
             if(Util.isProton(cmplx.component[i])) {nH = i;}
-            if(lists.reactantsSet.containsKey(cmplx.component[i])) {
-                j = lists.reactantsSet.get(cmplx.component[i]);
-                lists.reactantsSet.put(cmplx.component[i],j+1);
+            if(s.reactants.containsKey(cmplx.component[i])) {
+                j = s.reactants.get(cmplx.component[i]);
+                s.reactants.put(cmplx.component[i],j+1);
             } else {
-                lists.reactantsSet.put(cmplx.component[i],1);
+                s.reactants.put(cmplx.component[i],1);
             }
         }
         // -- find reactions with error in H+
         if(nH >=0 && !Util.areEqualDoubles(cmplx.proton, cmplx.numcomp[nH])) {
-            lists.protonConflict.add(cmplx.name);
+            s.protonConflict.add(cmplx.name);
         }
-
         // -- find out if the reactants are in the name of the product
         //<editor-fold defaultstate="collapsed" desc="is reactant in product name?">
         for(i =0; i < Complex.NDIM; i++) {
@@ -325,68 +662,23 @@ public class CheckDatabases {
             if(!ok && t.equals("HS")) {ok = cmplx.name.contains("S");}
             if(!ok && (t.equals("SO4") || t.equals("SO3") || t.equals("S2O3"))) {ok = cmplx.name.contains("S");}
             if(!ok) {
-                lists.itemsNames.add(cmplx.name+"  does not contain  "+cmplx.component[i]);
+                s.itemsNames.add(cmplx.name+"  does not contain  "+cmplx.component[i]);
             }
         }
         //</editor-fold>
 
-        if(cmplx.reference !=null && cmplx.reference.trim().length()>0
-                  && refs !=null && lists.refsNotFnd != null) {
-            rfs = refs.splitRefs(cmplx.reference);
-            for(String r : rfs) {
-                if(refs.isRefThere(r) == null) {
-                    if(!lists.refsNotFnd.contains(r)) {
-                        lists.refsNotFnd.add(r);
-                    }
-                } else {
-                    if(lists.refsFnd != null && !lists.refsFnd.contains(r)) {
-                        lists.refsFnd.add(r);
-                    }
-                }
-            }
+        if(cmplx.reference !=null && cmplx.reference.trim().length()>0) {
+            s.references.add(cmplx.reference);
         }
 
     } // -- while // (loop through all reactions)
-    } catch (Exception ex) {MsgExceptn.exception(ex.getMessage());}
-    // --
-    for(String component : lists.reactantsSet.keySet()) {
-        fnd = false;
-        for(i=0; i < elemsComps.size(); i++) {                
-            if(elemsComps.get(i)[1].equals(component)) {fnd = true; break;}
-        }
-        if(!fnd) {lists.reactantsUnknown.add(component);}
-    }
-    // -- Components in element-reactant files not used in the databases for reactions
-    for(i=0; i < elemsComps.size(); i++) {
-        if(!lists.reactantsSet.containsKey(elemsComps.get(i)[1])) {
-            lists.reactantsNotUsed.add(elemsComps.get(i)[1]);
-        }
+    } catch (Exception ex) {
+        s.error = (ex.getMessage() != null ? ex.getMessage() : ex.toString());
+        s.exception = true;
     }
-    // -- Reactant names in the reaction database that are equivalent but will be treated as different
-    java.util.ArrayList<String> arrayList = new java.util.ArrayList<String>(lists.reactantsSet.keySet());
-    java.util.Collections.sort(arrayList, String.CASE_INSENSITIVE_ORDER);
-    for(j=0; j < (arrayList.size()-1); j++) {
-        for(i=(j+1); i < arrayList.size(); i++) {
-            if(Util.nameCompare(arrayList.get(j),arrayList.get(i))) {
-                lists.reactantsCompare.add(arrayList.get(j)+"   and:  "+arrayList.get(i));
-            }
-        }
-    }
-    // -- Reactant names in the elements-reactants file(s) that are equivalent but will be treated as different
-    arrayList = new java.util.ArrayList<String>();
-    for(i=0; i<elemsComps.size(); i++) {arrayList.add(elemsComps.get(i)[1]);}
-    java.util.Collections.sort(arrayList, String.CASE_INSENSITIVE_ORDER);
-    for(j=0; j < (arrayList.size()-1); j++) {
-        for(i=(j+1); i < arrayList.size(); i++) {
-            if(!arrayList.get(j).equals(arrayList.get(i))
-                    && Util.nameCompare(arrayList.get(j),arrayList.get(i))) {
-                lists.elementReactantsCompare.add(arrayList.get(j)+"   and:  "+arrayList.get(i));
-            }
-        }
-    }
-
-    return true;
-  }
+    if(useSaved) {DatabaseSummary.put(f, fp, s, dbg);}
+    return s;
+  } //checkAFile
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="reactString(Complex)">
@@ -37,7 +37,6 @@ public class Complex implements Comparable<Complex>, Cloneable {
   public static final int NDIM = 6;
   /** the number of values needed in a text line to read or to store a <code>Complex</code> */
   public static final int NDATA = 18;
-  private java.awt.Dimension screenSize = java.awt.Toolkit.getDefaultToolkit().getScreenSize();
   /** New-line character(s) to substitute "\n" */
   private static final String nl = System.getProperty("line.separator");
 
@@ -380,7 +379,7 @@ public class Complex implements Comparable<Complex>, Cloneable {
           if(cmplx1.component[i] == null || cmplx1.component[i].length() <=0) {continue;}
           found =-1;
           for(int i2=0; i2< NDIM; i2++) {
-              if(cmplx2.component[i] == null || cmplx2.component[i].length() <=0) {continue;}
+              if(cmplx2.component[i2] == null || cmplx2.component[i2].length() <=0) {continue;}
               if(Util.nameCompare(cmplx1.component[i],cmplx2.component[i2])) {found = i2; break;}
           }//for i2
           if(found > -1) {
@@ -399,7 +398,7 @@ public class Complex implements Comparable<Complex>, Cloneable {
           if(cmplx2.component[i] == null || cmplx2.component[i].length() <=0) {continue;}
           found =-1;
           for(int i2=0; i2< NDIM; i2++) {
-              if(cmplx1.component[i] == null || cmplx1.component[i].length() <=0) {continue;}
+              if(cmplx1.component[i2] == null || cmplx1.component[i2].length() <=0) {continue;}
               if(Util.nameCompare(cmplx2.component[i],cmplx1.component[i2])) {found = i2; break;}
           }//for i2
           if(found > -1) {
@@ -451,7 +450,7 @@ public class Complex implements Comparable<Complex>, Cloneable {
           if(cmplx1.component[i] == null || cmplx1.component[i].length() <=0) {continue;}
           found =-1;
           for(int i2=0; i2< NDIM; i2++) {
-              if(cmplx2.component[i] == null || cmplx2.component[i].length() <=0) {continue;}
+              if(cmplx2.component[i2] == null || cmplx2.component[i2].length() <=0) {continue;}
               if(Util.nameCompare(cmplx1.component[i],cmplx2.component[i2])) {found = i2; break;}
           }//for i2
           if(found > -1) {
@@ -470,7 +469,7 @@ public class Complex implements Comparable<Complex>, Cloneable {
           if(cmplx2.component[i] == null || cmplx2.component[i].length() <=0) {continue;}
           found =-1;
           for(int i2=0; i2< NDIM; i2++) {
-              if(cmplx1.component[i] == null || cmplx1.component[i].length() <=0) {continue;}
+              if(cmplx1.component[i2] == null || cmplx1.component[i2].length() <=0) {continue;}
               if(Util.nameCompare(cmplx2.component[i],cmplx1.component[i2])) {found = i2; break;}
           }//for i2
           if(found > -1) {
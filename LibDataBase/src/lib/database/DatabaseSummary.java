@@ -0,0 +1,170 @@
+package lib.database;
+
+/** The results of checking the reactions in a single database file, as
+ * found by <code>CheckDatabases</code>. The checks that concern a reaction by
+ * itself (reactants without coefficients, charge balance, H+ conflicts, etc)
+ * are made for each file separately, and the results for all files are then
+ * merged. The reaction products and the reactions are kept to find
+ * duplicates among the reactions in all the files.
+ * <p>
+ * A summary may be saved on disk. It is used again as long as the database
+ * file is not changed: the key of each saved summary is the name of the
+ * file, its length, its modification date and a checksum of its contents.
+ * The element-reactant files and the references are not needed to make a
+ * summary: they are used when the summaries are merged.
+ * <p>
+ * The summaries are saved in the folder ".config/eq-diagr/CheckDatabases_cache"
+ * in the user's home directory. Only the <code>MAX_ENTRIES</code> most
+ * recently used files are kept.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see CheckDatabases CheckDatabases
+ * @author Ignasi Puigdomenech */
+class DatabaseSummary {
+  /** the maximum number of summaries kept on disk */
+  static final int MAX_ENTRIES = 100;
+  private static final String HEADER = "CheckDatabases summary, version 1";
+  /** the summaries on disk: the name of each file is a hash of the name of the database file */
+  private static final DiskCache cache = new DiskCache("CheckDatabases_cache", ".summary", MAX_ENTRIES);
+  private static final String nl = System.getProperty("line.separator");
+
+  /** the reaction products, without a starting "@", in the order they are in the file */
+  final java.util.ArrayList<String> products = new java.util.ArrayList<String>();
+  /** the reaction of each product, sorted, or "" if the name of the product starts with "@" */
+  final java.util.ArrayList<String> reactions = new java.util.ArrayList<String>();
+  /** true for the reactions in <code>products</code> that are redox reactions */
+  final java.util.BitSet redox = new java.util.BitSet();
+  /** the reactants in the file, mapping each reactant to how many reactions it participates */
+  final java.util.HashMap<String, Integer> reactants = new java.util.HashMap<String, Integer>();
+  /** reactions (product name) where a reactant is given without a coefficient */
+  final java.util.HashSet<String> reactantWithoutCoef = new java.util.HashSet<String>();
+  /** reactions (product name) where a coefficient is given with an empty reactant */
+  final java.util.HashSet<String> coefWithoutReactant = new java.util.HashSet<String>();
+  /** reactions (product name) with charge imbalance */
+  final java.util.HashSet<String> chargeImbalance = new java.util.HashSet<String>();
+  /** reactions (product name) with H+ conflict */
+  final java.util.HashSet<String> protonConflict = new java.util.HashSet<String>();
+  /** reaction product names not containing one or more reactant names */
+  final java.util.ArrayList<String> itemsNames = new java.util.ArrayList<String>();
+  /** the reference texts of the reactions, each one once, in the order they are found */
+  final java.util.LinkedHashSet<String> references = new java.util.LinkedHashSet<String>();
+  /** a message if the file could not be read to the end, null otherwise.
+   * A summary with an error is not saved */
+  String error = null;
+  /** if true, <code>error</code> is an unexpected exception, and not an
+   * error while reading the file */
+  boolean exception = false;
+
+  /** @return the number of reactions in the file */
+  int size() {return products.size();}
+
+  //<editor-fold defaultstate="collapsed" desc="get">
+  /** Reads the summary of a database file saved on disk.
+   * @param f the database file
+   * @param fp the fingerprint of the file, see <code>DiskCache.fingerprint</code>
+   * @param dbg if true some debug information is printed
+   * @return the summary, or null if there is no summary for this file as it is now */
+  static DatabaseSummary get(java.io.File f, long[] fp, boolean dbg) {
+    java.io.File sf = cache.entryFile(f.getAbsolutePath());
+    if(fp == null || sf == null || !sf.exists()) {return null;}
+    DatabaseSummary s = new DatabaseSummary();
+    java.io.DataInputStream dis = null;
+    try {
+        dis = new java.io.DataInputStream(new java.io.BufferedInputStream(new java.io.FileInputStream(sf)));
+        if(!HEADER.equals(dis.readUTF())) {return null;}
+        // the file name is a hash of the name of the database: check that it is the same file
+        if(!f.getAbsolutePath().equals(dis.readUTF())) {return null;}
+        for(int i = 0; i < fp.length; i++) {
+            if(dis.readLong() != fp[i]) {return null;}
+        }
+        int n = dis.readInt();
+        s.products.ensureCapacity(n);
+        s.reactions.ensureCapacity(n);
+        for(int i = 0; i < n; i++) {
+            s.products.add(dis.readUTF());
+            s.reactions.add(dis.readUTF());
+            if(dis.readBoolean()) {s.redox.set(i);}
+        }
+        n = dis.readInt();
+        for(int i = 0; i < n; i++) {s.reactants.put(dis.readUTF(), dis.readInt());}
+        readStrings(dis, s.reactantWithoutCoef);
+        readStrings(dis, s.coefWithoutReactant);
+        readStrings(dis, s.chargeImbalance);
+        readStrings(dis, s.protonConflict);
+        readStrings(dis, s.itemsNames);
+        readStrings(dis, s.references);
+    } catch (Exception ex) {
+        if(dbg) {System.out.println("Note: could not read summary file \""+sf.getPath()+"\""+nl+"   "+ex.toString());}
+        return null;
+    } finally {
+        if(dis != null) {try {dis.close();} catch (java.io.IOException ex) {}}
+    }
+    // keep the most recently used entries
+    cache.used(sf);
+    if(dbg) {System.out.println("Summary of \""+f.getName()+"\" read from file \""+sf.getName()+"\"");}
+    return s;
+  } //get
+
+  private static void readStrings(java.io.DataInputStream dis, java.util.Collection<String> c) throws java.io.IOException {
+    int n = dis.readInt();
+    for(int i = 0; i < n; i++) {c.add(dis.readUTF());}
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="put">
+  /** Saves the summary of a database file on disk. Errors are ignored:
+   * the summary is then not saved.
+   * @param f the database file
+   * @param fp the fingerprint of the file when it was read, see <code>DiskCache.fingerprint</code>
+   * @param s the summary
+   * @param dbg if true some debug information is printed */
+  static void put(final java.io.File f, final long[] fp, final DatabaseSummary s, boolean dbg) {
+    if(fp == null || s.error != null) {return;}
+    java.io.File sf = cache.put(f.getAbsolutePath(), new DiskCache.EntryWriter() {
+        @Override public void write(java.io.DataOutputStream ds) throws Exception {
+            ds.writeUTF(HEADER);
+            ds.writeUTF(f.getAbsolutePath());
+            for(long l : fp) {ds.writeLong(l);}
+            ds.writeInt(s.size());
+            for(int i = 0; i < s.size(); i++) {
+                ds.writeUTF(s.products.get(i));
+                ds.writeUTF(s.reactions.get(i));
+                ds.writeBoolean(s.redox.get(i));
+            }
+            ds.writeInt(s.reactants.size());
+            for(java.util.Map.Entry<String, Integer> e : s.reactants.entrySet()) {
+                ds.writeUTF(e.getKey());
+                ds.writeInt(e.getValue());
+            }
+            writeStrings(ds, s.reactantWithoutCoef);
+            writeStrings(ds, s.coefWithoutReactant);
+            writeStrings(ds, s.chargeImbalance);
+            writeStrings(ds, s.protonConflict);
+            writeStrings(ds, s.itemsNames);
+            writeStrings(ds, s.references);
+        }
+    }, dbg);
+    if(sf != null && dbg) {System.out.println("Summary of \""+f.getName()+"\" saved in file \""+sf.getName()+"\"");}
+  } //put
+
+  private static void writeStrings(java.io.DataOutputStream ds, java.util.Collection<String> c) throws java.io.IOException {
+    ds.writeInt(c.size());
+    for(String t : c) {ds.writeUTF(t);}
+  }
+  //</editor-fold>
+
+}
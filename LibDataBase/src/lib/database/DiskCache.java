@@ -0,0 +1,160 @@
+package lib.database;
+
+/** A folder with cached results on disk, used for example by
+ * <code>DatabaseSummary</code> and by the search cache of program "DataBase".
+ * Each entry is a file whose name is a hash (SHA-1) of the key of the entry.
+ * Entries are written into a temporary file which is renamed when complete,
+ * because another program may be reading the cache at the same time. Only
+ * the most recently used entries are kept: the modification date of a file
+ * is changed when the entry is used.
+ * <p>
+ * The folders are in ".config/eq-diagr" in the user's home directory.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public class DiskCache {
+  /** fingerprints of the files already calculated: for each file name
+   * the length, the modification date and the checksum */
+  private static final java.util.HashMap<String, long[]> fingerprints = new java.util.HashMap<String, long[]>();
+  private static final String SLASH = java.io.File.separator;
+  private static final String nl = System.getProperty("line.separator");
+
+  private final String folder;
+  private final String extension;
+  private final int maxEntries;
+
+  /** Writes the contents of an entry */
+  public interface EntryWriter {
+    /** @param ds where the entry is written
+     * @throws Exception if the entry can not be written */
+    void write(java.io.DataOutputStream ds) throws Exception;
+  }
+
+  /** @param folder the name of the folder, in ".config/eq-diagr" in the user's home directory
+   * @param extension the file name extension of the entries, for example ".cache"
+   * @param maxEntries the maximum number of entries kept */
+  public DiskCache(String folder, String extension, int maxEntries) {
+    this.folder = folder;
+    this.extension = extension;
+    this.maxEntries = maxEntries;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="fingerprint">
+  /** @param f a file
+   * @return the length, the modification date and the CRC-32 checksum of the
+   * contents of a file, or null if the file can not be read. The value is
+   * remembered as long as the length and the modification date of the file
+   * are not changed */
+  public static long[] fingerprint(java.io.File f) {
+    String name = f.getAbsolutePath();
+    long length = f.length(), date = f.lastModified();
+    synchronized(fingerprints) {
+      long[] c = fingerprints.get(name);
+      if(c != null && c[0] == length && c[1] == date) {return c;}
+    }
+    java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+    java.io.InputStream is = null;
+    try {
+        is = new java.io.FileInputStream(f);
+        byte[] b = new byte[65536];
+        int n;
+        while((n = is.read(b)) > 0) {crc.update(b, 0, n);}
+    } catch (java.io.IOException ex) {return null;}
+    finally {
+        if(is != null) {try {is.close();} catch (java.io.IOException ex) {}}
+    }
+    long[] c = new long[]{length, date, crc.getValue()};
+    synchronized(fingerprints) {fingerprints.put(name, c);}
+    return c;
+  } //fingerprint
+  //</editor-fold>
+
+  /** @param key the key of an entry
+   * @return the file for the entry (which may not exist), or null if the
+   * user's home directory is not known */
+  public java.io.File entryFile(String key) {
+    String home = System.getProperty("user.home");
+    if(key == null || home == null || home.trim().length() <=0) {return null;}
+    if(home.endsWith(SLASH)) {home = home.substring(0, home.length()-1);}
+    StringBuilder name = new StringBuilder();
+    try {
+        byte[] h = java.security.MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+        for(byte b : h) {name.append(String.format("%02x", b & 0xff));}
+    } catch (Exception ex) {return null;}
+    return new java.io.File(home+SLASH+".config"+SLASH+"eq-diagr"+SLASH+folder+SLASH+name.toString()+extension);
+  } //entryFile
+
+  /** Marks an entry as the most recently used one
+   * @param f the file of the entry, see <code>entryFile</code> */
+  public void used(java.io.File f) {f.setLastModified(System.currentTimeMillis());}
+
+  //<editor-fold defaultstate="collapsed" desc="put">
+  /** Saves an entry. The least recently used entries are deleted if there are
+   * more than the maximum number. Errors are ignored: the entry is then not saved.
+   * @param key the key of the entry
+   * @param w writes the contents of the entry
+   * @param dbg if true some debug information is printed
+   * @return the file of the entry, or null if it could not be saved */
+  public java.io.File put(String key, EntryWriter w, boolean dbg) {
+    java.io.File f = entryFile(key);
+    if(f == null) {return null;}
+    java.io.File dir = f.getParentFile();
+    if(!dir.isDirectory() && !dir.mkdirs()) {
+        if(dbg) {System.out.println("Note: could not create the cache folder \""+dir.getPath()+"\"");}
+        return null;
+    }
+    java.io.File tmp;
+    try {tmp = java.io.File.createTempFile(f.getName(), ".tmp", dir);}
+    catch (java.io.IOException ex) {return null;}
+    java.io.DataOutputStream ds = null;
+    boolean ok = false;
+    try {
+        ds = new java.io.DataOutputStream(new java.io.BufferedOutputStream(new java.io.FileOutputStream(tmp)));
+        w.write(ds);
+        ok = true;
+    } catch (Exception ex) {
+        if(dbg) {System.out.println("Note: could not write cache file \""+tmp.getPath()+"\""+nl+"   "+ex.toString());}
+    } finally {
+        if(ds != null) {try {ds.close();} catch (java.io.IOException ex) {ok = false;}}
+    }
+    // another program may be reading the cache: the file is renamed when complete
+    if(ok) {
+        f.delete();
+        ok = tmp.renameTo(f);
+    }
+    if(!ok) {tmp.delete(); return null;}
+    prune(dir);
+    return f;
+  } //put
+
+  /** Deletes the least recently used entries if there are more than <code>maxEntries</code> */
+  private void prune(java.io.File dir) {
+    java.io.File[] files = dir.listFiles(new java.io.FilenameFilter() {
+        @Override public boolean accept(java.io.File d, String name) {return name.endsWith(extension);}
+    });
+    if(files == null || files.length <= maxEntries) {return;}
+    java.util.Arrays.sort(files, new java.util.Comparator<java.io.File>() {
+        @Override public int compare(java.io.File f1, java.io.File f2) {
+            long d = f2.lastModified() - f1.lastModified();
+            return d > 0 ? 1 : (d < 0 ? -1 : 0);
+        }
+    });
+    for(int i = maxEntries; i < files.length; i++) {files[i].delete();}
+  } //prune
+  //</editor-fold>
+
+}
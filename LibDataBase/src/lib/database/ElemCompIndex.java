@@ -0,0 +1,111 @@
+package lib.database;
+
+/** An index of the elements and components read from the element-reactant
+ * files, so that the components of a chemical element, or the entries for
+ * a given component, are found without going through the whole list.
+ * The list is an array list of String[3] objects:<br>
+ * [0] contains the element name (e.g. "C"),<br>
+ * [1] the component formula ("CN-" or "Fe+2"),<br>
+ * [2] the component name ("cyanide" or null).
+ * <p>
+ * Components are looked up either by name, where equivalent names (as given
+ * by <code>Util.nameCompare</code>) are the same component, or by the exact
+ * formula. The index does not change if the list is changed afterwards:
+ * a new index must then be made. It may be used by several threads.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see LibDB#getElements(java.awt.Component, boolean, lib.database.ProgramDataDB) getElements
+ * @see ProgramDataDB#elemComp elemComp
+ * @author Ignasi Puigdomenech */
+public class ElemCompIndex {
+  /** the entries for each component name, in the form given by
+   * <code>ReactionKey.canonicalName</code> */
+  private final java.util.HashMap<String, java.util.List<String[]>> byName =
+          new java.util.HashMap<String, java.util.List<String[]>>();
+  /** the entries for each chemical element */
+  private final java.util.HashMap<String, java.util.List<String[]>> byElement =
+          new java.util.HashMap<String, java.util.List<String[]>>();
+  /** the number of entries for each component formula */
+  private final java.util.HashMap<String, Integer> formulas = new java.util.HashMap<String, Integer>();
+  private static final java.util.List<String[]> NONE = java.util.Collections.emptyList();
+
+  /** An empty index */
+  public ElemCompIndex() {}
+
+  /** Makes the index of a list of elements and components
+   * @param elemComp array list of String[3] objects (chemical element,
+   * component formula, component name) */
+  public ElemCompIndex(java.util.List<String[]> elemComp) {
+    StringBuilder sb = new StringBuilder();
+    for(String[] ec : elemComp) {
+      if(ec == null) {continue;}
+      if(ec[1] != null) {
+        add(byName, ReactionKey.canonicalName(ec[1], sb), ec);
+        Integer n = formulas.get(ec[1]);
+        formulas.put(ec[1], (n == null ? 1 : n+1));
+      }
+      if(ec[0] != null) {add(byElement, ec[0], ec);}
+    }
+  }
+
+  private static void add(java.util.HashMap<String, java.util.List<String[]>> map, String key, String[] ec) {
+    java.util.List<String[]> l = map.get(key);
+    if(l == null) {
+        l = new java.util.ArrayList<String[]>(2);
+        map.put(key, l);
+    }
+    l.add(ec);
+  }
+
+  /** @param component a component name, for example "Fe+3"
+   * @return true if there is an entry for a component with an equivalent name
+   * (as given by <code>Util.nameCompare</code>) */
+  public boolean contains(String component) {
+    return !withComponent(component).isEmpty();
+  }
+
+  /** @param component a component name, for example "SO4-2"
+   * @return the entries (chemical element, component formula, component name)
+   * for components with an equivalent name (as given by <code>Util.nameCompare</code>),
+   * in the same order as in the list. The list must not be changed. */
+  public java.util.List<String[]> withComponent(String component) {
+    if(component == null) {return NONE;}
+    java.util.List<String[]> l = byName.get(ReactionKey.canonicalName(component, new StringBuilder()));
+    return l == null ? NONE : java.util.Collections.unmodifiableList(l);
+  }
+
+  /** @param element a chemical element, for example "S"
+   * @return the entries (chemical element, component formula, component name)
+   * for this element, in the same order as in the list. The list must not be changed. */
+  public java.util.List<String[]> withElement(String element) {
+    java.util.List<String[]> l = byElement.get(element);
+    return l == null ? NONE : java.util.Collections.unmodifiableList(l);
+  }
+
+  /** @param formula a component formula
+   * @return how many entries there are with exactly this component formula */
+  public int formulaCount(String formula) {
+    Integer n = formulas.get(formula);
+    return n == null ? 0 : n;
+  }
+
+  /** @return the different component formulas in the list */
+  public java.util.Set<String> formulas() {
+    return java.util.Collections.unmodifiableSet(formulas.keySet());
+  }
+
+}
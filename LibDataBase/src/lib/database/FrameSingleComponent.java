@@ -555,24 +555,21 @@ public class FrameSingleComponent extends javax.swing.JFrame {
     jLabelSpecies.setText(" ");
 
   Thread srch = new Thread() {@Override public void run() {
-    boolean fistComplex = true;
     n = 0;
     int j;
     boolean fnd;
-    Complex cmplx = null;
     String errMsg = null;
+    // all databases are read at the same time
+    java.util.List<Complex> all;
+    try {all = hs.getAllComplexes();}
+    catch (LibSearch.LibSearchException ex) {
+        String msg = ex.toString();
+        MsgExceptn.showErrMsg(FrameSingleComponent.this,msg,1);
+        System.err.println(Util.stack2string(ex));
+        all = new java.util.ArrayList<Complex>();
+    }
 
-    while(true) {
-        try {
-            cmplx = hs.getComplex(fistComplex);
-            //Thread.sleep(1);
-        } catch (LibSearch.LibSearchException ex) {
-            hs.libSearchClose();
-            String msg = ex.toString()+nl+"when reading complex nbr."+(n+1);
-            MsgExceptn.showErrMsg(FrameSingleComponent.this,msg,1);
-            System.err.println(Util.stack2string(ex));
-        }
-        if(cmplx == null) {break;}
+    for(Complex cmplx : all) {
         if(cmplx.name.startsWith("@")) {
             cmplx.name = cmplx.name.substring(1);
               j = 0;
@@ -629,8 +626,7 @@ public class FrameSingleComponent extends javax.swing.JFrame {
                 }
             } //if fnd
         } // starts with "@"?
-        fistComplex = false;
-    } //while
+    } //for cmplx
     n = sortedModelComplexes.getSize();
     javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
       if(pd.dataBasesList.size() >1) {
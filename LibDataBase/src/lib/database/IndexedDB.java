@@ -0,0 +1,379 @@
+package lib.database;
+
+import lib.common.Util;
+
+/** Reads and writes "indexed" binary databases of reactions.
+ * <p>
+ * The original binary format (see <code>LibDB.writeBinCmplx</code>) is a
+ * sequence of records which must be read one after the other. In the indexed
+ * format the file starts with a header, followed by:<br>
+ * - a table with all the text (names, components, references and comments),
+ * each different text is stored only once;<br>
+ * - the data in columns of fixed length: all names (as numbers in the text
+ * table), all logK values, all delta-H values, etc;<br>
+ * - an index giving, for each component, the reactions where it takes part.
+ * <p>
+ * The file is mapped into memory when opened, and any reaction may be
+ * obtained directly with <code>getComplex(int)</code> without reading the rest
+ * of the file. The reactions where a component takes part are given by
+ * <code>recordsWith(String)</code>.
+ * <p>
+ * The first two bytes of the file are zero. In the original binary format the
+ * first two bytes are the length of the name of the first reaction, which may
+ * not be zero. Both formats use the file extension ".db", and
+ * <code>isIndexedDB</code> tells them apart.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see LibDB#writeBinCmplx(java.io.DataOutputStream, lib.database.Complex) writeBinCmplx
+ * @author Ignasi Puigdomenech */
+public class IndexedDB {
+  /** the version of the file format written by this class */
+  public static final int VERSION = 1;
+  private static final byte[] MAGIC = {0, 0, 'E', 'Q', 'D', 'B'};
+  /** magic (6 bytes) + version, nbr of reactions, nbr of texts, nbr of index keys
+   * and length of the text table (4 bytes each) */
+  private static final int HEADER_LENGTH = MAGIC.length + 5*4;
+  private static final java.nio.charset.Charset UTF8 = java.nio.charset.Charset.forName("UTF-8");
+  /** New-line character(s) to substitute "\n" */
+  private static final String nl = System.getProperty("line.separator");
+
+  //<editor-fold defaultstate="collapsed" desc="private fields">
+  private final String fileName;
+  private final java.nio.ByteBuffer buf;
+  /** the number of reactions */
+  private final int nRecords;
+  /** the number of different texts */
+  private final int nStrings;
+  /** the number of components in the index */
+  private final int nKeys;
+  /** the texts already decoded from the text table */
+  private final String[] strings;
+  /** positions in the file of the different sections */
+  private final int posStringStart, posStringBytes, posName, posLogK, posDeltH, posDeltCp,
+          posProton, posComp, posNumcomp, posReference, posComment,
+          posKey, posKeyStart, posRecords;
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="constructor">
+  private IndexedDB(String fileName0, java.nio.ByteBuffer buf0) throws IndexedDBException {
+    fileName = fileName0;
+    buf = buf0;
+    if(buf.capacity() < HEADER_LENGTH) {throw new IndexedDBException("Error: file \""+fileName+"\""+nl+"is truncated.");}
+    for(int i = 0; i < MAGIC.length; i++) {
+        if(buf.get(i) != MAGIC[i]) {throw new IndexedDBException("Error: not an indexed binary database:"+nl+"   \""+fileName+"\"");}
+    }
+    int p = MAGIC.length;
+    int version = buf.getInt(p);
+    if(version < 1 || version > VERSION) {
+        throw new IndexedDBException("Error: indexed binary database version "+version+nl+
+                "   in file \""+fileName+"\""+nl+
+                "is not supported; this program reads up to version "+VERSION);
+    }
+    nRecords = buf.getInt(p+4);
+    nStrings = buf.getInt(p+8);
+    nKeys = buf.getInt(p+12);
+    int stringBytes = buf.getInt(p+16);
+    if(nRecords < 0 || nStrings < 1 || nKeys < 0 || stringBytes < 0) {
+        throw new IndexedDBException("Error: bad header in file \""+fileName+"\"");
+    }
+    // the sections follow each other in this order
+    long q = HEADER_LENGTH;
+    posStringStart = (int)q;    q = q + 4L*(nStrings+1);
+    posStringBytes = (int)q;    q = q + stringBytes;
+    posName = (int)q;           q = q + 4L*nRecords;
+    posLogK = (int)q;           q = q + 8L*nRecords;
+    posDeltH = (int)q;          q = q + 8L*nRecords;
+    posDeltCp = (int)q;         q = q + 8L*nRecords;
+    posProton = (int)q;         q = q + 8L*nRecords;
+    posComp = (int)q;           q = q + 4L*Complex.NDIM*nRecords;
+    posNumcomp = (int)q;        q = q + 8L*Complex.NDIM*nRecords;
+    posReference = (int)q;      q = q + 4L*nRecords;
+    posComment = (int)q;        q = q + 4L*nRecords;
+    posKey = (int)q;            q = q + 4L*nKeys;
+    posKeyStart = (int)q;       q = q + 4L*(nKeys+1);
+    posRecords = (int)q;
+    if(q > buf.capacity()) {throw new IndexedDBException("Error: file \""+fileName+"\""+nl+"is truncated.");}
+    int nIndexed = buf.getInt(posKeyStart + 4*nKeys);
+    if(nIndexed < 0 || q + 4L*nIndexed != buf.capacity()) {
+        throw new IndexedDBException("Error: file \""+fileName+"\""+nl+"has a bad length.");
+    }
+    strings = new String[nStrings];
+  } //constructor
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="isIndexedDB">
+  /** Checks the first bytes of a file.
+   * @param f a database file
+   * @return true if the file is an indexed binary database; false if it is
+   * a binary database in the original sequential format, or a text file, or
+   * if it can not be read */
+  public static boolean isIndexedDB(java.io.File f) {
+    if(f == null || !f.isFile() || f.length() < HEADER_LENGTH) {return false;}
+    byte[] b = new byte[MAGIC.length];
+    java.io.DataInputStream dis = null;
+    try {
+        dis = new java.io.DataInputStream(new java.io.FileInputStream(f));
+        dis.readFully(b);
+    } catch (java.io.IOException ex) {return false;}
+    finally {
+        if(dis != null) {try {dis.close();} catch (java.io.IOException ex) {}}
+    }
+    return java.util.Arrays.equals(b, MAGIC);
+  } //isIndexedDB
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="open">
+  /** Maps an indexed binary database into memory. The file is not read:
+   * the reactions are obtained when needed. The instance returned may be
+   * used by several threads at the same time.
+   * @param f an indexed binary database
+   * @return an instance to get the reactions in the file
+   * @throws lib.database.IndexedDB.IndexedDBException */
+  public static IndexedDB open(java.io.File f) throws IndexedDBException {
+    if(f == null) {throw new IndexedDBException("Error: file = null in \"IndexedDB.open\"");}
+    if(f.length() > Integer.MAX_VALUE) {throw new IndexedDBException("Error: file \""+f.getPath()+"\""+nl+"is too large.");}
+    java.io.RandomAccessFile raf = null;
+    try {
+        raf = new java.io.RandomAccessFile(f, "r");
+        java.nio.channels.FileChannel ch = raf.getChannel();
+        // the mapping remains valid after the channel is closed
+        java.nio.ByteBuffer b = ch.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        return new IndexedDB(f.getPath(), b);
+    } catch (java.io.IOException ex) {
+        throw new IndexedDBException("Error: "+ex.toString()+nl+"while opening file \""+f.getPath()+"\"");
+    } finally {
+        if(raf != null) {try {raf.close();} catch (java.io.IOException ex) {}}
+    }
+  } //open
+  //</editor-fold>
+
+  /** @return the number of reactions in the database */
+  public int size() {return nRecords;}
+
+  /** @return the name of the file */
+  public String getFileName() {return fileName;}
+
+  //<editor-fold defaultstate="collapsed" desc="getName(r)">
+  /** @param r the number of the reaction, from zero to <code>size()-1</code>
+   * @return the name of the reaction product */
+  public String getName(int r) {
+    return string(buf.getInt(posName + 4*r));
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="getComponent(r,i) and getNumcomp(r,i)">
+  /** @param r the number of the reaction, from zero to <code>size()-1</code>
+   * @param i the number of the component in the reaction, from zero to <code>Complex.NDIM-1</code>
+   * @return the name of the component, or "" if there is none */
+  public String getComponent(int r, int i) {
+    return string(buf.getInt(posComp + 4*(i*nRecords + r)));
+  }
+
+  /** @param r the number of the reaction, from zero to <code>size()-1</code>
+   * @param i the number of the component in the reaction, from zero to <code>Complex.NDIM-1</code>
+   * @return the stoichiometric coefficient of the component */
+  public double getNumcomp(int r, int i) {
+    return buf.getDouble(posNumcomp + 8*(i*nRecords + r));
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="getComplex(r)">
+  /** @param r the number of the reaction, from zero to <code>size()-1</code>
+   * @return a new <code>Complex</code> with the data of the reaction
+   * @throws IndexOutOfBoundsException if r is not a reaction number */
+  public Complex getComplex(int r) {
+    if(r < 0 || r >= nRecords) {throw new IndexOutOfBoundsException("reaction "+r+", size "+nRecords);}
+    Complex c = new Complex();
+    c.name = string(buf.getInt(posName + 4*r));
+    c.constant = buf.getDouble(posLogK + 8*r);
+    c.deltH = buf.getDouble(posDeltH + 8*r);
+    c.deltCp = buf.getDouble(posDeltCp + 8*r);
+    for(int i = 0; i < Complex.NDIM; i++) {
+        c.component[i] = string(buf.getInt(posComp + 4*(i*nRecords + r)));
+        c.numcomp[i] = buf.getDouble(posNumcomp + 8*(i*nRecords + r));
+    }
+    c.proton = buf.getDouble(posProton + 8*r);
+    c.reference = string(buf.getInt(posReference + 4*r));
+    c.comment = string(buf.getInt(posComment + 4*r));
+    return c;
+  } //getComplex
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="recordsWith(component)">
+  /** Finds the reactions where a component has a stoichiometric coefficient
+   * different from zero. Component names are compared with
+   * <code>Util.nameCompare</code>, so "Fe+3" and "fe 3+" are the same component.
+   * Note that H+ is included in the index only in those reactions where it is
+   * given as a component, not in the reactions where it is given in the
+   * "proton" column.
+   * @param component the name of a component, e.g. "CO3-2"
+   * @return the numbers of the reactions, in increasing order
+   * @see lib.common.Util#nameCompare(java.lang.String, java.lang.String) nameCompare */
+  public int[] recordsWith(String component) {
+    // the same component may be written in different ways ("Fe+3" and "Fe 3+")
+    java.util.TreeSet<Integer> found = new java.util.TreeSet<Integer>();
+    for(int k = 0; k < nKeys; k++) {
+        if(!Util.nameCompare(string(buf.getInt(posKey + 4*k)), component)) {continue;}
+        int start = buf.getInt(posKeyStart + 4*k), end = buf.getInt(posKeyStart + 4*(k+1));
+        for(int j = start; j < end; j++) {found.add(buf.getInt(posRecords + 4*j));}
+    }
+    int[] rs = new int[found.size()];
+    int j = 0;
+    for(Integer r : found) {rs[j] = r; j++;}
+    return rs;
+  } //recordsWith
+  //</editor-fold>
+
+  /** @return the text number <code>s</code> in the text table */
+  private String string(int s) {
+    String t = strings[s];
+    if(t == null) {
+        int start = buf.getInt(posStringStart + 4*s), end = buf.getInt(posStringStart + 4*(s+1));
+        byte[] b = new byte[end-start];
+        for(int i = 0; i < b.length; i++) {b[i] = buf.get(posStringBytes + start + i);}
+        t = new String(b, UTF8);
+        strings[s] = t;
+    }
+    return t;
+  } //string
+
+  //<editor-fold defaultstate="collapsed" desc="write">
+  /** Writes reactions into a file using the indexed binary format.
+   * @param f the file to write. It is overwritten if it exists
+   * @param data the reactions to write, in the order they will be stored
+   * @throws lib.database.IndexedDB.IndexedDBException */
+  public static void write(java.io.File f, java.util.Collection<Complex> data) throws IndexedDBException {
+    if(f == null) {throw new IndexedDBException("Error: file = null in \"IndexedDB.write\"");}
+    java.io.OutputStream out = null;
+    try {
+        out = new java.io.BufferedOutputStream(new java.io.FileOutputStream(f));
+        write(out, f.getPath(), data);
+    } catch (java.io.IOException ex) {
+        throw new IndexedDBException("Error: "+ex.toString()+nl+"while writing file \""+f.getPath()+"\"");
+    } finally {
+        if(out != null) {try {out.close();} catch (java.io.IOException ex) {}}
+    }
+  } //write
+
+  /** Writes reactions using the indexed binary format. The output stream
+   * is flushed but not closed. If the current thread is interrupted the
+   * reactions are not written, or only partly written.
+   * @param out where the reactions are written
+   * @param fileName the name of the file, used in error messages
+   * @param data the reactions to write, in the order they will be stored
+   * @throws lib.database.IndexedDB.IndexedDBException */
+  public static void write(java.io.OutputStream out, String fileName, java.util.Collection<Complex> data)
+          throws IndexedDBException {
+    if(out == null) {throw new IndexedDBException("Error: out = null in \"IndexedDB.write\"");}
+    if(data == null) {throw new IndexedDBException("Error: data = null in \"IndexedDB.write\"");}
+    final int n = data.size();
+    // --- the table of texts
+    java.util.HashMap<String,Integer> stringNbr = new java.util.HashMap<String,Integer>();
+    java.util.ArrayList<byte[]> stringBytes = new java.util.ArrayList<byte[]>();
+    stringNbr.put("", 0);
+    stringBytes.add(new byte[0]);
+    // --- the columns
+    int[] name = new int[n], reference = new int[n], comment = new int[n];
+    int[][] comp = new int[Complex.NDIM][n];
+    double[] logK = new double[n], deltH = new double[n], deltCp = new double[n], proton = new double[n];
+    double[][] numcomp = new double[Complex.NDIM][n];
+    // --- the index: for each component (text number) the reactions
+    java.util.TreeMap<Integer, java.util.ArrayList<Integer>> index = new java.util.TreeMap<Integer, java.util.ArrayList<Integer>>();
+    int r = 0;
+    for(Complex c : data) {
+        if(Thread.currentThread().isInterrupted()) {
+            throw new IndexedDBException("Interrupted when writing file \""+fileName+"\"");
+        }
+        if(c == null || c.name == null || c.name.length() <=0) {
+            throw new IndexedDBException("Error: empty reaction nbr."+(r+1)+nl+"when writing file \""+fileName+"\"");
+        }
+        name[r] = stringNbr(c.name, stringNbr, stringBytes);
+        logK[r] = c.constant;
+        deltH[r] = c.deltH;
+        deltCp[r] = c.deltCp;
+        proton[r] = c.proton;
+        for(int i = 0; i < Complex.NDIM; i++) {
+            comp[i][r] = stringNbr(c.component[i], stringNbr, stringBytes);
+            numcomp[i][r] = c.numcomp[i];
+            if(comp[i][r] == 0 || Math.abs(c.numcomp[i]) < 0.001) {continue;}
+            java.util.ArrayList<Integer> rs = index.get(comp[i][r]);
+            if(rs == null) {rs = new java.util.ArrayList<Integer>(); index.put(comp[i][r], rs);}
+            if(rs.isEmpty() || rs.get(rs.size()-1) != r) {rs.add(r);}
+        }
+        reference[r] = stringNbr(c.reference, stringNbr, stringBytes);
+        comment[r] = stringNbr(c.comment, stringNbr, stringBytes);
+        r++;
+    }
+    int nStrings = stringBytes.size();
+    int nBytes = 0;
+    for(byte[] b : stringBytes) {nBytes = nBytes + b.length;}
+
+    if(Thread.currentThread().isInterrupted()) {
+        throw new IndexedDBException("Interrupted when writing file \""+fileName+"\"");
+    }
+    try {
+        java.io.DataOutputStream ds = new java.io.DataOutputStream(out);
+        ds.write(MAGIC);
+        ds.writeInt(VERSION);
+        ds.writeInt(n);
+        ds.writeInt(nStrings);
+        ds.writeInt(index.size());
+        ds.writeInt(nBytes);
+        int start = 0;
+        for(byte[] b : stringBytes) {ds.writeInt(start); start = start + b.length;}
+        ds.writeInt(start);
+        for(byte[] b : stringBytes) {ds.write(b);}
+        for(int i = 0; i < n; i++) {ds.writeInt(name[i]);}
+        for(int i = 0; i < n; i++) {ds.writeDouble(logK[i]);}
+        for(int i = 0; i < n; i++) {ds.writeDouble(deltH[i]);}
+        for(int i = 0; i < n; i++) {ds.writeDouble(deltCp[i]);}
+        for(int i = 0; i < n; i++) {ds.writeDouble(proton[i]);}
+        for(int j = 0; j < Complex.NDIM; j++) {for(int i = 0; i < n; i++) {ds.writeInt(comp[j][i]);}}
+        for(int j = 0; j < Complex.NDIM; j++) {for(int i = 0; i < n; i++) {ds.writeDouble(numcomp[j][i]);}}
+        for(int i = 0; i < n; i++) {ds.writeInt(reference[i]);}
+        for(int i = 0; i < n; i++) {ds.writeInt(comment[i]);}
+        for(Integer k : index.keySet()) {ds.writeInt(k);}
+        start = 0;
+        for(java.util.ArrayList<Integer> rs : index.values()) {ds.writeInt(start); start = start + rs.size();}
+        ds.writeInt(start);
+        for(java.util.ArrayList<Integer> rs : index.values()) {for(Integer i : rs) {ds.writeInt(i);}}
+        ds.flush();
+    } catch (java.io.IOException ex) {
+        throw new IndexedDBException("Error: "+ex.toString()+nl+"while writing file \""+fileName+"\"");
+    }
+  } //write
+
+  private static int stringNbr(String s, java.util.HashMap<String,Integer> stringNbr,
+          java.util.ArrayList<byte[]> stringBytes) {
+    if(s == null) {return 0;}
+    Integer k = stringNbr.get(s);
+    if(k == null) {
+        k = stringBytes.size();
+        stringNbr.put(s, k);
+        stringBytes.add(s.getBytes(UTF8));
+    }
+    return k;
+  } //stringNbr
+  //</editor-fold>
+
+  public static class IndexedDBException extends Exception {
+    private static final long serialVersionUID = 1L;
+    public IndexedDBException() {super();}
+    public IndexedDBException(String txt) {super(txt);}
+  }
+
+}
@@ -24,7 +24,9 @@ import lib.huvud.Div;
  * 
  * @author Ignasi Puigdomenech */
 public class LibDB {
-  public static final java.awt.Dimension screenSize = java.awt.Toolkit.getDefaultToolkit().getScreenSize();;
+  /** the size of the screen, or 800x600 if there is no display (for example
+   * when a database is converted from the command line) */
+  public static final java.awt.Dimension screenSize = getScreenSize();
   public static final int ELEMENTS = 104;
   /** electron, Hydrogen, Helium, Lithium... */
   public static String[] elementName = new String[113];
@@ -39,6 +41,12 @@ static { // static initializer
     setElementNames();
 } // static initializer
 
+  private static java.awt.Dimension getScreenSize() {
+    if(java.awt.GraphicsEnvironment.isHeadless()) {return new java.awt.Dimension(800,600);}
+    try {return java.awt.Toolkit.getDefaultToolkit().getScreenSize();}
+    catch (java.awt.HeadlessException ex) {return new java.awt.Dimension(800,600);}
+  }
+
   //<editor-fold defaultstate="collapsed" desc="setElementNames()">
   private static void setElementNames(){
       elementSymb[0]="e-"; elementSymb[1]="H"; elementSymb[2]="He";
@@ -121,6 +129,25 @@ static { // static initializer
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="getElements">
+ /** Reads (from the element-component files) the components (reactants) and
+  * the elements for the databases in <code>pd.dataBasesList</code>, and stores
+  * them in <code>pd.elemComp</code>. It also makes the index <code>pd.elemCompIndex</code>
+  * and sets <code>pd.foundH2O</code>.
+  * @param parent the owner of error messages
+  * @param dbg print debugging info
+  * @param pd the program data
+  * @return true if all is ok, false if some file is missing, etc
+  * @see #getElements(java.awt.Component, boolean, java.util.ArrayList, java.util.ArrayList) getElements */
+  public static boolean getElements(java.awt.Component parent, boolean dbg, ProgramDataDB pd) {
+    boolean ok = getElements(parent, dbg, pd.dataBasesList, pd.elemComp);
+    pd.elemCompIndex = new ElemCompIndex(pd.elemComp);
+    pd.foundH2O = false;
+    for(String[] elemComp : pd.elemComp) {
+        if(Util.isWater(elemComp[1])) {pd.foundH2O = true; break;}
+    }
+    return ok;
+  } //getElements(pd)
+
  /** Reads (from the element-component file) the components (reactants) and the elements and
   * stores them in elemCompStringArray.
   * <p>This routine should be called at the program start.
@@ -551,7 +578,8 @@ static { // static initializer
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="getTxtComplex">
-  /** Read a <code>Complex</code> from the text file "connected" to a BufferedReader
+  /** Read a <code>Complex</code> from the text file "connected" to a BufferedReader.
+   * To read all reactions in a large file <code>TxtDBparser</code> is faster.
    * @param br
    * @return
    * @throws ReadTxtCmplxException
@@ -563,10 +591,9 @@ static { // static initializer
     String line;
     try{
         while ((line = br.readLine()) != null){
-            if(line.trim().length()<=0 || line.trim().toUpperCase().startsWith("COMPLEX")
-                    || line.trim().startsWith("/")) {continue;}
+            if(TxtDBparser.isSkipped(line)) {continue;}
             try{
-                cmplx = Complex.fromString(line);
+                cmplx = TxtDBparser.parseLine(line);
             } catch (Complex.ReadComplexException ex) {
                 throw new ReadTxtCmplxException(ex.getMessage());
             }
@@ -2,7 +2,9 @@ package lib.database;
 
 import lib.common.MsgExceptn;
 
-/** Search reactions in the databases.
+/** Search reactions in the databases. The reactions may be obtained one at a
+ * time with <code>getComplex</code>, or all at once with <code>getAllComplexes</code>,
+ * which reads the database files in parallel.
  * <br>
  * Copyright (C) 2014-2017 I.Puigdomenech.
  * 
@@ -33,6 +35,10 @@ public class LibSearch {
   private java.io.DataInputStream dis;
   /** the text database being read */
   private java.io.BufferedReader br;
+  /** reads the reactions from <code>br</code> */
+  private TxtDBparser txt;
+  /** the indexed binary database being read */
+  private IndexedDB idb;
   /** if <code>binaryOrText</code> = 2 reading a binary database<br>
    * if <code>binaryOrText</code> = 1 reading text database<br>
    * if <code>binaryOrText</code> = 0 then all files are closed (e.g. when all have been read) */
@@ -59,6 +65,8 @@ public class LibSearch {
     openNextFile = true;
     dis = null;
     br = null;
+    txt = null;
+    idb = null;
     if(dataBaseslist == null) {throw new LibSearchException("Error: dataBaseslist = null in \"DBSearch\" constructor");}
     if(dataBaseslist.size() <=0) {throw new LibSearchException("Error: dataBaseslist is empty in \"DBSearch\" constructor");}
     this.localDBlist = dataBaseslist;
@@ -66,7 +74,8 @@ public class LibSearch {
 
   //<editor-fold defaultstate="collapsed" desc="getComplex(first)">
   /** Get the next "complex" (without checking if the complex fits with selected components).
-   * Both binary and text files will be read.
+   * Both binary and text files will be read. Binary files may be either in the
+   * original sequential format or in the indexed format (see <code>IndexedDB</code>).
    * This routine must NOT be called to convert database files (Text <=> Binary), because
    * it reads both binary and text files.
    * <p>On output:<br>
@@ -90,6 +99,7 @@ public class LibSearch {
         try{
             if(dis != null) {dis.close();} else if(br != null) {br.close();}
         } catch (java.io.IOException ioe) {MsgExceptn.msg(ioe.getMessage());}
+        dis = null; br = null; txt = null;
         complxFileName = localDBlist.get(db);
         if(complxFileName == null || complxFileName.length() <=0) {continue;}
         java.io.File dbf = new java.io.File(complxFileName);
@@ -104,12 +114,19 @@ public class LibSearch {
         cmplxNbr = 0;
         //--- text or binary?
         try{
+            idb = null;
             if(complxFileName.toLowerCase().endsWith("db")) { //--- binary file
                 binaryOrText = 2;
-                dis = new java.io.DataInputStream(new java.io.FileInputStream(dbf));
+                if(IndexedDB.isIndexedDB(dbf)) {
+                    try {idb = IndexedDB.open(dbf);}
+                    catch (IndexedDB.IndexedDBException ex) {throw new LibSearchException(ex.getMessage());}
+                } else {
+                    dis = new java.io.DataInputStream(new java.io.BufferedInputStream(new java.io.FileInputStream(dbf)));
+                }
             } else { //--- text file
                 binaryOrText = 1;
                 br = new java.io.BufferedReader(new java.io.FileReader(dbf));
+                txt = new TxtDBparser(br);
             } //--- text or binary?
         }
         catch (java.io.FileNotFoundException ex) {
@@ -129,7 +146,9 @@ public class LibSearch {
       while (true) {
         cmplxNbr++;
         
-        if(binaryOrText ==2) { //Binary complex database
+        if(binaryOrText ==2 && idb != null) { //Indexed binary database
+            if(cmplxNbr <= idb.size()) {complex = idb.getComplex((int)cmplxNbr-1);}
+        } else if(binaryOrText ==2) { //Binary complex database
             try {complex = LibDB.getBinComplex(dis);}
             catch (LibDB.ReadBinCmplxException ex) {
                 String msg = ex.getMessage()+nl+
@@ -139,8 +158,7 @@ public class LibSearch {
             }
         } else if(binaryOrText ==1) { // Text  complex database
             try {
-                try {complex = LibDB.getTxtComplex(br);}
-                catch (LibDB.EndOfFileException ex) {complex = null;}
+                complex = txt.next();
             }
             catch (LibDB.ReadTxtCmplxException ex) {
                 String msg = ex.getMessage()+nl+
@@ -159,6 +177,7 @@ public class LibSearch {
       db++;
       openNextFile = true;
       binaryOrText = 0;
+      idb = null;
     } //while sd.db < pd.dataBasesList.size()
 
     if(noFilesFound) { // this should not happen...
@@ -169,11 +188,144 @@ public class LibSearch {
   } //getComplex(firstComplex)
   //</editor-fold>
 
+  //<editor-fold defaultstate="collapsed" desc="getAllComplexes">
+  /** Reads all the reactions in all the databases. The files are read at
+   * the same time, each one in its own thread, and the reactions are
+   * returned in the same order as with <code>getComplex</code>: the reactions
+   * in the first database, followed by those in the second, etc.
+   * Therefore a reaction in a database may still replace a reaction found
+   * in the databases before it in the list.
+   * @return all the reactions, without checking if they fit with selected components
+   * @throws LibSearch.LibSearchException
+   * @see #getComplexesByFile() getComplexesByFile */
+  public java.util.List<Complex> getAllComplexes() throws LibSearchException {
+    java.util.List<java.util.List<Complex>> byFile = getComplexesByFile();
+    int n = 0;
+    for(java.util.List<Complex> l : byFile) {n = n + l.size();}
+    java.util.ArrayList<Complex> all = new java.util.ArrayList<Complex>(n);
+    for(java.util.List<Complex> l : byFile) {all.addAll(l);}
+    return all;
+  } //getAllComplexes
+
+  /** Reads all the reactions in all the databases, each file in its own
+   * thread (at most as many threads as processors are available).
+   * @return a list for each database, in the same order as the list of
+   * databases given to the constructor (empty names are skipped), with the
+   * reactions in the file. If a thread is interrupted, the lists of the
+   * files not yet read are empty
+   * @throws LibSearch.LibSearchException if any of the files can not be read */
+  public java.util.List<java.util.List<Complex>> getComplexesByFile() throws LibSearchException {
+    java.util.ArrayList<String> names = new java.util.ArrayList<String>();
+    for(String name : localDBlist) {if(name != null && name.length() >0) {names.add(name);}}
+    java.util.ArrayList<java.util.List<Complex>> byFile = new java.util.ArrayList<java.util.List<Complex>>(names.size());
+    if(names.isEmpty()) {throw new LibSearchException("None of the databases could be found.");}
+    // check that all files exist before starting to read them
+    for(String name : names) {
+        java.io.File dbf = new java.io.File(name);
+        if(!dbf.exists() || !dbf.canRead()) {
+            String msg = "Can not open file"+nl+
+                         "    \""+name+"\".";
+            if(!dbf.exists()) {msg = msg +nl+ "(the file does not exist)."+nl+
+                                              "Search terminated";}
+            throw new LibSearchException(msg);
+        }
+    }
+    int nThreads = Math.max(1, Math.min(names.size(), Runtime.getRuntime().availableProcessors()));
+    if(nThreads == 1) {
+        for(String name : names) {byFile.add(readFile(name));}
+        return byFile;
+    }
+    java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(nThreads);
+    try {
+        java.util.ArrayList<java.util.concurrent.Future<java.util.List<Complex>>> results =
+                new java.util.ArrayList<java.util.concurrent.Future<java.util.List<Complex>>>(names.size());
+        for(final String name : names) {
+            results.add(pool.submit(new java.util.concurrent.Callable<java.util.List<Complex>>() {
+                @Override public java.util.List<Complex> call() throws LibSearchException {return readFile(name);}
+            }));
+        }
+        // the results are collected in the order of the list of databases
+        for(java.util.concurrent.Future<java.util.List<Complex>> f : results) {
+            try {byFile.add(f.get());}
+            catch (java.util.concurrent.ExecutionException ex) {
+                if(ex.getCause() instanceof LibSearchException) {throw (LibSearchException)ex.getCause();}
+                throw new LibSearchException("Error: "+ex.getCause().toString()+nl+"in \"getComplexesByFile\"");
+            }
+        }
+    } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        while(byFile.size() < names.size()) {byFile.add(new java.util.ArrayList<Complex>());}
+    } finally {
+        pool.shutdownNow();
+    }
+    return byFile;
+  } //getComplexesByFile
+
+  /** Reads all reactions in a database file, binary or text
+   * @param name the name of the file
+   * @return the reactions in the file
+   * @throws LibSearch.LibSearchException */
+  private java.util.List<Complex> readFile(String name) throws LibSearchException {
+    java.io.File dbf = new java.io.File(name);
+    java.util.ArrayList<Complex> list = new java.util.ArrayList<Complex>();
+    boolean binary = name.toLowerCase().endsWith("db");
+    if(binary && IndexedDB.isIndexedDB(dbf)) {
+        IndexedDB idb;
+        try {idb = IndexedDB.open(dbf);}
+        catch (IndexedDB.IndexedDBException ex) {throw new LibSearchException(ex.getMessage());}
+        list.ensureCapacity(idb.size());
+        for(int r = 0; r < idb.size(); r++) {list.add(idb.getComplex(r));}
+        return list;
+    }
+    java.io.DataInputStream in = null;
+    java.io.Reader rd = null;
+    TxtDBparser parser = null;
+    long nbr = 0;
+    try {
+        if(binary) {
+            in = new java.io.DataInputStream(new java.io.BufferedInputStream(new java.io.FileInputStream(dbf)));
+        } else {
+            rd = new java.io.FileReader(dbf);
+            parser = new TxtDBparser(rd);
+        }
+        Complex complex;
+        while(!Thread.currentThread().isInterrupted()) {
+            nbr++;
+            if(binary) {
+                complex = LibDB.getBinComplex(in);
+            } else {
+                complex = parser.next();
+            }
+            if(complex == null) {break;} // end-of-file
+            list.add(complex);
+        }
+    } catch (java.io.FileNotFoundException ex) {
+        throw new LibSearchException("Error: "+ex.getMessage()+nl+
+                "while trying to open file: \""+name+"\"."+nl+"Search terminated");
+    } catch (LibDB.ReadBinCmplxException ex) {
+        throw new LibSearchException(ex.getMessage()+nl+
+                "reading reaction nbr. = "+nbr+" in \"getComplexesByFile\""+nl+
+                "from file: \""+name+"\"");
+    } catch (LibDB.ReadTxtCmplxException ex) {
+        throw new LibSearchException(ex.getMessage()+nl+
+                "reading reaction nbr. = "+nbr+" in \"getComplexesByFile\""+nl+
+                "from file: \""+name+"\"");
+    } finally {
+        try {
+            if(in != null) {in.close();}
+            if(rd != null) {rd.close();}
+        } catch (java.io.IOException ioe) {MsgExceptn.msg(ioe.getMessage());}
+    }
+    return list;
+  } //readFile
+  //</editor-fold>
+
   //<editor-fold defaultstate="collapsed" desc="libSearchClose">
   public void libSearchClose() {
     try{
         if(dis != null) {dis.close();} else if(br != null) {br.close();}
     } catch (java.io.IOException ioe) {MsgExceptn.exception(ioe.getMessage());}
+    idb = null;
     binaryOrText = 0;
     openNextFile = true;
   }
@@ -57,6 +57,9 @@ public class ProgramDataDB {
    * [2] the component name ("cyanide" or null), which is not really needed,
    * but used to help the user */
   public java.util.ArrayList<String[]> elemComp = new java.util.ArrayList<String[]>();
+  /** an index of <code>elemComp</code>, made when the element files are read
+   * @see LibDB#getElements(java.awt.Component, boolean, lib.database.ProgramDataDB) getElements */
+  public ElemCompIndex elemCompIndex = new ElemCompIndex();
   /** is water (H2O) found in elemComp? This is set when reading the element files.
    * @see ProgramDataDB#includeH2O includeH2O
    * @see ProgramDataDB#elemComp elemComp   */
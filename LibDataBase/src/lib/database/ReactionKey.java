@@ -0,0 +1,167 @@
+package lib.database;
+
+import lib.common.Util;
+
+/** A compact form of the reaction of a <code>Complex</code>, used when many
+ * reactions must be compared with each other, for example when database
+ * files are merged. The names of the reaction product and of the components
+ * are given as numbers (the same number for equivalent names, as given by
+ * <code>Util.nameCompare</code>) by a <code>ReactionKey.Table</code>, and only
+ * the components that are given are stored. Comparing two keys is therefore
+ * done without any String comparisons.
+ * <p>
+ * A key does not change if the Complex is changed afterwards: a new key
+ * must then be made.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see Complex#sameNameAndStoichiometry(lib.database.Complex, lib.database.Complex) sameNameAndStoichiometry
+ * @author Ignasi Puigdomenech */
+public class ReactionKey {
+  /** the number of the name of the reaction product, or -1 if the name is null */
+  public final int name;
+  /** the number of each component given in the reaction */
+  private final int[] comp;
+  /** the stoichiometric coefficient of each component in <code>comp</code> */
+  private final double[] coef;
+  /** true for the components in <code>comp</code> that are "H+" */
+  private final boolean[] isH;
+  /** the number of protons in the reaction */
+  public final double proton;
+  /** true if the electron is one of the reactants
+   * @see Complex#isRedox(lib.database.Complex) isRedox */
+  public final boolean redox;
+
+  private ReactionKey(int name, int[] comp, double[] coef, boolean[] isH, double proton, boolean redox) {
+    this.name = name;
+    this.comp = comp;
+    this.coef = coef;
+    this.isH = isH;
+    this.proton = proton;
+    this.redox = redox;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="sameNameAndStoichiometry">
+  /** Checks if the name of the two reaction products is equivalent and if
+   * the two reactions are the same, even if the order of the reactants differs.
+   * This is the same check as done by <code>Complex.sameNameAndStoichiometry</code>.
+   * Both keys must have been made by the same <code>ReactionKey.Table</code>.
+   * @param other another key
+   * @return true if the two reactions are equivalent */
+  public boolean sameNameAndStoichiometry(ReactionKey other) {
+    if(this.name != other.name) {return false;}
+    return sameStoichiometry(other);
+  }
+
+  /** Checks if the two reactions are the same, even if the order of the
+   * reactants differs. The names of the reaction products are not compared.
+   * Both keys must have been made by the same <code>ReactionKey.Table</code>.
+   * @param other another key
+   * @return true if the two reactions are equivalent */
+  public boolean sameStoichiometry(ReactionKey other) {
+    if(Math.abs(this.proton-other.proton) > 0.001) {return false;}
+    return contained(this, other) && contained(other, this);
+  }
+
+  /** @return true if all components in "k1" are found in "k2" with the same
+   * stoichiometric coefficient. A proton not found in "k2" is compared with
+   * the number of protons in "k2" */
+  private static boolean contained(ReactionKey k1, ReactionKey k2) {
+    for(int i=0; i < k1.comp.length; i++) {
+      int found = -1;
+      for(int i2=0; i2 < k2.comp.length; i2++) {
+        if(k1.comp[i] == k2.comp[i2]) {found = i2; break;}
+      }
+      if(found > -1) {
+        if(Math.abs(k1.coef[i]-k2.coef[found]) > 0.001) {return false;}
+      } else if(k1.isH[i]) {
+        if(Math.abs(k1.coef[i]-k2.proton) > 0.001) {return false;}
+      } else {return false;}
+    } //for i
+    return true;
+  } //contained
+  //</editor-fold>
+
+  /** @param speciesName a species name (not null)
+   * @param sb a StringBuilder used to make the name
+   * @return a form of the name where equivalent names (as given by
+   * <code>Util.nameCompare</code>) are equal: the charge plus the name
+   * without charge, where upper and lower case are equivalent */
+  static String canonicalName(String speciesName, StringBuilder sb) {
+    String bare = Util.nameOf(speciesName);
+    sb.setLength(0);
+    sb.append(Util.chargeOf(speciesName)).append(' ');
+    for(int i=0; i < bare.length(); i++) {
+        sb.append(Character.toLowerCase(Character.toUpperCase(bare.charAt(i))));
+    }
+    return sb.toString();
+  } //canonicalName
+
+  //<editor-fold defaultstate="collapsed" desc="class Table">
+  /** Gives numbers to species names, so that equivalent names
+   * (as given by <code>Util.nameCompare</code>) get the same number.
+   * The names are kept until the table is cleared. Not thread safe. */
+  public static class Table {
+    /** the number for each name found so far, as it was written */
+    private final java.util.HashMap<String, Integer> ids = new java.util.HashMap<String, Integer>();
+    /** the number for each name, in a form where equivalent names are equal */
+    private final java.util.HashMap<String, Integer> canonical = new java.util.HashMap<String, Integer>();
+    private final StringBuilder sb = new StringBuilder();
+
+    /** @param speciesName a species name
+     * @return a number that is the same for all equivalent names, or -1 if the name is null */
+    public int id(String speciesName) {
+      if(speciesName == null) {return -1;}
+      Integer id = ids.get(speciesName);
+      if(id != null) {return id;}
+      String c = canonicalName(speciesName, sb);
+      id = canonical.get(c);
+      if(id == null) {
+          id = canonical.size();
+          canonical.put(c, id);
+      }
+      ids.put(speciesName, id);
+      return id;
+    } //id
+
+    /** Makes the key of a reaction
+     * @param c a Complex
+     * @return the key */
+    public ReactionKey keyOf(Complex c) {
+      int n = 0;
+      for(int i=0; i < Complex.NDIM; i++) {
+        if(c.component[i] != null && c.component[i].length() >0) {n++;}
+      }
+      int[] comp = new int[n];
+      double[] coef = new double[n];
+      boolean[] isH = new boolean[n];
+      n = 0;
+      for(int i=0; i < Complex.NDIM; i++) {
+        if(c.component[i] == null || c.component[i].length() <=0) {continue;}
+        comp[n] = id(c.component[i]);
+        coef[n] = c.numcomp[i];
+        isH[n] = Util.isProton(c.component[i]);
+        n++;
+      }
+      return new ReactionKey(id(c.name), comp, coef, isH, c.proton, Complex.isRedox(c));
+    } //keyOf
+
+    /** Removes all names from the table */
+    public void clear() {ids.clear(); canonical.clear();}
+  } //class Table
+  //</editor-fold>
+
+}
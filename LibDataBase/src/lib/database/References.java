@@ -30,7 +30,6 @@ public class References {
   private String referenceFileName;
   /** the list with references found in "refFile" */
   private SortedProperties propertiesRefs = null;
-  private final java.awt.Dimension screenSize = java.awt.Toolkit.getDefaultToolkit().getScreenSize();
 
   private final String line = "- - - - -";
   /** New-line character(s) to substitute "\n" */
@@ -434,11 +433,11 @@ private class ReferenceDisplayDialog extends javax.swing.JDialog {
         left = Math.max(0,(parent.getX() + (parent.getWidth()/2) - this.getWidth()/2));
         top = Math.max(0,(parent.getY()+(parent.getHeight()/2)-this.getHeight()/2));
     } else {
-        left = Math.max(0,(screenSize.width-this.getWidth())/2);
-        top = Math.max(0,(screenSize.height-this.getHeight())/2);
+        left = Math.max(0,(LibDB.screenSize.width-this.getWidth())/2);
+        top = Math.max(0,(LibDB.screenSize.height-this.getHeight())/2);
     }
-    this.setLocation(Math.min(screenSize.width-this.getWidth()-20,left),
-                     Math.min(screenSize.height-this.getHeight()-20, top));
+    this.setLocation(Math.min(LibDB.screenSize.width-this.getWidth()-20,left),
+                     Math.min(LibDB.screenSize.height-this.getHeight()-20, top));
     //----
     if(refKeys == null || refKeys.isEmpty()) {
         jScrollPane.setVisible(false);
@@ -552,8 +551,8 @@ private class ReferenceDisplayDialog extends javax.swing.JDialog {
       int nw = Math.max(w, Math.round((float)windowSize.getWidth()));
       int nh = Math.max(h, Math.round((float)windowSize.getHeight()));
       int nx=x, ny=y;
-      if(x+nw > screenSize.width) {nx = screenSize.width - nw;}
-      if(y+nh > screenSize.height) {ny = screenSize.height -nh;}
+      if(x+nw > LibDB.screenSize.width) {nx = LibDB.screenSize.width - nw;}
+      if(y+nh > LibDB.screenSize.height) {ny = LibDB.screenSize.height -nh;}
       if(x!=nx || y!=ny) {this.setLocation(nx, ny);}
       if(w!=nw || h!=nh) {this.setSize(nw, nh);}
     }
@@ -0,0 +1,389 @@
+package lib.database;
+
+import lib.common.Util;
+
+/** Reads reactions from a text database. This gives the same results as
+ * <code>LibDB.getTxtComplex</code> (which uses <code>Complex.fromString</code>
+ * and <code>CSVparser</code>) but it is much faster for large databases:
+ * the text is read into a buffer and each line is split into its values
+ * within the buffer, numbers are obtained without making intermediate
+ * Strings, and the names of the components are shared among all reactions.
+ * <p>
+ * Lines with unusual contents (e.g. missing quotes or bad numbers) are
+ * given to <code>Complex.fromString</code>, so that the same errors are
+ * reported.
+ * <br>
+ * Copyright (C) 2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see Complex#fromString(java.lang.String) fromString
+ * @see LibDB#getTxtComplex(java.io.BufferedReader) getTxtComplex
+ * @author Ignasi Puigdomenech */
+public class TxtDBparser {
+  private final java.io.Reader rd;
+  /** the text read from <code>rd</code> but not yet used */
+  private final char[] buf;
+  private int bufPos = 0, bufEnd = 0;
+  /** true if the last line ended with "\r": a "\n" following it is skipped */
+  private boolean skipLF = false;
+  private boolean endOfFile = false;
+  /** the line being parsed */
+  private char[] line = new char[512];
+  private int lineLen = 0;
+  /** start and end of each value in <code>line</code>, or the text of the value if it was quoted */
+  private final int[] start = new int[Complex.NDATA], end = new int[Complex.NDATA];
+  private final String[] quoted = new String[Complex.NDATA];
+  private final StringBuilder sb = new StringBuilder(200);
+  /** the component names already read */
+  private String[] names = new String[256];
+  private int nNames = 0;
+  private static final int MAX_NAMES = 65536;
+  private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+          1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+  /** one parser for each thread, used by <code>parseLine</code> */
+  private static final ThreadLocal<TxtDBparser> LINE_PARSER = new ThreadLocal<TxtDBparser>() {
+      @Override protected TxtDBparser initialValue() {return new TxtDBparser(null);}
+  };
+
+  /** Creates a parser reading from a text database
+   * @param reader where the text is read from. It is not closed by this class. */
+  public TxtDBparser(java.io.Reader reader) {
+    rd = reader;
+    buf = (reader == null) ? new char[0] : new char[65536];
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="next">
+  /** Reads the next reaction. Empty lines, comment lines (starting with "/")
+   * and the header line (starting with "COMPLEX") are skipped.
+   * @return the next reaction, or null at the end of the file
+   * @throws LibDB.ReadTxtCmplxException */
+  public Complex next() throws LibDB.ReadTxtCmplxException {
+    if(rd == null) {return null;}
+    try {
+        while(readLine()) {
+            if(skip(line, lineLen)) {continue;}
+            Complex cmplx;
+            try {cmplx = parse();}
+            catch (Complex.ReadComplexException ex) {throw new LibDB.ReadTxtCmplxException(ex.getMessage());}
+            if(cmplx != null) {return cmplx;}
+        }
+    } catch (java.io.IOException ex) {throw new LibDB.ReadTxtCmplxException(ex.getMessage());}
+    return null;
+  } //next
+
+  /** Reads the next line into <code>line</code>, the same as <code>BufferedReader.readLine</code>
+   * @return false at the end of the file */
+  private boolean readLine() throws java.io.IOException {
+    lineLen = 0;
+    boolean any = false;
+    while(true) {
+        if(bufPos >= bufEnd) {
+            if(endOfFile) {return any;}
+            int n = rd.read(buf, 0, buf.length);
+            if(n <= 0) {endOfFile = true; return any;}
+            bufPos = 0; bufEnd = n;
+        }
+        if(skipLF) {
+            skipLF = false;
+            if(buf[bufPos] == '\n') {bufPos++; continue;}
+        }
+        any = true;
+        int i = bufPos;
+        while(i < bufEnd && buf[i] != '\n' && buf[i] != '\r') {i++;}
+        append(buf, bufPos, i - bufPos);
+        if(i < bufEnd) { // end of line found
+            skipLF = (buf[i] == '\r');
+            bufPos = i + 1;
+            return true;
+        }
+        bufPos = i;
+    }
+  } //readLine
+
+  private void append(char[] b, int from, int n) {
+    if(lineLen + n > line.length) {line = java.util.Arrays.copyOf(line, Math.max(2*line.length, lineLen + n));}
+    System.arraycopy(b, from, line, lineLen, n);
+    lineLen = lineLen + n;
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="skip / parseLine">
+  /** @return true if the line is empty, or a comment, or the header line, as in <code>LibDB.getTxtComplex</code> */
+  private static boolean skip(char[] b, int len) {
+    int i = 0;
+    while(i < len && b[i] <= ' ') {i++;}
+    if(i >= len || b[i] == '/') {return true;}
+    final String t = "COMPLEX";
+    if(len - i < t.length()) {return false;}
+    for(int j = 0; j < t.length(); j++) {
+        if(Character.toUpperCase(b[i+j]) != t.charAt(j)) {return false;}
+    }
+    return true;
+  }
+
+  /** Checks a line read from a text database, as in <code>LibDB.getTxtComplex</code>
+   * @param text a line
+   * @return true if the line is empty, or a comment line (starting with "/"),
+   * or the header line (starting with "COMPLEX") */
+  static boolean isSkipped(String text) {
+    TxtDBparser p = LINE_PARSER.get();
+    p.setLine(text);
+    return skip(p.line, p.lineLen);
+  }
+
+  /** Gets a Complex from a line of a text database. The result is the
+   * same as that of <code>Complex.fromString</code>.
+   * @param text a line
+   * @return a Complex, or <code>null</code> if the reaction product is empty or "COMPLEX"
+   * @throws Complex.ReadComplexException */
+  static Complex parseLine(String text) throws Complex.ReadComplexException {
+    if(text == null) {return null;}
+    TxtDBparser p = LINE_PARSER.get();
+    p.setLine(text);
+    return p.parse();
+  }
+
+  private void setLine(String text) {
+    lineLen = 0;
+    if(text == null) {return;}
+    if(text.length() > line.length) {line = new char[Math.max(2*line.length, text.length())];}
+    text.getChars(0, text.length(), line, 0);
+    lineLen = text.length();
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="parse">
+  /** Gets a Complex from the text in <code>line</code>
+   * @return a Complex, or <code>null</code> if the reaction product is empty or "COMPLEX"
+   * @throws Complex.ReadComplexException */
+  private Complex parse() throws Complex.ReadComplexException {
+    final char[] b = line;
+    final int len = lineLen;
+    if(len <= 0) {return null;}
+    int i = 0;
+    while(i < len && b[i] <= ' ') {i++;}
+    if(i < len && b[i] == '/') {return null;}
+    // lines without separators (e.g. "@Fe+3"), or with errors, are left to Complex.fromString
+    boolean separator = false;
+    for(i = 0; i < len; i++) {if(b[i] == ';' || b[i] == ',') {separator = true; break;}}
+    if(!separator || !split()) {return Complex.fromString(new String(b, 0, len));}
+
+    Complex c = new Complex();
+    c.name = text(0, false);
+    if(c.name.equalsIgnoreCase("COMPLEX")) {return null;}
+    if(c.name.length() <= 0) {
+        for(int n = 1; n < (Complex.NDATA-1); n++) { // check that the reaction is empty. Comments are OK
+            if(!isBlank(n)) {return Complex.fromString(new String(b, 0, len));} // throws an exception
+        }
+        return null;
+    }
+    try {
+        c.constant = number(1, Complex.EMPTY);
+        c.deltH = number(2, Complex.EMPTY);
+        c.deltCp = number(3, Complex.EMPTY);
+        double n_H = 0;
+        int n = 4;
+        for(int ic = 0; ic < Complex.NDIM; ic++) {
+            c.component[ic] = text(n, true);
+            c.numcomp[ic] = number(n+1, 0);
+            if(Util.isProton(c.component[ic])) {n_H = c.numcomp[ic];}
+            n = n + 2;
+        }
+        c.proton = number(n, n_H);
+    } catch (NumberFormatException ex) {
+        return Complex.fromString(new String(b, 0, len)); // throws an exception
+    }
+    // the reference and the comment
+    String ref = text(Complex.NDATA-1, false);
+    // remove ";" or "," at the beginning
+    while(ref.startsWith(";") || ref.startsWith(",")) {ref = ref.substring(1).trim();}
+    ref = ref.trim();
+    if(ref.startsWith("/")) {
+        c.comment = ref.substring(1).trim();
+        c.reference = "";
+    } else {
+        int commentStart = ref.length();
+        int j = ref.indexOf(";/");
+        if(j > -1 && j < commentStart) {commentStart = j;}
+        j = ref.indexOf(",/");
+        if(j > -1 && j < commentStart) {commentStart = j;}
+        j = ref.indexOf(" /");
+        if(j > -1 && j < commentStart) {commentStart = j;}
+        if(commentStart < ref.length()) {
+            c.comment = ref.substring(commentStart+2).trim();
+            ref = ref.substring(0, commentStart).trim();
+        }
+        c.reference = ref;
+    }
+    return c;
+  } //parse
+
+  /** Splits <code>line</code> into <code>Complex.NDATA</code> values, as
+   * <code>CSVparser.splitLine_N</code>.
+   * @return false if there is an error (a missing closing quote, etc) */
+  private boolean split() {
+    final char[] b = line;
+    final int len = lineLen;
+    int pos = 0, n = 0;
+    while(pos < len && n < Complex.NDATA) {
+        quoted[n] = null;
+        // skip white space at the beginning
+        while(pos < len && Character.isWhitespace(b[pos])) {pos++;}
+        if(pos >= len) {start[n] = pos; end[n] = pos; n++; break;}
+        char c = b[pos];
+        if(c == ',' || c == ';') { // empty value
+            start[n] = pos; end[n] = pos;
+        } else if(c != '"' && c != '\'') { // not quoted: up to the next separator
+            int s = pos;
+            while(pos < len && b[pos] != ',' && b[pos] != ';') {pos++;}
+            int e = pos;
+            while(s < e && b[s] <= ' ') {s++;}
+            while(e > s && b[e-1] <= ' ') {e--;}
+            start[n] = s; end[n] = e;
+        } else { // quoted
+            final char quote = c;
+            pos++;
+            sb.setLength(0);
+            while(true) {
+                if(pos >= len) {return false;} // missing closing quote
+                c = b[pos]; pos++;
+                if(c != quote) {sb.append(c); continue;}
+                if(pos == len) {break;}
+                c = b[pos]; pos++;
+                if(c == quote) {sb.append(quote); continue;}
+                // white space after a closing quote
+                while(Character.isWhitespace(c) && pos < len) {c = b[pos]; pos++;}
+                if(Character.isWhitespace(c)) {break;} // end of line
+                if(c == ',' || c == ';') {pos--; break;}
+                return false; // unexpected text after the closing quote
+            }
+            quoted[n] = sb.toString();
+        }
+        n++;
+        pos++;
+    }
+    for(int k = n; k < Complex.NDATA; k++) {quoted[k] = null; start[k] = len; end[k] = len;}
+    return true;
+  } //split
+
+  private boolean isBlank(int n) {
+    if(quoted[n] != null) {return quoted[n].trim().length() <= 0;}
+    for(int i = start[n]; i < end[n]; i++) {if(line[i] > ' ') {return false;}}
+    return true;
+  }
+
+  /** @param n the number of the value in the line
+   * @param intern if true the text is shared with other reactions having the same text
+   * @return the text of a value */
+  private String text(int n, boolean intern) {
+    if(quoted[n] != null) {return quoted[n];}
+    if(start[n] >= end[n]) {return "";}
+    if(intern) {return intern(line, start[n], end[n]);}
+    return new String(line, start[n], end[n]-start[n]);
+  }
+
+  /** @param n the number of the value in the line
+   * @param empty the value to return if the text is empty
+   * @return the number in a value of the line, as given by Double.parseDouble */
+  private double number(int n, double empty) {
+    if(quoted[n] != null) {
+        if(quoted[n].length() <= 0) {return empty;}
+        return Double.parseDouble(quoted[n]);
+    }
+    int s = start[n], e = end[n];
+    if(s >= e) {return empty;}
+    // simple decimal numbers with up to 15 digits are converted directly (exactly
+    // as Double.parseDouble does); anything else is given to Double.parseDouble
+    final char[] b = line;
+    int i = s;
+    boolean neg = false;
+    if(b[i] == '-' || b[i] == '+') {neg = (b[i] == '-'); i++;}
+    long m = 0;
+    int digits = 0, nDigits = 0, exp10 = 0;
+    boolean dot = false;
+    for(; i < e; i++) {
+        char c = b[i];
+        if(c >= '0' && c <= '9') {
+            nDigits++;
+            if(m == 0 && c == '0') {if(dot) {exp10--;} continue;} // leading zeros
+            if(digits >= 15) {return Double.parseDouble(new String(b, s, e-s));}
+            m = 10*m + (c - '0');
+            digits++;
+            if(dot) {exp10--;}
+        } else if(c == '.' && !dot) {
+            dot = true;
+        } else {break;}
+    }
+    if(nDigits <= 0) {return Double.parseDouble(new String(b, s, e-s));}
+    if(i < e) { // exponent
+        if(b[i] != 'e' && b[i] != 'E') {return Double.parseDouble(new String(b, s, e-s));}
+        i++;
+        boolean negExp = false;
+        if(i < e && (b[i] == '-' || b[i] == '+')) {negExp = (b[i] == '-'); i++;}
+        if(i >= e || e - i > 3) {return Double.parseDouble(new String(b, s, e-s));}
+        int x = 0;
+        for(; i < e; i++) {
+            char c = b[i];
+            if(c < '0' || c > '9') {return Double.parseDouble(new String(b, s, e-s));}
+            x = 10*x + (c - '0');
+        }
+        exp10 = exp10 + (negExp ? -x : x);
+    }
+    double v;
+    if(m == 0) {v = 0;}
+    else if(exp10 == 0) {v = m;}
+    else if(exp10 > 0 && exp10 < POW10.length) {v = m * POW10[exp10];}
+    else if(exp10 < 0 && -exp10 < POW10.length) {v = m / POW10[-exp10];}
+    else {return Double.parseDouble(new String(b, s, e-s));}
+    return neg ? -v : v;
+  } //number
+
+  /** @return a String with the text <code>b[s]..b[e-1]</code>, the same String
+   * instance each time the same text is found */
+  private String intern(char[] b, int s, int e) {
+    int h = 0;
+    for(int i = s; i < e; i++) {h = 31*h + b[i];}
+    int mask = names.length - 1;
+    int k = (h ^ (h >>> 16)) & mask;
+    while(names[k] != null) {
+        String t = names[k];
+        if(t.length() == e - s) {
+            int i = 0;
+            while(i < e - s && t.charAt(i) == b[s+i]) {i++;}
+            if(i == e - s) {return t;}
+        }
+        k = (k + 1) & mask;
+    }
+    String t = new String(b, s, e-s);
+    if(nNames >= MAX_NAMES) {return t;}
+    names[k] = t;
+    nNames++;
+    if(2*nNames > names.length) { // keep the table at most half full
+        String[] old = names;
+        names = new String[2*old.length];
+        int m = names.length - 1;
+        for(String o : old) {
+            if(o == null) {continue;}
+            int ho = o.hashCode();
+            int j = (ho ^ (ho >>> 16)) & m;
+            while(names[j] != null) {j = (j + 1) & m;}
+            names[j] = o;
+        }
+    }
+    return t;
+  } //intern
+  //</editor-fold>
+
+}
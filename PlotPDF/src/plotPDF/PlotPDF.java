@@ -1,9 +1,13 @@
 package plotPDF;
 
+import lib.kemi.graph_lib.PltFile;
+
 /** Convert a plt-file to PDF-format.
  * The input file is assumed to be in the system-dependent default
  * character encoding. The PDF file is written in "ISO-8859-1" character
  * encoding (ISO Latin Alphabet No. 1).
+ * If the binary companion of the plt-file (with extension ".pltb"),
+ * written together with the plt-file, is available, it is read instead.
  * 
  * If an error occurs, a message is diplayed to the console, and
  * unless the command line argument -nostop is given, a message box
@@ -41,15 +45,17 @@ private String pdfFile_name;
 private java.io.File pdfFile;
 /** has the file conversion finished ? */
 private boolean finished = false;
-private java.io.BufferedReader bufReader;
-private java.io.OutputStreamWriter outputFile;
+/** the pdf file, written in ISO-LATIN-1 encoding */
+private PdfOutput outputFile;
+/** where <code>pdfStreamAppendTo</code> writes: either the pdf file itself
+ * or the compressed page content ("stream") in pdf-object nbr.22 */
+private PdfOutput content;
 /** has an error occured? if so, delete the output file */
 private boolean delete = false;
 /** New-line character(s) to substitute "\n" */
 private static final String nl = System.getProperty("line.separator");
 private static final String SLASH = java.io.File.separator;
 private static final String DASH_LINE = "- - - - - -";
-private static final java.util.Locale engl = java.util.Locale.ENGLISH;
 private String[] colours = new String[11];
 /** line widths: normal (0.282 mm), thick, very-thin, thin */
 private final double[] WIDTHS = {2.82, 6.35, 0.07, 1.06}; // units: 100 = 1 cm
@@ -63,31 +69,14 @@ private static final double MediaBox_X = 593;
 private static final double MediaBox_Y = 792;
 private static final double MARGIN_X = 20;
 private static final double MARGIN_Y = 15;
-/** The size (bytes) of the first 21 pdf-objects,
- * excluding the end-of-line characters (which are system dependent).
- * Object nbr.0 consists of the two first comment lines in the pdf-file:<pre>
- * %PDF-1.1
- * % see objects 21 and 22 below</pre> */
-private int[] objBytesNoNewLine = { 37,
-                                    40, 47, 85, 90, 93,
-                                    97, 87, 92, 95,100,
-                                    70, 90, 90, 92, 96,
-                                    77, 60,186, 98, 76,   50};
-/** The number of end-of-lines in each of the 21 pdf-objects.
- * Used to calculate the size in bytes of each object.
- * Object nbr.0 consists of the two first comment lines in the pdf-file:<pre>
- * %PDF-1.1
- * % see objects 21 and 22 below</pre> */
-private int[] objNbrNewLines = { 2,
-                              6,  7,  9,  9,  9,
-                              9,  9,  9,  9,  9,
-                              8,  9,  9,  9,  9,
-                              8,  7, 22,  8,  8,    5};
+/** The number of pdf-objects: 1 to 21 (fonts, etc), 22 (the page content)
+ * and 23 (the length of the compressed page content) */
+private static final int NBR_PDF_OBJECTS = 23;
+/** the byte offset in the pdf file of each pdf-object, for the xref table */
+private final long[] objStart = new long[NBR_PDF_OBJECTS+1];
 /** number of characters in a end-of-line */
 private static final int nlL = System.getProperty("line.separator").length();
 
-private final int NBR_PDF_OBJECTS = objBytesNoNewLine.length;
-
 /** are we in the middle of printing some text? */
 private boolean startedPrintingText = false;
 /** text used in the PDF file to change the font */
@@ -293,10 +282,6 @@ private int newPath = -1;
     }
 
     // --- close streams
-    try{if(bufReader != null) {bufReader.close();}}
-    catch (java.io.IOException ex) {
-        exception(ex, "while closing file:"+nl+"   \""+pltFile+"\"", doNotStop);
-    }
     if(outputFile != null) {
         try{
             outputFile.flush();
@@ -578,8 +563,9 @@ private int newPath = -1;
     //--- make sure the output file can be written
     String msg;
     try{
-        outputFile = new java.io.OutputStreamWriter(
-                   new java.io.FileOutputStream(pdfFile), "ISO-8859-1");
+        outputFile = new PdfOutput(new java.io.BufferedOutputStream(
+                   new java.io.FileOutputStream(pdfFile), 65536));
+        content = outputFile;
     } catch (java.io.FileNotFoundException ex) {
         msg = "Error:"+nl+ex.getMessage()+nl+
                 "****************************************"+nl+
@@ -587,18 +573,20 @@ private int newPath = -1;
                 "****************************************";
         if(doNotStop) {System.out.println(msg);} else {ErrMsgBx mb = new ErrMsgBx(msg,progName);}
         return;
-    } catch (java.io.UnsupportedEncodingException ex) {
-        msg = "while writing the PDF file:"+nl+
-              "   \""+pdfFile.getAbsolutePath()+"\"";
-        exception(ex, msg, doNotStop);
-        return;
     }
     //--- files appear to be ok
     setPalette();
 
-    //--- open the input plt-file
-    bufReader = getBufferedReader(pltFile, doNotStop);
-    if(bufReader == null) {return;}
+    //--- read the input plt-file (or its binary companion file)
+    PltFile pf;
+    try {pf = PltFile.read(pltFile, "UTF-8");}
+    catch (java.io.IOException ex) {
+        msg = "while reading the plot file:"+nl+
+              "   \""+pltFile.getAbsolutePath()+"\"";
+        exception(ex, msg, doNotStop);
+        return;
+    }
+    if(dbg && pf.fromBinary) {System.out.println("plot file read from \""+PltFile.binaryFile(pltFile).getName()+"\"");}
 
     //PDF files have the following parts: a one-line header, a body consisting
     //of pdf-objects, a cross-reference table, and a short trailer
@@ -607,11 +595,11 @@ private int newPath = -1;
     pdf_Init(outputFile);
 
     //The PDF output is written here into a "stream" in pdf-object nbr.22
-    //The length of the stream must preceede the stream itself.
-    //This is done by writing the stream into a memory character array,
-    //and after ending processing the input plot file, find out the
-    //length of the stream, writing the length to the pdf file, followed
-    //by the stream itself, and at the end the xref (cross-reference table).
+    //The stream is compressed ("/FlateDecode") while it is written to the
+    //pdf file. Its length is not known until the end, so it is given in
+    //pdf-object nbr.23, which is written after the stream. The byte offset
+    //of each object is counted while writing, and at the end the xref
+    //(cross-reference table) is written.
 
     pdfStreamStart();
     if(pdfHeader) {
@@ -630,39 +618,22 @@ private int newPath = -1;
 
     // ----------------------------------------------------
     int i0, i1, i2;
-    String s0, s1, s2;
-    String line;
     String comment;
     boolean readingText = false;
-    /** -1=Left  0=center  +1=right */
-    int align = 0, alignDef = 0;
-    // ----- read all lines
-    while(true) {
-        try {line = bufReader.readLine();}
-        catch (java.io.IOException ex) {
-            msg = "while reading the plot file:"+nl+
-                  "   \""+pltFile.getAbsolutePath()+"\"";
-            exception(ex, msg, doNotStop);
-            break;
-        }
-        if(line == null) {break;}
-
-        // --- get i0, i1, i2 and any comment
-        if(line.length() > 0) {s0= line.substring(0,1).trim();} else {s0 = "";}
-        if(line.length() > 4) {s1= line.substring(1,5).trim();} else {s1 = "";}
-        if(line.length() > 8) {s2= line.substring(5,9).trim();} else {s2 = "";}
-        if(s0.length() > 0) {i0 = readInt(s0);} else {i0 = -1;}
-        if(s1.length() > 0) {i1 = readInt(s1);} else {i1 = 0;}
-        if(s2.length() > 0) {i2 = readInt(s2);} else {i2 = 0;}
-        if(line.length() > 9) {
-            comment= line.substring(9).trim();
+    // the steps are triples (i0, i1, i2)
+    final int[] steps = pf.steps.array();
+    final int n = pf.steps.size();
+    // ----- go through all steps
+    for(int j=0; j < n; j++) {
+        i0 = steps[3*j]; i1 = steps[3*j+1]; i2 = steps[3*j+2];
+        comment = pf.comment(j);
+        if(comment != null) {
             if(i0 != 0 || (!comment.startsWith("TextBegin") && !readingText)) {
                 pdfStreamAppendTo("% "+comment);
             }
             if(comment.equals("TextEnd")) {readingText = false; continue;}
         } else {comment = "";}
         if(readingText) {continue;}
-        if(comment.equals("-- HEADING --")) {alignDef = -1;}
 
         // --- change pen or colour
         if(i0!=0 && i0!=1) {
@@ -670,114 +641,42 @@ private int newPath = -1;
             continue;
         }
         // at this point either i0 = 0  or  i0 = 1
+        // --- is there a text to print?
+        PltFile.Text t = null;
+        if(pdfFont !=0 && i0 == 0) {t = pf.text(j);}
         // --- line drawing
-        if(pdfFont ==0
-                || i0 == 1
-                || !comment.startsWith("TextBegin")) {
+        if(t == null) {
             moveOrDraw(i0,(double)i1,(double)i2);
             continue;
         }
-
-        // --- is there a text to print?
-        //      at this point:  diagrConvertFont >0,
-        //          i0 =0,  and  comment.startsWith("TextBegin")
-        boolean isFormula = false;
-        double txtSize, txtAngle;
-        if(i0 == 0 && comment.length()>41 && comment.startsWith("TextBegin")) {
-            if (comment.substring(9,10).equals("C")) {isFormula=true;}
-            txtSize = readDouble(comment.substring(17,24));
-            txtAngle = readDouble(comment.substring(35,42));
-            // get alignment
-            if(comment.length() > 42) {
-                String t = comment.substring(55,56);
-                if(t.equalsIgnoreCase("L")) {align = -1;}
-                else if(t.equalsIgnoreCase("R")) {align = 1;}
-                else if(t.equalsIgnoreCase("C")) {align = 0;}
-            } else {align = alignDef;}
-            // the text is in next line
-            try{line = bufReader.readLine();}
-            catch(java.io.IOException ex) {
-                msg = "while reading the plot file:"+nl+
-                      "   \""+pltFile.getAbsolutePath()+"\"";
-                exception(ex, msg, doNotStop);
-                break;
-            }
-            if(line != null) {
-                if(line.length() > 9) {
-                    comment= rTrim(line.substring(9));
-                    if(comment.startsWith(" ")) {comment = comment.substring(1);}
-                } else {comment = "";}
-                // print the text
-                printText(i1,i2,comment,isFormula,align,txtSize,txtAngle);
-            } // if line != null
-            // ------ read all lines until "TextEnd"
-            readingText = true;
-            } // if "TextBegin"
-    } //while
-
-    // --- finished reading the input plot file: write pdfStream to object 22
+        // print the text
+        printText(i1,i2,t.txtLine,t.isFormula,t.alignment,t.txtSize,t.txtAngle);
+        // the text is in next step
+        j++;
+        // ------ skip all steps until "TextEnd"
+        readingText = true;
+    } //for j
+
+    // --- finished reading the input plot file: end object 22 and write object 23
     writeObject22(outputFile);
     // --- write cross-reference table
     writeXref(outputFile);
 
   } //convert2PDF
 
-  //<editor-fold defaultstate="collapsed" desc="getBufferedReader">
-  private static java.io.BufferedReader getBufferedReader(java.io.File f, boolean noStop) {
-    String msg;
-    java.io.BufferedReader bufReader;
-    java.io.InputStreamReader isr;
-    try{
-        isr = new java.io.InputStreamReader(new java.io.FileInputStream(f) , "UTF-8");
-        bufReader = new java.io.BufferedReader(isr);
-    }
-    catch (java.io.FileNotFoundException ex) {
-        msg = "File not found:"+nl+"   \""+f.getAbsolutePath()+"\"";
-        exception(ex, msg, noStop);
-        return null;
-    } catch (java.io.UnsupportedEncodingException ex) {
-        msg = "while reading the plot file:"+nl+
-                "   \""+f.getAbsolutePath()+"\"";
-        exception(ex, msg, noStop);
-        return null;
-    }
-    return bufReader;
-  }
-  //</editor-fold>
-  //<editor-fold defaultstate="collapsed" desc="readInt(String)">
-    private static int readInt(String t) {
-      int i;
-      try{i = Integer.parseInt(t);}
-      catch (java.lang.NumberFormatException ex) {
-          System.out.println(DASH_LINE+nl+"Error: "+ex.toString()+nl+
-                  "   while reading an integer from String: \""+t+"\""+nl+DASH_LINE);
-          i = 0;}
-      return i;
-    } //readInt(T)
-  //</editor-fold>
-  //<editor-fold defaultstate="collapsed" desc="readDouble(String)">
-    private static double readDouble(String t) {
-      double d;
-      try{d = Double.parseDouble(t);}
-      catch (java.lang.NullPointerException ex) {
-          System.out.println(DASH_LINE+nl+"Error: "+ex.toString()+nl+
-                  "   while reading an floating-point number from String: \""+t+"\""+nl+DASH_LINE);
-          d = 0;}
-      return d;
-    } //readDouble(T)
-  //</editor-fold>
 
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="pdf_Init">
   /** write pdf-objects 1 to 21 (fonts, etc)*/
-  private void pdf_Init(java.io.OutputStreamWriter o) {
+  private void pdf_Init(PdfOutput o) {
     try {
-        o.write("%PDF-1.1"+nl+"% see objects 21 and 22 below"+nl);
+        o.write("%PDF-1.4"+nl+"%\u00e2\u00e3\u00cf\u00d3"+nl+"% see objects 21 to 23 below"+nl);
         // -- print the first objects
+        objStart[1] = o.position();
         o.write("1 0 obj"+nl+"<<"+nl+"/Type /Outlines"+nl+"/Count 0"+nl+">>"+nl+"endobj"+nl);
+        objStart[2] = o.position();
         o.write("2 0 obj"+nl+"<<"+nl+"/Type /Encoding"+nl+"/Differences ["+nl);
-        pdfStreamStart();
         pdfStreamAppendTo("128 /euro");
         pdfStreamAppendTo("130 /quotesinglbase");
         pdfStreamAppendTo("131 /florin");
@@ -892,61 +791,74 @@ private int newPath = -1;
         pdfStreamAppendTo("253 /yacute");
         pdfStreamAppendTo("254 /thorn");
         pdfStreamAppendTo("255 /ydieresis");
-        pdfStreamPrint(o);
-        objBytesNoNewLine[2] = objBytesNoNewLine[2] + (int)pdfStreanSize;
         o.write("]"+nl+">>"+nl+"endobj"+nl);
         // --- fonts:
+        objStart[3] = o.position();
         o.write("3 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F0"+nl+"/BaseFont /Courier"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[4] = o.position();
         o.write("4 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F1"+nl+"/BaseFont /Courier-Bold"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[5] = o.position();
         o.write("5 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F2"+nl+"/BaseFont /Courier-Oblique"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[6] = o.position();
         o.write("6 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F3"+nl+"/BaseFont /Courier-BoldOblique"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[7] = o.position();
         o.write("7 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F4"+nl+"/BaseFont /Helvetica"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[8] = o.position();
         o.write("8 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F5"+nl+"/BaseFont /Helvetica-Bold"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[9] = o.position();
         o.write("9 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F6"+nl+"/BaseFont /Helvetica-Oblique"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[10] = o.position();
         o.write("10 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F7"+nl+"/BaseFont /Helvetica-BoldOblique"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[11] = o.position();
         o.write("11 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F8"+nl+"/BaseFont /Symbol"+nl+">>"+nl+"endobj"+nl);
+        objStart[12] = o.position();
         o.write("12 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F9"+nl+"/BaseFont /Times-Roman"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[13] = o.position();
         o.write("13 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F10"+nl+"/BaseFont /Times-Bold"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[14] = o.position();
         o.write("14 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F11"+nl+"/BaseFont /Times-Italic"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[15] = o.position();
         o.write("15 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F12"+nl+"/BaseFont /Times-BoldItalic"+nl+"/Encoding 2 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[16] = o.position();
         o.write("16 0 obj"+nl+"<<"+nl+"/Type /Font"+nl+"/Subtype /Type1"+nl+
             "/Name /F13"+nl+"/BaseFont /ZapfDingbats"+nl+">>"+nl+"endobj"+nl);
+        objStart[17] = o.position();
         o.write("17 0 obj"+nl+"<<"+nl+"/Type /Catalog"+nl+
             "/Pages 19 0 R"+nl+"/Outlines 1 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[18] = o.position();
         o.write("18 0 obj"+nl+"<<"+nl+"/ProcSet [ /PDF /Text ]"+nl+"/Font <<"+nl+
             "/F0 3 0 R"+nl+"/F1 4 0 R"+nl+"/F2 5 0 R"+nl+"/F3 6 0 R"+nl+"/F4 7 0 R"+nl+"/F5 8 0 R"+nl+"/F6 9 0 R"+nl+
             "/F7 10 0 R"+nl+"/F8 11 0 R"+nl+"/F9 12 0 R"+nl+"/F10 13 0 R"+nl+"/F11 14 0 R"+nl+"/F12 15 0 R"+nl+"/F13 16 0 R"+nl+
             ">>"+nl+">>"+nl+"endobj"+nl);
         //MediaBox [0 0 593 792]
+        objStart[19] = o.position();
         o.write("19 0 obj"+nl+"<<"+nl+"/Type /Pages"+nl+"/Count 1"+nl+
             "/Kids [ 20 0 R  ] "+nl+"/MediaBox [0 0 "+(int)MediaBox_X+" "+(int)MediaBox_Y+"]"+nl+
             "/Resources 18 0 R"+nl+">>"+nl+"endobj"+nl);
+        objStart[20] = o.position();
         o.write("20 0 obj"+nl+"<<"+nl+"/Type /Page"+nl+"/Parent 19 0 R"+nl+
             "/Contents 22 0 R"+nl+"/Resources 18 0 R"+nl+">>"+nl+"endobj"+nl);
-        pdfStreamStart(); // this is not a "stream", but we want to count the bytes
+        objStart[21] = o.position();
         o.write("21 0 obj"+nl+"<<"+nl+
             "/CreationDate (D:"+pdfDate()+")"+nl);
         pdfStreamAppendTo(
             "/Producer (Plot-pdf [java]  by I.Puigdomenech "+VERS+")"+nl+
             "/Author ("+fixTextSimple(System.getProperty("user.name", "anonymous"))+")"+nl+
             "/Title ("+fixTextSimple(maybeInQuotes(pltFile.getName()))+")");
-        pdfStreamPrint(o);
-        objBytesNoNewLine[21] = objBytesNoNewLine[21] + (int)pdfStreanSize;
         o.write(">>"+nl+"endobj"+nl);
-        o.flush();
     } catch (java.io.IOException ex) {
         exception(ex, null, doNotStop);
         delete = true;
@@ -971,8 +883,9 @@ private int newPath = -1;
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="writeObject22">
- /** write pdfStream.  */
-  private void writeObject22(java.io.OutputStreamWriter o) {
+ /** end the compressed "stream" of pdf-object 22, and write its length
+  * into pdf-object 23. */
+  private void writeObject22(PdfOutput o) {
       if(startedPrintingText) { // end printing text if needed
         pdfStreamAppendTo("ET");
         startedPrintingText = false;
@@ -987,52 +900,42 @@ private int newPath = -1;
         x1st = -Double.MAX_VALUE; y1st = -Double.MAX_VALUE;
     }
     pdfStreamAppendTo("% - - - -  Plot file End  - - - -");
-    String pdfStreamSizeTxt = Long.toString(pdfStreanSize).trim();
-    pdfStreamSizeTxtLength = pdfStreamSizeTxt.length();
+    if(content == o) {return;}
     try{
-        o.flush();
-        o.write("22 0 obj"+nl+"<<"+nl+"/Length "+pdfStreamSizeTxt+nl+">>"+nl+
-        "% If you make changes in the \"stream\" you must also change:"+nl+
-        "% - In the the trailer, the line below the keyword \"startxref\":"+nl+
-        "%   update the byte offset from the beginning of the file to the"+nl+
-        "%   beginning of the \"xref\" keyword."+nl+
-        "% - Update above the byte length of the \"stream\", including ends-of-line"+nl+
-        "stream"+nl);
-        o.write(pdfStream.toString());
-        o.write("endstream"+nl+"endobj"+nl);
+        ((java.util.zip.DeflaterOutputStream)content.out()).finish();
+        long pdfStreamSize = o.position() - pdfStreamStart;
+        if(dbg) {System.out.println("page content: "+content.position()+" bytes, compressed to "+pdfStreamSize+" bytes");}
+        content = o;
+        o.write(nl+"endstream"+nl+"endobj"+nl);
+        objStart[23] = o.position();
+        o.write("23 0 obj"+nl+pdfStreamSize+nl+"endobj"+nl);
     } catch (java.io.IOException ex) {exception(ex, null, doNotStop); delete = true;}
+    finally {deflater.end();}
   }
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="writeXref">
   /** write the cross-reference table to output. */
-  private void writeXref(java.io.OutputStreamWriter o) {
-    String msg;
-    if(pdfStreanSize <= 0) {
-      msg = "Programming error in \"writeXref\": pdfStreanSize <= 0.";
+  private void writeXref(PdfOutput o) {
+    if(objStart[NBR_PDF_OBJECTS] <= 0) {
+      String msg = "Programming error in \"writeXref\": pdf-object "+NBR_PDF_OBJECTS+" not written.";
       if(doNotStop) {System.out.println(msg);} else {ErrMsgBx mb = new ErrMsgBx(msg,progName);}
       return;
     }
-    long[] objStart = new long[22];
-    long lng = 0;
-    for(int i = 0; i < NBR_PDF_OBJECTS; i++) {
-        lng = lng + (long)(objBytesNoNewLine[i] + (objNbrNewLines[i] * nlL));
-        objStart[i] = lng;
-    }
     try{
-        o.flush();
-        o.write("xref"+nl+"0 23"+nl+"0000000000 65535 f"+nl);
+        long xrefStart = o.position();
+        o.write("xref"+nl+"0 "+(NBR_PDF_OBJECTS+1)+nl+"0000000000 65535 f");
+        if(nlL ==1) {o.write(" ");}
+        o.write(nl);
         String objStartTxt;
-        for(int i = 0; i < NBR_PDF_OBJECTS; i++) {
-            objStartTxt = String.format("%010d", objStart[i]);
-            o.write(objStartTxt+" 00000 n");
+        for(int i = 1; i <= NBR_PDF_OBJECTS; i++) {
+            // a 10-digit byte offset, such as String.format("%010d", objStart[i])
+            objStartTxt = Long.toString(objStart[i]);
+            o.write("0000000000".substring(Math.min(10,objStartTxt.length()))+objStartTxt+" 00000 n");
             if(nlL ==1) {o.write(" ");}
             o.write(nl);
         }
-        long xrefStart = objStart[NBR_PDF_OBJECTS-1]
-            + 18 +(2*nlL) + pdfStreamSizeTxtLength + nlL
-            +302 +(7*nlL) + pdfStreanSize + 15 + (2*nlL);
-        o.write("trailer"+nl+"<<"+nl+"/Size 23"+nl+
+        o.write("trailer"+nl+"<<"+nl+"/Size "+(NBR_PDF_OBJECTS+1)+nl+
             "/Info 21 0 R"+nl+"/Root 17 0 R"+nl+">>"+nl+
             "startxref"+nl+xrefStart+nl+"%%EOF"+nl);
         o.flush();
@@ -1045,38 +948,72 @@ private int newPath = -1;
 
   //<editor-fold defaultstate="collapsed" desc="pdfStream">
 
-  private StringBuffer pdfStream = new StringBuffer();
-  private long pdfStreanSize = 0;
-  private int pdfStreamSizeTxtLength;
+  /** the byte offset in the pdf file where the compressed "stream" starts */
+  private long pdfStreamStart = 0;
+  private java.util.zip.Deflater deflater;
 
-  private synchronized void pdfStreamStart() {
-    pdfStream.delete(0, pdfStream.length());
-    pdfStreanSize = 0;
-  }
-  private synchronized void pdfStreamAppendTo(String t) {
-    if(t == null || t.length() <=0) {return;}
-    byte[] encodedBytes;
+  /** start pdf-object 22: from now on the text given to
+   * <code>pdfStreamAppendTo</code> is compressed into its "stream" */
+  private void pdfStreamStart() {
     try{
-        encodedBytes = t.getBytes("ISO-8859-1");
-        pdfStreanSize = pdfStreanSize + encodedBytes.length;
-        pdfStream.append(t);
-    } catch (java.io.UnsupportedEncodingException ex) {
-        exception(ex, "while encoding to ISO-Latin-1 the text \""+t+"\"", doNotStop);
+        objStart[22] = outputFile.position();
+        outputFile.write("22 0 obj"+nl+"<<"+nl+"/Length 23 0 R"+nl+"/Filter /FlateDecode"+nl+">>"+nl+
+            "stream"+nl);
+        pdfStreamStart = outputFile.position();
+        deflater = new java.util.zip.Deflater();
+        content = new PdfOutput(new java.util.zip.DeflaterOutputStream(outputFile, deflater, 65536));
+    } catch (java.io.IOException ex) {
+        exception(ex, null, doNotStop);
         delete = true;
     }
-    // add end-of-line
-    pdfStreanSize = pdfStreanSize + nlL;
-    pdfStream.append(nl);
   }
-  private void pdfStreamPrint(java.io.OutputStreamWriter o) {
+  /** write a text and an end-of-line either to the pdf file or,
+   * after <code>pdfStreamStart</code>, to the compressed "stream" */
+  private void pdfStreamAppendTo(String t) {
+    if(t == null || t.length() <=0 || delete) {return;}
     try{
-        o.write(pdfStream.toString());
-        o.flush();
+        content.write(t);
+        content.write(nl);
     } catch (java.io.IOException ex) {
-        exception(ex, "while writing \""+pdfStream.toString()+"\"", doNotStop);
+        exception(ex, "while writing the PDF file:"+nl+"   \""+pdfFile.getAbsolutePath()+"\"", doNotStop);
         delete = true;
     }
   }
+
+  /** An output stream that writes texts in ISO-LATIN-1 encoding
+   * (characters that can not be encoded are written as "?"),
+   * and that counts the bytes written, to find the byte offset
+   * of each pdf-object. */
+  private static class PdfOutput extends java.io.FilterOutputStream {
+    private long count = 0;
+    private byte[] b = new byte[256];
+    PdfOutput(java.io.OutputStream out) {super(out);}
+    @Override public void write(int c) throws java.io.IOException {
+        out.write(c);
+        count++;
+    }
+    @Override public void write(byte[] a, int off, int len) throws java.io.IOException {
+        out.write(a, off, len);
+        count = count + len;
+    }
+    void write(String t) throws java.io.IOException {
+        int len = t.length();
+        if(b.length < len) {b = new byte[Math.max(len, 2*b.length)];}
+        int k = 0;
+        char c;
+        for(int i = 0; i < len; i++) {
+            c = t.charAt(i);
+            if(c < 256) {b[k++] = (byte)c; continue;}
+            // a surrogate pair is one character
+            if(Character.isLowSurrogate(c) && i > 0 && Character.isHighSurrogate(t.charAt(i-1))) {continue;}
+            b[k++] = (byte)'?';
+        }
+        write(b, 0, k);
+    }
+    /** @return the number of bytes written so far */
+    long position() {return count;}
+    java.io.OutputStream out() {return out;}
+  } // class PdfOutput
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="setPalette">
@@ -1295,7 +1232,7 @@ private int newPath = -1;
             pdfStreamAppendTo(colours[colorNow]+" RG");
             w = WIDTHS[penNow] * (scaleX+scaleY)/2;
             w = Math.min(100,Math.max(0.05,w)) * SCALE_USER_SPACE;
-            pdfStreamAppendTo(String.format(engl,"%20.5f",w).trim()+" w");
+            pdfStreamAppendTo(toStr(w, 5)+" w");
             //pdfStream.append("0 J"+nl); // lineCap = square
             //pdfStream.append("1 j"+nl); // lineJoin = round
             //pdfStream.append("[ ] 0 d"+nl); // lineDash = no dash solid pattern
@@ -1339,11 +1276,31 @@ private int newPath = -1;
   private static String toStr(double d) {
     if(Double.isNaN(d)) {d = 0;}
     d = Math.min(999999999999999.9d,Math.max(-999999999999999.9d,d));
-    String dTxt;
     if(Math.abs(d-Math.round(d)) >0.001) {
-        dTxt = String.format(engl,"%20.3f", d);
-    } else {dTxt = Long.toString(Math.round(d));}
-    return dTxt.trim();
+        return toStr(d, 3);
+    } else {return Long.toString(Math.round(d));}
+  }
+
+  private static final long[] POW10 = {1, 10, 100, 1000, 10000, 100000};
+ /** Write a double into a string with a given number of decimals,
+  * as <code>String.format(java.util.Locale.ENGLISH,"%.3f",d)</code> (for 3 decimals) but faster.
+  * The absolute value of "d" times 10^decimals must be less than 10^18.
+  * @param d
+  * @param decimals 0 to 5
+  * @return  */
+  private static String toStr(double d, int decimals) {
+    final long p = POW10[decimals];
+    final long v = Math.round(Math.abs(d) * p); // rounding half-up
+    StringBuilder t = new StringBuilder(24);
+    if(d < 0) {t.append('-');}
+    t.append(v / p);
+    if(decimals > 0) {
+        t.append('.');
+        String f = Long.toString(v % p);
+        for(int i = f.length(); i < decimals; i++) {t.append('0');}
+        t.append(f);
+    }
+    return t.toString();
   }
   //</editor-fold>
 
@@ -1452,7 +1409,7 @@ private int newPath = -1;
     double fontSize = 100 * ((scaleX+scaleY)/2)
                         * ((txtSize * FontScaleHeight[pdfFont-1]) + 0.001) * SCALE_USER_SPACE;
     fontSize = Math.min(5000, fontSize);
-    fontSizeTxt = String.format(engl, "%15.2f",fontSize).trim();
+    fontSizeTxt = toStr(fontSize, 2);
     align = Math.max(-1,Math.min(1,align));
 
     String str= "% text at X,Y= "+String.valueOf(i1)+" "+String.valueOf(i2)+
@@ -1,9 +1,13 @@
 package plotPS;
 
+import lib.kemi.graph_lib.PltFile;
+
 /** Convert a plt-file to PostScript-format.
  * The input file is assumed to be in the system-dependent default
  * character encoding. The PS file is written in "ISO-8859-1" character
  * encodint (ISO Latin Alphabet No. 1).
+ * If the binary companion of the plt-file (with extension ".pltb"),
+ * written together with the plt-file, is available, it is read instead.
  * 
  * If an error occurs, a message is diplayed to the console, and
  * unless the command line argument -nostop is given, a message box
@@ -41,7 +45,6 @@ private String psFile_name;
 private java.io.File psFile;
 /** has the file conversion finished ? */
 private boolean finished = false;
-private java.io.BufferedReader bufReader;
 private java.io.OutputStreamWriter outputFile;
 /** has an error occured? if so, delete the output file */
 private boolean delete = false;
@@ -299,10 +302,6 @@ private static class BoundingBox {
     }
 
     // --- close streams
-    try{if(bufReader != null) {bufReader.close();}}
-    catch (java.io.IOException ex) {
-        exception(ex, "while closing file:"+nl+"   \""+pltFile+"\"", doNotStop);
-    }
     if(outputFile != null) {
         try{
             outputFile.flush();
@@ -597,56 +596,42 @@ private static class BoundingBox {
         exception(ex, msg, doNotStop);
         return;
     }
+    //--- read the input plt-file (or its binary companion file)
+    PltFile pf;
+    try {pf = PltFile.read(pltFile, "UTF-8");}
+    catch (java.io.IOException ex) {
+        msg = "while reading the plot file:"+nl+
+              "   \""+pltFile.getAbsolutePath()+"\"";
+        exception(ex, msg, doNotStop);
+        return;
+    }
+    if(dbg && pf.fromBinary) {System.out.println("plot file read from \""+PltFile.binaryFile(pltFile).getName()+"\"");}
     //--- files appear to be ok
     setPalette();
 
     // If `eps' the size of the BoundingBox is needed for MicroSoft's Word
     // and Word for Windows (WordPerfect can understand `(atend)').
     // The Boundingbox (in units of the default user cooordinate system) is
-    // determined first, the file is rewinded, and the real "plotting" is done.
-    if(eps) {
-        boundingBox = getBoundingBox();
-        if(boundingBox == null) {return;}
-    }
-
-    //--- open the input plt-file
-    bufReader = getBufferedReader(pltFile, doNotStop);
-    if(bufReader == null) {return;}
+    // determined first, and then the real "plotting" is done.
+    if(eps) {boundingBox = getBoundingBox(pf);}
 
     psInit(outputFile);
 
     // ----------------------------------------------------
     int i0, i1, i2;
-    String s0, s1, s2;
-    String line;
     String comment;
     boolean readingText = false;
-    /** -1=Left  0=center  +1=right */
-    int align = 0, alignDef = 0;
-    // ----- read all lines
-    while(true) {
-        try {line = bufReader.readLine();}
-        catch (java.io.IOException ex) {
-            msg = "while reading the plot file:"+nl+
-                  "   \""+pltFile.getAbsolutePath()+"\"";
-            exception(ex, msg, doNotStop);
-            break;
-        }
-        if(line == null) {break;}
-
-        // --- get i0, i1, i2 and any comment
-        if(line.length() > 0) {s0= line.substring(0,1).trim();} else {s0 = "";}
-        if(line.length() > 4) {s1= line.substring(1,5).trim();} else {s1 = "";}
-        if(line.length() > 8) {s2= line.substring(5,9).trim();} else {s2 = "";}
-        if(s0.length() > 0) {i0 = readInt(s0);} else {i0 = -1;}
-        if(s1.length() > 0) {i1 = readInt(s1);} else {i1 = 0;}
-        if(s2.length() > 0) {i2 = readInt(s2);} else {i2 = 0;}
-        if(line.length() > 9) {
-            comment= line.substring(9).trim();
+    // the steps are triples (i0, i1, i2)
+    final int[] steps = pf.steps.array();
+    final int n = pf.steps.size();
+    // ----- go through all steps
+    for(int j=0; j < n; j++) {
+        i0 = steps[3*j]; i1 = steps[3*j+1]; i2 = steps[3*j+2];
+        comment = pf.comment(j);
+        if(comment != null) {
             if(comment.equals("TextEnd")) {readingText = false; continue;}
         } else {comment = "";}
         if(readingText) {continue;}
-        if(comment.equals("-- HEADING --")) {alignDef = -1;}
 
         // --- change pen or colour
         if(i0!=0 && i0!=1) {
@@ -654,182 +639,54 @@ private static class BoundingBox {
             continue;
         }
         // at this point either i0 = 0  or  i0 = 1
-        // --- line drawing 
-        if(psFont ==0
-                || i0 == 1
-                || !comment.startsWith("TextBegin")) {
+        // --- is there a text to print?
+        PltFile.Text t = null;
+        if(psFont !=0 && i0 == 0) {t = pf.text(j);}
+        // --- line drawing
+        if(t == null) {
             moveOrDraw(i0,(double)i1,(double)i2, outputFile);
             continue;
         }
-
-        // --- is there a text to print?
-        //      at this point:  diagrConvertFont >0,
-        //          i0 =0,  and  comment.startsWith("TextBegin")
-        boolean isFormula = false;
-        double txtSize, txtAngle;
-        if(i0 == 0 && comment.length()>41 && comment.startsWith("TextBegin")) {
-            if(comment.substring(9,10).equals("C")) {isFormula=true;}
-            txtSize = readDouble(comment.substring(17,24));
-            txtAngle = readDouble(comment.substring(35,42));
-            // get alignment
-            if(comment.length() > 42) {
-                String t = comment.substring(55,56);
-                if(t.equalsIgnoreCase("L")) {align = -1;}
-                else if(t.equalsIgnoreCase("R")) {align = 1;}
-                else if(t.equalsIgnoreCase("C")) {align = 0;}                     
-            } else {align = alignDef;}
-            // the text is in next line
-            try{line = bufReader.readLine();}
-            catch(java.io.IOException ex) {
-                msg = "while reading the plot file:"+nl+
-                      "   \""+pltFile.getAbsolutePath()+"\"";
-                exception(ex, msg, doNotStop);
-                break;
-            }
-            if(line != null) {
-                if(line.length() > 9) {
-                    comment= rTrim(line.substring(9));
-                    if(comment.startsWith(" ")) {comment = comment.substring(1);}
-                } else {comment = "";}
-                // print the text
-                printText(i1,i2,comment,isFormula,align,txtSize,txtAngle,outputFile);
-            } // if line != null
-            // ------ read all lines until "TextEnd"
-            readingText = true;
-            } // if "TextBegin"
-    } //while
+        // print the text
+        printText(i1,i2,t.txtLine,t.isFormula,t.alignment,t.txtSize,t.txtAngle,outputFile);
+        // the text is in next step
+        j++;
+        // ------ skip all steps until "TextEnd"
+        readingText = true;
+    } //for j
 
     psEnd(outputFile);
 
   } //convert2PS
 
-  //<editor-fold defaultstate="collapsed" desc="getBufferedReader">
-  private static java.io.BufferedReader getBufferedReader(java.io.File f, boolean noStop) {
-    String msg;
-    java.io.BufferedReader bufReader;
-    java.io.InputStreamReader isr;
-    try{
-        isr = new java.io.InputStreamReader(new java.io.FileInputStream(f) , "UTF-8");
-        bufReader = new java.io.BufferedReader(isr);
-    }
-    catch (java.io.FileNotFoundException ex) {
-        msg = "File not found:"+nl+
-              "   \""+f.getAbsolutePath()+"\"";
-        exception(ex, msg, noStop);
-        return null;
-    } catch (java.io.UnsupportedEncodingException ex) {
-        msg = "while reading the plot file:"+nl+
-                "   \""+f.getAbsolutePath()+"\"";
-        exception(ex, msg, noStop);
-        return null;
-    }
-    return bufReader;
-  }
-  //</editor-fold>
-  //<editor-fold defaultstate="collapsed" desc="readInt(String)">
-    private static int readInt(String t) {
-      int i;
-      try{i = Integer.parseInt(t);}
-      catch (java.lang.NumberFormatException ex) {
-          System.out.println(DASH_LINE+nl+"Error: "+ex.toString()+nl+
-                  "   while reading an integer from String: \""+t+"\""+nl+DASH_LINE);
-          i = 0;}
-      return i;
-    } //readInt(T)
-  //</editor-fold>
-  //<editor-fold defaultstate="collapsed" desc="readDouble(String)">
-    private static double readDouble(String t) {
-      double d;
-      try{d = Double.parseDouble(t);}
-      catch (java.lang.NumberFormatException ex) {
-          System.out.println(DASH_LINE+nl+"Error: "+ex.toString()+nl+
-                  "   while reading an floating-point number from String: \""+t+"\""+nl+DASH_LINE);
-          d = 0;}
-      return d;
-    } //readDouble(T)
-  //</editor-fold>
 
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="getBoundingBox">
-  private BoundingBox getBoundingBox() {
+  private BoundingBox getBoundingBox(PltFile pf) {
     System.out.println("calculating BoundingBox (for EPS) ...");
     BoundingBox bb = new BoundingBox();
-    java.io.BufferedReader br = getBufferedReader(pltFile, doNotStop);
-    if(br == null) {return null;}
-    // ----- read all lines
-    String line, msg;
-    int i0,i1,i2;
-    String s0, s1, s2;
-    double x,y;
-    String comment;
-    while(true) {
-        try {line = br.readLine();}
-        catch (java.io.IOException ex) {
-            msg = "while reading the plot file:"+nl+
-                  "   \""+pltFile.getAbsolutePath()+"\"";
-            exception(ex, msg, doNotStop);
-            bb = null;
-            break;
-        }
-        if(line == null) {break;}
-        // --- get i0, i1, i2 and any comment
-        if(line.length() > 0) {s0= line.substring(0,1).trim();} else {s0 = "";}
-        if(line.length() > 4) {s1= line.substring(1,5).trim();} else {s1 = "";}
-        if(line.length() > 8) {s2= line.substring(5,9).trim();} else {s2 = "";}
-        if(s0.length() > 0) {i0 = readInt(s0);} else {i0 = -1;}
-        if(s1.length() > 0) {i1 = readInt(s1);} else {i1 = 0;}
-        if(s2.length() > 0) {i2 = readInt(s2);} else {i2 = 0;}
-        if(i0<0 || i0>1) {continue;}
-        x = (double)i1 * scaleX;  y = (double)i2 * scaleY;
-        if(bb.xMx < x) bb.xMx = x;
-        if(bb.yMx < y) bb.yMx = y;
-        if(bb.xMn > x) bb.xMn = x;
-        if(bb.yMn > y) bb.yMn = y;
-        if (line.length() > 9) {comment= line.substring(9).trim();} else {comment = "";}
-        // read a TextBegin-TextEnd
-        float txtSize; float txtAngle;
-        if (i0 == 0 && comment.length()>41 && comment.startsWith("TextBegin")) {
-            txtSize = readFloat(comment.substring(17,24));
-            txtAngle = readFloat(comment.substring(35,42));
-            //get angles between +180 and -180
-            while (txtAngle>360) {txtAngle=txtAngle-360f;}
-            while (txtAngle<-360) {txtAngle=txtAngle+360f;}
-            if(txtAngle>180) {txtAngle=txtAngle-360f;}
-            if(txtAngle<-180) {txtAngle=txtAngle+360f;}
-            // the text is in next line
-            try {line = br.readLine();}
-            catch (java.io.IOException ex) {
-                msg = "while reading the plot file:"+nl+
-                  "   \""+pltFile.getAbsolutePath()+"\"";
-                exception(ex, msg, doNotStop);
-                bb = null;
-                break;
-            }
-            if(line == null) {break;}
-            if (line.length()>9) {
-                comment= rTrim(line.substring(9));
-                if(comment.startsWith(" ")) {comment = comment.substring(1);}
-            } else {comment = "";}
-            // addjust userSpaceMax and userSpaceMin
-            textBoxMinMax(i1, i2, (txtSize * 100f),
-                            (txtSize*100f*comment.length()), txtAngle, bb);
-        }
+    // the range of the "move to" and "draw to" steps is in the plot file
+    if(pf.stepMin.x <= pf.stepMax.x) {
+        bb.xMn = (double)pf.stepMin.x * scaleX;  bb.yMn = (double)pf.stepMin.y * scaleY;
+        bb.xMx = (double)pf.stepMax.x * scaleX;  bb.yMx = (double)pf.stepMax.y * scaleY;
+    }
+    int i1,i2;
+    for(PltFile.Text t : pf.texts()) {
+        i1 = pf.steps.i1(t.step);  i2 = pf.steps.i2(t.step);
+        float txtSize = (float)t.txtSize;
+        float txtAngle = (float)t.txtAngle;
+        //get angles between +180 and -180
+        while (txtAngle>360) {txtAngle=txtAngle-360f;}
+        while (txtAngle<-360) {txtAngle=txtAngle+360f;}
+        if(txtAngle>180) {txtAngle=txtAngle-360f;}
+        if(txtAngle<-180) {txtAngle=txtAngle+360f;}
+        // addjust userSpaceMax and userSpaceMin
+        textBoxMinMax(i1, i2, (txtSize * 100f),
+                        (txtSize*100f*t.txtLine.length()), txtAngle, bb);
     }
-    try{br.close();} catch (java.io.IOException ex) {exception(ex, null, doNotStop);}
     return bb;
   }
-  //<editor-fold defaultstate="collapsed" desc="readFloat(String)">
-    private static float readFloat(String t) {
-      float f;
-      try{f = Float.parseFloat(t);}
-      catch (java.lang.NumberFormatException ex) {
-          System.out.println(DASH_LINE+nl+"Error: "+ex.toString()+nl+
-                  "   while reading a \"float\" from String: \""+t+"\""+nl+DASH_LINE);
-          f = 0f;}
-      return f;
-    } //readFloat(T)
-  //</editor-fold>
   //<editor-fold defaultstate="collapsed" desc="textBoxMinMax">
  /** find out the bounding box around a text, (adding some margins on top and bottom
   * to allow for super- and sub-scripts). Adjust bb using this bounding box.
@@ -24,7 +24,7 @@ import lib.kemi.interpolate.Interpolate;
  * 
  * @author Ignasi Puigdomenech */
 public class Plot_Predom {
-  private Predom pred = null;
+  private PredomDiagram pred = null;
   private static final java.util.Locale engl = java.util.Locale.ENGLISH;
 /** Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used. */
@@ -54,12 +54,12 @@ public class Plot_Predom {
 
 /**
  * Constructor.
- * @param pred0 The PREDOM "frame".
+ * @param pred0 the PredomDiagram with the options for the diagram.
  * @param err0 Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used.
  * @param out0 Where messages will be printed. It may be <code>System.out</code>.
  * If null, <code>System.out</code> is used. */
-public Plot_Predom(Predom pred0, java.io.PrintStream err0, java.io.PrintStream out0) {
+public Plot_Predom(PredomDiagram pred0, java.io.PrintStream err0, java.io.PrintStream out0) {
     this.pred = pred0;
     if(err0 != null) {this.err = err0;} else {this.err = System.err;}
     if(out0 != null) {this.out = out0;} else {this.out = System.out;}
@@ -240,8 +240,9 @@ void minMax(Chem ch, PredomData pd){
  * @param plotFile where the diagram will be saved
  * @param ch where the data for the chemical system are stored
  * @param diagP contains information on the diagram
+ * @return the <code>GraphLib</code> instance that writes the plot file
  */
-void drawPlot(java.io.File plotFile, Chem ch, PredomData diagP) {
+GraphLib drawPlot(java.io.File plotFile, Chem ch, PredomData diagP) {
 Chem.ChemSystem cs = ch.chemSystem;
 Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
 Chem.ChemSystem.NamesEtc namn = cs.namn;
@@ -353,8 +354,8 @@ boolean xMolar, yMolar;
     //          Create a GraphLib instance
     GraphLib g = new GraphLib();
     boolean textWithFonts = true;
-    try {g.start(pred.dd, plotFile, textWithFonts);}
-    catch (GraphLib.OpenPlotFileException ex) {pred.showErrMsgBx(ex.getMessage(),1); g.end(); return;}
+    try {g.start(pred.dd, plotFile, textWithFonts, pred.plotFileInBackground, pred.binaryPlotFile);}
+    catch (GraphLib.OpenPlotFileException ex) {pred.showErrMsgBx(ex.getMessage(),1); g.end(); return g;}
     pred.dd.axisInfo = false;
     g.setLabel("-- PREDOM DIAGRAM --");
     // -------------------------------------------------------------------
@@ -367,7 +368,7 @@ boolean xMolar, yMolar;
     try {g.axes((float)xLow, (float)xHigh, (float)yLow, (float)yHigh,
             xOr,yOr, xAxl,yAxl, heightAx,
             false, false, true);}
-    catch (GraphLib.AxesDataException ex) {pred.showMsg(ex); g.end(); return;}
+    catch (GraphLib.AxesDataException ex) {pred.showMsg(ex); g.end(); return g;}
     //---- Write text under axes
     // Concentration types:
     // hur =1 for "T" (fixed Total conc.)
@@ -774,6 +775,7 @@ boolean xMolar, yMolar;
     // -------------------------------------------------------------------
     //                  Finished
     g.end();
+    return g;
 } //drawPlot()
 //</editor-fold>
 
@@ -3,11 +3,6 @@ package predominanceAreaDiagrams;
 import lib.common.Util;
 import lib.kemi.chem.Chem;
 import lib.kemi.graph_lib.DiagrPaintUtility;
-import lib.kemi.graph_lib.GraphLib;
-import lib.kemi.haltaFall.Factor;
-import lib.kemi.haltaFall.HaltaFall;
-import lib.kemi.readDataLib.ReadDataLib;
-import lib.kemi.readWriteDataFiles.ReadChemSyst;
 
 /** Creates a Predominance Area diagram. <br>
  * This program will read a data file, make some calculations, and
@@ -68,37 +63,19 @@ public class Predom extends javax.swing.JFrame {
     private boolean inputDataFileInCommandLine;
 /** true if the calculations have finished, or if the user wishes to finish
  * them (and to end the program) */
-    private boolean finishedCalculations = true;
+    private volatile boolean finishedCalculations = true;
 /** true if the graphic user interface (GUI) has been displayed and then closed by the user */
     private boolean programEnded = true;
 /** An instance of SwingWorker to perform the HaltaFall calculations */
     private HaltaTask tsk = null;
-/** used to calculate execution time */
-    private long calculationStart = 0;
-/** the execution time */
-    private long calculationTime = 0;
 /** size of the user's computer screen */
     static java.awt.Dimension screenSize;
 /** original size of the program window */
     private final java.awt.Dimension originalSize;
 
-/** a class used to store and retrieve data, used by HaltaFall */
-    private Chem ch = null;
-/** a class to store data about a chemical system */
-    private Chem.ChemSystem cs = null;
-/** a class to store data about a the concentrations to calculate an
- * equilibrium composition, used by HaltaFall */
-    private Chem.ChemSystem.ChemConcs csC = null;
-/** a class to store diverse information on a chemical system: names of species, etc */
-    private Chem.ChemSystem.NamesEtc namn = null;
-/** a class to store array data about a diagram */
-    private Chem.DiagrConcs dgrC = null;
-/** a class to store non-array data about a diagram */
-    private Chem.Diagr diag = null;
-/** a class to calculate activity coefficients */
-    private Factor factor;
-/** the calculations class */
-    private HaltaFall h;
+/** reads the data file, makes the calculations and saves the diagram;
+ * it also contains the data from the plot-file needed by the paint methods */
+    private PredomDiagram pd = null;
 
 /** if true only aquous species will be shown in the diagram, that is,
  * predominance areas for solids will not appear. */
@@ -106,16 +83,6 @@ public class Predom extends javax.swing.JFrame {
 /** if true a dashed line will be plotted in the diagram showing the pH of
  * neutral water, which is temperature dependent. At 25 C the neutral pH is 7. */
     boolean neutral_pH = false;
-/** the species predominating in the diagram at the point being calculated.
- * -2 if two solid species have practically the same amount of "main component" */
-    private int topSpecies = -1;
-
-/** a class to read text files where data is separated by commas */
-    private ReadDataLib rd;
-    private Plot_Predom plot = null;
-/** data from a plot-file needed by the paint methods */
-    GraphLib.PltData dd; // instantiated in "Plot_Predom.drawPlot"
-                                   // it containts the info in the plot file
 
     private HelpAboutF helpAboutFrame = null;
     private final javax.swing.JFileChooser fc;
@@ -131,22 +98,36 @@ public class Predom extends javax.swing.JFrame {
     private java.io.PrintStream out;
 
     /** The maximum number of calculation steps along an axis */
-    private final static int NSTP_MAX = 1000;
+    private final static int NSTP_MAX = PredomDiagram.NSTP_MAX;
     /** The minimum number of calculation steps along the X-axis */
-    private final static int NSTP_MIN = 4;
-    private final static int NSTP_DEF = 50;
+    private final static int NSTP_MIN = PredomDiagram.NSTP_MIN;
+    private final static int NSTP_DEF = PredomDiagram.NSTP_DEF;
     /** The number of calculation steps along an axis.
      * The number of calculated points in the plot is <code>nSteps+1</code>
      * along each axis. Note that to the outside world, the number of
      * calculation points are reported.  */
     int nSteps = NSTP_DEF;
-    /** The calculation step being performed along the outer loop (out of nSteps).
-     * The first point corresponds to no step, <code>nStepOuter = 0</code> */
-    private int nStepOuter;
-    /** The calculation step being performed along the inner loop (out of nSteps)
-     * The first point corresponds to no step, <code>nStepInner = 0</code> */
-    private int nStepInner;
-    private final double ln10 = Math.log(10d);
+    /** The number of threads used for the calculations. If larger than one,
+     * the columns of the grid are calculated in parallel by a pool of
+     * threads, see <code>PredomDiagram.doTiledCalculations()</code>.
+     * Set with the command-line option "-threads=n"; if n&lt;1 all the
+     * available processors are used. */
+    private int nThreads = 1;
+    /** If true, the grid is first calculated at a coarse resolution, and
+     * only the cells where the predominating species differ at the corners
+     * are subdivided, down to the resolution given by <code>nSteps</code>,
+     * see <code>PredomDiagram.doAdaptiveCalculations()</code>.
+     * Set with the command-line option "-adapt". */
+    private boolean adaptiveGrid = false;
+    /** If true, after the grid has been calculated the position of each
+     * frontier point is found by bisection along the grid edge between the
+     * two predominating species, see <code>PredomDiagram.bisectFrontiers()</code>.
+     * Set with the command-line option "-bisect". */
+    private boolean bisectFrontiers = false;
+    /** If true a binary companion file (".pltb") is written together with
+     * the plot file, see <code>PredomDiagram.binaryPlotFile</code>.
+     * Set with the command-line option "-pltb". */
+    private boolean binaryPlotFile = false;
     /** true if activity coeeficients have to be calculated */
     boolean calcActCoeffs = false;
     private final int actCoeffsModelDefault =2;
@@ -155,21 +136,11 @@ public class Predom extends javax.swing.JFrame {
     double temperature_InCommandLine = Double.NaN;
     private int actCoeffsModel_InCommandLine = -1;
     private double tolHalta = Chem.TOL_HALTA_DEF;
-    double peEh = Double.NaN;
     double tHeight;
 
     /** output debug reporting in HaltaFall. Default = Chem.DBGHALTA_DEF = 1 (report errors only)
      * @see Chem.ChemSystem.ChemConcs#dbg Chem.ChemSystem.ChemConcs.dbg */
     private int dbgHalta = Chem.DBGHALTA_DEF;
-    /** true if the component has either <code>noll</code> = false or it has positive
-     * values for the stoichiometric coefficients (a[ix][ia]-values)
-     * @see chem.Chem.ChemSystem#a a
-     * @see chem.Chem.ChemSystem#noll noll */
-    private boolean[] pos;
-    /** true if the component has some negative
-     * values for the stoichiometric coefficients (a[ix][ia]-values)
-     * @see chem.Chem.ChemSystem#a a */
-    private boolean[] neg;
     //
     private final DiagrPaintUtility diagrPaintUtil;
     //
@@ -240,7 +211,7 @@ public class Predom extends javax.swing.JFrame {
         javax.swing.Action ctrlCAction = new javax.swing.AbstractAction() {
             @Override public void actionPerformed(java.awt.event.ActionEvent e) {
                 if(jTabbedPane.getSelectedIndex() == 1) {
-                      if(h != null) {h.haltaCancel();}
+                      if(pd != null) {pd.cancel();}
                       if(tsk != null) {tsk.cancel(true);}
                       finishedCalculations = true;
                       Predom.this.notify_All();
@@ -351,7 +322,7 @@ public class Predom extends javax.swing.JFrame {
                         jTextFieldIonicStgr.isEnabled()) {
                     jTextFieldIonicStgr.requestFocusInWindow();
                 } else if(jTabbedPane.getSelectedIndex() == 1) {
-                      if(h != null) {h.haltaCancel();}
+                      if(pd != null) {pd.cancel();}
                       if(tsk != null) {tsk.cancel(true);}
                       finishedCalculations = true;
                       Predom.this.notify_All();
@@ -1467,395 +1438,6 @@ private void jLabelHDMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:ev
     }//GEN-LAST:event_jMenuCancelActionPerformed
 //</editor-fold>
 
-//<editor-fold defaultstate="collapsed" desc="checkInput">
-/** Make checks and make changes to the data stored in the Chem classes.
- * @return true if checks are OK  */
-  private boolean checkInput() {
-    if(cs == null) {err.println("? Programming error in \"PREDOM.checkInput\": cs=null."); return false;}
-    if(dbg) {out.println("--- checkInput()");}
-    // -------------------
-    //   CHEMICAL SYSTEM
-    // -------------------
-    // mg = total number of soluble species in the aqueous solution:
-    //      all components + soluble complexes
-    // Note that in HaltaFall the solid components are fictitious soluble
-    // components with "zero" concentration (with noll = true)
-    int mg = cs.Ms - cs.mSol; // = na + nx;
-    int i;
-
-    // ---- Remove asterisk "*" from the name of components
-    for(i=0; i<cs.Na; i++) {
-        if(namn.identC[i].startsWith("*")) {
-            namn.identC[i] = namn.identC[i].substring(1);
-            namn.ident[i]  = namn.identC[i];
-            cs.noll[i] = true;
-        }
-        //if(chem_syst.Chem.isWater(csNamn.identC[i]))
-        //            {water = i;}
-    } // for i=0...Na-1
-
-    // ---- Remove reaction products (soluble or solid) with
-    //      name starting with "*".
-    // Note that the solids corresponding to the components will
-    // not have a name starting with "*". This is already removed when
-    // reading the input file.
-    double w; int j; int js;
-    i = cs.Na;
-    while (i < cs.Ms) {
-        if(namn.ident[i].startsWith("*")) {
-            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
-            cs.Ms = cs.Ms -1;
-            if(i >= cs.Ms) {break;}
-            for(j=i; j<cs.Ms; j++) {
-                js = j - cs.Na;
-                cs.lBeta[js] = cs.lBeta[js+1];
-                // for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
-                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
-                namn.ident[j] = namn.ident[j+1];
-                cs.noll[j] = cs.noll[j+1];
-            }
-        }
-        else {i++;}
-    } //while (true)
-
-    // ---- get electric charge, length of name, etc
-    diag.aquSystem = false;
-    for(i=0; i<cs.Ms; i++) {
-        namn.nameLength[i] = getNameLength(namn.ident[i]);
-        // Species for which the concentration is not to be
-        // included in the Mass-Balance (for ex. the concentration
-        // of "free" electrons is excluded)
-        if(Util.isElectron(namn.ident[i]) ||
-           Util.isWater(namn.ident[i])) {
-                cs.noll[i] = true;
-                diag.aquSystem = true;} // e- or H2O
-        if(i < mg) { //aqueous species
-            namn.z[i]=0;
-            csC.logf[i] = 0;
-            if(namn.ident[i].length() >4 &&
-                namn.ident[i].toUpperCase().endsWith("(AQ)")) {
-                    diag.aquSystem = true;}
-                else { //does not end with "(aq)"
-                    namn.z[i] = Util.chargeOf(namn.ident[i]);
-                    if(namn.z[i] != 0) {diag.aquSystem = true;}
-                } // ends with "(aq)"?
-        }// if i < mg
-    } // for i=0...Ms-1
-    // The electric charge of two fictive species (Na+ and Cl-)
-    // that are used to ensure electrically neutral aqueous solutions
-    // when calculating the ionic strength and activity coefficients
-    namn.z[mg] = 1;     //electroneutrality "Na+"
-    namn.z[mg+1] =-1;   //electroneutrality "Na+"
-
-    // ---- set Gaseous species to have zero conc
-    //      if it is an aqueous system
-    if(diag.aquSystem) {
-        for(i =0; i < mg; i++) {
-            if(Util.isGas(namn.ident[i]) ||
-               Util.isLiquid(namn.ident[i]) ||
-               Util.isWater(namn.ident[i])) {
-                        cs.noll[i] = true;}
-        } //for i
-        } //if aquSystem
-
-    // ---- Remove H2O among the complexes, if found
-    if(diag.aquSystem) {
-      for(i=cs.Na; i<cs.Ms; i++) {
-        if(Util.isWater(namn.ident[i])) {
-            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
-            cs.Ms = cs.Ms -1;
-            if(i >= cs.Ms) {break;}
-            for(j=i; j<cs.Ms; j++) {
-                js = j - cs.Na;
-                cs.lBeta[js] = cs.lBeta[js+1];
-                //for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
-                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
-                namn.ident[j] = namn.ident[j+1];
-                cs.noll[j] = cs.noll[j+1];
-            }
-        } //ident[i]="H2O"
-      } //for i
-    } //if aquSystem
-
-    if(dbg) {cs.printChemSystem(out);}
-
-    // ---- Check that all reactions are charge balanced
-    if(calcActCoeffs) {
-        double zSum;
-        boolean ok = true;
-        for(i=cs.Na; i < mg; i++) {
-            int ix = i - cs.Na;
-            zSum = (double)(-namn.z[i]);
-            for(j=0; j < cs.Na; j++) {
-                zSum = zSum + cs.a[ix][j]*(double)namn.z[j];
-            } //for j
-            if(Math.abs(zSum) > 0.0005) {
-                ok = false;
-                err.format(engl,"--- Warning: %s, z=%3d, charge imbalance:%9.4f",
-                            namn.ident[i],namn.z[i],zSum);
-            }
-        } //for i
-        if(!ok) {
-            if(!showErrMsgBxCancel("There are charge imbalanced reactions in the input file.",1)) {
-                return false;
-            }
-        }
-    } // if calcActCoeffs
-
-    // ---- Check that at least there is one fuid species active
-    boolean foundOne = false;
-    for(i =0; i < mg; i++) {
-        if(!cs.noll[i]) {foundOne = true; break;}
-    } //for i
-    if(!foundOne) {
-        String t = "Error: There are no fluid species active ";
-        if(cs.mSol > 0) {t = t.concat("(Only solids)");}
-        t = t+nl+"This program can not handle such chemical systems.";
-        showErrMsgBx(t,1);
-        return false;
-    }
-
-    // --------------------
-    //   PLOT INFORMATION
-    // --------------------
-    diag.pInX =0; diag.pInY = 0;
-    //  pInX=0 "normal" X-axis
-    //  pInX=1 pH in X-axis
-    //  pInX=2 pe in X-axis
-    //  pInX=3 Eh in X-axis
-    if(Util.isElectron(namn.identC[diag.compX])) {
-        if(diag.Eh) {diag.pInX = 3;} else {diag.pInX = 2;}
-    } else if(Util.isProton(namn.identC[diag.compX])) {diag.pInX = 1;}
-    if(Util.isElectron(namn.identC[diag.compY])) {
-        if(diag.Eh) {diag.pInY = 3;} else {diag.pInY = 2;}
-    } else if(Util.isProton(namn.identC[diag.compY])) {diag.pInY = 1;}
-
-
-    // ----------------------------------------------
-    //   CHECK THE CONCENTRATION FOR EACH COMPONENT
-    // ----------------------------------------------
-
-    for(int ia =0; ia < cs.Na; ia++) {
-        if(dgrC.hur[ia]==1 && // T
-            ia==diag.compX) {
-                showErrMsgBx("Error: the concentration for component \""+namn.identC[ia]+"\" "+
-                    "must vary, as it belongs to the X-axis!",1);
-                return false;
-                }
-        if(ia==diag.compMain && dgrC.hur[ia]==1 && // T
-            Math.abs(dgrC.cLow[ia]) <= 0) {
-                if(!showErrMsgBxCancel("The concentration for "+nl
-                        +"the main component \""+namn.identC[ia]+"\" is zero!",1)) {return false;}
-                }
-        if(dgrC.hur[ia] >0 && dgrC.hur[ia]<=3) { //T, TV or LTV
-            if(Util.isWater(namn.identC[ia])) {
-                showErrMsgBx("Error: The calculations are made for 1kg H2O"+nl+
-                           "Give log(H2O-activity) instead of a total conc. for water.",1);
-                return false;
-           } // if water
-        } //if T, TV or LTV
-        if(dgrC.hur[ia] ==2 || dgrC.hur[ia] ==3 || dgrC.hur[ia] ==5) { //TV, LTV or LAV
-            if(ia != diag.compX && ia != diag.compY) {
-                String t;
-                if(dgrC.hur[ia] ==5) {t="log(activity)";} else {t="total conc.";}
-                String msg = "Error: The "+t+" is varied for \""+namn.identC[ia]+"\""+nl+
-                           "   but this component is neither the component in the Y-axis ("+namn.identC[diag.compY]+"),"+nl+
-                           "   nor the component in the X-axis ("+namn.identC[diag.compX]+")!";
-                showErrMsgBx(msg,2);
-                return false;
-            }
-        } //if TV, LTV or LAV
-        if((dgrC.hur[ia] ==1 || dgrC.hur[ia] ==4) && //T or LA
-           (ia == diag.compX || ia == diag.compY)) {
-                String t, ax;
-                if(dgrC.hur[ia] ==4) {t="log(activity)";} else {t="total conc.";}
-                if(ia == diag.compX) {ax="X";} else {ax="Y";}
-                showErrMsgBx("Error: The "+t+" of \""+namn.identC[ia]+"\""+nl+
-                        "can NOT be a fixed value because this component belongs to the "+ax+"-axis !",1);
-                return false;
-            }
-        if(dgrC.hur[ia] ==1 && // T
-           Math.abs(dgrC.cLow[ia]) >100) {
-                String t = String.format(engl,"Error:  For component: "+namn.identC[ia]+nl+
-                        "   Tot.Conc.=%12.4g mol/kg.  This is not a reasonable value!",dgrC.cLow[ia]);
-                showErrMsgBx(t,1);
-                return false;
-            }
-        if(dgrC.hur[ia] ==4 &&  // LA
-           Util.isProton(namn.identC[ia]) &&
-           (dgrC.cLow[ia] <-14 || dgrC.cLow[ia] >2)) {
-                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f%n"+
-                        "This value could be due to an input error.",(-dgrC.cLow[ia]));
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-        }
-        if(dgrC.hur[ia] !=1 && dgrC.hur[ia] !=4) {//if TV, LTV or LAV
-            if(dgrC.cLow[ia] == dgrC.cHigh[ia] ||
-                    Math.max(Math.abs(dgrC.cLow[ia]), Math.abs(dgrC.cHigh[ia])) < 1e-15) {
-                showErrMsgBx("Error:  Min-value = Max-value for component \""+namn.identC[ia]+"\"",1);
-                return false;
-            }
-            if(dgrC.cLow[ia] > dgrC.cHigh[ia] && !reversedConcs) {
-                w = dgrC.cLow[ia];
-                dgrC.cLow[ia] = dgrC.cHigh[ia];
-                dgrC.cHigh[ia] = w;
-            }
-            if(!reversedConcs && dgrC.hur[ia] ==5 && // pH/pe/EH varied - LAV
-                   (Util.isProton(namn.identC[ia]) ||
-                    Util.isElectron(namn.identC[ia]))) {
-                w = dgrC.cLow[ia];
-                dgrC.cLow[ia] = dgrC.cHigh[ia];
-                dgrC.cHigh[ia] = w;
-            }
-            if(dgrC.hur[ia] ==5 && // LAV
-                    (Util.isProton(namn.identC[ia])) &&
-                     (dgrC.cLow[ia] <-14.00001 || dgrC.cLow[ia] >2.00001 ||
-                      dgrC.cHigh[ia] <-14.00001 || dgrC.cHigh[ia] >2.00001)) {
-                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f to %7.2f%n"+
-                        "These values could be due to an input error.",(-dgrC.cLow[ia]),(-dgrC.cHigh[ia]));
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-            }
-            if(dgrC.hur[ia] ==2 && // TV
-                  (Math.max(Math.abs(dgrC.cHigh[ia]),Math.abs(dgrC.cLow[ia]))>100)) {
-                showErrMsgBx("Error:  You give  ABS(TOT.CONC.) > 100  for component: "+namn.identC[ia]+nl+
-                    "This value is too high and perhaps an input error."+nl+
-                    "Set the maximum ABS(TOT.CONC.) value to 100.",1);
-                return false;
-            }
-            if(dgrC.hur[ia] ==3) { // LTV
-                if((Math.min(dgrC.cLow[ia], dgrC.cHigh[ia]) < -7.0001) &&
-                      (Util.isProton(namn.identC[ia]))) {
-                    String msg = "Warning: You give a  LOG (TOT.CONC.) < -7  for component: "+namn.identC[ia]+nl+
-                        "This value is rather low and could be due to an input error."+nl+
-                        "Maybe you meant to set  LOG (ACTIVITY) < -7 ??";
-                    if(!showErrMsgBxCancel(msg,2)) {return false;}
-                    }
-                if(Math.max(dgrC.cLow[ia], dgrC.cHigh[ia]) > 2.0001) {
-                    showErrMsgBx("Error: You give a  LOG (TOT.CONC.) > 2  for component: "+namn.identC[ia]+nl+
-                        "This value is too high and it could be due to an input error."+nl+
-                        "Please set the LOG (TOT.CONC.) value to <=2.",1);
-                    return false;
-                }
-            } //if LTV
-        } //if TV, LTV or LAV
-
-    } // for ia = 0... Na-1
-
-    // ----------------
-    //   OTHER CHECKS
-    // ----------------
-
-    if(cs.nx == 0) {
-      for(i =0; i < cs.Na; i++) {
-        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
-        if(i == diag.compX || i == diag.compY) { //component in an axis:
-          if(i >= (cs.Na-cs.solidC)) { //is it a solid?
-              if(!showErrMsgBxCancel("Warning: with no complexes in the fluid phase you should not have"+nl+
-              "a solid component ("+namn.identC[i]+") in an axis.",2)) {return false;}
-          }
-      }
-      } //for i
-    } //if nx=0
-
-    // ---- Check that a total concentration is given for the main component
-    //   is it a solid?                        and log(activity) given?
-    if(diag.compMain >= (cs.Na - cs.solidC) && csC.kh[diag.compMain] == 2) {
-        String v;
-        if(dgrC.hur[diag.compMain] == 5) {v = " varied";} else {v = "";}
-        String t = "Error: For the main component \""+namn.identC[diag.compMain]+"\""+nl+
-                "   please give its total concentration"+v+nl+
-                "   instead of its log(activity)"+v;
-        showErrMsgBx(t+".",1);
-        return false;
-    }
-
-    // ---- See which components have positive or negative (or both)
-    //      values for the stoichiometric coefficients (a[ix][ia]-values)
-    pos = new boolean[cs.Na];
-    neg = new boolean[cs.Na];
-    for(i =0; i < cs.Na; i++) {
-        pos[i] = false; neg[i] = false;
-        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
-        if(!cs.noll[i]) { // if not "e-" and not solid component
-                    pos[i] = true;}
-        for(j = cs.Na; j < cs.Ms; j++) {
-            if(!cs.noll[j]) {
-                if(cs.a[j-cs.Na][i] >0) {pos[i] = true;}
-                if(cs.a[j-cs.Na][i] <0) {neg[i] = true;}
-            } // !noll
-        } //for j
-    } //for i
-    // check POS and NEG with the Tot.Conc. given in the input
-    for(i =0; i < cs.Na; i++) {
-        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
-        if((!pos[i] && !neg[i]) ) { // || cs.nx ==0
-            String msg = "Error: for component \""+namn.identC[i]+"\" give Log(Activity)";
-            if(dgrC.hur[i] !=1) { // not "T", that is: "TV" or "LTV"
-                msg = msg+" to vary";}
-            showErrMsgBx(msg,1);
-            return false;
-        } //if Nx =0 or (!pos[] & !neg[])
-        if((pos[i] && neg[i]) ||
-           (pos[i] && (dgrC.hur[i] ==3 ||  //LTV
-                (dgrC.cLow[i]>0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]>0)))) ||
-           (neg[i] && (
-                dgrC.hur[i] !=3 && //LTV
-                (dgrC.cLow[i]<0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]<0))))) {
-            continue;
-        }
-        if(pos[i] || neg[i]) {
-            String msg = "Error: Component \"%s\" may not have %s Tot.Conc. values.%s"+
-                    "Give either  Tot.Conc. %s=0.0  or  Log(Activity)%s";
-            if(!pos[i] && (dgrC.cLow[i]>0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]>0))) {
-                showErrMsgBx(String.format(msg, namn.identC[i], "positive", nl,"<",nl),1);
-                return false;}
-            if(!neg[i] && (dgrC.cLow[i]<0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]<0))) {
-                showErrMsgBx(String.format(msg, namn.identC[i], "negative", nl,">",nl),1);
-                return false;}
-        } //if pos or neg
-    } //for i
-
-    // OK so far. Update "nx" (=nbr of soluble complexes)
-    cs.nx = mg - cs.Na;
-    return true;
-
-  } // checkInput()
-
-//<editor-fold defaultstate="collapsed" desc="getNameLength(species)">
-    private static int getNameLength(String species) {
-        int nameL = Math.max(1, Util.rTrim(species).length());
-        if(nameL < 3) {return nameL;}
-        // Correct name length if there is a space between name and charge
-        // "H +",  "S 2-",  "Q 23+"
-        int sign; int ik;
-        sign =-1;
-        for(ik =nameL-1; ik >= 2; ik--) {
-            char c = species.charAt(ik);
-            if(c == '+' || c == '-' ||
-               // unicode en dash or unicode minus
-               c =='\u2013' || c =='\u2212') {sign = ik; break;}
-            } //for ik
-        if(sign <2) {return nameL;}
-        if(sign < nameL-1 &&
-                (Character.isLetterOrDigit(species.charAt(sign+1)))) {return nameL;}
-        if(species.charAt(sign-1) == ' ')
-                        {nameL = nameL-1; return nameL;}
-        if(nameL >=4) {
-                if(species.charAt(sign-1) >= '2' && species.charAt(sign-1) <= '9' &&
-                   species.charAt(sign-2) == ' ')
-                        {nameL = nameL-1; return nameL;}
-        } //if nameL >=4
-        if(nameL >=5) {
-                if((species.charAt(sign-1) >= '0' && species.charAt(sign-1) <= '9') &&
-                   (species.charAt(sign-2) >= '1' && species.charAt(sign-2) <= '9') &&
-                   species.charAt(sign-3) == ' ')
-                        {nameL = nameL-1;}
-            } //if nameL >=5
-        return nameL;
-    } // getNameLength(species)
-//</editor-fold>
-
-//</editor-fold>
-
 //<editor-fold defaultstate="collapsed" desc="dispatchArg">
 /**
  * @param arg String containing a command-line argument
@@ -2023,6 +1605,24 @@ private boolean dispatchArg(String arg) {
             }// = or :
         } // if starts with "-tol"
     }
+    if(arg.length() >9) {
+        String arg0 = arg.substring(0, 8).toLowerCase();
+        if(arg0.startsWith("-threads") || arg0.startsWith("/threads")) {
+            if(arg.charAt(8) == '=' || arg.charAt(8) == ':') {
+                String t = arg.substring(9);
+                try {nThreads = Integer.parseInt(t);
+                    if(nThreads < 1) {nThreads = Runtime.getRuntime().availableProcessors();}
+                    if(dbg) {out.println("Nbr of threads for the calculations = "+nThreads);}
+                    return true;
+                    } //try
+                catch (NumberFormatException nfe) {
+                msg = "Wrong numeric format for number of threads in \""+t+"\"";
+                nThreads = 1;
+                break;
+                } //catch
+            }// = or :
+        } // if starts with "-threads"
+    } //if length >9
     if(arg.length() >6) {
         String arg0 = arg.substring(0, 5).toLowerCase();
         if(arg0.startsWith("-dbgh") || arg0.startsWith("/dbgh")) {
@@ -2047,6 +1647,18 @@ private boolean dispatchArg(String arg) {
             jCheckBoxMenuPredomDebug.setSelected(dbg);
             out.println("Add neutral pH dash-line to plot.");
             return true;
+    } else if(arg.equalsIgnoreCase("-adapt") || arg.equalsIgnoreCase("/adapt")) {
+            adaptiveGrid = true;
+            if(dbg) {out.println("Adaptive grid: refine only the cells at the frontiers between areas");}
+            return true;
+    } else if(arg.equalsIgnoreCase("-bisect") || arg.equalsIgnoreCase("/bisect")) {
+            bisectFrontiers = true;
+            if(dbg) {out.println("Frontier points will be located by bisection");}
+            return true;
+    } else if(arg.equalsIgnoreCase("-pltb") || arg.equalsIgnoreCase("/pltb")) {
+            binaryPlotFile = true;
+            if(dbg) {out.println("A binary plot file (\".pltb\") will also be written");}
+            return true;
     } else if(arg.equalsIgnoreCase("-aqu") || arg.equalsIgnoreCase("/aqu")) {
             aqu = true;
             jCheckBoxMenuPredomDebug.setSelected(dbg);
@@ -2255,6 +1867,8 @@ private boolean dispatchArg(String arg) {
   private void end_program() {
       if(dbg) {out.println("--- end_program()");}
       if(!finishedCalculations && !quitConfirm(this)) {return;}
+      // the plot file might still be written in the background
+      if(pd != null) {pd.waitForPlotFile();}
       programEnded = true;
       this.notify_All();
       this.dispose();
@@ -2300,7 +1914,7 @@ private boolean dispatchArg(String arg) {
       q = n == javax.swing.JOptionPane.NO_OPTION;
     } //not "do not stop":
     if(q) {
-      if(h != null) {h.haltaCancel();}
+      if(pd != null) {pd.cancel();}
       finishedCalculations = true;
       this.notify_All();
     }
@@ -2478,45 +2092,6 @@ private class outFilteredStreamPredom extends java.io.FilterOutputStream {
 
 //</editor-fold>
 
-//<editor-fold defaultstate="collapsed" desc="findTopSpecies()">
-/** get the value of <code>topSpecies</code> */
-private void findTopSpecies() {
-  //if(dbg) {out.println("--- findTopSpecies()");}
-  double topConc;
-  double topConcSolid;
-  if(diag.compMain < (cs.Na - cs.solidC) && !cs.noll[diag.compMain]) {
-    topConc = csC.C[diag.compMain];
-    topSpecies = diag.compMain;
-  } else {topConc = 0; topSpecies = -1;}
-  double w;
-  int nIons = cs.Na + cs.nx;
-  for (int i = cs.Na; i < nIons; i++) {
-    w = cs.a[i-cs.Na][diag.compMain];
-    if(Math.abs(w) < 0.00001) {continue;}
-    w = w * csC.C[i];
-    if(w <= topConc) {continue;}
-    topConc = w;
-    topSpecies = i;
-  } //for i
-  if(aqu) {return;}
-  //plot also predominance areas for solids
-  topConcSolid = Double.MIN_VALUE;
-  if(diag.oneArea >= (cs.Na+cs.nx)) { //if only one area is plotted
-      w = cs.a[diag.oneArea][diag.compMain]*csC.C[diag.oneArea];
-      if(w > topConcSolid) {topSpecies = diag.oneArea;}
-      return;
-  } //if only one area
-  for (int i = nIons; i < cs.Ms; i++) {
-    w = cs.a[i-cs.Na][diag.compMain]*csC.C[i];
-    if(w < topConcSolid) {continue;}
-    topSpecies = i;
-    //che if the amount of "compMain" is almost the same for two solids (<0.001% diff)
-    if(Math.abs(w/topConcSolid)-1 <= 0.00001) {topSpecies = -2;}
-    topConcSolid = w;
-  } //for i
-} //findTopSpecies()
-//</editor-fold>
-
 //<editor-fold defaultstate="collapsed" desc="getTheInputFileName">
     /** Get an input data file name from the user
      * using an Open File dialog */
@@ -2584,8 +2159,8 @@ private void findTopSpecies() {
  */
     private void paintDiagrPanel(java.awt.Graphics g) {
         java.awt.Graphics2D g2D = (java.awt.Graphics2D)g;
-        if(dd != null) {
-            diagrPaintUtil.paintDiagram(g2D, jPanelDiagram.getSize(), dd, false);
+        if(pd != null && pd.dd != null) {
+            diagrPaintUtil.paintDiagramBuffered(g2D, jPanelDiagram, pd.dd);
         }
     }
 //</editor-fold>
@@ -2595,7 +2170,11 @@ private void findTopSpecies() {
     if(out == null) {out = System.out;}
     out.flush();
     out.println("Possible commands are:"+nl+
+    "  -adapt   (adaptive grid: calculate a coarse grid first and refine only"+nl+
+    "            the cells where the predominating species changes)"+nl+
     "  -aqu     (plot only aqueous species; areas for solids not shown)"+nl+
+    "  -bisect  (locate the lines between areas by bisection between"+nl+
+    "            the calculated points)"+nl+
     "  -d=data-file-name  (input file name)"+nl+
     "  -dbg     (output debug information)"+nl+
     "  -dbgH=n  (level for debug output from HaltaFall"+nl+
@@ -2614,9 +2193,13 @@ private void findTopSpecies() {
     "  -p=output-plot-file-name"+nl+
     "           (note: diagram not displayed after the calculation)"+nl+
     "  -pH      (show neutral pH as a dash line)"+nl+
+    "  -pltb    (write also a binary plot file with extension \"pltb\","+nl+
+    "            which is displayed faster)"+nl+
     "  -rev     (do not reverse the input"+nl+
     "            min. and max. limits in x-axis)"+nl+
     "  -t=nbr   (temperature in °C, ignored if not needed)"+nl+
+    "  -threads=nbr  (number of threads used in the calculations;"+nl+
+    "            default =1; enter zero to use all processors)"+nl+
     "  -tol=nbr (tolerance when solving mass-balance equations in Haltafall,"+nl+
     "            0.01 >= nbr >= 1e-9; default ="+Chem.TOL_HALTA_DEF+")"+nl+
     "Enclose file names with double quotes (\"\") it they contain blank space."+nl+
@@ -2625,150 +2208,52 @@ private void findTopSpecies() {
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="readDataFile">
+/** Reads and checks the data file with a new instance of
+ * <code>PredomDiagram</code>
+ * @param dataFile the input data file
+ * @return false if an error occurs */
 private boolean readDataFile(java.io.File dataFile) {
-    if(dbg) {out.println("--- readDataFile("+dataFile.getAbsolutePath()+")");}
-    String msg;
-    //--- check the name
-    if(!dataFile.getName().toLowerCase().endsWith(".dat")) {
-        msg = "File: \""+dataFile.getName()+"\""+nl+
-                "Error: data file name must end with \".dat\"";
-        showErrMsgBx(msg,1);
-        return false;
-    }
-    if(dataFile.getName().length() <= 4) {
-        msg = "File: \""+dataFile.getName()+"\""+nl+
-                "Error: file name must have at least one character";
-        showErrMsgBx(msg,1);
-        return false;
-    }
-    String dataFileN = null;
-    try {dataFileN = dataFile.getCanonicalPath();} catch (java.io.IOException ex) {}
-    if(dataFileN == null) {
-        try {dataFileN = dataFile.getAbsolutePath();}
-        catch (Exception ex) {dataFileN = dataFile.getPath();}
-    }
-    dataFile = new java.io.File(dataFileN);
-    //
-    //--- create a ReadDataLib instance
-    try {rd = new ReadDataLib(dataFile);}
-    catch (ReadDataLib.DataFileException ex) {
-        showErrMsgBx(ex.getMessage(),1);
-        if(rd != null) {
-            try {rd.close();}
-            catch (ReadDataLib.ReadDataLibException ex2) {showErrMsgBx(ex2);}
-        }
-        return false;
-    }
-    msg = "Reading input data file \""+dataFile+"\"";
-    out.println(msg);
-    if(consoleOutput) {System.out.println(msg);}
-    //--- read the chemical system (names, equilibrium constants, stoichiometry)
-    boolean warn = false; // throw an exception for missing plot data
-    try {ch = null;
-        ch = ReadChemSyst.readChemSystAndPlotInfo(rd, dbg, warn, out);
-    }
-    catch (ReadChemSyst.ConcDataException ex) {
-        ch = null; showMsg(ex);
-    }
-    catch (ReadChemSyst.DataLimitsException ex) {
-        ch = null; showMsg(ex);
-    }
-    catch (ReadChemSyst.PlotDataException ex) {
-        ch = null; showMsg(ex);
-    }
-    catch (ReadChemSyst.ReadDataFileException ex) {
-        ch = null; showMsg(ex);
-    }
-    if(ch == null) {
-        msg = "Error while reading data file \""+dataFile.getName()+"\"";
-        showErrMsgBx(msg,1);
-        try {rd.close();}
-        catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
-        readDataFile_hadError();
-        return false;
-    }
-    if(ch.diag.plotType != 0) {
-        msg = "Error: data file \""+dataFile.getName()+"\""+nl;
-        if(ch.diag.plotType >= 1 && ch.diag.plotType <=8) {msg = msg +
-                "does NOT contain information for a Predominance Area Diagram."+nl+
-                "Run program SED instead.";}
-        else {msg = msg + "contains erroneous plot information.";}
-        showErrMsgBx(msg,1);
-        try {rd.close();}
-        catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
+    if(pd != null) {pd.waitForPlotFile();}
+    pd = newPredomDiagram();
+    pd.dbg = dbg;
+    pd.calcActCoeffs = calcActCoeffs;
+    pd.reversedConcs = reversedConcs;
+    pd.temperature = temperature_InCommandLine;
+    pd.consoleOutput = consoleOutput;
+    if(!pd.readDataFile(dataFile)) {
+        pd = null;
         readDataFile_hadError();
         return false;
     }
-    //
-    //--- get a temperature:
-    double t_d, w;
-    try {w = rd.getTemperature();} // temperature written as a comment in the data file?
-    catch (ReadDataLib.DataReadException ex) {showErrMsgBx(ex); w = Double.NaN;}
-    if(!Double.isNaN(w)) {
-      t_d = w;
-      if(!Double.isNaN(temperature_InCommandLine)) {
-        // temperature also given in command line
-        if(Math.abs(t_d - temperature_InCommandLine)>0.001) { // difference?
-          msg = String.format(engl,"Warning: temperature in data file =%6.2f,%s",t_d,nl);
-          msg = msg + String.format(engl,
-                  "   but in the command line t=%6.2f!%s",
-                  temperature_InCommandLine,nl);
-          msg = msg + String.format(engl,"t=%6.2f will be used.",temperature_InCommandLine);
-          showErrMsgBx(msg,2);
-          t_d = temperature_InCommandLine;
-        } // temperatures differ
-      }  // temperature also given
-      jTextFieldT.setText(String.valueOf(t_d));
-    } // temperature written in data file
-
-    try {rd.close();}
-    catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
-    msg = "Finished reading the input data file.";
-    out.println(msg);
-    if(consoleOutput) {System.out.println(msg);}
-    //--- set the references pointing to the instances of the storage classes
-    cs = ch.chemSystem;
-    csC = cs.chemConcs;
-    namn = cs.namn;
-    dgrC = ch.diagrConcs;
-    diag = ch.diag;
-
-    //---- Set the calculation instructions for HaltaFall
-    // Concentration types for each component:
-    //    hur =1 for "T" (fixed Total conc.)
-    //    hur =2 for "TV" (Tot. conc. Varied)
-    //    hur =3 for "LTV" (Log(Tot.conc.) Varied)
-    //    hur =4 for "LA" (fixed Log(Activity) value)
-    //    hur =5 for "LAV" (Log(Activity) Varied)</pre>
-    for(int j =0; j < cs.Na; j++) {
-        if(dgrC.hur[j] >3)
-            {csC.kh[j]=2;} //kh=2 log(activity) is given
-                            //The Mass Balance eqn. has to be solved
-        else {csC.kh[j]=1;} //kh=1 Tot.Conc. is given
-                            //The Tot.Conc. will be calculated
-    }
-
-    // --------------------------
-    // ---  Check concs. etc  ---
-    // --------------------------
-    if(!checkInput()) {
-        ch = null; cs = null; csC = null; namn = null; dgrC = null; diag = null;
-        readDataFile_hadError();
-        return false;}
-
-    if(cs.jWater >=0 && dbg) {
-        out.println("Water (H2O) is included: all concentrations are in \"mol/(1 kg H2O)\".");
-    }
-
+    if(!Double.isNaN(pd.temperature)) {jTextFieldT.setText(String.valueOf(pd.temperature));}
     return true;
 } //readDataFile()
+
+/** Creates an instance of <code>PredomDiagram</code> that shows the messages
+ * in this window and that reports the progress of the calculations.
+ * @return the new instance */
+private PredomDiagram newPredomDiagram() {
+    return new PredomDiagram(err, out) {
+        @Override protected void showMsg(String msg, int type) {Predom.this.showMsg(msg, type);}
+        @Override protected void showMsg(Exception ex) {Predom.this.showMsg(ex);}
+        @Override protected void showErrMsgBx(String msg, int type) {Predom.this.showErrMsgBx(msg, type);}
+        @Override protected void showErrMsgBx(Exception ex) {Predom.this.showErrMsgBx(ex);}
+        @Override protected boolean showErrMsgBxCancel(String msg, int type) {
+            return Predom.this.showErrMsgBxCancel(msg, type);
+        }
+        @Override protected void progress(int nbrPointsDone) {
+            HaltaTask t = tsk;
+            if(t != null) {t.progress(nbrPointsDone);}
+        }
+    };
+} //newPredomDiagram()
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="Temperature & Ionic Strength">
     private void showTemperature() {
     if(!jCheckActCoeff.isEnabled() ||
             ((!calcActCoeffs || ionicStrength ==0) &&
-             (diag == null || (diag !=null && diag.pInX !=3 && diag.pInY !=3 && !diag.Eh)))
+             (pd == null || (pd.diag !=null && pd.diag.pInX !=3 && pd.diag.pInY !=3 && !pd.diag.Eh)))
             ) {
         jLabelT.setText("temperature");
         jLabelT.setEnabled(false);
@@ -2952,157 +2437,52 @@ void showMsg(Exception ex) {
     jLabelStatus.setText("Starting the calculations");
     jLabelProgress.setText(" ");
     disableMenus();
-    //---- Check if "EH" is needed -----------
-    if(diag.Eh && diag.pInX != 3 && diag.pInY != 3) {
-        boolean peGiven = false;
-        for(int i =0; i < cs.Na; i++) {
-            if(Util.isElectron(namn.identC[i]) &&
-                csC.kh[i] ==2) { // kh=2  logA given
-                    peGiven = true; break;}
-        } //for i
-        if(!peGiven) {diag.Eh = false;}
-    }
-    //--- temperature ------------------------
-    diag.temperature = readTemperature();
-    if(Double.isNaN(diag.temperature) && diag.Eh) { // Eh plotted in one axis
-        String msg = "\"Error: Need to plot Eh values, but no temperature is given.";
-        showErrMsgBx(msg,1);
-        setCursorDef();
-        restoreMenus(true);
-        return;
-    }
-    if(diag.Eh) {peEh = (ln10*8.3144126d*(diag.temperature+273.15d)/96484.56d);} else {peEh = Double.NaN;}
-    // decide if the temperature should be displayed in the diagram
-    if(!diag.Eh && !calcActCoeffs
-            && !(neutral_pH && (diag.pInX ==1 || diag.pInY ==1))) {
-        if(dbg) {out.println(" (Note: temperature not needed in the diagram)");}
-    }
     // nbr of calculation steps
     nSteps = jScrollBarNbrPoints.getValue();
     nSteps = Math.max(NSTP_MIN,nSteps);
-    /** Max. number of points to be plotted. In a predominance area diagram
-     * these are the points delimiting the areas. Should be at least = 15 * nSteps. */
-    final int mxPNT = nSteps * 17;
-    /** a class to store data about a Predom diagram */
-    final PredomData predData = new PredomData(cs.Ms, mxPNT); // create a new instance
     jLabelNbrPText.setText("Nbr of calc. steps:");
     jScrollBarNbrPoints.setEnabled(false);
     jLabelNbrPText.setEnabled(false);
-    if(dbg) {out.println(" "+(nSteps+1)+" caculation points"+nl+
-            "ionic strength = "+ionicStrength+nl+
-            "temperature = "+(float)diag.temperature+nl+
-            "max relative mass-balance tolerance = "+(float)tolHalta);}
-
-    // ---------------------------------------
-    // get an instance of Plot
-    plot = new Plot_Predom(this, err, out);
-    // ---------------------------------------
-
-    String msg;
-    // ionic strength
-    diag.ionicStrength = ionicStrength;
-    if(!diag.aquSystem && diag.ionicStrength != 0) {
-        msg = "File: "+inputDataFile.getName()+nl+
-                "Warning: This does not appear to be an aqueous system,"+nl+
-                "and yet you give a value for the ionic strength?";
-        if(!showErrMsgBxCancel(msg, 1)) {
-            out.println("--- Cancelled by the user ---");
-            setCursorDef();
-            restoreMenus(true);
-            return;
-        }
-    }
-
-    // model to calculate ion activity coefficients
-    if(calcActCoeffs) {
-        diag.activityCoeffsModel = jComboBoxModel.getSelectedIndex();
-        diag.activityCoeffsModel = Math.min(jComboBoxModel.getItemCount()-1,
-                                        Math.max(0,diag.activityCoeffsModel));
-        csC.actCoefCalc = true;
-    } else {
-        diag.activityCoeffsModel = -1;
-        csC.actCoefCalc = false;
-    }
     // height scale for texts in the diagram
     tHeight = jScrollBarHeight.getValue()/10;
     tHeight = Math.min(10.d,Math.max(tHeight, 0.3));
-    // keep track of elapsed time
-    calculationStart = System.nanoTime();
 
-    //-- a simple check...
-    if(dgrC.hur[diag.compX] <=1 || dgrC.hur[diag.compX] ==4 || dgrC.hur[diag.compX] >=6) { //error?
-        err.println("Programming error found at \"doCalculations()\":"+nl+
-                    "   diag.compX = "+diag.compX+" hur = "+dgrC.hur[diag.compX]+" (should be 2,3 or 5)");
-    }
-    if(dgrC.hur[diag.compY] <=1 || dgrC.hur[diag.compY] ==4 || dgrC.hur[diag.compY] >=6) { //error?
-        err.println("Programming error found at \"doCalculations()\":"+nl+
-                    "   diag.compY = "+diag.compY+" hur = "+dgrC.hur[diag.compY]+" (should be 2,3 or 5)");
-    }
-
-    // check POS and NEG with the Tot.Conc. given in the input
-    int j;
-    for(j =0; j < cs.Na; j++) {
-        if(csC.kh[j] == 2) {continue;} //only it Tot.conc. is given
-        if(!(pos[j] && neg[j]) && (pos[j] || neg[j])) {
-            if(dgrC.hur[j] !=3 &&  //not LTV
-               dgrC.cLow[j]==0 && (Double.isNaN(dgrC.cHigh[j]) || dgrC.cHigh[j]==0)) {
-                    //it is only POS or NEG and Tot.Conc =0
-                    csC.logA[j] = -9999.;
-                    dgrC.cLow[j] = csC.logA[j];
-                    if(j == diag.compX || j == diag.compY) {dgrC.cHigh[j] = dgrC.cLow[j]+10;}
-                    csC.kh[j] =2; //kh=2 means logA given
-                    if(dbg) {out.println("Can not calculate mass-balance for for component \""+namn.identC[j]+"\""+nl+
-                        "   its log(activity) is now set to -9999.");}
-            }
-        }
-    } //for j
-
-    // ---- Make an instance of Factor
-    String userHome = System.getProperty("user.home");
-    factor = new Factor(ch, pathApp, userHome, pathDef.toString(), out);
-    out.flush();
-    // ---- print information on the model used for activity coefficients
-    try {factor.factorPrint(dbg);}
-    catch (Exception ex) {
-        showErrMsgBx(ex.getMessage(),1);
-        factor = null;
+    // ---- the options for the calculations and the diagram
+    pd.dbg = dbg;
+    pd.nSteps = nSteps;
+    pd.nThreads = nThreads;
+    pd.adaptiveGrid = adaptiveGrid;
+    pd.bisectFrontiers = bisectFrontiers;
+    pd.temperature = readTemperature();
+    pd.calcActCoeffs = calcActCoeffs;
+    pd.ionicStrength = ionicStrength;
+    if(calcActCoeffs) {
+        pd.actCoeffsModel = Math.min(jComboBoxModel.getItemCount()-1,
+                                        Math.max(0,jComboBoxModel.getSelectedIndex()));
     }
-    if(factor == null) {
-        restoreMenus(false);
+    pd.tolHalta = tolHalta;
+    pd.dbgHalta = dbgHalta;
+    pd.tHeight = tHeight;
+    pd.aqu = aqu;
+    pd.neutral_pH = neutral_pH;
+    pd.consoleOutput = consoleOutput;
+    // the diagram is displayed while the plot file is written
+    pd.plotFileInBackground = true;
+    pd.binaryPlotFile = binaryPlotFile;
+    pd.pathApp = pathApp;
+    pd.pathDef = pathDef.toString();
+
+    if(!pd.prepare()) {
         setCursorDef();
+        restoreMenus(true);
         return;
     }
-    // ---- Initialize variables
-    csC.dbg = dbgHalta;
-    csC.cont = false;
-    csC.tol = tolHalta;
-    for(j =0; j < cs.Na; j++) {
-        if(csC.kh[j] == 1) {
-            csC.tot[j]=dgrC.cLow[j];
-            csC.logA[j]=-10;
-            if(csC.tot[j]>0) {csC.logA[j] = Math.log10(csC.tot[j]) -3;}
-        }
-        else {csC.logA[j]=dgrC.cLow[j];}
-    } // for j
-
-    predData.xLeft = dgrC.cLow[diag.compX];
-    predData.xRight = dgrC.cHigh[diag.compX];
-    predData.stepX =(dgrC.cHigh[diag.compX] - dgrC.cLow[diag.compX]) / nSteps;
-
-    predData.yBottom = dgrC.cLow[diag.compY];
-    predData.yTop = dgrC.cHigh[diag.compY];
-    predData.stepY =(dgrC.cHigh[diag.compY] - dgrC.cLow[diag.compY]) / nSteps;
 
     // ---- Run the calculations on another Thread ----
     jLabelStatus.setText("Please wait --");
     finishedCalculations = false;
 
-    msg = "Starting the calculations...";
-    out.println(msg);
-    if(consoleOutput) {System.out.println(msg);}
-
     tsk = new HaltaTask();
-    tsk.setPredData(predData);
     tsk.execute();
 
   } //doCalculations()
@@ -3112,382 +2492,25 @@ void showMsg(Exception ex) {
 /** A SwingWorker to perform tasks in the background.
  * @see HaltaTask#doInBackground() doInBackground() */
 public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
-    private boolean getHaltaInstanceOK = true;
-    private boolean haltaError = false;
-    private int nbrTooLargeConcs = 0;
-    private int nbrHaltaErrors = 0;
-    private int nbrHaltaUncertain = 0;
-    private final StringBuilder failuresMsg = new StringBuilder();
-    private final java.util.Locale engl = java.util.Locale.ENGLISH;
-    private boolean tooManyAreaPoints = false;
-    private char[][] lineMap = null;
-    private PredomData predData = null;
-  /** Sets a local pointer to an instance of PredomData, where results will be stored.
-   * @param pd an instance of PredomData */
-    protected void setPredData(PredomData pd) {predData = pd;}
-
   /** The instructions to be executed are defined here
    * @return true if no error occurs, false otherwise
    * @throws Exception */
   @Override protected Boolean doInBackground() throws Exception {
-    if(predData == null) {
-        showMsg("Programming error in \"HaltaTask\" (SwingWorker):"+nl+"PredomData = null.", 0);
-        this.cancel(true);
-        return false;
-    }
-    //--- do the HaltaFall calculations
-    // create an instance of class HaltaFall
-    h = null;
-    try {h = new HaltaFall(cs,factor, out);}
-    catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
-        showErrMsgBx(ex);
-        getHaltaInstanceOK = false; // skip the rest of the thread
-    }
-    if(!getHaltaInstanceOK) {this.cancel(true); return false;}
-
-   /** <code>line[n][1]</code> is the predominating species at point "n" (along the
-    * Y-axis) for the present calculation.<br>
-    * <code>line[n][0]</code> is the predominating species at point "n" (along the
-    * Y-axis) for the <i>previous</i> calculation.<br>
-    * The plot area is divided in "nSteps" which means nSteps+1 calculated
-    * positions, plus one over the top and one under the bottom, this gives
-    * (nSteps+3) for the size of line[][2].<br>
-    * The bottom and top  values (or left and right if calculations are row-wise),
-    * that is, line[0][] and line[nSteps+2][], are always "-1",
-    * that is: no predominating species outside the plot area. */
-    int[][] line = new int[nSteps+3][2];
-
-    int iL;
-    int iL_1; // = iL -1
-    final int NOW = 1;  final int PREVIOUS = 0;
-    for(iL=0; iL<line.length; iL++) {line[iL][PREVIOUS]=-1; line[iL][NOW]=-1;}
-
-    int i,j, n;
-    if(dbg) {
-        lineMap = new char[nSteps+1][nSteps+1];
-        for(j=0; j<lineMap.length; j++) {for(i=0; i<lineMap.length; i++) {lineMap[j][i] = ' ';}}
-    }
-    double xVal, yVal; // these are the position of the calculated point
-    predData.nPoint = -1;
-    boolean frontier;
-    double tolHalta0 = csC.tol;
-    final String f = "Calculation failed in \"HaltaFall.haltaCalc\" at point (%d,%d), x=%7.5f y=%7.5f"+nl+"%s";
-    final String d;
-    if(cs.Ms<=98) {d="%2d";} else if(cs.Ms<=998) {d="%3d";} else if(cs.Ms<=9998) {d="%4d";} else {d="%5d";}
-
-    // ----- The calculations are performed column-wise:
-    //          all Y-values are calcualted for each X-value,
-    //          starting from the left/bottom corner and going
-    //          to the right and upwards
-    //       The outer loop is along the X-axis and the inner loop along the Y-axis
-    nStepOuter = -1;
-    xVal = predData.xLeft - predData.stepX;
-    do_loopOuter:
-    do {  // -------------------------------------- Outer Loop for X-axis
-        nStepOuter++;
-        publish((nStepOuter+1));
-        //if needed for debugging: sleep some milliseconds (wait) at each calculation point
-        //try {Thread.sleep(1);} catch(Exception ex) {}
-
-        xVal = xVal + predData.stepX;
-        j = diag.compX;
-        // --- input data for this calculation point
-        if(csC.kh[j] == 1) {
-            if(dgrC.hur[j] ==3) { // LTV
-                csC.tot[j] = Math.exp(ln10*xVal);
-            } else { // TV
-                csC.tot[j]=xVal;
-            }
-        } else { // kh[j] = 2
-              csC.logA[j]=xVal;
-        }
-        // For the 1st point at the bottom of the diagram, starting the calcs. using
-        // the last equilibrium composition (at the top of the diagram) might be a bad idea
-        csC.cont = false;
-
-        // csC.cont = false;
-        nStepInner = -1;
-        yVal = predData.yBottom - predData.stepY;
-        do {  // -------------------------------------- Inner Loop for Y-axis
-            nStepInner++;
-            iL = nStepInner+1;
-            iL_1 = nStepInner; // iL_1 = iL-1
-            yVal = yVal + predData.stepY;
-            j = diag.compY;
-            // --- input data for this calculation point
-            if(csC.kh[j] == 1) {
-                if(dgrC.hur[j] ==3) { // LTV
-                    csC.tot[j] = Math.exp(ln10*yVal);
-                } else { // TV
-                    csC.tot[j]=yVal;
-                }
-            } else { // kh[j] = 2
-                csC.logA[j]=yVal;
-            }
-
-            if(finishedCalculations) {break do_loopOuter;} //user requests exit?
-
-            // print debug output from halta for the first point
-            if(nStepOuter == 0 && nStepInner == 0) {
-                if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                    out.println("Starting calculation 1 (of "+(nSteps+1)+"x"+(nSteps+1)+")");
-                }
-            } else {
-                csC.dbg = Chem.DBGHALTA_DEF;
-                // ########## ---------- ##########  ---------- ########## ##?##
-                if(Math.abs(xVal+9.03)<0.005 && (Math.abs(yVal+2.51)<0.001)) {
-                    csC.dbg = 6;
-                    out.println("---- Note: x="+(float)xVal+", y="+(float)yVal+"  (debug) ---- nStepInner="+nStepInner+", nStepOuter="+nStepOuter);
-                }
-                // ########## ---------- ##########  ---------- ########## ##?##
-            }
-            // --- HaltaFall: do the calculations
-            //     calculate the equilibrium composition of the system
-            try {
-                csC.tol = tolHalta0;
-                h.haltaCalc();
-                if(csC.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
-                    do {
-                        csC.tol = csC.tol * 0.1; // decrease tolerance and try again
-                        if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                            out.println("Too many iterations when solving the mass balance equations"+nl+
-                                    "  decreasing tolerance to: "+(float)csC.tol+" and trying again.");
-                        }
-                        h.haltaCalc();
-                    } while (csC.isErrFlagsSet(2) && csC.tol >= 1e-9);
-                    csC.tol = tolHalta0;
-                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                        out.println("Restoring tolerance to: "+(float)tolHalta0+" for next calculations.");
-                    }
-                }
-                if(csC.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
-                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                        out.println("Failed to find a satisfactory combination of solids. Trying again...");
-                    }
-                    csC.cont = false;      // try again
-                    h.haltaCalc();
-                }
-            } catch (Chem.ChemicalParameterException ex) {
-                String ms = "Error in \"HaltaFall.haltaCalc\", errFlags="+nl+csC.errFlagsGetMessages()+nl+
-                        "   at point: ("+(nStepInner+1)+","+(nStepOuter+1)+")  at x="+(float)xVal+" y="+(float)yVal;
-                showMsg(ex);
-                showErrMsgBx(ms+nl+ex.getMessage(),1);
-                haltaError = true;
-                break do_loopOuter;
-            }
-            // ---
-            if(finishedCalculations) {break do_loopOuter;} //user request exit?
-
-            if(csC.isErrFlagsSet(5)) {nbrTooLargeConcs++;}
-            else if(csC.isErrFlagsSet(1)) {nbrHaltaUncertain++;}
-            if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
-                            || csC.isErrFlagsSet(6)) {
-                nbrHaltaErrors++;
-                frontier = false;
-                if(failuresMsg.length() >0) {failuresMsg.append(nl);}
-                failuresMsg.append(String.format(engl,f,(nStepInner+1),(nStepOuter+1),(float)xVal,(float)yVal,csC.errFlagsGetMessages()));
-            } else {
-                //--------------------------------------------------
-                findTopSpecies();
-
-                line[iL][NOW] = topSpecies;
-                //--------------------------------------------------
-                //  Is this point a frontier between two areas ?
-                if(line[iL][NOW] != line[iL][PREVIOUS]) {
-                    frontier = line[iL][NOW] != line[iL_1][NOW] ||
-                        line[iL][NOW] != line[iL_1][PREVIOUS];
-                } else {
-                    frontier = line[iL][NOW] != line[iL_1][NOW];
-                }
-            }
-            if(frontier) {
-                predData.nPoint++;
-                // store what species are involved
-                predData.pair[predData.nPoint][0] = line[iL][PREVIOUS];
-                if(nStepOuter ==0 && line[iL][NOW] != line[iL_1][NOW]) {
-                                            predData.pair[predData.nPoint][0] = line[iL_1][NOW];
-                }
-                predData.pair[predData.nPoint][1] = line[iL][NOW];
-                predData.pair[predData.nPoint][2] = line[iL_1][NOW];
-                // the position of the line separating the predominance areas
-                predData.xPl[predData.nPoint] = xVal;
-                    predData.yPl[predData.nPoint] = yVal;
-                if(dbg) {lineMap[nStepInner][nStepOuter] = '+';}
-            } else { // not frontier
-                if(iL == (nSteps+1) || nStepOuter == nSteps) {
-                    //Point at the margin of the diagram
-                    //  these are used only to determine the centre of each predominance area
-                    predData.nPoint++;
-                    predData.pair[predData.nPoint][0]=line[iL][PREVIOUS];
-                    predData.pair[predData.nPoint][1]=-1; //the predominating species at this point
-                    predData.pair[predData.nPoint][2]=line[iL][NOW];
-                    predData.xPl[predData.nPoint] = xVal;
-                    predData.yPl[predData.nPoint] = yVal;
-                    if(dbg) {lineMap[nStepInner][nStepOuter] = '+';}
-                }
-            }//frontier?
-            // --------------------------------------------------
-
-            if(dbg && nStepOuter == 0 && nStepInner == 0 && diag.activityCoeffsModel >=0) {
-                    err.flush(); out.flush();
-                    out.println("First calculation step finished.");
-                    factor.printActivityCoeffs(out);
-            }
-
-          } while(nStepInner < nSteps); // ------------ Inner Loop for 2nd-axis
-
-          if(dbg) { //-- print the predominance species map
-              if(nStepOuter==0) {out.println("---- Map of predominating species (from 1 \""+
-                      namn.ident[0]+"\" to "+(cs.Ms-1)+" \""+namn.ident[cs.Ms-1]+"\") and X-variable."+nl+
-                      "     The leftmost column corresponds to Y="+(float)predData.yBottom+" and the rightmost column to Y="+(float)predData.yTop);}
-              for(i=0; i<(line.length-1); i++) {
-                  if(line[i][NOW]>=0) {n=line[i][NOW]+1;} else {n=-1;}
-                  out.print(String.format(d,n));
-              }
-              out.print(" "+(float)xVal);
-              out.println();
-          }
-
-          if(predData.nPoint >= predData.mxPNT) {
-            tooManyAreaPoints = true;
-            break; // do_loopOuter;
-          }
-          for(i =0; i<line.length; i++) {line[i][PREVIOUS] = line[i][NOW]; line[i][NOW] = -1;}
-
-        } while(nStepOuter < nSteps); // ------------ External Loop for 1st-axis
-    return true;
+    return pd.calculate();
   }
+  /** Reports the progress of the calculations
+   * @param nbrPointsDone the number of columns calculated so far */
+  void progress(int nbrPointsDone) {publish(nbrPointsDone);}
   /** Performs some tasks after the calculations have been finished */
   @Override protected void done() {
     if(isCancelled()) {
         if(dbg) {System.out.println("SwingWorker cancelled.");}
     } else {
-        int i,j;
-        String msg;
-        if(!haltaError) {
-            if(tooManyAreaPoints) {
-              showErrMsgBx("Problem: Too many area-delimiting points were found."+nl+
-                  "The diagram will be incomplete.", 1);
-            } // tooManyAreaPoints?
-            calculationTime = (System.nanoTime() - calculationStart)
-                /1000000; //convert nano seconds to milli seconds
-            msg = "--- Calculated "+(nSteps+1)+" x "+(nStepOuter+1)+" points, time="+millisToShortDHMS(calculationTime);
-            out.println(nl+msg);
-            System.out.println(msg);
-            System.out.flush();
-            if(nbrTooLargeConcs > 0) {
-                int percent = nbrTooLargeConcs*100 /((nSteps+1) * (nSteps+1));
-                if(percent >0) {
-                    msg = percent+" % of the calculated points had some"+nl+
-                          "concentrations > "+(int)Factor.MAX_CONC+" (molal); impossible in reality."+nl+nl;
-                    if(calcActCoeffs) {msg = msg + "The activity coefficients are then WRONG"+nl+
-                          "and the results unrealistic.";}
-                    else {msg = msg + "These results are unrealistic.";}
-                    showErrMsgBx(msg, 1);
-                }
-            }
-            if(nbrHaltaUncertain >1) {
-                out.println(LINE);
-                out.println(String.format("%d",nbrHaltaUncertain).trim()+" uncertain point(s)");
-                out.println(LINE);
-            }
-            if(failuresMsg != null && failuresMsg.length() >0) {
-                out.println(LINE);
-                out.println(failuresMsg);
-                out.println(LINE);
-            }
-            if(nbrHaltaErrors >0) {
-                msg = String.format("%d",nbrHaltaErrors).trim()+" calculation failure(s)";
-                showErrMsgBx(msg, 1);
-            }
-            if(dbg && lineMap != null) { //-- print the are limits map
-                out.println("---- Map of area limits (points to plot):");
-                for(i=0; i<lineMap.length; i++) {
-                    for(j=0; j<lineMap.length; j++) {out.print(lineMap[j][i]);} out.println();
-                }
-            } //dbg
-
-            // --------------------------------------------------
-            //  Determine the center of each area
-            //    (where labels will be plotted)
-            plot.minMax(ch, predData);
-            // --------------------------------------------------
-            if(dbg) {
-              out.println("---- List of points to plot (including margins):"+nl+"point_nbr, pair[0,1,2], x-value, y-value");
-              for(i=0; i<predData.nPoint; i++) {
-                out.println(
-                        String.format("%3d,  %3d,%3d,%3d",i,predData.pair[i][0],predData.pair[i][1],predData.pair[i][2])+
-                        ",   "+(float)predData.xPl[i]+", "+(float)predData.yPl[i]
-                        );
-              }
-              out.println("----");
-            }
-
-            // --------------------------------------------------
-            // Take away plot margins (about: 4*nStep  points)
-            // (the margins are needed to determine the center of each area)
-            int nPoints2 = -1;
-            for(i=0; i < predData.nPoint; i++) {
-                if(predData.pair[i][0] == -1 &&
-                    (predData.pair[i][1] == predData.pair[i][2] || predData.pair[i][2] == -1
-                    )) {continue;}
-                if(predData.pair[i][1] == -1) {continue;}
-                if(predData.pair[i][2] == -1 && predData.pair[i][0] == predData.pair[i][1]) {continue;}
-                nPoints2++;
-                predData.xPl[nPoints2] = predData.xPl[i];
-                predData.yPl[nPoints2] = predData.yPl[i];
-                //
-                // pair[][2] is not used when plotting, if pair[][0] = pair[][1] use pair[][2]
-                if(predData.pair[i][0] == predData.pair[i][1] &&
-                    predData.pair[i][2] != -1) {predData.pair[i][0] = predData.pair[i][2];}
-                predData.pair[nPoints2][0] = predData.pair[i][0];
-                predData.pair[nPoints2][1] = predData.pair[i][1];
-                predData.pair[nPoints2][2] = predData.pair[i][2]; //not really neaded becaise pair[][2] is not used when plotting
-            } // for i
-            predData.nPoint = nPoints2;
-            // --------------------------------------------------
-            //  Move the points halv step to the left and down
-            //  to try to compensate for the column-wise
-            //  calculation procedure
-            for(i=0; i<predData.nPoint; i++) {
-              if(Math.abs(predData.xPl[i]-predData.xLeft) > 1e-5 &&
-                 Math.abs(predData.xPl[i]-predData.xRight) > 1e-5) {
-                                predData.xPl[i] = predData.xPl[i]-0.5*predData.stepX;
-              }
-              if(Math.abs(predData.yPl[i]-predData.yBottom) > 1e-5 &&
-                 Math.abs(predData.yPl[i]-predData.yTop) > 1e-5) {
-                                predData.yPl[i] = predData.yPl[i]-0.5*predData.stepY;
-              }
-            }
-
-            // --------------------------------------------------
-            if(dbg) {
-                out.println("---- List of points to plot:"+nl+"point_nbr, pair[0,1,2], x-value, y-value");
-                for(i=0; i<=predData.nPoint; i++) {
-                    out.println(
-                        String.format("%3d,  %3d,%3d,%3d",i,predData.pair[i][0],predData.pair[i][1],predData.pair[i][2])+
-                        ",   "+(float)predData.xPl[i]+", "+(float)predData.yPl[i]
-                        );
-                }
-                out.println("----");
-            }
-
-            out.println("Number of points to draw = "+(predData.nPoint+1));
-
-            // -------------------------------------------
-            out.println("Saving plot file \""+outputPltFile.getAbsolutePath()+"\"...");
-            plot.drawPlot(outputPltFile, ch, predData);
-            if(outputPltFile != null && outputPltFile.getName().length()>0) {
-                String msg3 = "Saved plot file: \""+outputPltFile.getAbsolutePath()+"\"";
-                out.println(msg3);
-                System.out.println(msg3);
-            }
-            // -------------------------------------------
-        } //haltaError?
+        final boolean saved = pd.saveDiagram(outputPltFile);
 
         // execute the following actions on the event-dispatching Thread
         // after the "calculations" and the plotting are finished
-        if(getHaltaInstanceOK && !haltaError) {
+        if(saved) {
           javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
             jTabbedPane.setTitleAt(2, "<html><u>D</u>iagram</html>");
             jTabbedPane.setEnabledAt(2, true);
@@ -3495,14 +2518,14 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
             jTabbedPane.requestFocusInWindow();
             restoreMenus(true);
           }}); // invokeLater
-        }//if getHaltaInstanceOK
+        }//if saved
         else {
           javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
             jTabbedPane.setSelectedComponent(jScrollPaneMessg);
             jTabbedPane.requestFocusInWindow();
             restoreMenus(true);
           }}); // invokeLater
-        }//if !getHaltaInstanceOK
+        }//if !saved
         if(dbg) {System.out.println("SwingWorker done.");}
     }
     out.println(LINE);
@@ -0,0 +1,2104 @@
+package predominanceAreaDiagrams;
+
+import lib.common.Util;
+import lib.kemi.chem.Chem;
+import lib.kemi.graph_lib.GraphLib;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+import lib.kemi.haltaFall.HaltaFallPool;
+import lib.kemi.readDataLib.ReadDataLib;
+import lib.kemi.readWriteDataFiles.ReadChemSyst;
+
+/** Makes a Predominance Area diagram without a graphic user interface.
+ * An input data file is read and checked, the predominating species are
+ * found on a grid of points, and the diagram is saved in a plot file.<br>
+ * This class is used by the program window (class <code>Predom</code>), and
+ * it may also be used directly, for example by a batch program running on a
+ * computer without display: no AWT or Swing classes are used.
+ * The options (number of calculation steps, ionic strength, etc) are given
+ * by setting the values of the public fields before calling the methods.
+ * Typical use:
+ * <pre>PredomDiagram pd = new PredomDiagram(System.err, System.out);
+ *pd.nSteps = 100;
+ *boolean ok = pd.makeDiagram(dataFile, pltFile);</pre>
+ * Messages and errors are printed on <code>out</code> and <code>err</code>.
+ * A subclass may override the <code>showMsg</code> and <code>showErrMsgBx</code>
+ * methods, for example to display message boxes, and <code>progress</code>
+ * to report how the calculations proceed.
+ * <br>
+ * Copyright (C) 2014-2018  I.Puigdomenech
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public class PredomDiagram {
+    /** The maximum number of calculation steps along an axis */
+    public final static int NSTP_MAX = 1000;
+    /** The minimum number of calculation steps along an axis */
+    public final static int NSTP_MIN = 4;
+    /** The default number of calculation steps along an axis */
+    public final static int NSTP_DEF = 50;
+
+    //<editor-fold defaultstate="collapsed" desc="options">
+/** print debug information? */
+    public boolean dbg = false;
+/** if true the concentration range in the x-axis may have a reversed "order",
+ * that is, minimum value to the right and maximum value to the left, if so
+ * it is given in the input data file. Needed when reading the data file. */
+    public boolean reversedConcs = false;
+    /** The number of calculation steps along an axis.
+     * The number of calculated points in the plot is <code>nSteps+1</code>
+     * along each axis. Note that to the outside world, the number of
+     * calculation points are reported.  */
+    public int nSteps = NSTP_DEF;
+    /** The number of threads used for the calculations. If larger than one,
+     * the columns of the grid are calculated in parallel by a pool of
+     * threads, see <code>doTiledCalculations()</code>. */
+    public int nThreads = 1;
+    /** If true, the grid is first calculated at a coarse resolution, and
+     * only the cells where the predominating species differ at the corners
+     * are subdivided, down to the resolution given by <code>nSteps</code>,
+     * see <code>doAdaptiveCalculations()</code>. */
+    public boolean adaptiveGrid = false;
+    /** If true, after the grid has been calculated the position of each
+     * frontier point is found by bisection along the grid edge between the
+     * two predominating species, see <code>bisectFrontiers()</code>. */
+    public boolean bisectFrontiers = false;
+    /** true if activity coeeficients have to be calculated.
+     * Needed when reading the data file. */
+    public boolean calcActCoeffs = false;
+    /** the model to calculate activity coefficients:
+     * 0 = Davies eqn; 1 = SIT; 2 = simplified HKF */
+    public int actCoeffsModel = 2;
+    /** the ionic strength, or -1 if it has to be calculated at each calculation step */
+    public double ionicStrength = 0;
+    /** the temperature in degrees Celsius. If it is NaN when the data file
+     * is read, the temperature written in the data file (if any) is used */
+    public double temperature = Double.NaN;
+    /** tolerance when solving the mass-balance equations in HaltaFall */
+    public double tolHalta = Chem.TOL_HALTA_DEF;
+    /** output debug reporting in HaltaFall. Default = Chem.DBGHALTA_DEF = 1 (report errors only)
+     * @see Chem.ChemSystem.ChemConcs#dbg Chem.ChemSystem.ChemConcs.dbg */
+    public int dbgHalta = Chem.DBGHALTA_DEF;
+    /** height factor for the texts in the diagram */
+    public double tHeight = 1;
+/** if true only aquous species will be shown in the diagram, that is,
+ * predominance areas for solids will not appear. */
+    public boolean aqu = false;
+/** if true a dashed line will be plotted in the diagram showing the pH of
+ * neutral water, which is temperature dependent. At 25 C the neutral pH is 7. */
+    public boolean neutral_pH = false;
+    /** true if a minumum of information is sent to the console (System.out)
+     * in addition to <code>out</code> */
+    public boolean consoleOutput = false;
+    /** if true the plot file is written by another thread after the diagram
+     * is drawn, so that the diagram may be displayed before the file is
+     * complete. Then <code>waitForPlotFile</code> must be called before the
+     * plot file is used, for example before the program exits */
+    public boolean plotFileInBackground = false;
+    /** if true a binary companion file (".pltb") is written together with
+     * the plot file, so that the diagram may be displayed or converted
+     * faster, see <code>lib.kemi.graph_lib.PltFile</code> */
+    public boolean binaryPlotFile = false;
+    /** the plot file that might still be written, and who writes it */
+    private java.io.File plotFileSaved = null;
+    private GraphLib plotFileWriter = null;
+    /** directories where a file with SIT-coefficients is searched for,
+     * see <code>Factor</code>. They may be null */
+    public String pathApp = null;
+    public String pathDef = null;
+    //</editor-fold>
+
+/** the input data file */
+    private java.io.File dataFile = null;
+/** a class used to store and retrieve data, used by HaltaFall */
+    Chem ch = null;
+/** a class to store data about a chemical system */
+    private Chem.ChemSystem cs = null;
+/** a class to store data about a the concentrations to calculate an
+ * equilibrium composition, used by HaltaFall */
+    private Chem.ChemSystem.ChemConcs csC = null;
+/** a class to store diverse information on a chemical system: names of species, etc */
+    private Chem.ChemSystem.NamesEtc namn = null;
+/** a class to store array data about a diagram */
+    private Chem.DiagrConcs dgrC = null;
+/** a class to store non-array data about a diagram */
+    Chem.Diagr diag = null;
+/** a class to calculate activity coefficients */
+    private Factor factor;
+/** the calculations class */
+    private volatile HaltaFall h;
+/** the species predominating in the diagram at the point being calculated.
+ * -2 if two solid species have practically the same amount of "main component" */
+    private int topSpecies = -1;
+    private Plot_Predom plot = null;
+/** a class to store data about a Predom diagram */
+    private PredomData predData = null;
+/** data from a plot-file needed by the paint methods */
+    GraphLib.PltData dd; // instantiated in "Plot_Predom.drawPlot"
+                                   // it containts the info in the plot file
+    double peEh = Double.NaN;
+    /** true if the component has either <code>noll</code> = false or it has positive
+     * values for the stoichiometric coefficients (a[ix][ia]-values)
+     * @see chem.Chem.ChemSystem#a a
+     * @see chem.Chem.ChemSystem#noll noll */
+    private boolean[] pos;
+    /** true if the component has some negative
+     * values for the stoichiometric coefficients (a[ix][ia]-values)
+     * @see chem.Chem.ChemSystem#a a */
+    private boolean[] neg;
+    /** The calculation step being performed along the outer loop (out of nSteps).
+     * The first point corresponds to no step, <code>nStepOuter = 0</code> */
+    private int nStepOuter;
+    /** The calculation step being performed along the inner loop (out of nSteps)
+     * The first point corresponds to no step, <code>nStepInner = 0</code> */
+    private int nStepInner;
+    private final double ln10 = Math.log(10d);
+/** true if the calculations have finished, or if the user wishes to stop them */
+    private volatile boolean finishedCalculations = true;
+    private boolean haltaError = false;
+    private int nbrTooLargeConcs = 0;
+    private int nbrHaltaErrors = 0;
+    private int nbrHaltaUncertain = 0;
+    private final StringBuilder failuresMsg = new StringBuilder();
+    private boolean tooManyAreaPoints = false;
+    private char[][] lineMap = null;
+    /** the number of points for which HaltaFall was called in an adaptive
+     * grid calculation, or -1 if the whole grid was calculated */
+    private int nbrPointsEvaluated = -1;
+    /** the number of calculations made to locate the frontier points by bisection */
+    private int nbrBisectCalcs = 0;
+/** used to calculate execution time */
+    private long calculationStart = 0;
+/** the execution time */
+    private long calculationTime = 0;
+
+/** Where errors will be printed. It may be <code>System.err</code>. */
+    final java.io.PrintStream err;
+/** Where messages will be printed. It may be <code>System.out</code>. */
+    final java.io.PrintStream out;
+
+    private static final String nl = System.getProperty("line.separator");
+    private static final java.util.Locale engl = java.util.Locale.ENGLISH;
+    static final String LINE = "-------------------------------------";
+
+/** Constructor.
+ * @param err0 Where errors will be printed. It may be <code>System.err</code>.
+ * If null, <code>System.err</code> is used.
+ * @param out0 Where messages will be printed. It may be <code>System.out</code>.
+ * If null, <code>System.out</code> is used. */
+public PredomDiagram(java.io.PrintStream err0, java.io.PrintStream out0) {
+    if(err0 != null) {this.err = err0;} else {this.err = System.err;}
+    if(out0 != null) {this.out = out0;} else {this.out = System.out;}
+} //constructor
+
+//<editor-fold defaultstate="collapsed" desc="makeDiagram">
+/** Reads the data file, makes the calculations and saves the diagram:
+ * calls <code>readDataFile</code>, <code>prepare</code>, <code>calculate</code>
+ * and <code>saveDiagram</code>.
+ * @param dataFile the input data file
+ * @param pltFile the output plot file. If null, the name of the data file
+ * is used with extension "plt"
+ * @return true if the plot file is saved, false if an error occurs */
+public boolean makeDiagram(java.io.File dataFile, java.io.File pltFile) {
+    if(!readDataFile(dataFile)) {return false;}
+    return makeDiagram(pltFile);
+} //makeDiagram(dataFile, pltFile)
+
+/** Makes the calculations and saves the diagram for the data file already
+ * read: calls <code>prepare</code>, <code>calculate</code> and <code>saveDiagram</code>.
+ * @param pltFile the output plot file. If null, the name of the data file
+ * is used with extension "plt"
+ * @return true if the plot file is saved, false if an error occurs */
+public boolean makeDiagram(java.io.File pltFile) {
+    if(this.dataFile == null) {err.println("? Programming error in \"PredomDiagram.makeDiagram\": no data file read."); return false;}
+    if(pltFile == null) {
+        String txt = this.dataFile.getAbsolutePath();
+        pltFile = new java.io.File(txt.substring(0,txt.length()-3).concat("plt"));
+    }
+    if(!prepare()) {return false;}
+    boolean ok;
+    try {ok = calculate();}
+    catch (Exception ex) {showErrMsgBx(ex); return false;}
+    if(!ok) {return false;}
+    return saveDiagram(pltFile);
+} //makeDiagram(pltFile)
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="readDataFile">
+/** Reads the chemical system and the plot information in a data file,
+ * and checks the input data. Note that the values of <code>calcActCoeffs</code>,
+ * <code>reversedConcs</code> and <code>temperature</code> are used here.
+ * @param dataFile the input data file
+ * @return false if an error occurs */
+public boolean readDataFile(java.io.File dataFile) {
+    if(dbg) {out.println("--- readDataFile("+dataFile.getAbsolutePath()+")");}
+    String msg;
+    ch = null; cs = null; csC = null; namn = null; dgrC = null; diag = null;
+    this.dataFile = null;
+    //--- check the name
+    if(!dataFile.getName().toLowerCase().endsWith(".dat")) {
+        msg = "File: \""+dataFile.getName()+"\""+nl+
+                "Error: data file name must end with \".dat\"";
+        showErrMsgBx(msg,1);
+        return false;
+    }
+    if(dataFile.getName().length() <= 4) {
+        msg = "File: \""+dataFile.getName()+"\""+nl+
+                "Error: file name must have at least one character";
+        showErrMsgBx(msg,1);
+        return false;
+    }
+    String dataFileN = null;
+    try {dataFileN = dataFile.getCanonicalPath();} catch (java.io.IOException ex) {}
+    if(dataFileN == null) {
+        try {dataFileN = dataFile.getAbsolutePath();}
+        catch (Exception ex) {dataFileN = dataFile.getPath();}
+    }
+    dataFile = new java.io.File(dataFileN);
+    //
+    //--- create a ReadDataLib instance
+    ReadDataLib rd = null;
+    try {rd = new ReadDataLib(dataFile);}
+    catch (ReadDataLib.DataFileException ex) {
+        showErrMsgBx(ex.getMessage(),1);
+        if(rd != null) {
+            try {rd.close();}
+            catch (ReadDataLib.ReadDataLibException ex2) {showErrMsgBx(ex2);}
+        }
+        return false;
+    }
+    msg = "Reading input data file \""+dataFile+"\"";
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+    //--- read the chemical system (names, equilibrium constants, stoichiometry)
+    boolean warn = false; // throw an exception for missing plot data
+    try {ch = null;
+        ch = ReadChemSyst.readChemSystAndPlotInfo(rd, dbg, warn, out);
+    }
+    catch (ReadChemSyst.ConcDataException ex) {
+        ch = null; showMsg(ex);
+    }
+    catch (ReadChemSyst.DataLimitsException ex) {
+        ch = null; showMsg(ex);
+    }
+    catch (ReadChemSyst.PlotDataException ex) {
+        ch = null; showMsg(ex);
+    }
+    catch (ReadChemSyst.ReadDataFileException ex) {
+        ch = null; showMsg(ex);
+    }
+    return readDataFile(dataFile, rd, ch);
+} //readDataFile(dataFile)
+
+/** Uses the chemical system and the plot information already read from a
+ * data file, for example by a program that must know the type of diagram
+ * before choosing between SED and Predom, and checks the input data, as done by
+ * <code>readDataFile(dataFile)</code>.
+ * @param dataFile the input data file
+ * @param rd the data file, from which "chem" has been read. It is closed here.
+ * @param chem the chemical system and plot information read from "rd" with
+ * <code>ReadChemSyst.readChemSystAndPlotInfo</code>, or null if they could
+ * not be read (the error has then been reported)
+ * @return false if an error occurs */
+public boolean readDataFile(java.io.File dataFile, ReadDataLib rd, Chem chem) {
+    String msg;
+    ch = chem; cs = null; csC = null; namn = null; dgrC = null; diag = null;
+    this.dataFile = null;
+    if(ch == null) {
+        msg = "Error while reading data file \""+dataFile.getName()+"\"";
+        showErrMsgBx(msg,1);
+        try {rd.close();}
+        catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
+        return false;
+    }
+    if(ch.diag.plotType != 0) {
+        msg = "Error: data file \""+dataFile.getName()+"\""+nl;
+        if(ch.diag.plotType >= 1 && ch.diag.plotType <=8) {msg = msg +
+                "does NOT contain information for a Predominance Area Diagram."+nl+
+                "Run program SED instead.";}
+        else {msg = msg + "contains erroneous plot information.";}
+        showErrMsgBx(msg,1);
+        ch = null;
+        try {rd.close();}
+        catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
+        return false;
+    }
+    //
+    //--- get a temperature:
+    double w;
+    try {w = rd.getTemperature();} // temperature written as a comment in the data file?
+    catch (ReadDataLib.DataReadException ex) {showErrMsgBx(ex); w = Double.NaN;}
+    if(!Double.isNaN(w)) {
+      if(!Double.isNaN(temperature)) {
+        // temperature also given in command line
+        if(Math.abs(w - temperature)>0.001) { // difference?
+          msg = String.format(engl,"Warning: temperature in data file =%6.2f,%s",w,nl);
+          msg = msg + String.format(engl,
+                  "   but in the command line t=%6.2f!%s",
+                  temperature,nl);
+          msg = msg + String.format(engl,"t=%6.2f will be used.",temperature);
+          showErrMsgBx(msg,2);
+        } // temperatures differ
+      }  // temperature also given
+      else {temperature = w;}
+    } // temperature written in data file
+
+    try {rd.close();}
+    catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
+    msg = "Finished reading the input data file.";
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+    //--- set the references pointing to the instances of the storage classes
+    cs = ch.chemSystem;
+    csC = cs.chemConcs;
+    namn = cs.namn;
+    dgrC = ch.diagrConcs;
+    diag = ch.diag;
+
+    //---- Set the calculation instructions for HaltaFall
+    // Concentration types for each component:
+    //    hur =1 for "T" (fixed Total conc.)
+    //    hur =2 for "TV" (Tot. conc. Varied)
+    //    hur =3 for "LTV" (Log(Tot.conc.) Varied)
+    //    hur =4 for "LA" (fixed Log(Activity) value)
+    //    hur =5 for "LAV" (Log(Activity) Varied)</pre>
+    for(int j =0; j < cs.Na; j++) {
+        if(dgrC.hur[j] >3)
+            {csC.kh[j]=2;} //kh=2 log(activity) is given
+                            //The Mass Balance eqn. has to be solved
+        else {csC.kh[j]=1;} //kh=1 Tot.Conc. is given
+                            //The Tot.Conc. will be calculated
+    }
+
+    // --------------------------
+    // ---  Check concs. etc  ---
+    // --------------------------
+    if(!checkInput()) {
+        ch = null; cs = null; csC = null; namn = null; dgrC = null; diag = null;
+        return false;}
+
+    if(cs.jWater >=0 && dbg) {
+        out.println("Water (H2O) is included: all concentrations are in \"mol/(1 kg H2O)\".");
+    }
+    this.dataFile = dataFile;
+    return true;
+} //readDataFile(dataFile, rd, chem)
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="checkInput">
+/** Make checks and make changes to the data stored in the Chem classes.
+ * @return true if checks are OK  */
+  private boolean checkInput() {
+    if(cs == null) {err.println("? Programming error in \"PREDOM.checkInput\": cs=null."); return false;}
+    if(dbg) {out.println("--- checkInput()");}
+    // -------------------
+    //   CHEMICAL SYSTEM
+    // -------------------
+    // mg = total number of soluble species in the aqueous solution:
+    //      all components + soluble complexes
+    // Note that in HaltaFall the solid components are fictitious soluble
+    // components with "zero" concentration (with noll = true)
+    int mg = cs.Ms - cs.mSol; // = na + nx;
+    int i;
+
+    // ---- Remove asterisk "*" from the name of components
+    for(i=0; i<cs.Na; i++) {
+        if(namn.identC[i].startsWith("*")) {
+            namn.identC[i] = namn.identC[i].substring(1);
+            namn.ident[i]  = namn.identC[i];
+            cs.noll[i] = true;
+        }
+        //if(chem_syst.Chem.isWater(csNamn.identC[i]))
+        //            {water = i;}
+    } // for i=0...Na-1
+
+    // ---- Remove reaction products (soluble or solid) with
+    //      name starting with "*".
+    // Note that the solids corresponding to the components will
+    // not have a name starting with "*". This is already removed when
+    // reading the input file.
+    double w; int j; int js;
+    i = cs.Na;
+    while (i < cs.Ms) {
+        if(namn.ident[i].startsWith("*")) {
+            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
+            cs.Ms = cs.Ms -1;
+            if(i >= cs.Ms) {break;}
+            for(j=i; j<cs.Ms; j++) {
+                js = j - cs.Na;
+                cs.lBeta[js] = cs.lBeta[js+1];
+                // for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
+                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
+                namn.ident[j] = namn.ident[j+1];
+                cs.noll[j] = cs.noll[j+1];
+            }
+        }
+        else {i++;}
+    } //while (true)
+
+    // ---- get electric charge, length of name, etc
+    diag.aquSystem = false;
+    for(i=0; i<cs.Ms; i++) {
+        namn.nameLength[i] = getNameLength(namn.ident[i]);
+        // Species for which the concentration is not to be
+        // included in the Mass-Balance (for ex. the concentration
+        // of "free" electrons is excluded)
+        if(Util.isElectron(namn.ident[i]) ||
+           Util.isWater(namn.ident[i])) {
+                cs.noll[i] = true;
+                diag.aquSystem = true;} // e- or H2O
+        if(i < mg) { //aqueous species
+            namn.z[i]=0;
+            csC.logf[i] = 0;
+            if(namn.ident[i].length() >4 &&
+                namn.ident[i].toUpperCase().endsWith("(AQ)")) {
+                    diag.aquSystem = true;}
+                else { //does not end with "(aq)"
+                    namn.z[i] = Util.chargeOf(namn.ident[i]);
+                    if(namn.z[i] != 0) {diag.aquSystem = true;}
+                } // ends with "(aq)"?
+        }// if i < mg
+    } // for i=0...Ms-1
+    // The electric charge of two fictive species (Na+ and Cl-)
+    // that are used to ensure electrically neutral aqueous solutions
+    // when calculating the ionic strength and activity coefficients
+    namn.z[mg] = 1;     //electroneutrality "Na+"
+    namn.z[mg+1] =-1;   //electroneutrality "Na+"
+
+    // ---- set Gaseous species to have zero conc
+    //      if it is an aqueous system
+    if(diag.aquSystem) {
+        for(i =0; i < mg; i++) {
+            if(Util.isGas(namn.ident[i]) ||
+               Util.isLiquid(namn.ident[i]) ||
+               Util.isWater(namn.ident[i])) {
+                        cs.noll[i] = true;}
+        } //for i
+        } //if aquSystem
+
+    // ---- Remove H2O among the complexes, if found
+    if(diag.aquSystem) {
+      for(i=cs.Na; i<cs.Ms; i++) {
+        if(Util.isWater(namn.ident[i])) {
+            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
+            cs.Ms = cs.Ms -1;
+            if(i >= cs.Ms) {break;}
+            for(j=i; j<cs.Ms; j++) {
+                js = j - cs.Na;
+                cs.lBeta[js] = cs.lBeta[js+1];
+                //for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
+                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
+                namn.ident[j] = namn.ident[j+1];
+                cs.noll[j] = cs.noll[j+1];
+            }
+        } //ident[i]="H2O"
+      } //for i
+    } //if aquSystem
+
+    if(dbg) {cs.printChemSystem(out);}
+
+    // ---- Check that all reactions are charge balanced
+    if(calcActCoeffs) {
+        double zSum;
+        boolean ok = true;
+        for(i=cs.Na; i < mg; i++) {
+            int ix = i - cs.Na;
+            zSum = (double)(-namn.z[i]);
+            for(j=0; j < cs.Na; j++) {
+                zSum = zSum + cs.a[ix][j]*(double)namn.z[j];
+            } //for j
+            if(Math.abs(zSum) > 0.0005) {
+                ok = false;
+                err.format(engl,"--- Warning: %s, z=%3d, charge imbalance:%9.4f",
+                            namn.ident[i],namn.z[i],zSum);
+            }
+        } //for i
+        if(!ok) {
+            if(!showErrMsgBxCancel("There are charge imbalanced reactions in the input file.",1)) {
+                return false;
+            }
+        }
+    } // if calcActCoeffs
+
+    // ---- Check that at least there is one fuid species active
+    boolean foundOne = false;
+    for(i =0; i < mg; i++) {
+        if(!cs.noll[i]) {foundOne = true; break;}
+    } //for i
+    if(!foundOne) {
+        String t = "Error: There are no fluid species active ";
+        if(cs.mSol > 0) {t = t.concat("(Only solids)");}
+        t = t+nl+"This program can not handle such chemical systems.";
+        showErrMsgBx(t,1);
+        return false;
+    }
+
+    // --------------------
+    //   PLOT INFORMATION
+    // --------------------
+    diag.pInX =0; diag.pInY = 0;
+    //  pInX=0 "normal" X-axis
+    //  pInX=1 pH in X-axis
+    //  pInX=2 pe in X-axis
+    //  pInX=3 Eh in X-axis
+    if(Util.isElectron(namn.identC[diag.compX])) {
+        if(diag.Eh) {diag.pInX = 3;} else {diag.pInX = 2;}
+    } else if(Util.isProton(namn.identC[diag.compX])) {diag.pInX = 1;}
+    if(Util.isElectron(namn.identC[diag.compY])) {
+        if(diag.Eh) {diag.pInY = 3;} else {diag.pInY = 2;}
+    } else if(Util.isProton(namn.identC[diag.compY])) {diag.pInY = 1;}
+
+
+    // ----------------------------------------------
+    //   CHECK THE CONCENTRATION FOR EACH COMPONENT
+    // ----------------------------------------------
+
+    for(int ia =0; ia < cs.Na; ia++) {
+        if(dgrC.hur[ia]==1 && // T
+            ia==diag.compX) {
+                showErrMsgBx("Error: the concentration for component \""+namn.identC[ia]+"\" "+
+                    "must vary, as it belongs to the X-axis!",1);
+                return false;
+                }
+        if(ia==diag.compMain && dgrC.hur[ia]==1 && // T
+            Math.abs(dgrC.cLow[ia]) <= 0) {
+                if(!showErrMsgBxCancel("The concentration for "+nl
+                        +"the main component \""+namn.identC[ia]+"\" is zero!",1)) {return false;}
+                }
+        if(dgrC.hur[ia] >0 && dgrC.hur[ia]<=3) { //T, TV or LTV
+            if(Util.isWater(namn.identC[ia])) {
+                showErrMsgBx("Error: The calculations are made for 1kg H2O"+nl+
+                           "Give log(H2O-activity) instead of a total conc. for water.",1);
+                return false;
+           } // if water
+        } //if T, TV or LTV
+        if(dgrC.hur[ia] ==2 || dgrC.hur[ia] ==3 || dgrC.hur[ia] ==5) { //TV, LTV or LAV
+            if(ia != diag.compX && ia != diag.compY) {
+                String t;
+                if(dgrC.hur[ia] ==5) {t="log(activity)";} else {t="total conc.";}
+                String msg = "Error: The "+t+" is varied for \""+namn.identC[ia]+"\""+nl+
+                           "   but this component is neither the component in the Y-axis ("+namn.identC[diag.compY]+"),"+nl+
+                           "   nor the component in the X-axis ("+namn.identC[diag.compX]+")!";
+                showErrMsgBx(msg,2);
+                return false;
+            }
+        } //if TV, LTV or LAV
+        if((dgrC.hur[ia] ==1 || dgrC.hur[ia] ==4) && //T or LA
+           (ia == diag.compX || ia == diag.compY)) {
+                String t, ax;
+                if(dgrC.hur[ia] ==4) {t="log(activity)";} else {t="total conc.";}
+                if(ia == diag.compX) {ax="X";} else {ax="Y";}
+                showErrMsgBx("Error: The "+t+" of \""+namn.identC[ia]+"\""+nl+
+                        "can NOT be a fixed value because this component belongs to the "+ax+"-axis !",1);
+                return false;
+            }
+        if(dgrC.hur[ia] ==1 && // T
+           Math.abs(dgrC.cLow[ia]) >100) {
+                String t = String.format(engl,"Error:  For component: "+namn.identC[ia]+nl+
+                        "   Tot.Conc.=%12.4g mol/kg.  This is not a reasonable value!",dgrC.cLow[ia]);
+                showErrMsgBx(t,1);
+                return false;
+            }
+        if(dgrC.hur[ia] ==4 &&  // LA
+           Util.isProton(namn.identC[ia]) &&
+           (dgrC.cLow[ia] <-14 || dgrC.cLow[ia] >2)) {
+                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f%n"+
+                        "This value could be due to an input error.",(-dgrC.cLow[ia]));
+                if(!showErrMsgBxCancel(msg,2)) {return false;}
+        }
+        if(dgrC.hur[ia] !=1 && dgrC.hur[ia] !=4) {//if TV, LTV or LAV
+            if(dgrC.cLow[ia] == dgrC.cHigh[ia] ||
+                    Math.max(Math.abs(dgrC.cLow[ia]), Math.abs(dgrC.cHigh[ia])) < 1e-15) {
+                showErrMsgBx("Error:  Min-value = Max-value for component \""+namn.identC[ia]+"\"",1);
+                return false;
+            }
+            if(dgrC.cLow[ia] > dgrC.cHigh[ia] && !reversedConcs) {
+                w = dgrC.cLow[ia];
+                dgrC.cLow[ia] = dgrC.cHigh[ia];
+                dgrC.cHigh[ia] = w;
+            }
+            if(!reversedConcs && dgrC.hur[ia] ==5 && // pH/pe/EH varied - LAV
+                   (Util.isProton(namn.identC[ia]) ||
+                    Util.isElectron(namn.identC[ia]))) {
+                w = dgrC.cLow[ia];
+                dgrC.cLow[ia] = dgrC.cHigh[ia];
+                dgrC.cHigh[ia] = w;
+            }
+            if(dgrC.hur[ia] ==5 && // LAV
+                    (Util.isProton(namn.identC[ia])) &&
+                     (dgrC.cLow[ia] <-14.00001 || dgrC.cLow[ia] >2.00001 ||
+                      dgrC.cHigh[ia] <-14.00001 || dgrC.cHigh[ia] >2.00001)) {
+                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f to %7.2f%n"+
+                        "These values could be due to an input error.",(-dgrC.cLow[ia]),(-dgrC.cHigh[ia]));
+                if(!showErrMsgBxCancel(msg,2)) {return false;}
+            }
+            if(dgrC.hur[ia] ==2 && // TV
+                  (Math.max(Math.abs(dgrC.cHigh[ia]),Math.abs(dgrC.cLow[ia]))>100)) {
+                showErrMsgBx("Error:  You give  ABS(TOT.CONC.) > 100  for component: "+namn.identC[ia]+nl+
+                    "This value is too high and perhaps an input error."+nl+
+                    "Set the maximum ABS(TOT.CONC.) value to 100.",1);
+                return false;
+            }
+            if(dgrC.hur[ia] ==3) { // LTV
+                if((Math.min(dgrC.cLow[ia], dgrC.cHigh[ia]) < -7.0001) &&
+                      (Util.isProton(namn.identC[ia]))) {
+                    String msg = "Warning: You give a  LOG (TOT.CONC.) < -7  for component: "+namn.identC[ia]+nl+
+                        "This value is rather low and could be due to an input error."+nl+
+                        "Maybe you meant to set  LOG (ACTIVITY) < -7 ??";
+                    if(!showErrMsgBxCancel(msg,2)) {return false;}
+                    }
+                if(Math.max(dgrC.cLow[ia], dgrC.cHigh[ia]) > 2.0001) {
+                    showErrMsgBx("Error: You give a  LOG (TOT.CONC.) > 2  for component: "+namn.identC[ia]+nl+
+                        "This value is too high and it could be due to an input error."+nl+
+                        "Please set the LOG (TOT.CONC.) value to <=2.",1);
+                    return false;
+                }
+            } //if LTV
+        } //if TV, LTV or LAV
+
+    } // for ia = 0... Na-1
+
+    // ----------------
+    //   OTHER CHECKS
+    // ----------------
+
+    if(cs.nx == 0) {
+      for(i =0; i < cs.Na; i++) {
+        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
+        if(i == diag.compX || i == diag.compY) { //component in an axis:
+          if(i >= (cs.Na-cs.solidC)) { //is it a solid?
+              if(!showErrMsgBxCancel("Warning: with no complexes in the fluid phase you should not have"+nl+
+              "a solid component ("+namn.identC[i]+") in an axis.",2)) {return false;}
+          }
+      }
+      } //for i
+    } //if nx=0
+
+    // ---- Check that a total concentration is given for the main component
+    //   is it a solid?                        and log(activity) given?
+    if(diag.compMain >= (cs.Na - cs.solidC) && csC.kh[diag.compMain] == 2) {
+        String v;
+        if(dgrC.hur[diag.compMain] == 5) {v = " varied";} else {v = "";}
+        String t = "Error: For the main component \""+namn.identC[diag.compMain]+"\""+nl+
+                "   please give its total concentration"+v+nl+
+                "   instead of its log(activity)"+v;
+        showErrMsgBx(t+".",1);
+        return false;
+    }
+
+    // ---- See which components have positive or negative (or both)
+    //      values for the stoichiometric coefficients (a[ix][ia]-values)
+    pos = new boolean[cs.Na];
+    neg = new boolean[cs.Na];
+    for(i =0; i < cs.Na; i++) {
+        pos[i] = false; neg[i] = false;
+        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
+        if(!cs.noll[i]) { // if not "e-" and not solid component
+                    pos[i] = true;}
+        for(j = cs.Na; j < cs.Ms; j++) {
+            if(!cs.noll[j]) {
+                if(cs.a[j-cs.Na][i] >0) {pos[i] = true;}
+                if(cs.a[j-cs.Na][i] <0) {neg[i] = true;}
+            } // !noll
+        } //for j
+    } //for i
+    // check POS and NEG with the Tot.Conc. given in the input
+    for(i =0; i < cs.Na; i++) {
+        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
+        if((!pos[i] && !neg[i]) ) { // || cs.nx ==0
+            String msg = "Error: for component \""+namn.identC[i]+"\" give Log(Activity)";
+            if(dgrC.hur[i] !=1) { // not "T", that is: "TV" or "LTV"
+                msg = msg+" to vary";}
+            showErrMsgBx(msg,1);
+            return false;
+        } //if Nx =0 or (!pos[] & !neg[])
+        if((pos[i] && neg[i]) ||
+           (pos[i] && (dgrC.hur[i] ==3 ||  //LTV
+                (dgrC.cLow[i]>0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]>0)))) ||
+           (neg[i] && (
+                dgrC.hur[i] !=3 && //LTV
+                (dgrC.cLow[i]<0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]<0))))) {
+            continue;
+        }
+        if(pos[i] || neg[i]) {
+            String msg = "Error: Component \"%s\" may not have %s Tot.Conc. values.%s"+
+                    "Give either  Tot.Conc. %s=0.0  or  Log(Activity)%s";
+            if(!pos[i] && (dgrC.cLow[i]>0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]>0))) {
+                showErrMsgBx(String.format(msg, namn.identC[i], "positive", nl,"<",nl),1);
+                return false;}
+            if(!neg[i] && (dgrC.cLow[i]<0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]<0))) {
+                showErrMsgBx(String.format(msg, namn.identC[i], "negative", nl,">",nl),1);
+                return false;}
+        } //if pos or neg
+    } //for i
+
+    // OK so far. Update "nx" (=nbr of soluble complexes)
+    cs.nx = mg - cs.Na;
+    return true;
+
+  } // checkInput()
+
+//<editor-fold defaultstate="collapsed" desc="getNameLength(species)">
+    private static int getNameLength(String species) {
+        int nameL = Math.max(1, Util.rTrim(species).length());
+        if(nameL < 3) {return nameL;}
+        // Correct name length if there is a space between name and charge
+        // "H +",  "S 2-",  "Q 23+"
+        int sign; int ik;
+        sign =-1;
+        for(ik =nameL-1; ik >= 2; ik--) {
+            char c = species.charAt(ik);
+            if(c == '+' || c == '-' ||
+               // unicode en dash or unicode minus
+               c =='\u2013' || c =='\u2212') {sign = ik; break;}
+            } //for ik
+        if(sign <2) {return nameL;}
+        if(sign < nameL-1 &&
+                (Character.isLetterOrDigit(species.charAt(sign+1)))) {return nameL;}
+        if(species.charAt(sign-1) == ' ')
+                        {nameL = nameL-1; return nameL;}
+        if(nameL >=4) {
+                if(species.charAt(sign-1) >= '2' && species.charAt(sign-1) <= '9' &&
+                   species.charAt(sign-2) == ' ')
+                        {nameL = nameL-1; return nameL;}
+        } //if nameL >=4
+        if(nameL >=5) {
+                if((species.charAt(sign-1) >= '0' && species.charAt(sign-1) <= '9') &&
+                   (species.charAt(sign-2) >= '1' && species.charAt(sign-2) <= '9') &&
+                   species.charAt(sign-3) == ' ')
+                        {nameL = nameL-1;}
+            } //if nameL >=5
+        return nameL;
+    } // getNameLength(species)
+//</editor-fold>
+
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="findTopSpecies(cs0)">
+/** Finds the species predominating at the point just calculated.
+ * @param cs0 the chemical system with the results from HaltaFall: either
+ * <code>cs</code> or a copy used by another thread
+ * @return the value for <code>topSpecies</code> */
+private int findTopSpecies(Chem.ChemSystem cs0) {
+  //if(dbg) {out.println("--- findTopSpecies()");}
+  Chem.ChemSystem.ChemConcs c0 = cs0.chemConcs;
+  int topSpecies;
+  double topConc;
+  double topConcSolid;
+  if(diag.compMain < (cs0.Na - cs0.solidC) && !cs0.noll[diag.compMain]) {
+    topConc = c0.C[diag.compMain];
+    topSpecies = diag.compMain;
+  } else {topConc = 0; topSpecies = -1;}
+  double w;
+  int nIons = cs0.Na + cs0.nx;
+  for (int i = cs0.Na; i < nIons; i++) {
+    w = cs0.a[i-cs0.Na][diag.compMain];
+    if(Math.abs(w) < 0.00001) {continue;}
+    w = w * c0.C[i];
+    if(w <= topConc) {continue;}
+    topConc = w;
+    topSpecies = i;
+  } //for i
+  if(aqu) {return topSpecies;}
+  //plot also predominance areas for solids
+  topConcSolid = Double.MIN_VALUE;
+  if(diag.oneArea >= (cs0.Na+cs0.nx)) { //if only one area is plotted
+      w = cs0.a[diag.oneArea][diag.compMain]*c0.C[diag.oneArea];
+      if(w > topConcSolid) {topSpecies = diag.oneArea;}
+      return topSpecies;
+  } //if only one area
+  for (int i = nIons; i < cs0.Ms; i++) {
+    w = cs0.a[i-cs0.Na][diag.compMain]*c0.C[i];
+    if(w < topConcSolid) {continue;}
+    topSpecies = i;
+    //che if the amount of "compMain" is almost the same for two solids (<0.001% diff)
+    if(Math.abs(w/topConcSolid)-1 <= 0.00001) {topSpecies = -2;}
+    topConcSolid = w;
+  } //for i
+  return topSpecies;
+} //findTopSpecies(cs0)
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="prepare">
+/** Prepares the calculations after the data file has been read:
+ * sets the temperature, the ionic strength and the model for activity
+ * coefficients, sets the limits of the grid to calculate, and
+ * initializes the activity coefficient calculations.
+ * @return false if an error occurs */
+public boolean prepare() {
+    if(dbg) {out.println("--- prepare()");}
+    if(ch == null) {err.println("? Programming error in \"PredomDiagram.prepare\": ch=null."); return false;}
+    finishedCalculations = false;
+    haltaError = false;
+    tooManyAreaPoints = false;
+    nbrTooLargeConcs = 0; nbrHaltaErrors = 0; nbrHaltaUncertain = 0;
+    nbrPointsEvaluated = -1; nbrBisectCalcs = 0;
+    failuresMsg.setLength(0);
+    lineMap = null;
+    //---- Check if "EH" is needed -----------
+    if(diag.Eh && diag.pInX != 3 && diag.pInY != 3) {
+        boolean peGiven = false;
+        for(int i =0; i < cs.Na; i++) {
+            if(Util.isElectron(namn.identC[i]) &&
+                csC.kh[i] ==2) { // kh=2  logA given
+                    peGiven = true; break;}
+        } //for i
+        if(!peGiven) {diag.Eh = false;}
+    }
+    //--- temperature ------------------------
+    diag.temperature = temperature;
+    if(Double.isNaN(diag.temperature) && diag.Eh) { // Eh plotted in one axis
+        String msg = "\"Error: Need to plot Eh values, but no temperature is given.";
+        showErrMsgBx(msg,1);
+        finishedCalculations = true;
+        return false;
+    }
+    if(diag.Eh) {peEh = (ln10*8.3144126d*(diag.temperature+273.15d)/96484.56d);} else {peEh = Double.NaN;}
+    // decide if the temperature should be displayed in the diagram
+    if(!diag.Eh && !calcActCoeffs
+            && !(neutral_pH && (diag.pInX ==1 || diag.pInY ==1))) {
+        if(dbg) {out.println(" (Note: temperature not needed in the diagram)");}
+    }
+    // nbr of calculation steps
+    nSteps = Math.max(NSTP_MIN,nSteps);
+    /** Max. number of points to be plotted. In a predominance area diagram
+     * these are the points delimiting the areas. Should be at least = 15 * nSteps. */
+    final int mxPNT = nSteps * 17;
+    predData = new PredomData(cs.Ms, mxPNT); // create a new instance
+    if(dbg) {out.println(" "+(nSteps+1)+" caculation points"+nl+
+            "ionic strength = "+ionicStrength+nl+
+            "temperature = "+(float)diag.temperature+nl+
+            "max relative mass-balance tolerance = "+(float)tolHalta);}
+
+    // ---------------------------------------
+    // get an instance of Plot
+    plot = new Plot_Predom(this, err, out);
+    // ---------------------------------------
+
+    String msg;
+    // ionic strength
+    diag.ionicStrength = ionicStrength;
+    if(!diag.aquSystem && diag.ionicStrength != 0) {
+        msg = "File: "+(dataFile != null ? dataFile.getName() : "")+nl+
+                "Warning: This does not appear to be an aqueous system,"+nl+
+                "and yet you give a value for the ionic strength?";
+        if(!showErrMsgBxCancel(msg, 1)) {
+            out.println("--- Cancelled by the user ---");
+            finishedCalculations = true;
+            return false;
+        }
+    }
+
+    // model to calculate ion activity coefficients
+    if(calcActCoeffs) {
+        diag.activityCoeffsModel = Math.min(2, Math.max(0, actCoeffsModel));
+        csC.actCoefCalc = true;
+    } else {
+        diag.activityCoeffsModel = -1;
+        csC.actCoefCalc = false;
+    }
+    // height scale for texts in the diagram
+    tHeight = Math.min(10.d,Math.max(tHeight, 0.3));
+    // keep track of elapsed time
+    calculationStart = System.nanoTime();
+
+    //-- a simple check...
+    if(dgrC.hur[diag.compX] <=1 || dgrC.hur[diag.compX] ==4 || dgrC.hur[diag.compX] >=6) { //error?
+        err.println("Programming error found at \"prepare()\":"+nl+
+                    "   diag.compX = "+diag.compX+" hur = "+dgrC.hur[diag.compX]+" (should be 2,3 or 5)");
+    }
+    if(dgrC.hur[diag.compY] <=1 || dgrC.hur[diag.compY] ==4 || dgrC.hur[diag.compY] >=6) { //error?
+        err.println("Programming error found at \"prepare()\":"+nl+
+                    "   diag.compY = "+diag.compY+" hur = "+dgrC.hur[diag.compY]+" (should be 2,3 or 5)");
+    }
+
+    // check POS and NEG with the Tot.Conc. given in the input
+    int j;
+    for(j =0; j < cs.Na; j++) {
+        if(csC.kh[j] == 2) {continue;} //only it Tot.conc. is given
+        if(!(pos[j] && neg[j]) && (pos[j] || neg[j])) {
+            if(dgrC.hur[j] !=3 &&  //not LTV
+               dgrC.cLow[j]==0 && (Double.isNaN(dgrC.cHigh[j]) || dgrC.cHigh[j]==0)) {
+                    //it is only POS or NEG and Tot.Conc =0
+                    csC.logA[j] = -9999.;
+                    dgrC.cLow[j] = csC.logA[j];
+                    if(j == diag.compX || j == diag.compY) {dgrC.cHigh[j] = dgrC.cLow[j]+10;}
+                    csC.kh[j] =2; //kh=2 means logA given
+                    if(dbg) {out.println("Can not calculate mass-balance for for component \""+namn.identC[j]+"\""+nl+
+                        "   its log(activity) is now set to -9999.");}
+            }
+        }
+    } //for j
+
+    // ---- Make an instance of Factor
+    String userHome = System.getProperty("user.home");
+    factor = new Factor(ch, pathApp, userHome, pathDef, out);
+    out.flush();
+    // ---- print information on the model used for activity coefficients
+    try {factor.factorPrint(dbg);}
+    catch (Exception ex) {
+        showErrMsgBx(ex.getMessage(),1);
+        factor = null;
+    }
+    if(factor == null) {
+        finishedCalculations = true;
+        return false;
+    }
+    // ---- Initialize variables
+    csC.dbg = dbgHalta;
+    csC.cont = false;
+    csC.tol = tolHalta;
+    for(j =0; j < cs.Na; j++) {
+        if(csC.kh[j] == 1) {
+            csC.tot[j]=dgrC.cLow[j];
+            csC.logA[j]=-10;
+            if(csC.tot[j]>0) {csC.logA[j] = Math.log10(csC.tot[j]) -3;}
+        }
+        else {csC.logA[j]=dgrC.cLow[j];}
+    } // for j
+
+    predData.xLeft = dgrC.cLow[diag.compX];
+    predData.xRight = dgrC.cHigh[diag.compX];
+    predData.stepX =(dgrC.cHigh[diag.compX] - dgrC.cLow[diag.compX]) / nSteps;
+
+    predData.yBottom = dgrC.cLow[diag.compY];
+    predData.yTop = dgrC.cHigh[diag.compY];
+    predData.stepY =(dgrC.cHigh[diag.compY] - dgrC.cLow[diag.compY]) / nSteps;
+
+    msg = "Starting the calculations...";
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+    return true;
+} //prepare()
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="calculate">
+/** Finds the predominating species at each point of the grid, and the
+ * frontiers between predominance areas. Method <code>prepare</code> must
+ * be called first.
+ * The calculations may be stopped from another thread with <code>cancel()</code>.
+ * @return true if no error occurs, false otherwise
+ * @throws Exception */
+public boolean calculate() throws Exception {
+    if(dbg) {out.println("--- calculate()");}
+    if(predData == null) {
+        showMsg("Programming error in \"PredomDiagram.calculate\":"+nl+"PredomData = null.", 0);
+        return false;
+    }
+    finishedCalculations = false;
+    boolean ok;
+    if(adaptiveGrid) {ok = doAdaptiveCalculations();}
+    else if(nThreads > 1) {ok = doTiledCalculations();}
+    else {ok = doGridCalculations();}
+    if(ok && bisectFrontiers && !haltaError && !finishedCalculations) {bisectFrontiers();}
+    return ok && !haltaError;
+} //calculate()
+
+  /** Calculates all points of the grid, column by column, and finds
+   * the frontiers between predominance areas.
+   * @return true if no error occurs, false otherwise */
+  private boolean doGridCalculations() {
+    //--- do the HaltaFall calculations
+    // create an instance of class HaltaFall
+    h = null;
+    try {h = new HaltaFall(cs,factor, out);}
+    catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
+        showErrMsgBx(ex);
+        haltaError = true;
+        return false;
+    }
+
+   /** <code>line[n][1]</code> is the predominating species at point "n" (along the
+    * Y-axis) for the present calculation.<br>
+    * <code>line[n][0]</code> is the predominating species at point "n" (along the
+    * Y-axis) for the <i>previous</i> calculation.<br>
+    * The plot area is divided in "nSteps" which means nSteps+1 calculated
+    * positions, plus one over the top and one under the bottom, this gives
+    * (nSteps+3) for the size of line[][2].<br>
+    * The bottom and top  values (or left and right if calculations are row-wise),
+    * that is, line[0][] and line[nSteps+2][], are always "-1",
+    * that is: no predominating species outside the plot area. */
+    int[][] line = new int[nSteps+3][2];
+
+    int iL;
+    int iL_1; // = iL -1
+    final int NOW = 1;  final int PREVIOUS = 0;
+    for(iL=0; iL<line.length; iL++) {line[iL][PREVIOUS]=-1; line[iL][NOW]=-1;}
+
+   /** Warm-start store: the state of HaltaFall at each point (along the
+    * Y-axis) of the previous column and of the present column. A point is
+    * started from the point below it (the previous calculation), or if that
+    * is not possible, from the point to its left. */
+    HaltaFall.State[] statesPrevious = new HaltaFall.State[nSteps+1];
+    HaltaFall.State[] statesNow = new HaltaFall.State[nSteps+1];
+    HaltaFall.State[] statesTmp;
+
+    int i,j, n;
+    if(dbg) {
+        lineMap = new char[nSteps+1][nSteps+1];
+        for(j=0; j<lineMap.length; j++) {for(i=0; i<lineMap.length; i++) {lineMap[j][i] = ' ';}}
+    }
+    double xVal, yVal; // these are the position of the calculated point
+    predData.nPoint = -1;
+    boolean frontier;
+    double tolHalta0 = csC.tol;
+    final String f = "Calculation failed in \"HaltaFall.haltaCalc\" at point (%d,%d), x=%7.5f y=%7.5f"+nl+"%s";
+    final String d;
+    if(cs.Ms<=98) {d="%2d";} else if(cs.Ms<=998) {d="%3d";} else if(cs.Ms<=9998) {d="%4d";} else {d="%5d";}
+
+    // ----- The calculations are performed column-wise:
+    //          all Y-values are calcualted for each X-value,
+    //          starting from the left/bottom corner and going
+    //          to the right and upwards
+    //       The outer loop is along the X-axis and the inner loop along the Y-axis
+    nStepOuter = -1;
+    xVal = predData.xLeft - predData.stepX;
+    do_loopOuter:
+    do {  // -------------------------------------- Outer Loop for X-axis
+        nStepOuter++;
+        progress((nStepOuter+1));
+        //if needed for debugging: sleep some milliseconds (wait) at each calculation point
+        //try {Thread.sleep(1);} catch(Exception ex) {}
+
+        xVal = xVal + predData.stepX;
+        j = diag.compX;
+        // --- input data for this calculation point
+        if(csC.kh[j] == 1) {
+            if(dgrC.hur[j] ==3) { // LTV
+                csC.tot[j] = Math.exp(ln10*xVal);
+            } else { // TV
+                csC.tot[j]=xVal;
+            }
+        } else { // kh[j] = 2
+              csC.logA[j]=xVal;
+        }
+        // For the 1st point at the bottom of the diagram, starting the calcs. using
+        // the last equilibrium composition (at the top of the diagram) might be a bad idea:
+        // start from the bottom of the previous column instead
+        csC.cont = false;
+
+        // csC.cont = false;
+        nStepInner = -1;
+        yVal = predData.yBottom - predData.stepY;
+        do {  // -------------------------------------- Inner Loop for Y-axis
+            nStepInner++;
+            iL = nStepInner+1;
+            iL_1 = nStepInner; // iL_1 = iL-1
+            yVal = yVal + predData.stepY;
+            j = diag.compY;
+            // --- input data for this calculation point
+            if(csC.kh[j] == 1) {
+                if(dgrC.hur[j] ==3) { // LTV
+                    csC.tot[j] = Math.exp(ln10*yVal);
+                } else { // TV
+                    csC.tot[j]=yVal;
+                }
+            } else { // kh[j] = 2
+                csC.logA[j]=yVal;
+            }
+
+            if(finishedCalculations) {break do_loopOuter;} //user requests exit?
+
+            // the point below failed (or this is the bottom of the column):
+            // start from the point to the left, if it was calculated
+            if(!csC.cont && nStepOuter > 0) {h.restoreState(statesPrevious[nStepInner]);}
+
+            // print debug output from halta for the first point
+            if(nStepOuter == 0 && nStepInner == 0) {
+                if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+                    out.println("Starting calculation 1 (of "+(nSteps+1)+"x"+(nSteps+1)+")");
+                }
+            } else {
+                csC.dbg = Chem.DBGHALTA_DEF;
+                // ########## ---------- ##########  ---------- ########## ##?##
+                if(Math.abs(xVal+9.03)<0.005 && (Math.abs(yVal+2.51)<0.001)) {
+                    csC.dbg = 6;
+                    out.println("---- Note: x="+(float)xVal+", y="+(float)yVal+"  (debug) ---- nStepInner="+nStepInner+", nStepOuter="+nStepOuter);
+                }
+                // ########## ---------- ##########  ---------- ########## ##?##
+            }
+            // --- HaltaFall: do the calculations
+            //     calculate the equilibrium composition of the system
+            try {
+                csC.tol = tolHalta0;
+                h.haltaCalc();
+                if(csC.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
+                    do {
+                        csC.tol = csC.tol * 0.1; // decrease tolerance and try again
+                        if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+                            out.println("Too many iterations when solving the mass balance equations"+nl+
+                                    "  decreasing tolerance to: "+(float)csC.tol+" and trying again.");
+                        }
+                        h.haltaCalc();
+                    } while (csC.isErrFlagsSet(2) && csC.tol >= 1e-9);
+                    csC.tol = tolHalta0;
+                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+                        out.println("Restoring tolerance to: "+(float)tolHalta0+" for next calculations.");
+                    }
+                }
+                if(csC.isErrFlagsSet(3) && nStepOuter > 0
+                        && statesPrevious[nStepInner] != null && statesPrevious[nStepInner].isSaved()) {
+                    // failed to find a satisfactory combination of solids:
+                    // try first starting from the point to the left
+                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+                        out.println("Failed to find a satisfactory combination of solids. Trying from the point to the left...");
+                    }
+                    h.restoreState(statesPrevious[nStepInner]);
+                    h.haltaCalc();
+                }
+                if(csC.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
+                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+                        out.println("Failed to find a satisfactory combination of solids. Trying again...");
+                    }
+                    csC.cont = false;      // try again
+                    h.haltaCalc();
+                }
+            } catch (Chem.ChemicalParameterException ex) {
+                String ms = "Error in \"HaltaFall.haltaCalc\", errFlags="+nl+csC.errFlagsGetMessages()+nl+
+                        "   at point: ("+(nStepInner+1)+","+(nStepOuter+1)+")  at x="+(float)xVal+" y="+(float)yVal;
+                showMsg(ex);
+                showErrMsgBx(ms+nl+ex.getMessage(),1);
+                haltaError = true;
+                break do_loopOuter;
+            }
+            // ---
+            if(finishedCalculations) {break do_loopOuter;} //user request exit?
+
+            if(csC.isErrFlagsSet(5)) {nbrTooLargeConcs++;}
+            else if(csC.isErrFlagsSet(1)) {nbrHaltaUncertain++;}
+            if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
+                            || csC.isErrFlagsSet(6)) {
+                nbrHaltaErrors++;
+                frontier = false;
+                if(failuresMsg.length() >0) {failuresMsg.append(nl);}
+                failuresMsg.append(String.format(engl,f,(nStepInner+1),(nStepOuter+1),(float)xVal,(float)yVal,csC.errFlagsGetMessages()));
+                if(statesNow[nStepInner] != null) {statesNow[nStepInner].clear();}
+            } else {
+                statesNow[nStepInner] = h.saveState(statesNow[nStepInner]);
+                //--------------------------------------------------
+                topSpecies = findTopSpecies(cs);
+
+                line[iL][NOW] = topSpecies;
+                //--------------------------------------------------
+                //  Is this point a frontier between two areas ?
+                if(line[iL][NOW] != line[iL][PREVIOUS]) {
+                    frontier = line[iL][NOW] != line[iL_1][NOW] ||
+                        line[iL][NOW] != line[iL_1][PREVIOUS];
+                } else {
+                    frontier = line[iL][NOW] != line[iL_1][NOW];
+                }
+            }
+            if(frontier) {
+                predData.nPoint++;
+                // store what species are involved
+                predData.pair[predData.nPoint][0] = line[iL][PREVIOUS];
+                if(nStepOuter ==0 && line[iL][NOW] != line[iL_1][NOW]) {
+                                            predData.pair[predData.nPoint][0] = line[iL_1][NOW];
+                }
+                predData.pair[predData.nPoint][1] = line[iL][NOW];
+                predData.pair[predData.nPoint][2] = line[iL_1][NOW];
+                // the position of the line separating the predominance areas
+                predData.xPl[predData.nPoint] = xVal;
+                    predData.yPl[predData.nPoint] = yVal;
+                if(dbg) {lineMap[nStepInner][nStepOuter] = '+';}
+            } else { // not frontier
+                if(iL == (nSteps+1) || nStepOuter == nSteps) {
+                    //Point at the margin of the diagram
+                    //  these are used only to determine the centre of each predominance area
+                    predData.nPoint++;
+                    predData.pair[predData.nPoint][0]=line[iL][PREVIOUS];
+                    predData.pair[predData.nPoint][1]=-1; //the predominating species at this point
+                    predData.pair[predData.nPoint][2]=line[iL][NOW];
+                    predData.xPl[predData.nPoint] = xVal;
+                    predData.yPl[predData.nPoint] = yVal;
+                    if(dbg) {lineMap[nStepInner][nStepOuter] = '+';}
+                }
+            }//frontier?
+            // --------------------------------------------------
+
+            if(dbg && nStepOuter == 0 && nStepInner == 0 && diag.activityCoeffsModel >=0) {
+                    err.flush(); out.flush();
+                    out.println("First calculation step finished.");
+                    factor.printActivityCoeffs(out);
+            }
+
+          } while(nStepInner < nSteps); // ------------ Inner Loop for 2nd-axis
+
+          if(dbg) { //-- print the predominance species map
+              if(nStepOuter==0) {out.println("---- Map of predominating species (from 1 \""+
+                      namn.ident[0]+"\" to "+(cs.Ms-1)+" \""+namn.ident[cs.Ms-1]+"\") and X-variable."+nl+
+                      "     The leftmost column corresponds to Y="+(float)predData.yBottom+" and the rightmost column to Y="+(float)predData.yTop);}
+              for(i=0; i<(line.length-1); i++) {
+                  if(line[i][NOW]>=0) {n=line[i][NOW]+1;} else {n=-1;}
+                  out.print(String.format(d,n));
+              }
+              out.print(" "+(float)xVal);
+              out.println();
+          }
+
+          if(predData.nPoint >= predData.mxPNT) {
+            tooManyAreaPoints = true;
+            break; // do_loopOuter;
+          }
+          for(i =0; i<line.length; i++) {line[i][PREVIOUS] = line[i][NOW]; line[i][NOW] = -1;}
+          statesTmp = statesPrevious; statesPrevious = statesNow; statesNow = statesTmp;
+
+        } while(nStepOuter < nSteps); // ------------ External Loop for 1st-axis
+    return true;
+  }
+  //<editor-fold defaultstate="collapsed" desc="doTiledCalculations">
+  /** Performs the calculations on a pool of <code>nThreads</code> threads.
+   * The grid is divided in bands of columns (X-values), and each band is
+   * calculated by a task having its own copies of <code>Chem</code>,
+   * <code>Factor</code> and <code>HaltaFall</code>, made when the task starts
+   * and used for all the columns in the band.
+   * Note that in the serial calculation each column starts from the
+   * equilibrium composition found at the top of the previous column, while
+   * here each column starts from the initial concentrations. This way the
+   * results do not depend on the number of threads, or on how the
+   * columns are distributed among the threads.
+   * When all tasks are finished the frontiers between predominance areas
+   * are found, column by column, in <code>stitchColumns</code>.
+   * @return true if no error occurs, false otherwise
+   * @throws Exception */
+  private boolean doTiledCalculations() throws Exception {
+    final int nPts = nSteps+1;
+    // the X- and Y-values are obtained step by step as in the serial calculation
+    final double[] xVals = new double[nPts];
+    final double[] yVals = new double[nPts];
+    double w = predData.xLeft - predData.stepX;
+    for(int i=0; i<nPts; i++) {w = w + predData.stepX; xVals[i] = w;}
+    w = predData.yBottom - predData.stepY;
+    for(int i=0; i<nPts; i++) {w = w + predData.stepY; yVals[i] = w;}
+    /** the predominating species at each calculated point */
+    final int[][] top = new int[nPts][nPts];
+    /** the value of errFlags at each calculated point */
+    final int[][] flags = new int[nPts][nPts];
+    /** true if a column has been calculated */
+    final boolean[] colDone = new boolean[nPts];
+    /** an exception thrown by HaltaFall in a column, and the point */
+    final Chem.ChemicalParameterException[] colErr = new Chem.ChemicalParameterException[nPts];
+    final int[] colErrPoint = new int[nPts];
+    final java.util.concurrent.atomic.AtomicInteger nbrColsDone =
+            new java.util.concurrent.atomic.AtomicInteger(0);
+    if(dbg) {out.println("Calculating "+nPts+" columns using "+nThreads+" threads.");}
+
+    // several bands per thread, so that the threads are kept busy
+    // even if some columns take much longer than others
+    int nBands = Math.min(nPts, 4*nThreads);
+    java.util.List<java.util.concurrent.Callable<Boolean>> bands =
+            new java.util.ArrayList<java.util.concurrent.Callable<Boolean>>(nBands);
+    for(int b=0; b < nBands; b++) {
+        final int first = (int)(((long)b*nPts)/nBands);
+        final int last = (int)(((long)(b+1)*nPts)/nBands);
+        bands.add(new java.util.concurrent.Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                // the copies used by this band
+                Chem chT;
+                Factor fT;
+                HaltaFall hT;
+                try {
+                    chT = ch.copy();
+                    chT.chemSystem.chemConcs.dbg = Chem.DBGHALTA_DEF;
+                    fT = factor.copy(chT);
+                    hT = HaltaFallPool.acquire(chT.chemSystem, fT, out);
+                } catch (Chem.ChemicalParameterException ex) {
+                    colErr[first] = ex; colErrPoint[first] = 0;
+                    return false;
+                }
+                try {
+                    for(int col = first; col < last; col++) {
+                        if(finishedCalculations) {return false;}
+                        if(!calcColumn(col, chT, fT, hT, xVals, yVals, top[col], flags[col], colErr, colErrPoint)) {return false;}
+                        colDone[col] = true;
+                        progress(nbrColsDone.incrementAndGet());
+                    }
+                } finally {HaltaFallPool.release(hT);}
+                return true;
+            }});
+    } //for b
+    java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(nThreads);
+    try {
+        java.util.List<java.util.concurrent.Future<Boolean>> results = pool.invokeAll(bands);
+        for(java.util.concurrent.Future<Boolean> r : results) {
+            try {r.get();}
+            catch (java.util.concurrent.ExecutionException ex) {
+                if(ex.getCause() instanceof Exception) {throw (Exception)ex.getCause();}
+                throw ex;
+            }
+        }
+    } finally {pool.shutdown();}
+
+    // ---- an error in HaltaFall: report the first one
+    for(int col=0; col < nPts; col++) {
+        if(colErr[col] == null) {continue;}
+        csC.errFlags = flags[col][colErrPoint[col]];
+        String ms = "Error in \"HaltaFall.haltaCalc\", errFlags="+nl+csC.errFlagsGetMessages()+nl+
+                "   at point: ("+(colErrPoint[col]+1)+","+(col+1)+")  at x="+(float)xVals[col]+" y="+(float)yVals[colErrPoint[col]];
+        showMsg(colErr[col]);
+        showErrMsgBx(ms+nl+colErr[col].getMessage(),1);
+        haltaError = true;
+        return true;
+    }
+    stitchColumns(top, flags, colDone, xVals, yVals);
+    return true;
+  } //doTiledCalculations()
+
+  /** Calculates the equilibrium composition at all points of a column
+   * (along the Y-axis) using copies of <code>Chem</code> and <code>Factor</code>,
+   * and a <code>HaltaFall</code> object taken from <code>HaltaFallPool</code>,
+   * which are used by a single thread. The concentrations in the copy are
+   * first set to the initial values, so that the column does not depend on
+   * the columns calculated before with the same copies.
+   * This method may be run concurrently by several threads.
+   * @param col the column (X-value) to calculate
+   * @param chT a copy of <code>ch</code>
+   * @param fT a copy of <code>factor</code> for <code>chT</code>
+   * @param hT a <code>HaltaFall</code> object for <code>chT</code> and <code>fT</code>
+   * @param xVals the X-values
+   * @param yVals the Y-values
+   * @param topCol where the predominating species at each point are stored
+   * @param flagsCol where the value of errFlags at each point is stored
+   * @param colErr where an exception thrown by HaltaFall is stored
+   * @param colErrPoint where the point at which the exception was thrown is stored
+   * @return false if the calculations were interrupted, either by the user
+   * or by an exception in HaltaFall; true otherwise */
+  private boolean calcColumn(final int col, final Chem chT, final Factor fT, final HaltaFall hT,
+          final double[] xVals, final double[] yVals,
+          final int[] topCol, final int[] flagsCol,
+          final Chem.ChemicalParameterException[] colErr, final int[] colErrPoint) {
+    Chem.ChemSystem csT = chT.chemSystem;
+    Chem.ChemSystem.ChemConcs c = csT.chemConcs;
+    // --- start from the initial concentrations
+    Chem.ChemSystem.ChemConcs c0 = ch.chemSystem.chemConcs;
+    System.arraycopy(c0.logA, 0, c.logA, 0, c.logA.length);
+    System.arraycopy(c0.tot, 0, c.tot, 0, c.tot.length);
+    System.arraycopy(c0.solub, 0, c.solub, 0, c.solub.length);
+    System.arraycopy(c0.C, 0, c.C, 0, c.C.length);
+    System.arraycopy(c0.logf, 0, c.logf, 0, c.logf.length);
+    c.tol = c0.tol;
+    c.tolLogF = c0.tolLogF;
+    try {hT.reset(csT, fT, out);}
+    catch (Chem.ChemicalParameterException ex) {
+        colErr[col] = ex; colErrPoint[col] = 0;
+        return false;
+    }
+    double tolHalta0 = c.tol;
+    int j = diag.compX;
+    // --- input data for this column
+    if(c.kh[j] == 1) {
+        if(dgrC.hur[j] ==3) { // LTV
+            c.tot[j] = Math.exp(ln10*xVals[col]);
+        } else { // TV
+            c.tot[j] = xVals[col];
+        }
+    } else { // kh[j] = 2
+        c.logA[j] = xVals[col];
+    }
+    c.cont = false;
+    for(int n = 0; n < yVals.length; n++) {
+        if(finishedCalculations) {return false;} //user requests exit?
+        j = diag.compY;
+        // --- input data for this calculation point
+        if(c.kh[j] == 1) {
+            if(dgrC.hur[j] ==3) { // LTV
+                c.tot[j] = Math.exp(ln10*yVals[n]);
+            } else { // TV
+                c.tot[j] = yVals[n];
+            }
+        } else { // kh[j] = 2
+            c.logA[j] = yVals[n];
+        }
+        // --- HaltaFall: do the calculations
+        try {
+            c.tol = tolHalta0;
+            hT.haltaCalc();
+            if(c.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
+                do {
+                    c.tol = c.tol * 0.1; // decrease tolerance and try again
+                    hT.haltaCalc();
+                } while (c.isErrFlagsSet(2) && c.tol >= 1e-9);
+                c.tol = tolHalta0;
+            }
+            if(c.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
+                c.cont = false;      // try again
+                hT.haltaCalc();
+            }
+        } catch (Chem.ChemicalParameterException ex) {
+            flagsCol[n] = c.errFlags;
+            colErr[col] = ex; colErrPoint[col] = n;
+            return false;
+        }
+        flagsCol[n] = c.errFlags;
+        if(c.isErrFlagsSet(2) || c.isErrFlagsSet(3) || c.isErrFlagsSet(4)
+                        || c.isErrFlagsSet(6)) {
+            topCol[n] = -1;
+        } else {
+            topCol[n] = findTopSpecies(csT);
+        }
+    } //for n
+    return true;
+  } //calcColumn
+
+  /** Finds the frontiers between the predominance areas from the results
+   * of <code>doTiledCalculations</code>. The columns are processed in order,
+   * from left to right, in the same way as in the serial calculation, and
+   * the frontier points are stored in <code>predData</code>. Only the
+   * columns calculated before any unfinished column are used.
+   * @param top the predominating species at each calculated point
+   * @param flags the value of errFlags at each calculated point
+   * @param colDone true for the columns that have been calculated
+   * @param xVals the X-values
+   * @param yVals the Y-values */
+  private void stitchColumns(final int[][] top, final int[][] flags, final boolean[] colDone,
+          final double[] xVals, final double[] yVals) {
+    int[][] line = new int[nSteps+3][2];
+    int iL, iL_1;
+    final int NOW = 1;  final int PREVIOUS = 0;
+    for(iL=0; iL<line.length; iL++) {line[iL][PREVIOUS]=-1; line[iL][NOW]=-1;}
+    int i,j,n;
+    if(dbg) {
+        lineMap = new char[nSteps+1][nSteps+1];
+        for(j=0; j<lineMap.length; j++) {for(i=0; i<lineMap.length; i++) {lineMap[j][i] = ' ';}}
+    }
+    double xVal, yVal;
+    predData.nPoint = -1;
+    boolean frontier;
+    final String f = "Calculation failed in \"HaltaFall.haltaCalc\" at point (%d,%d), x=%7.5f y=%7.5f"+nl+"%s";
+    final String d;
+    if(cs.Ms<=98) {d="%2d";} else if(cs.Ms<=998) {d="%3d";} else if(cs.Ms<=9998) {d="%4d";} else {d="%5d";}
+    nStepOuter = -1;
+    while(nStepOuter < nSteps) {
+        if(!colDone[nStepOuter+1]) {break;}
+        nStepOuter++;
+        xVal = xVals[nStepOuter];
+        for(nStepInner = 0; nStepInner <= nSteps; nStepInner++) {
+            iL = nStepInner+1;
+            iL_1 = nStepInner;
+            yVal = yVals[nStepInner];
+            csC.errFlags = flags[nStepOuter][nStepInner];
+            if(csC.isErrFlagsSet(5)) {nbrTooLargeConcs++;}
+            else if(csC.isErrFlagsSet(1)) {nbrHaltaUncertain++;}
+            if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
+                            || csC.isErrFlagsSet(6)) {
+                nbrHaltaErrors++;
+                frontier = false;
+                if(failuresMsg.length() >0) {failuresMsg.append(nl);}
+                failuresMsg.append(String.format(engl,f,(nStepInner+1),(nStepOuter+1),(float)xVal,(float)yVal,csC.errFlagsGetMessages()));
+            } else {
+                line[iL][NOW] = top[nStepOuter][nStepInner];
+                //  Is this point a frontier between two areas ?
+                if(line[iL][NOW] != line[iL][PREVIOUS]) {
+                    frontier = line[iL][NOW] != line[iL_1][NOW] ||
+                        line[iL][NOW] != line[iL_1][PREVIOUS];
+                } else {
+                    frontier = line[iL][NOW] != line[iL_1][NOW];
+                }
+            }
+            if(frontier) {
+                predData.nPoint++;
+                predData.pair[predData.nPoint][0] = line[iL][PREVIOUS];
+                if(nStepOuter ==0 && line[iL][NOW] != line[iL_1][NOW]) {
+                                            predData.pair[predData.nPoint][0] = line[iL_1][NOW];
+                }
+                predData.pair[predData.nPoint][1] = line[iL][NOW];
+                predData.pair[predData.nPoint][2] = line[iL_1][NOW];
+                predData.xPl[predData.nPoint] = xVal;
+                predData.yPl[predData.nPoint] = yVal;
+                if(dbg) {lineMap[nStepInner][nStepOuter] = '+';}
+            } else { // not frontier
+                if(iL == (nSteps+1) || nStepOuter == nSteps) {
+                    //Point at the margin of the diagram
+                    predData.nPoint++;
+                    predData.pair[predData.nPoint][0]=line[iL][PREVIOUS];
+                    predData.pair[predData.nPoint][1]=-1;
+                    predData.pair[predData.nPoint][2]=line[iL][NOW];
+                    predData.xPl[predData.nPoint] = xVal;
+                    predData.yPl[predData.nPoint] = yVal;
+                    if(dbg) {lineMap[nStepInner][nStepOuter] = '+';}
+                }
+            }//frontier?
+        } //for nStepInner
+        nStepInner = nSteps;
+
+        if(dbg) { //-- print the predominance species map
+            if(nStepOuter==0) {out.println("---- Map of predominating species (from 1 \""+
+                    namn.ident[0]+"\" to "+(cs.Ms-1)+" \""+namn.ident[cs.Ms-1]+"\") and X-variable."+nl+
+                    "     The leftmost column corresponds to Y="+(float)predData.yBottom+" and the rightmost column to Y="+(float)predData.yTop);}
+            for(i=0; i<(line.length-1); i++) {
+                if(line[i][NOW]>=0) {n=line[i][NOW]+1;} else {n=-1;}
+                out.print(String.format(d,n));
+            }
+            out.print(" "+(float)xVal);
+            out.println();
+        }
+
+        if(predData.nPoint >= predData.mxPNT) {
+          tooManyAreaPoints = true;
+          break;
+        }
+        for(i =0; i<line.length; i++) {line[i][PREVIOUS] = line[i][NOW]; line[i][NOW] = -1;}
+    } //while nStepOuter
+    csC.errFlags = 0;
+  } //stitchColumns
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="doAdaptiveCalculations">
+  /** the predominating species at each point of the grid in an adaptive calculation */
+  private int[][] gridTop;
+  /** the value of errFlags at each point of the grid in an adaptive calculation */
+  private int[][] gridFlags;
+  /** true for the points of the grid where HaltaFall has been called */
+  private boolean[][] gridDone;
+  /** the grid point (column, row) calculated last, or -1 */
+  private int lastCol = -1, lastRow = -1;
+  /** the size of the coarse cells in an adaptive calculation */
+  private int coarseSteps = 1;
+  /** Warm-start store: the state of HaltaFall at the most recently calculated
+   * points of the grid (key = column*(nSteps+1)+row). The oldest states are
+   * removed when there are more than about four columns' worth of them. */
+  private java.util.Map<Integer, HaltaFall.State> gridStates;
+
+  /** Performs the calculations on an adaptive grid. The grid is first
+   * calculated at a coarse resolution. Each coarse cell is then subdivided
+   * recursively, but only if the predominating species are not the same at
+   * its four corners, until the resolution given by <code>nSteps</code> is
+   * reached. The points inside cells having the same species at all corners
+   * are not calculated: they are given the species of the corners.
+   * Note that a predominance area that is smaller than a coarse cell, and
+   * that does not include any corner, will not be found.
+   * When the grid is complete the frontiers between predominance areas
+   * are found, column by column, in <code>stitchColumns</code>.
+   * @return true if no error occurs, false otherwise
+   * @throws Exception */
+  private boolean doAdaptiveCalculations() throws Exception {
+    h = null;
+    try {h = new HaltaFall(cs,factor, out);}
+    catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
+        showErrMsgBx(ex);
+        haltaError = true;
+        return false;
+    }
+    final int nPts = nSteps+1;
+    final double[] xVals = new double[nPts];
+    final double[] yVals = new double[nPts];
+    double w = predData.xLeft - predData.stepX;
+    for(int i=0; i<nPts; i++) {w = w + predData.stepX; xVals[i] = w;}
+    w = predData.yBottom - predData.stepY;
+    for(int i=0; i<nPts; i++) {w = w + predData.stepY; yVals[i] = w;}
+    gridTop = new int[nPts][nPts];
+    gridFlags = new int[nPts][nPts];
+    gridDone = new boolean[nPts][nPts];
+    for(int i=0; i<nPts; i++) {java.util.Arrays.fill(gridTop[i], -1);}
+    lastCol = -1; lastRow = -1;
+    nbrPointsEvaluated = 0;
+    // the size of the coarse cells: a power of two giving about 16 cells along each axis
+    int coarse = Math.max(1, Integer.highestOneBit(Math.max(1, nSteps/16)));
+    coarseSteps = coarse;
+    final int maxStates = 4*nPts;
+    gridStates = new java.util.LinkedHashMap<Integer, HaltaFall.State>(2*maxStates, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        @Override protected boolean removeEldestEntry(java.util.Map.Entry<Integer, HaltaFall.State> eldest) {
+            return size() > maxStates;
+        }};
+    if(dbg) {out.println("Adaptive grid: coarse cells of "+coarse+" x "+coarse+" steps.");}
+    int col0, row0;
+    for(col0 = 0; col0 < nSteps; col0 += coarse) {
+        progress(col0+1);
+        int col1 = Math.min(nSteps, col0 + coarse);
+        for(row0 = 0; row0 < nSteps; row0 += coarse) {
+            int row1 = Math.min(nSteps, row0 + coarse);
+            try {
+                if(!refineCell(col0, col1, row0, row1, xVals, yVals)) {return true;} // user request exit
+            } catch (Chem.ChemicalParameterException ex) {
+                csC.errFlags = gridFlags[lastCol][lastRow];
+                String ms = "Error in \"HaltaFall.haltaCalc\", errFlags="+nl+csC.errFlagsGetMessages()+nl+
+                        "   at point: ("+(lastRow+1)+","+(lastCol+1)+")  at x="+(float)xVals[lastCol]+" y="+(float)yVals[lastRow];
+                showMsg(ex);
+                showErrMsgBx(ms+nl+ex.getMessage(),1);
+                haltaError = true;
+                return true;
+            }
+        } //for row0
+    } //for col0
+    progress(nPts);
+    if(dbg) {out.println("Adaptive grid: "+nbrPointsEvaluated+" points evaluated (out of "+(nPts*nPts)+")");}
+    // the errFlags are counted only for the evaluated points
+    for(int i=0; i<nPts; i++) {
+        for(int j=0; j<nPts; j++) {if(!gridDone[i][j]) {gridFlags[i][j] = 0;}}
+    }
+    boolean[] colDone = new boolean[nPts];
+    java.util.Arrays.fill(colDone, true);
+    stitchColumns(gridTop, gridFlags, colDone, xVals, yVals);
+    return true;
+  } //doAdaptiveCalculations()
+
+  /** Calculates the corners of a cell of the grid. If the same species
+   * predominates at the four corners, all points in the cell that have not
+   * been calculated are given this species. Otherwise the cell is divided
+   * in two or four smaller cells which are refined in turn.
+   * @param col0 the left column of the cell
+   * @param col1 the right column of the cell
+   * @param row0 the bottom row of the cell
+   * @param row1 the top row of the cell
+   * @param xVals the X-values
+   * @param yVals the Y-values
+   * @return false if the user requests to stop the calculations
+   * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+  private boolean refineCell(int col0, int col1, int row0, int row1,
+          final double[] xVals, final double[] yVals)
+          throws Chem.ChemicalParameterException {
+    if(!gridPoint(col0, row0, xVals, yVals) || !gridPoint(col0, row1, xVals, yVals)
+        || !gridPoint(col1, row1, xVals, yVals) || !gridPoint(col1, row0, xVals, yVals)) {return false;}
+    if(col1 - col0 <= 1 && row1 - row0 <= 1) {return true;}
+    int t = gridTop[col0][row0];
+    if(t >= 0 && gridTop[col0][row1] == t && gridTop[col1][row0] == t && gridTop[col1][row1] == t) {
+        for(int i = col0; i <= col1; i++) {
+            for(int j = row0; j <= row1; j++) {
+                if(!gridDone[i][j]) {gridTop[i][j] = t;}
+            }
+        }
+        return true;
+    }
+    int colM = (col1 - col0 > 1) ? (col0 + col1)/2 : col1;
+    int rowM = (row1 - row0 > 1) ? (row0 + row1)/2 : row1;
+    if(!refineCell(col0, colM, row0, rowM, xVals, yVals)) {return false;}
+    if(rowM < row1 && !refineCell(col0, colM, rowM, row1, xVals, yVals)) {return false;}
+    if(colM < col1) {
+        if(!refineCell(colM, col1, rowM, row1, xVals, yVals)) {return false;}
+        if(rowM < row1 && !refineCell(colM, col1, row0, rowM, xVals, yVals)) {return false;}
+    }
+    return true;
+  } //refineCell
+
+  /** Calculates the equilibrium composition at a point of the grid,
+   * unless it has been calculated already, and stores the predominating
+   * species in <code>gridTop</code>.
+   * @param col the column (X-value)
+   * @param row the row (Y-value)
+   * @param xVals the X-values
+   * @param yVals the Y-values
+   * @return false if the user requests to stop the calculations
+   * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+  private boolean gridPoint(int col, int row, final double[] xVals, final double[] yVals)
+          throws Chem.ChemicalParameterException {
+    if(gridDone[col][row]) {return true;}
+    if(finishedCalculations) {return false;} //user requests exit?
+    setPointConcs(xVals[col], yVals[row]);
+    // start from the previous equilibrium composition only if it was calculated
+    // at a neighbouring point of the grid; otherwise from the nearest
+    // point along the X- or Y-axis found in the warm-start store
+    HaltaFall.State nearest = nearestGridState(col, row);
+    if(lastCol < 0 || Math.abs(col - lastCol) > 1 || Math.abs(row - lastRow) > 1) {
+        csC.cont = false;
+        h.restoreState(nearest);
+    }
+    if(lastCol >= 0) {csC.dbg = Chem.DBGHALTA_DEF;}
+    lastCol = col; lastRow = row;
+    try {gridTop[col][row] = calcPoint(nearest);}
+    finally {gridFlags[col][row] = csC.errFlags;}
+    gridDone[col][row] = true;
+    nbrPointsEvaluated++;
+    if(gridTop[col][row] >= 0) {gridStates.put(col*gridTop.length + row, h.saveState(null));}
+    return true;
+  } //gridPoint
+
+  /** Finds in the warm-start store the state of HaltaFall at the nearest
+   * calculated point along the X- or the Y-axis, searching at distances
+   * 1, 2, 4, ... grid steps up to the size of the coarse cells.
+   * @param col the column (X-value)
+   * @param row the row (Y-value)
+   * @return the state, or null if none is found */
+  private HaltaFall.State nearestGridState(int col, int row) {
+    int n = gridTop.length;
+    HaltaFall.State st;
+    for(int d = 1; d <= coarseSteps; d = 2*d) {
+        if(col-d >= 0) {st = gridStates.get((col-d)*n + row); if(st != null) {return st;}}
+        if(row-d >= 0) {st = gridStates.get(col*n + row-d);   if(st != null) {return st;}}
+        if(col+d < n)  {st = gridStates.get((col+d)*n + row); if(st != null) {return st;}}
+        if(row+d < n)  {st = gridStates.get(col*n + row+d);   if(st != null) {return st;}}
+    }
+    return null;
+  } //nearestGridState
+
+  /** Sets the input concentrations (or activities) of the components
+   * in the X- and Y-axes for a calculation point.
+   * @param xVal the X-value
+   * @param yVal the Y-value */
+  private void setPointConcs(double xVal, double yVal) {
+    int j = diag.compX;
+    if(csC.kh[j] == 1) {
+        if(dgrC.hur[j] ==3) { // LTV
+            csC.tot[j] = Math.exp(ln10*xVal);
+        } else { // TV
+            csC.tot[j] = xVal;
+        }
+    } else { // kh[j] = 2
+        csC.logA[j] = xVal;
+    }
+    j = diag.compY;
+    if(csC.kh[j] == 1) {
+        if(dgrC.hur[j] ==3) { // LTV
+            csC.tot[j] = Math.exp(ln10*yVal);
+        } else { // TV
+            csC.tot[j] = yVal;
+        }
+    } else { // kh[j] = 2
+        csC.logA[j] = yVal;
+    }
+  } //setPointConcs
+
+  /** Calculates the equilibrium composition with <code>h</code> for the
+   * input concentrations in <code>csC</code>, decreasing the tolerance,
+   * or starting without solids, if HaltaFall fails.
+   * @param retry if HaltaFall does not find a satisfactory combination of
+   * solids, the calculation is tried again starting from this state (if not
+   * null) before starting without solids
+   * @return the predominating species, or -1 if the calculation failed
+   * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+  private int calcPoint(HaltaFall.State retry) throws Chem.ChemicalParameterException {
+    double tolHalta0 = csC.tol;
+    try {
+        h.haltaCalc();
+        if(csC.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
+            do {
+                csC.tol = csC.tol * 0.1; // decrease tolerance and try again
+                h.haltaCalc();
+            } while (csC.isErrFlagsSet(2) && csC.tol >= 1e-9);
+        }
+        if(csC.isErrFlagsSet(3) && retry != null) { // failed to find a satisfactory combination of solids
+            h.restoreState(retry);  // try again from a neighbouring point
+            h.haltaCalc();
+        }
+        if(csC.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
+            csC.cont = false;      // try again
+            h.haltaCalc();
+        }
+    } finally {csC.tol = tolHalta0;}
+    if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
+                    || csC.isErrFlagsSet(6)) {
+        return -1;
+    }
+    return findTopSpecies(cs);
+  } //calcPoint
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="bisectFrontiers">
+  /** Locates the frontier points found in the grid calculation more
+   * accurately. A frontier point is placed at a grid point where a species
+   * predominates which is different from that at the grid point below (or,
+   * if the species below is the same, at the grid point to the left).
+   * The grid edge between the two points is bisected, with HaltaFall
+   * starting from the previous bisection point, until the position where
+   * the predominating species changes is found within a small fraction
+   * of the grid step. The frontier point is then moved to this position.
+   * Points at the margins of the diagram, and points where the species
+   * change only along a diagonal, are not moved. */
+  private void bisectFrontiers() {
+    if(h == null) {
+        try {h = new HaltaFall(cs,factor, out);}
+        catch (Chem.ChemicalParameterException ex) {showErrMsgBx(ex); return;}
+    }
+    // the bisection is stopped when the interval is smaller than this fraction of a step
+    final double BISECT_TOL = 1e-6;
+    final double xTol = Math.abs(predData.stepX) * 0.001;
+    final double yTol = Math.abs(predData.stepY) * 0.001;
+    csC.dbg = Chem.DBGHALTA_DEF;
+    nbrBisectCalcs = 0;
+    int nMoved = 0;
+    int spNow, spOther, t;
+    double x, y, lo, hi, mid, stop;
+    boolean vertical;
+    for(int n = 0; n <= predData.nPoint; n++) {
+        if(finishedCalculations) {return;} //user requests exit?
+        spNow = predData.pair[n][1];
+        if(spNow < 0) {continue;} // a point at the margin of the diagram
+        x = predData.xPl[n];
+        y = predData.yPl[n];
+        if(predData.pair[n][2] >= 0 && predData.pair[n][2] != spNow
+                && Math.abs(y - predData.yBottom) > yTol) {
+            vertical = true;
+            spOther = predData.pair[n][2];
+            lo = y - predData.stepY;  hi = y;
+            stop = Math.abs(predData.stepY) * BISECT_TOL;
+        } else if(predData.pair[n][0] >= 0 && predData.pair[n][0] != spNow
+                && Math.abs(x - predData.xLeft) > xTol) {
+            vertical = false;
+            spOther = predData.pair[n][0];
+            lo = x - predData.stepX;  hi = x;
+            stop = Math.abs(predData.stepX) * BISECT_TOL;
+        } else {continue;}
+        // "lo" is on the side of spOther and "hi" on the side of spNow
+        csC.cont = false;
+        try {
+            while(Math.abs(hi - lo) > stop) {
+                mid = (lo + hi)/2;
+                if(vertical) {setPointConcs(x, mid);} else {setPointConcs(mid, y);}
+                t = calcPoint(null);
+                nbrBisectCalcs++;
+                if(t == spNow) {hi = mid;}
+                else if(t == spOther) {lo = mid;}
+                else {break;} // a third species or a failure: keep the interval found so far
+            }
+        } catch (Chem.ChemicalParameterException ex) {
+            if(dbg) {out.println("Bisection failed at frontier point "+n+": "+ex.getMessage());}
+            continue;
+        }
+        if(vertical) {predData.yPl[n] = (lo + hi)/2;} else {predData.xPl[n] = (lo + hi)/2;}
+        nMoved++;
+    } //for n
+    csC.errFlags = 0;
+    if(dbg) {out.println("Bisection: "+nMoved+" frontier points moved, "+nbrBisectCalcs+" calculations.");}
+  } //bisectFrontiers
+  //</editor-fold>
+
+/** Stops the calculations. This may be called from any thread. */
+public void cancel() {
+    finishedCalculations = true;
+    HaltaFall h0 = h;
+    if(h0 != null) {h0.haltaCancel();}
+} //cancel()
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="saveDiagram">
+/** Reports any problems found in the calculations, and saves the diagram
+ * in a plot file.
+ * @param pltFile the output plot file
+ * @return false if the calculations were not successful, or if they were
+ * stopped, true otherwise */
+public boolean saveDiagram(java.io.File pltFile) {
+    if(haltaError || finishedCalculations) {return false;}
+    finishedCalculations = true;
+    int i,j;
+    String msg;
+    if(tooManyAreaPoints) {
+      showErrMsgBx("Problem: Too many area-delimiting points were found."+nl+
+          "The diagram will be incomplete.", 1);
+    } // tooManyAreaPoints?
+    calculationTime = (System.nanoTime() - calculationStart)
+        /1000000; //convert nano seconds to milli seconds
+    msg = "--- Calculated "+(nSteps+1)+" x "+(nStepOuter+1)+" points, time="+millisToShortDHMS(calculationTime);
+    if(nbrPointsEvaluated >= 0) {
+        msg = msg + nl + "    (adaptive grid: "+nbrPointsEvaluated+" points evaluated)";
+    }
+    if(nbrBisectCalcs > 0) {
+        msg = msg + nl + "    (frontiers located by bisection: "+nbrBisectCalcs+" calculations)";
+    }
+    out.println(nl+msg);
+    if(consoleOutput) {System.out.println(msg);}
+    if(nbrTooLargeConcs > 0) {
+        int percent = nbrTooLargeConcs*100 /((nSteps+1) * (nSteps+1));
+        if(percent >0) {
+            msg = percent+" % of the calculated points had some"+nl+
+                  "concentrations > "+(int)Factor.MAX_CONC+" (molal); impossible in reality."+nl+nl;
+            if(calcActCoeffs) {msg = msg + "The activity coefficients are then WRONG"+nl+
+                  "and the results unrealistic.";}
+            else {msg = msg + "These results are unrealistic.";}
+            showErrMsgBx(msg, 1);
+        }
+    }
+    if(nbrHaltaUncertain >1) {
+        out.println(LINE);
+        out.println(String.format("%d",nbrHaltaUncertain).trim()+" uncertain point(s)");
+        out.println(LINE);
+    }
+    if(failuresMsg != null && failuresMsg.length() >0) {
+        out.println(LINE);
+        out.println(failuresMsg);
+        out.println(LINE);
+    }
+    if(nbrHaltaErrors >0) {
+        msg = String.format("%d",nbrHaltaErrors).trim()+" calculation failure(s)";
+        showErrMsgBx(msg, 1);
+    }
+    if(dbg && lineMap != null) { //-- print the are limits map
+        out.println("---- Map of area limits (points to plot):");
+        for(i=0; i<lineMap.length; i++) {
+            for(j=0; j<lineMap.length; j++) {out.print(lineMap[j][i]);} out.println();
+        }
+    } //dbg
+
+    // --------------------------------------------------
+    //  Determine the center of each area
+    //    (where labels will be plotted)
+    plot.minMax(ch, predData);
+    // --------------------------------------------------
+    if(dbg) {
+      out.println("---- List of points to plot (including margins):"+nl+"point_nbr, pair[0,1,2], x-value, y-value");
+      for(i=0; i<predData.nPoint; i++) {
+        out.println(
+                String.format("%3d,  %3d,%3d,%3d",i,predData.pair[i][0],predData.pair[i][1],predData.pair[i][2])+
+                ",   "+(float)predData.xPl[i]+", "+(float)predData.yPl[i]
+                );
+      }
+      out.println("----");
+    }
+
+    // --------------------------------------------------
+    // Take away plot margins (about: 4*nStep  points)
+    // (the margins are needed to determine the center of each area)
+    int nPoints2 = -1;
+    for(i=0; i < predData.nPoint; i++) {
+        if(predData.pair[i][0] == -1 &&
+            (predData.pair[i][1] == predData.pair[i][2] || predData.pair[i][2] == -1
+            )) {continue;}
+        if(predData.pair[i][1] == -1) {continue;}
+        if(predData.pair[i][2] == -1 && predData.pair[i][0] == predData.pair[i][1]) {continue;}
+        nPoints2++;
+        predData.xPl[nPoints2] = predData.xPl[i];
+        predData.yPl[nPoints2] = predData.yPl[i];
+        //
+        // pair[][2] is not used when plotting, if pair[][0] = pair[][1] use pair[][2]
+        if(predData.pair[i][0] == predData.pair[i][1] &&
+            predData.pair[i][2] != -1) {predData.pair[i][0] = predData.pair[i][2];}
+        predData.pair[nPoints2][0] = predData.pair[i][0];
+        predData.pair[nPoints2][1] = predData.pair[i][1];
+        predData.pair[nPoints2][2] = predData.pair[i][2]; //not really neaded becaise pair[][2] is not used when plotting
+    } // for i
+    predData.nPoint = nPoints2;
+    // --------------------------------------------------
+    //  Move the points halv step to the left and down
+    //  to try to compensate for the column-wise
+    //  calculation procedure
+    for(i=0; i<predData.nPoint; i++) {
+      if(Math.abs(predData.xPl[i]-predData.xLeft) > 1e-5 &&
+         Math.abs(predData.xPl[i]-predData.xRight) > 1e-5) {
+                        predData.xPl[i] = predData.xPl[i]-0.5*predData.stepX;
+      }
+      if(Math.abs(predData.yPl[i]-predData.yBottom) > 1e-5 &&
+         Math.abs(predData.yPl[i]-predData.yTop) > 1e-5) {
+                        predData.yPl[i] = predData.yPl[i]-0.5*predData.stepY;
+      }
+    }
+
+    // --------------------------------------------------
+    if(dbg) {
+        out.println("---- List of points to plot:"+nl+"point_nbr, pair[0,1,2], x-value, y-value");
+        for(i=0; i<=predData.nPoint; i++) {
+            out.println(
+                String.format("%3d,  %3d,%3d,%3d",i,predData.pair[i][0],predData.pair[i][1],predData.pair[i][2])+
+                ",   "+(float)predData.xPl[i]+", "+(float)predData.yPl[i]
+                );
+        }
+        out.println("----");
+    }
+
+    out.println("Number of points to draw = "+(predData.nPoint+1));
+
+    // -------------------------------------------
+    // a previous plot file might still be written in the background
+    waitForPlotFile();
+    out.println("Saving plot file \""+pltFile.getAbsolutePath()+"\"...");
+    GraphLib g = plot.drawPlot(pltFile, ch, predData);
+    synchronized(this) {plotFileWriter = g; plotFileSaved = pltFile;}
+    if(!plotFileInBackground && !waitForPlotFile()) {return false;}
+    // -------------------------------------------
+    return true;
+} //saveDiagram
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="waitForPlotFile">
+/** Waits until the plot file has been written, if it is written in the
+ * background (see <code>plotFileInBackground</code>), and reports any error.
+ * @return false if the plot file could not be written, true otherwise */
+public synchronized boolean waitForPlotFile() {
+    GraphLib g = plotFileWriter;
+    java.io.File f = plotFileSaved;
+    plotFileWriter = null; plotFileSaved = null;
+    if(g == null) {return true;}
+    String msg = g.waitForPlotFile();
+    if(msg != null) {showErrMsgBx(msg, 1); return false;}
+    if(f.getName().length()>0) {
+        String msg3 = "Saved plot file: \""+f.getAbsolutePath()+"\"";
+        out.println(msg3);
+        if(consoleOutput) {System.out.println(msg3);}
+    }
+    return true;
+} //waitForPlotFile
+//</editor-fold>
+
+
+//<editor-fold defaultstate="collapsed" desc="millisToShortDHMS">
+/** converts time (in milliseconds) to human-readable format "&lt;dd&gt;hh:mm:ss"
+ * @param duration (in milliseconds)
+ * @return  */
+public static String millisToShortDHMS(long duration) {
+  //adapted from http://www.rgagnon.com
+  String res;
+  int millis = (int)(duration % 1000);
+  duration /= 1000;
+  int seconds = (int) (duration % 60);
+  duration /= 60;
+  int minutes = (int) (duration % 60);
+  duration /= 60;
+  int hours = (int) (duration % 24);
+  int days = (int) (duration / 24);
+  if (days == 0) {
+    res = String.format("%02d:%02d:%02d.%03d", hours, minutes, seconds,millis);
+} else {
+    res = String.format("%dd%02d:%02d:%02d", days, hours, minutes, seconds);
+}
+  return res;
+}
+//</editor-fold>
+
+/** Called during the calculations each time a point has been calculated.
+ * This implementation does nothing.
+ * @param nbrPointsDone the number of points calculated so far (the
+ * total number of points is <code>nSteps+1</code>) */
+protected void progress(int nbrPointsDone) {}
+
+//<editor-fold defaultstate="collapsed" desc="showMsg / showErrMsgBx">
+/** Outputs a message either to <code>out</code> (if type is 1, 2 or 3) or
+ * to <code>err</code> otherwise (type=0).
+ * @param msg the message
+ * @param type =0 error (outputs message to <code>err</code>); =1 error; =2 warning; =3 information */
+protected void showMsg(String msg, int type) {
+    if(msg == null || msg.trim().length() <=0) {return;}
+    final String flag;
+    if(type == 2) {flag = "Warning";} else if(type == 3) {flag = "Message";} else {flag = "Error";}
+    if(type == 1 || type == 2 || type == 3) {
+        out.println("- - - - "+flag+":"+nl+msg+nl+"- - - -");
+        out.flush();
+    } else {
+        err.println("- - - - "+flag+":"+nl+msg+nl+"- - - -");
+        err.flush();
+    }
+}
+/** Outputs the exception message and the stack trace to <code>err</code>
+ * @param ex the exception */
+protected void showMsg(Exception ex) {
+    if(ex == null) {return;}
+    err.println("- - - - Error:"+nl+ex.getMessage()+nl+nl+Util.stack2string(ex)+nl+"- - - -");
+    err.flush();
+}
+/** Outputs a message through a call to <code>showMsg(msg,type)</code>.
+ * In the program window the message is also shown in a message box.
+ * @param msg the message
+ * @param type =1 exception error; =2 warning; =3 information */
+protected void showErrMsgBx(String msg, int type) {showMsg(msg, type);}
+/** Outputs the exception message and the stack trace,
+ * through a call to <code>showMsg(ex)</code>.
+ * @param ex the exception */
+protected void showErrMsgBx(Exception ex) {showMsg(ex);}
+/** Outputs a message through a call to <code>showMsg(msg,type)</code>.
+ * In the program window the message is also shown in an [OK, Cancel] message box.
+ * @param msg the message
+ * @param type =1 exception error; =2 warning; =3 information
+ * @return <code>false</code> if the calculations should not proceed;
+ * this implementation returns always <code>true</code> */
+protected boolean showErrMsgBxCancel(String msg, int type) {showMsg(msg, type); return true;}
+//</editor-fold>
+
+}
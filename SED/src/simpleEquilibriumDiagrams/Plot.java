@@ -24,19 +24,21 @@ import lib.kemi.graph_lib.GraphLib;
  * 
  * @author Ignasi Puigdomenech */
 public class Plot {
-    private SED sed = null;
+    private SedDiagram sed = null;
     // this and other fields are also used in the Table class
-    static int nbrSpeciesInPlot;
-    static int[] speciesInPlot;
+    int nbrSpeciesInPlot;
+    int[] speciesInPlot;
     /** max. number of species that need two labels in the diagram */
     private static final int L2 = 20;
     /** the max y-value for each curve in the diagram */
-    private static double[] yMax;
-    /** values of conc. or log(activity) for each point c0[Ms][nP] */
-    static double c0[][];
+    private double[] yMax;
+    /** values of conc. or log(activity) for each point c0[Ms][nP].
+     * The arrays are created for each calculation run in <code>preparePlot</code>,
+     * and the values of different points may be stored by different threads */
+    double c0[][];
     /** values of solubility or tot. conc. for each point tot0[Na][nP] */
-    static double tot0[][];
-    private static boolean xMolar = true;
+    double tot0[][];
+    private boolean xMolar = true;
     private static final java.util.Locale engl = java.util.Locale.ENGLISH;
 /** Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used. */
@@ -47,13 +49,13 @@ public class Plot {
     private static final String nl = System.getProperty("line.separator");
 
 /** Constructor.
- * @param sed0
+ * @param sed0 the diagram being made
  * @param err0 Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used.
  * @param out0 Where messages will be printed. It may be <code>System.out</code>.
  * If null, <code>System.out</code> is used.
  */
-public Plot(SED sed0, java.io.PrintStream err0, java.io.PrintStream out0) {
+public Plot(SedDiagram sed0, java.io.PrintStream err0, java.io.PrintStream out0) {
     this.sed = sed0;
     if(err0 != null) {this.err = err0;} else {this.err = System.err;}
     if(out0 != null) {this.out = out0;} else {this.out = System.out;}
@@ -85,11 +87,22 @@ void preparePlot(Chem ch) {
  * @param ch where the data for the chemical system are stored */
 void storePlotData(int nP, Chem ch) {
     if(sed.dbg) {out.println("--- storePlotData("+nP+", ch)");}
+    storePointData(nP, ch);
+    // for H-affinity diagrams:
+    if(ch.diag.plotType ==8) {yLimitsHaffinity(nP, ch);}
+} //storePlotData()
+
+/** Store the concentrations (or activities) and the total concentrations
+ * (or solubilities) for this point. Only column <code>nP</code> of the
+ * arrays is changed, and the diagram limits are not modified, so that
+ * different points may be stored simultaneously from different threads.
+ * @param nP the point number (along the x-axis)
+ * @param ch where the data for the chemical system are stored
+ * @see #storePlotData(int, lib.kemi.chem.Chem) storePlotData */
+void storePointData(int nP, Chem ch) {
     Chem.ChemSystem cs = ch.chemSystem;
     Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
-    Chem.ChemSystem.NamesEtc namn = cs.namn;
     Chem.Diagr diag = ch.diag;
-    //chem.Chem.DiagrConcs dgrC = ch.diagrConcs;
 // Values for the Y-axis
 //  plotType=1 fraction diagram      compY= main component
 //  plotType=2 log solubility diagram
@@ -99,7 +112,7 @@ void storePlotData(int nP, Chem ch) {
 //  plotType=6 pH in Y-axis
 //  plotType=7 log (activity) diagram
 //  plotType=8 H-affinity diagram
-    double w, y, z;
+    double w;
     // save conc. or log(activity)
     for(int i =0; i < cs.Ms; i++) {
         c0[i][nP] = 0;
@@ -146,18 +159,27 @@ void storePlotData(int nP, Chem ch) {
                                     {c0[1][nP] = csC.logA[diag.Hplus];}
         if(diag.OHmin > -1) {if(Math.abs(csC.C[diag.OHmin]) <= 1e+35)
                                     {c0[2][nP] = csC.C[diag.OHmin];}}
-        //get Max and Min values for Y-axis
-        if(nP > 0) {
-            w = c0[1][nP] - c0[1][nP-1];
-            y = (tot0[diag.Hplus][nP]-c0[0][nP]+c0[2][nP])
-                    - (tot0[diag.Hplus][nP-1]-c0[0][nP-1]+c0[2][nP-1]);
-            z = 0;
-            if(Math.abs(w) >= 1e-30) {z = y/w;}
-            if(z < diag.yLow) {diag.yLow = z;}
-            if(z > diag.yHigh) {diag.yHigh = z;}
-        } // if nP >0
     } // H-affinity
-} //storePlotData()
+} //storePointData()
+
+/** For H-affinity diagrams: update the max and min values for the Y-axis
+ * with the values at point <code>nP</code>. The data for points
+ * <code>nP</code> and <code>nP-1</code> must have been stored already.
+ * @param nP the point number (along the x-axis)
+ * @param ch where the data for the chemical system are stored */
+void yLimitsHaffinity(int nP, Chem ch) {
+    Chem.Diagr diag = ch.diag;
+    if(nP <= 0 || diag.Hplus < 0 || diag.Hplus >= ch.chemSystem.Ms) {return;}
+    double w, y, z;
+    //get Max and Min values for Y-axis
+    w = c0[1][nP] - c0[1][nP-1];
+    y = (tot0[diag.Hplus][nP]-c0[0][nP]+c0[2][nP])
+            - (tot0[diag.Hplus][nP-1]-c0[0][nP-1]+c0[2][nP-1]);
+    z = 0;
+    if(Math.abs(w) >= 1e-30) {z = y/w;}
+    if(z < diag.yLow) {diag.yLow = z;}
+    if(z > diag.yHigh) {diag.yHigh = z;}
+} //yLimitsHaffinity()
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="drawPlot(plotFile, ch)">
@@ -165,8 +187,9 @@ void storePlotData(int nP, Chem ch) {
  * and simultaneously store the data in a plot file.
  * @param plotFile where the diagram will be saved
  * @param ch where the data for the chemical system are stored
+ * @return the <code>GraphLib</code> instance that writes the plot file
  */
-void drawPlot(java.io.File plotFile, Chem ch) {
+GraphLib drawPlot(java.io.File plotFile, Chem ch) {
 Chem.ChemSystem cs = ch.chemSystem;
 Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
 Chem.ChemSystem.NamesEtc namn = cs.namn;
@@ -341,8 +364,8 @@ if(sed.dbg) {
     //          Create a GraphLib instance
     GraphLib g = new GraphLib();
     boolean textWithFonts = true;
-    try {g.start(sed.dd, plotFile, textWithFonts);}
-    catch (GraphLib.OpenPlotFileException ex) {sed.showErrMsgBx(ex.getMessage(),1); g.end(); return;}
+    try {g.start(sed.dd, plotFile, textWithFonts, sed.plotFileInBackground, sed.binaryPlotFile);}
+    catch (GraphLib.OpenPlotFileException ex) {sed.showErrMsgBx(ex.getMessage(),1); g.end(); return g;}
     sed.dd.axisInfo = false;
     g.setLabel("-- SED DIAGRAM --");
     // -------------------------------------------------------------------
@@ -355,7 +378,7 @@ if(sed.dbg) {
     try {g.axes((float)xLow, (float)xHigh, (float)yLow, (float)yHigh,
             xOr,yOr, xAxl,yAxl, heightAx,
             false, false, false);}
-    catch (GraphLib.AxesDataException ex) {sed.showMsg(ex); g.end(); return;}
+    catch (GraphLib.AxesDataException ex) {sed.showMsg(ex); g.end(); return g;}
     //---- Write text under axes
     // Y-axis
     float xP; float yP;
@@ -497,7 +520,7 @@ if(sed.dbg) {
             } else {
               err.println("Programming error in \"drawPlot\";  plotType = "+diag.plotType);
               g.end();
-              return;
+              return g;
             }
 
             //--- Determine the Maximum values for the curve
@@ -744,6 +767,7 @@ if(sed.dbg) {
     // -------------------------------------------------------------------
     //                  Finished
     g.end();
+    return g;
 } //drawPlot()
 //</editor-fold>
 
@@ -3,11 +3,6 @@ package simpleEquilibriumDiagrams;
 import lib.common.Util;
 import lib.kemi.chem.Chem;
 import lib.kemi.graph_lib.DiagrPaintUtility;
-import lib.kemi.graph_lib.GraphLib;
-import lib.kemi.haltaFall.Factor;
-import lib.kemi.haltaFall.HaltaFall;
-import lib.kemi.readDataLib.ReadDataLib;
-import lib.kemi.readWriteDataFiles.ReadChemSyst;
 
 /** Creates a chemical equilibrium diagram.<br>
  * This program will read a data file, make some calculations, and
@@ -68,44 +63,19 @@ public class SED extends javax.swing.JFrame {
     private boolean inputDataFileInCommandLine;
 /** true if the calculations have finished, or if the user wishes to finish
  * them (and to end the program) */
-    private boolean finishedCalculations = true;
+    private volatile boolean finishedCalculations = true;
 /** true if the graphic user interface (GUI) has been displayed and then closed by the user */
     private boolean programEnded = false;
 /** An instance of SwingWorker to perform the HaltaFall calculations */
     private HaltaTask tsk = null;
-/** used to calculate execution time */
-    private long calculationStart = 0;
-/** the execution time */
-    private long calculationTime = 0;
 /** size of the user's computer screen */
     static java.awt.Dimension screenSize;
 /** original size of the program window */
     private final java.awt.Dimension originalSize;
 
-/** a class used to store and retrieve data, used by HaltaFall */
-    private Chem ch = null;
-/** a class to store data about a chemical system */
-    private Chem.ChemSystem cs = null;
-/** a class to store data about a the concentrations to calculate an
- * equilibrium composition, used by HaltaFall */
-    private Chem.ChemSystem.ChemConcs csC = null;
-/** a class to store diverse information on a chemical system: names of species, etc */
-    private Chem.ChemSystem.NamesEtc namn = null;
-/** a class to store array data about a diagram */
-    private Chem.DiagrConcs dgrC = null;
-/** a class to store non-array data about a diagram */
-    private Chem.Diagr diag = null;
-/** a class to calculate activity coefficients */
-    private Factor factor;
-/** the calculations class */
-    private HaltaFall h;
-
-/** a class to read text files where data is separated by commas */
-    private ReadDataLib rd;
-    private Plot plot = null;
-/** data from a plot-file needed by the paint methods */
-    GraphLib.PltData dd; // instantiated in "Plot.drawPlot"
-                                   // it containts the info in the plot file
+/** reads the data file, makes the calculations and saves the diagram;
+ * it also contains the data from the plot-file needed by the paint methods */
+    private SedDiagram sd = null;
 
     private HelpAboutF helpAboutFrame = null;
     private final javax.swing.JFileChooser fc;
@@ -121,21 +91,24 @@ public class SED extends javax.swing.JFrame {
     private java.io.PrintStream out;
 
     /** The maximum number of calculation steps along the X-axis */
-    private final static int NSTP_MAX = 300;
+    private final static int NSTP_MAX = SedDiagram.NSTP_MAX;
     /** The minimum number of calculation steps along the X-axis */
-    private final static int NSTP_MIN = 4;
-    private final static int NSTP_DEF = 50;
+    private final static int NSTP_MIN = SedDiagram.NSTP_MIN;
+    private final static int NSTP_DEF = SedDiagram.NSTP_DEF;
     /** The number of calculation steps along the X-axis.
      * The number of points calculated is: <code>nSteps+1</code>.
      * Note that to the outside world, the number of calculation points are reported. */
     int nSteps = NSTP_DEF;
-    /** The calculation step being (along the x-axis) performed out of nSteps
-     * The first point corresponds to no step, <code>nStepX = 0</code> */
-    private int nStepX;
-    /** The given input concentrations recalculated for each calculation step.
-     * Dimmensions: bt[Na][nSteps+1] */
-    double[][] bt;
-    private final double ln10 = Math.log(10d);
+    /** The number of threads used for the calculations. If larger than one,
+     * the X-axis is divided in segments which are calculated in parallel,
+     * see <code>SedDiagram.doParallelSweep()</code>. Ignored in debug mode.
+     * Set with the command-line option "-threads=n"; if n&lt;1 all the
+     * available processors are used. */
+    private int nThreads = 1;
+    /** If true a binary companion file (".pltb") is written together with
+     * the plot file, see <code>SedDiagram.binaryPlotFile</code>.
+     * Set with the command-line option "-pltb". */
+    private boolean binaryPlotFile = false;
     /** true if activity coeeficients have to be calculated */
     boolean calcActCoeffs = false;
     private final int actCoeffsModelDefault =2;
@@ -144,12 +117,10 @@ public class SED extends javax.swing.JFrame {
     double temperature_InCommandLine = Double.NaN;
     private int actCoeffsModel_InCommandLine = -1;
     private double tolHalta = Chem.TOL_HALTA_DEF;
-    double peEh = Double.NaN;
     double tHeight;
 
     float threshold = 0.03f;
     private boolean tableOutput = false;
-    private Table table = null;
     String tblExtension = "csv";
     String tblFieldSeparator = ";";
     String tblCommentStart = "\"";
@@ -158,15 +129,6 @@ public class SED extends javax.swing.JFrame {
     /** output debug reporting in HaltaFall. Default = Chem.DBGHALTA_DEF = 1 (report errors only)
      * @see Chem.ChemSystem.ChemConcs#dbg Chem.ChemSystem.ChemConcs.dbg */
     int dbgHalta = Chem.DBGHALTA_DEF;
-    /** true if the component has either <code>noll</code> = false or it has positive
-     * values for the stoichiometric coefficients (a[ix][ia]-values)
-     * @see chem.Chem.ChemSystem#a a
-     * @see chem.Chem.ChemSystem#noll noll */
-    private boolean[] pos;
-    /** true if the component has some negative
-     * values for the stoichiometric coefficients (a[ix][ia]-values)
-     * @see chem.Chem.ChemSystem#a a */
-    private boolean[] neg;
     //
     private final DiagrPaintUtility diagrPaintUtil;
     //
@@ -237,7 +199,7 @@ public class SED extends javax.swing.JFrame {
         javax.swing.Action ctrlCAction = new javax.swing.AbstractAction() {
             @Override public void actionPerformed(java.awt.event.ActionEvent e) {
                 if(jTabbedPane.getSelectedIndex() == 1) {
-                      if(h != null) {h.haltaCancel();}
+                      if(sd != null) {sd.cancel();}
                       if(tsk != null) {tsk.cancel(true);}
                       finishedCalculations = true;
                       SED.this.notify_All();
@@ -348,7 +310,7 @@ public class SED extends javax.swing.JFrame {
                         jTextFieldIonicStgr.isEnabled()) {
                     jTextFieldIonicStgr.requestFocusInWindow();
                 } else if(jTabbedPane.getSelectedIndex() == 1) {
-                      if(h != null) {h.haltaCancel();}
+                      if(sd != null) {sd.cancel();}
                       if(tsk != null) {tsk.cancel(true);}
                       finishedCalculations = true;
                       SED.this.notify_All();
@@ -1471,358 +1433,6 @@ private void jLabelHDMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:ev
     }//GEN-LAST:event_jMenuCancelActionPerformed
 //</editor-fold>
 
-//<editor-fold defaultstate="collapsed" desc="checkInput">
-/** Make checks and make changes to the data stored in the Chem classes.
- * @return true if checks are OK  */
-  private boolean checkInput() {
-    if(cs == null) {err.println("? Programming error in \"SED.checkInput\": cs=null."); return false;}
-    if(dbg) {out.println("--- checkInput()");}
-    // -------------------
-    //   CHEMICAL SYSTEM
-    // -------------------
-    // mg = total number of soluble species in the aqueous solution:
-    //      all components + soluble complexes
-    // Note that in HaltaFall the solid components are fictitious soluble
-    // components with "zero" concentration (with noll = true)
-    int mg = cs.Ms - cs.mSol; // = na + nx;
-    int i;
-
-    // ---- Remove asterisk "*" from the name of components
-    for(i=0; i<cs.Na; i++) {
-        if(namn.identC[i].startsWith("*")) {
-            namn.identC[i] = namn.identC[i].substring(1);
-            namn.ident[i]  = namn.identC[i];
-            cs.noll[i] = true;
-        }
-        //if(chem_syst.Chem.isWater(csNamn.identC[i]))
-        //            {water = i;}
-    } // for i=0...Na-1
-
-    // ---- Remove reaction products (soluble or solid) with
-    //      name starting with "*".
-    // Note that the solids corresponding to the components will
-    // not have a name starting with "*". This is already removed when
-    // reading the input file.
-    double w; int j; int js;
-    i = cs.Na;
-    while (i < cs.Ms) {
-        if(namn.ident[i].startsWith("*")) {
-            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
-            cs.Ms = cs.Ms -1;
-            if(i >= cs.Ms) {break;}
-            for(j=i; j<cs.Ms; j++) {
-                js = j - cs.Na;
-                cs.lBeta[js] = cs.lBeta[js+1];
-                //for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
-                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
-                namn.ident[j] = namn.ident[j+1];
-                cs.noll[j] = cs.noll[j+1];
-            }
-        } else {i++;}
-    } //while (true)
-
-    // ---- get electric charge, length of name, etc
-    diag.aquSystem = false;
-    for(i=0; i<cs.Ms; i++) {
-        namn.nameLength[i] = getNameLength(namn.ident[i]);
-        // Species for which the concentration is not to be
-        // included in the Mass-Balance (for ex. the concentration
-        // of "free" electrons is excluded)
-        if(Util.isElectron(namn.ident[i]) || Util.isWater(namn.ident[i])) {
-                cs.noll[i] = true;
-                diag.aquSystem = true;
-        }
-        if(i < mg) { //aqueous species
-            namn.z[i]=0;
-            csC.logf[i] = 0;
-            if(namn.ident[i].length() >4 &&
-                namn.ident[i].toUpperCase().endsWith("(AQ)")) {
-                    diag.aquSystem = true;}
-                else { //does not end with "(aq)"
-                    namn.z[i] = Util.chargeOf(namn.ident[i]);
-                    if(namn.z[i] != 0) {diag.aquSystem = true;}
-                } // ends with "(aq)"?
-        }
-    } // for i=0...Ms-1
-    // The electric charge of two fictive species (Na+ and Cl-)
-    // that are used to ensure electrically neutral aqueous solutions
-    // when calculating the ionic strength and activity coefficients
-    namn.z[mg] = 1;     //electroneutrality "Na+"
-    namn.z[mg+1] =-1;   //electroneutrality "Na+"
-
-    // ---- set Gaseous species to have zero conc
-    //      if it is an aqueous system
-    if(diag.aquSystem) {
-        for(i =0; i < mg; i++) {
-            if(Util.isGas(namn.ident[i])
-                    || Util.isLiquid(namn.ident[i])
-                    || Util.isWater(namn.ident[i])) {cs.noll[i] = true;}
-        } //for i
-    }
-
-    // ---- Remove any reaction product (complex) named "H2O", if found
-    if(diag.aquSystem) {
-      for(i=cs.Na; i<cs.Ms; i++) {
-        if(Util.isWater(namn.ident[i])) {
-            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
-            cs.Ms = cs.Ms -1;
-            if(i >= cs.Ms) {break;}
-            for(j=i; j<cs.Ms; j++) {
-                js = j - cs.Na;
-                cs.lBeta[js] = cs.lBeta[js+1];
-                //for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
-                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
-                namn.ident[j] = namn.ident[j+1];
-                cs.noll[j] = cs.noll[j+1];
-            }
-        } //ident[i]="H2O"
-      } //for i
-    } //if aquSystem
-
-    if(dbg) {cs.printChemSystem(out);}
-
-    // ---- Check that all reactions are charge balanced
-    if(calcActCoeffs) {
-        double zSum;
-        boolean ok = true;
-        for(i=cs.Na; i < mg; i++) {
-            int ix = i - cs.Na;
-            zSum = (double)(-namn.z[i]);
-            for(j=0; j < cs.Na; j++) {
-                zSum = zSum + cs.a[ix][j]*(double)namn.z[j];
-            } //for j
-            if(Math.abs(zSum) > 0.0005) {
-                ok = false;
-                err.format(engl,"--- Warning: %s, z=%3d, charge imbalance:%9.4f",
-                            namn.ident[i],namn.z[i],zSum);
-            }
-        } //for i
-        if(!ok) {
-            if(!showErrMsgBxCancel("There are charge imbalanced reactions in the input file.",1)) {
-                return false;
-            }
-        }
-    } // if calcActCoeffs
-
-    // ---- Check that at least there is one fuid species active
-    boolean foundOne = false;
-    for(i =0; i < mg; i++) {
-        if(!cs.noll[i]) {foundOne = true; break;}
-    } //for i
-    if(!foundOne) {
-        String t = "Error: There are no fluid species active ";
-        if(cs.mSol > 0) {t = t.concat("(Only solids)");}
-        t = t+nl+"This program can not handle such chemical systems.";
-        showErrMsgBx(t, 1);
-        return false;
-    }
-
-    // --------------------
-    //   PLOT INFORMATION
-    // --------------------
-    diag.pInX =0; diag.pInY = 0;
-    //  pInX=0 "normal" X-axis
-    //  pInX=1 pH in X-axis
-    //  pInX=2 pe in X-axis
-    //  pInX=3 Eh in X-axis
-    if(Util.isElectron(namn.identC[diag.compX])) {
-        if(diag.Eh) {diag.pInX = 3;} else {diag.pInX = 2;}
-    } else if(Util.isProton(namn.identC[diag.compX])) {diag.pInX = 1;}
-
-    // ----------------------------------------------
-    //   CHECK THE CONCENTRATION FOR EACH COMPONENT
-    // ----------------------------------------------
-
-    for(int ia =0; ia < cs.Na; ia++) {
-        if(dgrC.hur[ia]==1 && // T
-            ia==diag.compX) {
-                showErrMsgBx("Error: the concentration for component \""+namn.identC[ia]+"\" "+
-                    "must vary, as it belongs to the X-axis!",1);
-                return false;
-                }
-        if(dgrC.hur[ia] >0 && dgrC.hur[ia]<=3) { //T, TV or LTV
-            if(Util.isWater(namn.identC[ia])) {
-                showErrMsgBx("Error: The calculations are made for 1kg H2O"+nl+
-                           "Give log(H2O-activity) instead of a total conc. for water.",1);
-                return false;
-           } // if water
-        } //if T, TV or LTV
-        if(dgrC.hur[ia] ==2 || dgrC.hur[ia] ==3 || dgrC.hur[ia] ==5) { //TV, LTV or LAV
-            if(ia != diag.compX) {
-                String t;
-                if(dgrC.hur[ia] ==5) {t="log(activity)";} else {t="total conc.";}
-                String msg = "Warning: The "+t+" is varied for \""+namn.identC[ia]+"\""+nl+
-                           "   but the component in the X-axis is \""+namn.identC[diag.compX]+"\"";
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-            }
-        } //if TV, LTV or LAV
-        if((dgrC.hur[ia] ==1 || dgrC.hur[ia] ==4) && //T or LA
-           ia == diag.compX) {
-                String t;
-                if(dgrC.hur[ia] ==4) {t="log(activity)";} else {t="total conc.";}
-                showErrMsgBx("Error: The "+t+" of \""+namn.identC[ia]+"\""+nl+
-                        "can NOT be a fixed value because this component belongs to the X-axis !",1);
-                return false;
-            }
-        if(dgrC.hur[ia] ==1 && // T
-           Math.abs(dgrC.cLow[ia]) >100) {
-                String t = String.format(engl,"Error:  For component: "+namn.identC[ia]+nl+
-                        "   Tot.Conc.=%12.4g mol/kg.  This is not a reasonable value!",dgrC.cLow[ia]);
-                showErrMsgBx(t,1);
-                return false;
-            }
-        if(dgrC.hur[ia] ==4 &&  // LA
-           Util.isProton(namn.identC[ia]) &&
-           (dgrC.cLow[ia] <-14 || dgrC.cLow[ia] >2)) {
-                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f%n"+
-                        "This value could be due to an input error.",(-dgrC.cLow[ia]));
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-        }
-        if(dgrC.hur[ia] !=1 && dgrC.hur[ia] !=4) {//if TV, LTV or LAV
-            if(dgrC.cLow[ia] == dgrC.cHigh[ia] ||
-                    Math.max(Math.abs(dgrC.cLow[ia]), Math.abs(dgrC.cHigh[ia])) < 1e-15) {
-                showErrMsgBx("Error:  Min-value = Max-value for component \""+namn.identC[ia]+"\"",1);
-                return false;
-            }
-            if(dgrC.cLow[ia] > dgrC.cHigh[ia] && !reversedConcs) {
-                w = dgrC.cLow[ia];
-                dgrC.cLow[ia] = dgrC.cHigh[ia];
-                dgrC.cHigh[ia] = w;
-            }
-            if(!reversedConcs && dgrC.hur[ia] ==5 && // pH/pe/EH varied - LAV
-                   (Util.isProton(namn.identC[ia]) ||
-                    Util.isElectron(namn.identC[ia]))) {
-                w = dgrC.cLow[ia];
-                dgrC.cLow[ia] = dgrC.cHigh[ia];
-                dgrC.cHigh[ia] = w;
-            }
-            if(dgrC.hur[ia] ==5 && // LAV
-                    (Util.isProton(namn.identC[ia])) &&
-                     (dgrC.cLow[ia] <-14.00001 || dgrC.cLow[ia] >2.00001 ||
-                      dgrC.cHigh[ia] <-14.00001 || dgrC.cHigh[ia] >2.00001)) {
-                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f to %7.2f%n"+
-                        "These values could be due to an input error.",(-dgrC.cLow[ia]),(-dgrC.cHigh[ia]));
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-            }
-            if(dgrC.hur[ia] ==2 && // TV
-                  (Math.max(Math.abs(dgrC.cHigh[ia]),Math.abs(dgrC.cLow[ia]))>100)) {
-                showErrMsgBx("Error:  You give  ABS(TOT.CONC.) > 100  for component: "+namn.identC[ia]+nl+
-                    "This value is too high and perhaps an input error."+nl+
-                    "Set the maximum ABS(TOT.CONC.) value to 100.",1);
-                return false;
-            }
-            if(dgrC.hur[ia] ==3) { // LTV
-                if((Math.min(dgrC.cLow[ia], dgrC.cHigh[ia]) < -7.0001) &&
-                      (Util.isProton(namn.identC[ia]))) {
-                    String msg = "Warning: You give a  LOG (TOT.CONC.) < -7  for component: "+namn.identC[ia]+nl+
-                        "This value is rather low and could be due to an input error."+nl+
-                        "Maybe you meant to set  LOG (ACTIVITY) < -7 ??";
-                    if(!showErrMsgBxCancel(msg,2)) {return false;}
-                }
-                if(Math.max(dgrC.cLow[ia], dgrC.cHigh[ia]) > 2.0001) {
-                    showErrMsgBx("Error: You give a  LOG (TOT.CONC.) > 2  for component: "+namn.identC[ia]+nl+
-                        "This value is too high and it could be due to an input error."+nl+
-                        "Please set the LOG (TOT.CONC.) value to <=2.",1);
-                    return false;
-                }
-            } //if LTV
-        } //if TV, LTV or LAV
-
-    } // for ia = 0... Na-1
-
-    // ----------------
-    //   OTHER CHECKS
-    // ----------------
-
-    // ---- See which components have positive or negative (or both)
-    //      values for the stoichiometric coefficients (a[ix][ia]-values)
-    pos = new boolean[cs.Na];
-    neg = new boolean[cs.Na];
-    for(i =0; i < cs.Na; i++) {
-        pos[i] = false; neg[i] = false;
-        if(!cs.noll[i]) { // if not "e-" and not solid component
-                    pos[i] = true;}
-        for(j = cs.Na; j < cs.Ms; j++) {
-            if(!cs.noll[j]) {
-                if(cs.a[j-cs.Na][i] >0) {pos[i] = true;}
-                if(cs.a[j-cs.Na][i] <0) {neg[i] = true;}
-            } // !noll
-        } //for j
-    } //for i
-    // check POS and NEG with the Tot.Conc. given in the input
-    for(i =0; i < cs.Na; i++) {
-        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
-        if((!pos[i] && !neg[i]) ) { // || cs.nx ==0
-            String msg = "Error: for component \""+namn.identC[i]+"\" give Log(Activity)";
-            if(dgrC.hur[i] !=1) { // not "T", that is: "TV" or "LTV"
-                msg = msg+" to vary";}
-            showErrMsgBx(msg,1);
-            return false;
-        } //if Nx =0 or (!pos[] & !neg[])
-        if((pos[i] && neg[i]) ||
-           (pos[i] && (dgrC.hur[i] ==3 ||  //LTV
-                (dgrC.cLow[i]>0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]>0)))) ||
-           (neg[i] && (dgrC.hur[i] !=3 && //not LTV
-                (dgrC.cLow[i]<0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]<0))))) {
-            continue;
-        }
-        if(pos[i] || neg[i]) {
-            String msg = "Error: Component \"%s\" may not have %s Tot.Conc. values.%s"+
-                    "Give either  Tot.Conc. %s=0.0  or  Log(Activity)%s";
-            if(neg[i] && (dgrC.hur[i] ==3 || // LTV
-                    dgrC.cLow[i]>0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]>0))) {
-                showErrMsgBx(String.format(msg, namn.identC[i], "positive", nl,"<",nl),1);
-                return false;}
-            if(pos[i] && (dgrC.hur[i] !=3 &&  //not LTV
-                    (dgrC.cLow[i]<0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]<0)))) {
-                showErrMsgBx(String.format(msg, namn.identC[i], "negative", nl,">",nl),1);
-                return false;
-            }
-        } //if pos or neg
-    } //for i
-
-    // OK so far. Update "nx" (=nbr of soluble complexes)
-    cs.nx = mg - cs.Na;
-    return true;
-
-  } // checkInput()
-
-//<editor-fold defaultstate="collapsed" desc="getNameLength(species)">
-    private static int getNameLength(String species) {
-        int nameL = Math.max(1, Util.rTrim(species).length());
-        if(nameL < 3) {return nameL;}
-        // Correct name length if there is a space between name and charge
-        // "H +",  "S 2-",  "Q 23+"
-        int sign; int ik;
-        sign =-1;
-        for(ik =nameL-1; ik >= 2; ik--) {
-            char c = species.charAt(ik);
-            if(c == '+' || c == '-' ||
-               // unicode en dash or unicode minus
-               c =='\u2013' || c =='\u2212') {sign = ik; break;}
-            } //for ik
-        if(sign <2) {return nameL;}
-        if(sign < nameL-1 &&
-                (Character.isLetterOrDigit(species.charAt(sign+1)))) {return nameL;}
-        if(species.charAt(sign-1) == ' ')
-                        {nameL = nameL-1; return nameL;}
-        if(nameL >=4) {
-                if(species.charAt(sign-1) >= '2' && species.charAt(sign-1) <= '9' &&
-                   species.charAt(sign-2) == ' ')
-                        {nameL = nameL-1; return nameL;}
-        } //if nameL >=4
-        if(nameL >=5) {
-                if((species.charAt(sign-1) >= '0' && species.charAt(sign-1) <= '9') &&
-                   (species.charAt(sign-2) >= '1' && species.charAt(sign-2) <= '9') &&
-                   species.charAt(sign-3) == ' ')
-                        {nameL = nameL-1;}
-            } //if nameL >=5
-        return nameL;
-    } // getNameLength(species)
-//</editor-fold>
-
-//</editor-fold>
-
 //<editor-fold defaultstate="collapsed" desc="dispatchArg">
 /**
  * @param arg String containing a command-line argument
@@ -1967,6 +1577,24 @@ private boolean dispatchArg(String arg) {
             }// = or :
         } // if starts with "-n"
     } // if length >3
+    if(arg.length() >9) {
+        String arg0 = arg.substring(0, 8).toLowerCase();
+        if(arg0.startsWith("-threads") || arg0.startsWith("/threads")) {
+            if(arg.charAt(8) == '=' || arg.charAt(8) == ':') {
+                String t = arg.substring(9);
+                try {nThreads = Integer.parseInt(t);
+                    if(nThreads < 1) {nThreads = Runtime.getRuntime().availableProcessors();}
+                    if(dbg) {out.println("Nbr of threads for the calculations = "+nThreads);}
+                    return true;
+                    } //try
+                catch (NumberFormatException nfe) {
+                msg = "Wrong numeric format for number of threads in \""+t+"\"";
+                nThreads = 1;
+                break;
+                } //catch
+            }// = or :
+        } // if starts with "-threads"
+    } //if length >9
 
     if(arg.length() >5) {
         String arg0 = arg.substring(0, 5).toLowerCase();
@@ -2076,6 +1704,10 @@ private boolean dispatchArg(String arg) {
         tableOutput = true;
         if(dbg) {out.println("Table output = true");}
         return true;
+    } else if(arg.equalsIgnoreCase("-pltb") || arg.equalsIgnoreCase("/pltb")) {
+        binaryPlotFile = true;
+        if(dbg) {out.println("A binary plot file (\".pltb\") will also be written");}
+        return true;
     } else if(arg.equalsIgnoreCase("-dbg") || arg.equalsIgnoreCase("/dbg")) {
         dbg = true;
         jCheckBoxMenuSEDdebug.setSelected(dbg);
@@ -2287,6 +1919,8 @@ private boolean dispatchArg(String arg) {
   private void end_program() {
       if(dbg) {out.println("--- end_program()");}
       if(!finishedCalculations && !quitConfirm(this)) {return;}
+      // the plot file might still be written in the background
+      if(sd != null) {sd.waitForPlotFile();}
       programEnded = true;
       this.notify_All();
       this.dispose();
@@ -2332,7 +1966,7 @@ private boolean dispatchArg(String arg) {
       q = n == javax.swing.JOptionPane.NO_OPTION;
     } //not "do not stop":
     if(q) {
-      if(h != null) {h.haltaCancel();}
+      if(sd != null) {sd.cancel();}
       if(tsk != null) {tsk.cancel(true);}
       finishedCalculations = true;
       this.notify_All();
@@ -2418,30 +2052,6 @@ private boolean dispatchArg(String arg) {
 */
 //</editor-fold>
 
-//<editor-fold defaultstate="collapsed" desc="millisToShortDHMS">
-/** converts time (in milliseconds) to human-readable format "&lt;dd&gt;hh:mm:ss"
- * @param duration (in milliseconds)
- * @return  */
-  public static String millisToShortDHMS(long duration) {
-    //adapted from http://www.rgagnon.com
-    String res;
-    int millis = (int)(duration % 1000);
-    duration /= 1000;
-    int seconds = (int) (duration % 60);
-    duration /= 60;
-    int minutes = (int) (duration % 60);
-    duration /= 60;
-    int hours = (int) (duration % 24);
-    int days = (int) (duration / 24);
-    if (days == 0) {
-      res = String.format("%02d:%02d:%02d.%03d", hours, minutes, seconds,millis);
-    } else {
-      res = String.format("%dd%02d:%02d:%02d", days, hours, minutes, seconds);
-    }
-    return res;
-  }
-//</editor-fold>
-
 //<editor-fold defaultstate="collapsed" desc="setCursor">
   private void setCursorWait() {
     this.setCursor(new java.awt.Cursor(java.awt.Cursor.WAIT_CURSOR));
@@ -2571,8 +2181,8 @@ private class outFilteredStreamSED extends java.io.FilterOutputStream {
  */
     private void paintDiagrPanel(java.awt.Graphics g) {
         java.awt.Graphics2D g2D = (java.awt.Graphics2D)g;
-        if(dd != null) {
-            diagrPaintUtil.paintDiagram(g2D, jPanelDiagram.getSize(), dd, false);
+        if(sd != null && sd.dd != null) {
+            diagrPaintUtil.paintDiagramBuffered(g2D, jPanelDiagram, sd.dd);
         }
     }
 //</editor-fold>
@@ -2596,8 +2206,12 @@ private class outFilteredStreamSED extends java.io.FilterOutputStream {
     "  -n=nbr   (calculation steps along the X-axis; "+(NSTP_MIN)+" to "+(NSTP_MAX)+")"+nl+
     "  -nostop  (do not stop for warnings)"+nl+
     "  -p=output-plot-file-name"+nl+
+    "  -pltb    (write also a binary plot file with extension \"pltb\","+nl+
+    "            which is displayed faster)"+nl+
     "  -rev     (do not reverse the input min. and max. limits in x-axis)"+nl+
     "  -t=nbr   (temperature in degrees C, ignored if not needed)"+nl+
+    "  -threads=nbr  (number of threads used in the calculations;"+nl+
+    "            default =1; enter zero to use all processors)"+nl+
     "  -tbl     (output both a diagram and a table file with comma-"+nl+
     "            separated values and extension \"csv\")"+nl+
     "  -tbls=;  (character(s) to separate fields in the output table file;"+nl+
@@ -2615,148 +2229,52 @@ private class outFilteredStreamSED extends java.io.FilterOutputStream {
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="readDataFile">
+/** Reads and checks the data file with a new instance of
+ * <code>SedDiagram</code>
+ * @param dataFile the input data file
+ * @return false if an error occurs */
 private boolean readDataFile(java.io.File dataFile) {
-    if(dbg) {out.println("--- readDataFile("+dataFile.getAbsolutePath()+")");}
-    String msg;
-    //--- check the name
-    if(!dataFile.getName().toLowerCase().endsWith(".dat")) {
-        msg = "File: \""+dataFile.getName()+"\""+nl+
-                "Error: data file name must end with \".dat\"";
-        showErrMsgBx(msg,1);
-        return false;
-    }
-    if(dataFile.getName().length() <= 4) {
-        msg = "File: \""+dataFile.getName()+"\""+nl+
-                "Error: file name must have at least one character";
-        showErrMsgBx(msg,1);
-        return false;
-    }
-    String dataFileN = null;
-    try {dataFileN = dataFile.getCanonicalPath();} catch (java.io.IOException ex) {}
-    if(dataFileN == null) {
-        try {dataFileN = dataFile.getAbsolutePath();}
-        catch (Exception ex) {dataFileN = dataFile.getPath();}
-    }
-    dataFile = new java.io.File(dataFileN);
-    //
-    //--- create a ReadDataLib instance
-    try {rd = new ReadDataLib(dataFile);}
-    catch (ReadDataLib.DataFileException ex) {
-        showErrMsgBx(ex.getMessage(),1);
-        if(rd != null) {
-            try{rd.close();}
-            catch (ReadDataLib.ReadDataLibException ex2) {showErrMsgBx(ex2);}
-        }
-        return false;
-    }
-    msg = LINE+nl+"Reading input data file \""+dataFile+"\"";
-    out.println(msg);
-    if(consoleOutput) {System.out.println(msg);}
-    //--- read the chemical system (names, equilibrium constants, stoichiometry)
-    boolean warn = false; // throw an exception for missing plot data
-    try {ch = null;
-        ch = ReadChemSyst.readChemSystAndPlotInfo(rd, dbg, warn, out);
-    } catch (ReadChemSyst.ConcDataException ex) {
-        ch = null; showErrMsgBx(ex.getMessage(), 1);
-    }
-    catch (ReadChemSyst.DataLimitsException ex) {
-        ch = null; showErrMsgBx(ex.getMessage(), 1);
-    }
-    catch (ReadChemSyst.PlotDataException ex) {
-        ch = null; showErrMsgBx(ex.getMessage(), 1);
-    }
-    catch (ReadChemSyst.ReadDataFileException ex) {
-        ch = null; showErrMsgBx(ex.getMessage(), 1);
-    }
-    if(ch == null) {
-        msg = "Error while reading data file \""+dataFile.getName()+"\"";
-        showMsg(msg,1);
-        try {rd.close();}
-        catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
+    if(sd != null) {sd.waitForPlotFile();}
+    sd = newSedDiagram();
+    sd.dbg = dbg;
+    sd.calcActCoeffs = calcActCoeffs;
+    sd.reversedConcs = reversedConcs;
+    sd.temperature = temperature_InCommandLine;
+    sd.consoleOutput = consoleOutput;
+    if(!sd.readDataFile(dataFile)) {
+        sd = null;
         readDataFile_hadError();
         return false;
     }
-    if(ch.diag.plotType <= 0 || ch.diag.plotType > 8) {
-        msg = "Error: data file \""+dataFile.getName()+"\""+nl;
-        if(ch.diag.plotType == 0) {msg = msg +
-                "contains information for a Predominance Area Diagram."+nl+
-                "Run program PREDOM instead.";}
-        else {msg = msg + "contains erroneous plot information.";}
-        showErrMsgBx(msg,1);
-        try {rd.close();}
-        catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
-        readDataFile_hadError();
-        return false;}
-    //
-    //--- get a temperature:
-    double t_d, w;
-    try {w = rd.getTemperature();} // temperature written as a comment in the data file?
-    catch (ReadDataLib.DataReadException ex) {showErrMsgBx(ex); w = Double.NaN;}
-    if(!Double.isNaN(w)) {
-      t_d = w;
-      if(!Double.isNaN(temperature_InCommandLine)) {
-        // temperature also given in command line
-        if(Math.abs(t_d - temperature_InCommandLine)>0.001) { // difference?
-          msg = String.format(engl,"Warning: temperature in data file =%6.2f,%s",t_d,nl);
-          msg = msg + String.format(engl,
-                  "   but in the command line t=%6.2f!%s",
-                  temperature_InCommandLine,nl);
-          msg = msg + String.format(engl,"t=%6.2f will be used.",temperature_InCommandLine);
-          showErrMsgBx(msg,2);
-          t_d = temperature_InCommandLine;
-        } // temperatures differ
-      }  // temperature also given in command line
-      jTextFieldT.setText(String.valueOf(t_d));
-    } // temperature written in data file
-
-    try {rd.close();}
-    catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
-    msg = "Finished reading the input data file.";
-    out.println(msg);
-    if(consoleOutput) {System.out.println(msg);}
-    //--- set the references pointing to the instances of the storage classes
-    cs = ch.chemSystem;
-    csC = cs.chemConcs;
-    namn = cs.namn;
-    dgrC = ch.diagrConcs;
-    diag = ch.diag;
-
-    //---- Set the calculation instructions for HaltaFall
-    // Concentration types for each component:
-    //    hur =1 for "T" (fixed Total conc.)
-    //    hur =2 for "TV" (Tot. conc. Varied)
-    //    hur =3 for "LTV" (Log(Tot.conc.) Varied)
-    //    hur =4 for "LA" (fixed Log(Activity) value)
-    //    hur =5 for "LAV" (Log(Activity) Varied)</pre>
-    for(int j =0; j < cs.Na; j++) {
-        if(dgrC.hur[j] >3)
-            {csC.kh[j]=2;} //kh=2 log(activity) is given
-                            //The Mass Balance eqn. has to be solved
-        else {csC.kh[j]=1;} //kh=1 Tot.Conc. is given
-                            //The Tot.Conc. will be calculated
-    }
-
-    // --------------------------
-    // ---  Check concs. etc  ---
-    // --------------------------
-    if(!checkInput()) {
-        ch = null; cs = null; csC = null; namn = null; dgrC = null; diag = null;
-        readDataFile_hadError();
-        return false;}
-
-    if(cs.jWater >=0 && dbg) {
-        out.println("Water (H2O) is included: all concentrations are in \"mol/(1 kg H2O)\".");
-    }
-
+    if(!Double.isNaN(sd.temperature)) {jTextFieldT.setText(String.valueOf(sd.temperature));}
     return true;
 } //readDataFile()
+
+/** Creates an instance of <code>SedDiagram</code> that shows the messages
+ * in this window and that reports the progress of the calculations.
+ * @return the new instance */
+private SedDiagram newSedDiagram() {
+    return new SedDiagram(err, out) {
+        @Override protected void showMsg(String msg, int type) {SED.this.showMsg(msg, type);}
+        @Override protected void showMsg(Exception ex) {SED.this.showMsg(ex);}
+        @Override protected void showErrMsgBx(String msg, int type) {SED.this.showErrMsgBx(msg, type);}
+        @Override protected void showErrMsgBx(Exception ex) {SED.this.showErrMsgBx(ex);}
+        @Override protected boolean showErrMsgBxCancel(String msg, int type) {
+            return SED.this.showErrMsgBxCancel(msg, type);
+        }
+        @Override protected void progress(int nbrPointsDone) {
+            HaltaTask t = tsk;
+            if(t != null) {t.progress(nbrPointsDone);}
+        }
+    };
+} //newSedDiagram()
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="Temperature & Ionic Strength">
     private void showTemperature() {
     if(!jCheckActCoeff.isEnabled() ||
             ((!calcActCoeffs || ionicStrength ==0) &&
-             (diag == null || (diag !=null && diag.pInX !=3 && !diag.Eh)))
+             (sd == null || (sd.diag !=null && sd.diag.pInX !=3 && !sd.diag.Eh)))
             ) {
         jLabelT.setText("temperature");
         jLabelT.setEnabled(false);
@@ -2940,159 +2458,50 @@ void showMsg(Exception ex) {
     jLabelStatus.setText("Starting the calculations");
     jLabelProgress.setText(" ");
     disableMenus();
-    diag.fractionThreshold = threshold;
-    //---- Check if "EH" is needed -----------
-    if(diag.Eh &&
-            diag.pInX != 3 && diag.plotType != 5) { //plotType=5: pe in Y-axis
-        boolean peGiven = false;
-        for(int i =0; i < cs.Na; i++) {
-            if(Util.isElectron(namn.identC[i]) &&
-                csC.kh[i] ==2) { // kh=2  logA given
-                    peGiven = true; break;}
-        } //for i
-        if(!peGiven) {diag.Eh = false;}
-    }
-    //--- temperature ------------------------
-    diag.temperature = readTemperature();
-    if(Double.isNaN(diag.temperature) && diag.Eh) {
-        String msg = "\"Error: Need to plot Eh values but no temperature is given.";
-        showErrMsgBx(msg,1);
-        setCursorDef();
-        restoreMenus(true);
-        return;
-    }
-    if(diag.Eh) {peEh = (ln10*8.3144126d*(diag.temperature+273.15d)/96484.56d);} else {peEh = Double.NaN;}
-    // decide if the temperature should be displayed in the diagram
-    if(!diag.Eh && !calcActCoeffs) {
-        if(dbg) {out.println(" (Note: temperature not needed in the diagram)");}
-    }
     // nbr of calculation steps
     if(!dbg) {
         nSteps = Math.max(NSTP_MIN,nSteps);
         nSteps = jScrollBarNbrPoints.getValue();
     }
-    final int nSteps1 = nSteps + 1;
     jLabelNbrPText.setText("Nbr of calc. steps:");
     jScrollBarNbrPoints.setEnabled(false);
     jLabelNbrPText.setEnabled(false);
-    if(dbg) {out.println(" "+nSteps1+" caculation points"+nl+
-            "ionic strength = "+ionicStrength+nl+
-            "temperature = "+(float)diag.temperature+nl+
-            "max relative mass-balance tolerance = "+(float)tolHalta);}
-
-    // ---------------------------------------
-    // get an instance of Plot
-    plot = new Plot(this, err, out);
-    //---- set up some arrays
-    plot.preparePlot(ch);
-    // ---------------------------------------
-
-    String msg;
-    // ionic strength
-    diag.ionicStrength = ionicStrength;
-    if(!diag.aquSystem && diag.ionicStrength != 0) {
-        msg = "Warning: This does not appear to be an aqueous system,"+nl+
-                "and yet you give a value for the ionic strength?";
-        showErrMsgBx(msg,2);
-    }
-
-    // model to calculate ion activity coefficients
-    if(calcActCoeffs) {
-        diag.activityCoeffsModel = jComboBoxModel.getSelectedIndex();
-        diag.activityCoeffsModel = Math.min(jComboBoxModel.getItemCount()-1,
-                                        Math.max(0,diag.activityCoeffsModel));
-        csC.actCoefCalc = true;
-    } else {
-        diag.activityCoeffsModel = -1;
-        csC.actCoefCalc = false;
-    }
     // height scale for texts in the diagram
     tHeight = jScrollBarHeight.getValue()/10;
     tHeight = Math.min(10.d,Math.max(tHeight, 0.3));
 
-    
-    // ---- table output?
-    if(inputDataFile == null) {tableOutput = false;}
-    if(tableOutput) {
-        table = new Table(this, err, out);
-        String txt = inputDataFile.getAbsolutePath();
-        if(tblExtension == null) {tblExtension = "";}
-        if(tblExtension.startsWith(".")) {tblExtension = tblExtension.substring(1);}
-        String tableFileN = txt.substring(0,txt.length()-4).concat(".").concat(tblExtension);
-        java.io.File outputTableFile = new java.io.File(tableFileN);
-        if(!table.tableHeader(ch, outputTableFile)) {
-            table = null;
-            tableOutput = false;
-        }
-    }
-
-    calculationStart = System.nanoTime();
-
-    int j;
-    // ---- Store given conc. ranges in array bt[Na][nSteps+1]
-    bt = new double[cs.Na][nSteps1];
-    for(j =0; j < cs.Na; j++) {
-        if(dgrC.hur[j] ==1 || dgrC.hur[j] ==4) { //T or LA
-            for(int n =0; n < bt[0].length; n++) {bt[j][n] = dgrC.cLow[j];}
-        } //if T or LA
-        else {  //if TV, LTV or LAV
-            double stepX =(dgrC.cHigh[j] - dgrC.cLow[j]) / nSteps;
-            bt[j][0] = dgrC.cLow[j];
-            for(int n =1; n < (bt[0].length-1); n++) {bt[j][n] = bt[j][n-1] + stepX;}
-            bt[j][nSteps] = dgrC.cHigh[j]; // to avoid rounding errors
-            if(dgrC.hur[j] ==3) { // LTV
-                for(int n =0; n < bt[0].length; n++)
-                    {bt[j][n] = Math.exp(ln10*bt[j][n]);}
-            } //if LTV
-        }  //if TV, LTV or LAV
-    } //for j
-
-    // check POS and NEG with the Tot.Conc. given in the input
-    for(j =0; j < cs.Na; j++) {
-        if(csC.kh[j] == 2) {continue;} //only it Tot.conc. is given
-        if(!(pos[j] && neg[j]) && (pos[j] || neg[j])) {
-            if(dgrC.hur[j] !=3 &&  //not LTV
-               dgrC.cLow[j]==0 && (Double.isNaN(dgrC.cHigh[j]) || dgrC.cHigh[j]==0)) {
-                    //it is only POS or NEG and Tot.Conc =0
-                    for(int n =0; n < bt[0].length; n++) {bt[j][n] = -9999.;}
-                    csC.kh[j] =2; //kh=2 means logA given
-                    if(dbg) {out.println("Can not calculate mass-balance for for component \""+namn.identC[j]+"\""+nl+
-                        "   its log(activity) will be set to -9999.");}
-            }
-        }
-    } //for j
-
-    msg = "Starting the calculations...";
-    out.println(msg);
-    if(consoleOutput) {System.out.println(msg);}
-
-    // ---- Make an instance of Factor
-    String userHome = System.getProperty("user.home");
-    factor = new Factor(ch, pathApp, userHome, pathDef.toString(), out);
-    out.flush();
-    // ---- print information on the model used for activity coefficients
-    try {factor.factorPrint(dbg);}
-    catch (Exception ex) {
-        showErrMsgBx(ex.getMessage(),1);
-        factor = null;
+    // ---- the options for the calculations and the diagram
+    sd.dbg = dbg;
+    sd.nSteps = nSteps;
+    sd.nThreads = nThreads;
+    sd.threshold = threshold;
+    sd.temperature = readTemperature();
+    sd.calcActCoeffs = calcActCoeffs;
+    sd.ionicStrength = ionicStrength;
+    if(calcActCoeffs) {
+        sd.actCoeffsModel = Math.min(jComboBoxModel.getItemCount()-1,
+                                        Math.max(0,jComboBoxModel.getSelectedIndex()));
     }
-    if(factor == null) {
-        restoreMenus(false);
+    sd.tolHalta = tolHalta;
+    sd.dbgHalta = dbgHalta;
+    sd.tHeight = tHeight;
+    sd.tableOutput = tableOutput && inputDataFile != null;
+    sd.tblExtension = tblExtension;
+    sd.tblFieldSeparator = tblFieldSeparator;
+    sd.tblCommentStart = tblCommentStart;
+    sd.tblCommentEnd = tblCommentEnd;
+    sd.consoleOutput = consoleOutput;
+    // the diagram is displayed while the plot file is written
+    sd.plotFileInBackground = true;
+    sd.binaryPlotFile = binaryPlotFile;
+    sd.pathApp = pathApp;
+    sd.pathDef = pathDef.toString();
+
+    if(!sd.prepare()) {
         setCursorDef();
+        restoreMenus(true);
         return;
     }
-    // ---- Initialize variables
-    csC.dbg = dbgHalta;
-    csC.cont = false;
-    csC.tol = tolHalta;
-    for(j =0; j < cs.Na; j++) {
-        if(csC.kh[j] == 1) {
-            csC.tot[j]=bt[j][0];
-            csC.logA[j]=-10;
-            if(csC.tot[j]>0) {csC.logA[j] = Math.log10(csC.tot[j]) -3;}            
-        }
-        else {csC.logA[j]=bt[j][0];}
-    } // for j
 
     // ---- Run the calculations on another Thread ----
     jLabelStatus.setText("Please wait --");
@@ -3108,163 +2517,25 @@ void showMsg(Exception ex) {
 /** A SwingWorker to perform tasks in the background.
  * @see HaltaTask#doInBackground() doInBackground() */
 public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
-    private boolean getHaltaInstanceOK = true;
-    private boolean haltaError = false;
-    private int nbrTooLargeConcs = 0;
-    private int nbrHaltaErrors = 0;
-    private int nbrHaltaUncertain = 0;
-    private final StringBuilder failuresMsg = new StringBuilder();
   /** The instructions to be executed are defined here
    * @return true if no error occurs, false otherwise
    * @throws Exception */
   @Override protected Boolean doInBackground() throws Exception {
-    //--- do the HaltaFall calculations
-    // create an instance of class HaltaFall
-    h = null;
-    try {h = new HaltaFall(cs,factor, out);}
-    catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
-        showErrMsgBx(ex);
-        getHaltaInstanceOK = false; // skip the rest of the thread
-    }
-    if(!getHaltaInstanceOK) {this.cancel(true); return false;}
-
-    int nStepX1;
-    double tolHalta0 = csC.tol;
-    final String f = "Calculation failed in \"HaltaFall.haltaCalc\" at point=%d, x=%7.5f"+nl+"%s";
-    nStepX = -1;
-    do_loopX:
-    do {  // -------------------------------------- Loop for X-axis
-        nStepX++;
-        nStepX1 = nStepX+1;
-        publish(nStepX1);
-        //if needed for debugging: sleep some milliseconds (wait) at each calculation point
-        //try {Thread.sleep(500);} catch(Exception ex) {}
-
-        // print debug output from HaltaFall only for the 1st point (first point = zero)
-        if(nStepX > 0) {csC.dbg = Chem.DBGHALTA_DEF;}
-        if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-            out.println("Starting calculation point: "+nStepX1+" (of "+(nSteps+1)+"), x="+(float)bt[diag.compX][nStepX]);
-        }
-        // --- input data for this calculation point
-        for(int j =0; j < cs.Na; j++) {
-            if(dgrC.hur[j] >1 && dgrC.hur[j] !=4) { //TV, LTV or LAV
-                if(csC.kh[j] == 1) {csC.tot[j]=bt[j][nStepX];}
-                else {csC.logA[j]=bt[j][nStepX];}
-            } //if TV, LTV or LAV
-        } // for j
-
-        // --- HaltaFall: do the calculations
-        //     calculate the equilibrium composition of the system
-        try {
-            csC.tol = tolHalta0;
-            h.haltaCalc();
-            if(csC.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
-                do {
-                    csC.tol = csC.tol * 0.1; // decrease tolerance and try again
-                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                        out.println("Too many iterations when solving the mass balance equations"+nl+
-                                "  decreasing tolerance to: "+(float)csC.tol+" and trying again.");
-                    }
-                    h.haltaCalc();
-                } while (csC.isErrFlagsSet(2) && csC.tol >= 1e-9);
-                csC.tol = tolHalta0;
-                if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                    out.println("Restoring tolerance to: "+(float)tolHalta0+" for next calculations.");
-                }
-            }
-            if(csC.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
-                if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                    out.println("Failed to find a satisfactory combination of solids. Trying again...");
-                }
-                csC.cont = false;      // try again
-                h.haltaCalc();
-            }
-        }
-        catch (Chem.ChemicalParameterException ex) {
-            String ms = "Error in \"HaltaFall.haltaCalc\", "+ex.getMessage()+nl+
-                    "   at point: "+nStepX1+"  x="+bt[diag.compX][nStepX]+nl+
-                    Util.stack2string(ex);
-            showErrMsgBx(ms, 1);
-            haltaError = true;
-            break; // do_loopX;
-        }
-        // ---
-        if(finishedCalculations) {break;} // do_loopX  // user request exit?
-
-        out.flush();
-
-        if(csC.isErrFlagsSet(5)) {nbrTooLargeConcs++;}
-        else if(csC.isErrFlagsSet(1)) {nbrHaltaUncertain++;}
-        if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
-                            || csC.isErrFlagsSet(6)) {
-            nbrHaltaErrors++;
-            if(failuresMsg.length() >0) {failuresMsg.append(nl);}
-            failuresMsg.append(String.format(engl,f,nStepX1,(float)bt[diag.compX][nStepX],csC.errFlagsGetMessages()));
-        }
-
-        if(dbg) {
-            h.printConcs();
-            factor.printActivityCoeffs(out);
-        }
-
-        if(finishedCalculations) {break;} // do_loopX  // user request exit?
-
-        // store the results for later plotting (and table output)
-        plot.storePlotData(nStepX, ch);
-    } while (nStepX < nSteps); // -------------------------- Loop for X-axis
-    return true;
+    return sd.calculate();
   }
+  /** Reports the progress of the calculations
+   * @param nbrPointsDone the number of points calculated so far */
+  void progress(int nbrPointsDone) {publish(nbrPointsDone);}
   /** Performs some tasks after the calculations have been finished */
   @Override protected void done() {
     if(isCancelled()) {
         if(dbg) {System.out.println("SwingWorker cancelled.");}
     } else {
-        String msg;
-        if(!haltaError) {
-            calculationTime = (System.nanoTime() - calculationStart)
-                    /1000000; //convert nano seconds to milli seconds
-            msg = "--- Calculated "+(nSteps+1)+" points, time="+millisToShortDHMS(calculationTime);
-            out.println(msg);
-            System.out.println(msg);
-            if(nbrTooLargeConcs > 0) {
-                int percent = nbrTooLargeConcs*100 / (nSteps+1);
-                if(percent > 0) {
-                    msg = percent+" % of the calculated points had some"+nl+
-                          "concentrations > "+(int)Factor.MAX_CONC+" (molal); impossible in reality."+nl+nl;
-                    if(calcActCoeffs) {msg = msg + "The activity coefficients are then WRONG"+nl+
-                          "and the results unrealistic.";}
-                    else {msg = msg + "These results are unrealistic.";}
-                    showErrMsgBx(msg, 1);
-                }
-            }
-            if(nbrHaltaUncertain >1) {
-                out.println(LINE);
-                out.println(String.format("%d",nbrHaltaUncertain).trim()+" uncertain point(s)");
-                out.println(LINE);
-            }
-            if(failuresMsg != null && failuresMsg.length() >0) {
-                out.println(LINE);
-                out.println(failuresMsg);
-                out.println(LINE);
-            }
-            if(nbrHaltaErrors >0) {
-                msg = String.format("%d",nbrHaltaErrors).trim()+" calculation failure(s)";
-                showErrMsgBx(msg, 1);
-            }
-
-            out.println("Saving plot file \""+outputPltFile.getAbsolutePath()+"\"...");
-            plot.drawPlot(outputPltFile, ch);
-            if(outputPltFile != null && outputPltFile.getName().length()>0) {
-                String msg3 = "Saved plot file: \""+outputPltFile.getAbsolutePath()+"\"";
-                out.println(msg3);
-                System.out.println(msg3);
-            }
-            if(table != null) {table.tableBody(ch);}
-        } // if !haltaError
+        final boolean saved = sd.saveDiagram(outputPltFile);
 
         // execute the following actions on the event-dispatching Thread
         // after the "calculations" and the plotting are finished
-        if(getHaltaInstanceOK && !haltaError) {
+        if(saved) {
           javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
             jTabbedPane.setTitleAt(2, "<html><u>D</u>iagram</html>");
             jTabbedPane.setEnabledAt(2, true);
@@ -3272,14 +2543,14 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
             jTabbedPane.requestFocusInWindow();
             restoreMenus(true);
           }}); // invokeLater
-        }//if getHaltaInstanceOK
+        }//if saved
         else {
           javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
             jTabbedPane.setSelectedComponent(jScrollPaneMessg);
             jTabbedPane.requestFocusInWindow();
             restoreMenus(true);
           }}); // invokeLater
-        }//if !getHaltaInstanceOK
+        }//if !saved
         if(dbg) {System.out.println("SwingWorker done.");}
     }
     out.println(LINE);
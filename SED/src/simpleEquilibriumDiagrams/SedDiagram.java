@@ -0,0 +1,1298 @@
+package simpleEquilibriumDiagrams;
+
+import lib.common.Util;
+import lib.kemi.chem.Chem;
+import lib.kemi.graph_lib.GraphLib;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+import lib.kemi.haltaFall.HaltaFallPool;
+import lib.kemi.readDataLib.ReadDataLib;
+import lib.kemi.readWriteDataFiles.ReadChemSyst;
+
+/** Makes a chemical equilibrium diagram without a graphic user interface.
+ * An input data file is read and checked, the equilibrium compositions
+ * are calculated along the X-axis, and the diagram is saved in a plot file
+ * (and, if requested, the results are saved in a table file).<br>
+ * This class is used by the program window (class <code>SED</code>), and
+ * it may also be used directly, for example by a batch program running on a
+ * computer without display: no AWT or Swing classes are used.
+ * The options (number of calculation steps, ionic strength, etc) are given
+ * by setting the values of the public fields before calling the methods.
+ * Typical use:
+ * <pre>SedDiagram sd = new SedDiagram(System.err, System.out);
+ *sd.nSteps = 100;
+ *boolean ok = sd.makeDiagram(dataFile, pltFile);</pre>
+ * Messages and errors are printed on <code>out</code> and <code>err</code>.
+ * A subclass may override the <code>showMsg</code> and <code>showErrMsgBx</code>
+ * methods, for example to display message boxes, and <code>progress</code>
+ * to report how the calculations proceed.
+ * <br>
+ * Copyright (C) 2014-2018  I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public class SedDiagram {
+    /** The maximum number of calculation steps along the X-axis */
+    public final static int NSTP_MAX = 300;
+    /** The minimum number of calculation steps along the X-axis */
+    public final static int NSTP_MIN = 4;
+    /** The default number of calculation steps along the X-axis */
+    public final static int NSTP_DEF = 50;
+
+    //<editor-fold defaultstate="collapsed" desc="options">
+/** print debug information? */
+    public boolean dbg = false;
+/** if true the concentration range in the x-axis may have a reversed "order",
+ * that is, minimum value to the right and maximum value to the left, if so
+ * it is given in the input data file. Needed when reading the data file. */
+    public boolean reversedConcs = false;
+    /** The number of calculation steps along the X-axis.
+     * The number of points calculated is: <code>nSteps+1</code>.
+     * Note that to the outside world, the number of calculation points are reported. */
+    public int nSteps = NSTP_DEF;
+    /** The number of threads used for the calculations. If larger than one,
+     * the X-axis is divided in segments which are calculated in parallel,
+     * see <code>doParallelSweep()</code>. Ignored in debug mode. */
+    public int nThreads = 1;
+    /** true if activity coeeficients have to be calculated.
+     * Needed when reading the data file. */
+    public boolean calcActCoeffs = false;
+    /** the model to calculate activity coefficients:
+     * 0 = Davies eqn; 1 = SIT; 2 = simplified HKF */
+    public int actCoeffsModel = 2;
+    /** the ionic strength, or -1 if it has to be calculated at each calculation step */
+    public double ionicStrength = 0;
+    /** the temperature in degrees Celsius. If it is NaN when the data file
+     * is read, the temperature written in the data file (if any) is used */
+    public double temperature = Double.NaN;
+    /** tolerance when solving the mass-balance equations in HaltaFall */
+    public double tolHalta = Chem.TOL_HALTA_DEF;
+    /** output debug reporting in HaltaFall. Default = Chem.DBGHALTA_DEF = 1 (report errors only)
+     * @see Chem.ChemSystem.ChemConcs#dbg Chem.ChemSystem.ChemConcs.dbg */
+    public int dbgHalta = Chem.DBGHALTA_DEF;
+    /** height factor for the texts in the diagram */
+    public double tHeight = 1;
+    /** threshold to display curves in a fraction diagram */
+    public float threshold = 0.03f;
+    /** if true a table file is written together with the plot file */
+    public boolean tableOutput = false;
+    public String tblExtension = "csv";
+    public String tblFieldSeparator = ";";
+    public String tblCommentStart = "\"";
+    public String tblCommentEnd = "\"";
+    /** true if a minumum of information is sent to the console (System.out)
+     * in addition to <code>out</code> */
+    public boolean consoleOutput = false;
+    /** if true the plot file is written by another thread after the diagram
+     * is drawn, so that the diagram may be displayed before the file is
+     * complete. Then <code>waitForPlotFile</code> must be called before the
+     * plot file is used, for example before the program exits */
+    public boolean plotFileInBackground = false;
+    /** if true a binary companion file (".pltb") is written together with
+     * the plot file, so that the diagram may be displayed or converted
+     * faster, see <code>lib.kemi.graph_lib.PltFile</code> */
+    public boolean binaryPlotFile = false;
+    /** the plot file that might still be written, and who writes it */
+    private java.io.File plotFileSaved = null;
+    private GraphLib plotFileWriter = null;
+    /** directories where a file with SIT-coefficients is searched for,
+     * see <code>Factor</code>. They may be null */
+    public String pathApp = null;
+    public String pathDef = null;
+    //</editor-fold>
+
+/** the input data file */
+    private java.io.File dataFile = null;
+/** a class used to store and retrieve data, used by HaltaFall */
+    Chem ch = null;
+/** a class to store data about a chemical system */
+    private Chem.ChemSystem cs = null;
+/** a class to store data about a the concentrations to calculate an
+ * equilibrium composition, used by HaltaFall */
+    private Chem.ChemSystem.ChemConcs csC = null;
+/** a class to store diverse information on a chemical system: names of species, etc */
+    private Chem.ChemSystem.NamesEtc namn = null;
+/** a class to store array data about a diagram */
+    private Chem.DiagrConcs dgrC = null;
+/** a class to store non-array data about a diagram */
+    Chem.Diagr diag = null;
+/** a class to calculate activity coefficients */
+    private Factor factor;
+/** the calculations class */
+    private volatile HaltaFall h;
+    private Plot plot = null;
+    private Table table = null;
+/** data from a plot-file needed by the paint methods */
+    GraphLib.PltData dd; // instantiated in "Plot.drawPlot"
+                                   // it containts the info in the plot file
+    /** The given input concentrations recalculated for each calculation step.
+     * Dimmensions: bt[Na][nSteps+1] */
+    double[][] bt;
+    double peEh = Double.NaN;
+    /** true if the component has either <code>noll</code> = false or it has positive
+     * values for the stoichiometric coefficients (a[ix][ia]-values)
+     * @see chem.Chem.ChemSystem#a a
+     * @see chem.Chem.ChemSystem#noll noll */
+    private boolean[] pos;
+    /** true if the component has some negative
+     * values for the stoichiometric coefficients (a[ix][ia]-values)
+     * @see chem.Chem.ChemSystem#a a */
+    private boolean[] neg;
+    /** The calculation step being (along the x-axis) performed out of nSteps
+     * The first point corresponds to no step, <code>nStepX = 0</code> */
+    private int nStepX;
+    private final double ln10 = Math.log(10d);
+/** true if the calculations have finished, or if the user wishes to stop them */
+    private volatile boolean finishedCalculations = true;
+    private boolean haltaError = false;
+    private int nbrTooLargeConcs = 0;
+    private int nbrHaltaErrors = 0;
+    private int nbrHaltaUncertain = 0;
+    private final StringBuilder failuresMsg = new StringBuilder();
+/** used to calculate execution time */
+    private long calculationStart = 0;
+/** the execution time */
+    private long calculationTime = 0;
+
+/** Where errors will be printed. It may be <code>System.err</code>. */
+    final java.io.PrintStream err;
+/** Where messages will be printed. It may be <code>System.out</code>. */
+    final java.io.PrintStream out;
+
+    private static final String nl = System.getProperty("line.separator");
+    private static final java.util.Locale engl = java.util.Locale.ENGLISH;
+    static final String LINE = "-------------------------------------";
+
+/** Constructor.
+ * @param err0 Where errors will be printed. It may be <code>System.err</code>.
+ * If null, <code>System.err</code> is used.
+ * @param out0 Where messages will be printed. It may be <code>System.out</code>.
+ * If null, <code>System.out</code> is used. */
+public SedDiagram(java.io.PrintStream err0, java.io.PrintStream out0) {
+    if(err0 != null) {this.err = err0;} else {this.err = System.err;}
+    if(out0 != null) {this.out = out0;} else {this.out = System.out;}
+} //constructor
+
+//<editor-fold defaultstate="collapsed" desc="makeDiagram">
+/** Reads the data file, makes the calculations and saves the diagram:
+ * calls <code>readDataFile</code>, <code>prepare</code>, <code>calculate</code>
+ * and <code>saveDiagram</code>.
+ * @param dataFile the input data file
+ * @param pltFile the output plot file. If null, the name of the data file
+ * is used with extension "plt"
+ * @return true if the plot file is saved, false if an error occurs */
+public boolean makeDiagram(java.io.File dataFile, java.io.File pltFile) {
+    if(!readDataFile(dataFile)) {return false;}
+    return makeDiagram(pltFile);
+} //makeDiagram(dataFile, pltFile)
+
+/** Makes the calculations and saves the diagram for the data file already
+ * read: calls <code>prepare</code>, <code>calculate</code> and <code>saveDiagram</code>.
+ * @param pltFile the output plot file. If null, the name of the data file
+ * is used with extension "plt"
+ * @return true if the plot file is saved, false if an error occurs */
+public boolean makeDiagram(java.io.File pltFile) {
+    if(this.dataFile == null) {err.println("? Programming error in \"SedDiagram.makeDiagram\": no data file read."); return false;}
+    if(pltFile == null) {
+        String txt = this.dataFile.getAbsolutePath();
+        pltFile = new java.io.File(txt.substring(0,txt.length()-3).concat("plt"));
+    }
+    if(!prepare()) {return false;}
+    boolean ok;
+    try {ok = calculate();}
+    catch (Exception ex) {showErrMsgBx(ex); return false;}
+    if(!ok) {return false;}
+    return saveDiagram(pltFile);
+} //makeDiagram(pltFile)
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="readDataFile">
+/** Reads the chemical system and the plot information in a data file,
+ * and checks the input data. Note that the values of <code>calcActCoeffs</code>,
+ * <code>reversedConcs</code> and <code>temperature</code> are used here.
+ * @param dataFile the input data file
+ * @return false if an error occurs */
+public boolean readDataFile(java.io.File dataFile) {
+    if(dbg) {out.println("--- readDataFile("+dataFile.getAbsolutePath()+")");}
+    String msg;
+    ch = null; cs = null; csC = null; namn = null; dgrC = null; diag = null;
+    this.dataFile = null;
+    //--- check the name
+    if(!dataFile.getName().toLowerCase().endsWith(".dat")) {
+        msg = "File: \""+dataFile.getName()+"\""+nl+
+                "Error: data file name must end with \".dat\"";
+        showErrMsgBx(msg,1);
+        return false;
+    }
+    if(dataFile.getName().length() <= 4) {
+        msg = "File: \""+dataFile.getName()+"\""+nl+
+                "Error: file name must have at least one character";
+        showErrMsgBx(msg,1);
+        return false;
+    }
+    String dataFileN = null;
+    try {dataFileN = dataFile.getCanonicalPath();} catch (java.io.IOException ex) {}
+    if(dataFileN == null) {
+        try {dataFileN = dataFile.getAbsolutePath();}
+        catch (Exception ex) {dataFileN = dataFile.getPath();}
+    }
+    dataFile = new java.io.File(dataFileN);
+    //
+    //--- create a ReadDataLib instance
+    ReadDataLib rd = null;
+    try {rd = new ReadDataLib(dataFile);}
+    catch (ReadDataLib.DataFileException ex) {
+        showErrMsgBx(ex.getMessage(),1);
+        if(rd != null) {
+            try{rd.close();}
+            catch (ReadDataLib.ReadDataLibException ex2) {showErrMsgBx(ex2);}
+        }
+        return false;
+    }
+    msg = LINE+nl+"Reading input data file \""+dataFile+"\"";
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+    //--- read the chemical system (names, equilibrium constants, stoichiometry)
+    boolean warn = false; // throw an exception for missing plot data
+    try {ch = null;
+        ch = ReadChemSyst.readChemSystAndPlotInfo(rd, dbg, warn, out);
+    } catch (ReadChemSyst.ConcDataException ex) {
+        ch = null; showErrMsgBx(ex.getMessage(), 1);
+    }
+    catch (ReadChemSyst.DataLimitsException ex) {
+        ch = null; showErrMsgBx(ex.getMessage(), 1);
+    }
+    catch (ReadChemSyst.PlotDataException ex) {
+        ch = null; showErrMsgBx(ex.getMessage(), 1);
+    }
+    catch (ReadChemSyst.ReadDataFileException ex) {
+        ch = null; showErrMsgBx(ex.getMessage(), 1);
+    }
+    return readDataFile(dataFile, rd, ch);
+} //readDataFile(dataFile)
+
+/** Uses the chemical system and the plot information already read from a
+ * data file, for example by a program that must know the type of diagram
+ * before choosing between SED and Predom, and checks the input data, as done by
+ * <code>readDataFile(dataFile)</code>.
+ * @param dataFile the input data file
+ * @param rd the data file, from which "chem" has been read. It is closed here.
+ * @param chem the chemical system and plot information read from "rd" with
+ * <code>ReadChemSyst.readChemSystAndPlotInfo</code>, or null if they could
+ * not be read (the error has then been reported)
+ * @return false if an error occurs */
+public boolean readDataFile(java.io.File dataFile, ReadDataLib rd, Chem chem) {
+    String msg;
+    ch = chem; cs = null; csC = null; namn = null; dgrC = null; diag = null;
+    this.dataFile = null;
+    if(ch == null) {
+        msg = "Error while reading data file \""+dataFile.getName()+"\"";
+        showMsg(msg,1);
+        try {rd.close();}
+        catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
+        return false;
+    }
+    if(ch.diag.plotType <= 0 || ch.diag.plotType > 8) {
+        msg = "Error: data file \""+dataFile.getName()+"\""+nl;
+        if(ch.diag.plotType == 0) {msg = msg +
+                "contains information for a Predominance Area Diagram."+nl+
+                "Run program PREDOM instead.";}
+        else {msg = msg + "contains erroneous plot information.";}
+        showErrMsgBx(msg,1);
+        ch = null;
+        try {rd.close();}
+        catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
+        return false;}
+    //
+    //--- get a temperature:
+    double w;
+    try {w = rd.getTemperature();} // temperature written as a comment in the data file?
+    catch (ReadDataLib.DataReadException ex) {showErrMsgBx(ex); w = Double.NaN;}
+    if(!Double.isNaN(w)) {
+      if(!Double.isNaN(temperature)) {
+        // temperature also given in command line
+        if(Math.abs(w - temperature)>0.001) { // difference?
+          msg = String.format(engl,"Warning: temperature in data file =%6.2f,%s",w,nl);
+          msg = msg + String.format(engl,
+                  "   but in the command line t=%6.2f!%s",
+                  temperature,nl);
+          msg = msg + String.format(engl,"t=%6.2f will be used.",temperature);
+          showErrMsgBx(msg,2);
+        } // temperatures differ
+      }  // temperature also given in command line
+      else {temperature = w;}
+    } // temperature written in data file
+
+    try {rd.close();}
+    catch (ReadDataLib.ReadDataLibException ex) {showMsg(ex);}
+    msg = "Finished reading the input data file.";
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+    //--- set the references pointing to the instances of the storage classes
+    cs = ch.chemSystem;
+    csC = cs.chemConcs;
+    namn = cs.namn;
+    dgrC = ch.diagrConcs;
+    diag = ch.diag;
+
+    //---- Set the calculation instructions for HaltaFall
+    // Concentration types for each component:
+    //    hur =1 for "T" (fixed Total conc.)
+    //    hur =2 for "TV" (Tot. conc. Varied)
+    //    hur =3 for "LTV" (Log(Tot.conc.) Varied)
+    //    hur =4 for "LA" (fixed Log(Activity) value)
+    //    hur =5 for "LAV" (Log(Activity) Varied)</pre>
+    for(int j =0; j < cs.Na; j++) {
+        if(dgrC.hur[j] >3)
+            {csC.kh[j]=2;} //kh=2 log(activity) is given
+                            //The Mass Balance eqn. has to be solved
+        else {csC.kh[j]=1;} //kh=1 Tot.Conc. is given
+                            //The Tot.Conc. will be calculated
+    }
+
+    // --------------------------
+    // ---  Check concs. etc  ---
+    // --------------------------
+    if(!checkInput()) {
+        ch = null; cs = null; csC = null; namn = null; dgrC = null; diag = null;
+        return false;}
+
+    if(cs.jWater >=0 && dbg) {
+        out.println("Water (H2O) is included: all concentrations are in \"mol/(1 kg H2O)\".");
+    }
+    this.dataFile = dataFile;
+    return true;
+} //readDataFile(dataFile, rd, chem)
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="checkInput">
+/** Make checks and make changes to the data stored in the Chem classes.
+ * @return true if checks are OK  */
+  private boolean checkInput() {
+    if(cs == null) {err.println("? Programming error in \"SedDiagram.checkInput\": cs=null."); return false;}
+    if(dbg) {out.println("--- checkInput()");}
+    // -------------------
+    //   CHEMICAL SYSTEM
+    // -------------------
+    // mg = total number of soluble species in the aqueous solution:
+    //      all components + soluble complexes
+    // Note that in HaltaFall the solid components are fictitious soluble
+    // components with "zero" concentration (with noll = true)
+    int mg = cs.Ms - cs.mSol; // = na + nx;
+    int i;
+
+    // ---- Remove asterisk "*" from the name of components
+    for(i=0; i<cs.Na; i++) {
+        if(namn.identC[i].startsWith("*")) {
+            namn.identC[i] = namn.identC[i].substring(1);
+            namn.ident[i]  = namn.identC[i];
+            cs.noll[i] = true;
+        }
+        //if(chem_syst.Chem.isWater(csNamn.identC[i]))
+        //            {water = i;}
+    } // for i=0...Na-1
+
+    // ---- Remove reaction products (soluble or solid) with
+    //      name starting with "*".
+    // Note that the solids corresponding to the components will
+    // not have a name starting with "*". This is already removed when
+    // reading the input file.
+    double w; int j; int js;
+    i = cs.Na;
+    while (i < cs.Ms) {
+        if(namn.ident[i].startsWith("*")) {
+            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
+            cs.Ms = cs.Ms -1;
+            if(i >= cs.Ms) {break;}
+            for(j=i; j<cs.Ms; j++) {
+                js = j - cs.Na;
+                cs.lBeta[js] = cs.lBeta[js+1];
+                //for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
+                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
+                namn.ident[j] = namn.ident[j+1];
+                cs.noll[j] = cs.noll[j+1];
+            }
+        } else {i++;}
+    } //while (true)
+
+    // ---- get electric charge, length of name, etc
+    diag.aquSystem = false;
+    for(i=0; i<cs.Ms; i++) {
+        namn.nameLength[i] = getNameLength(namn.ident[i]);
+        // Species for which the concentration is not to be
+        // included in the Mass-Balance (for ex. the concentration
+        // of "free" electrons is excluded)
+        if(Util.isElectron(namn.ident[i]) || Util.isWater(namn.ident[i])) {
+                cs.noll[i] = true;
+                diag.aquSystem = true;
+        }
+        if(i < mg) { //aqueous species
+            namn.z[i]=0;
+            csC.logf[i] = 0;
+            if(namn.ident[i].length() >4 &&
+                namn.ident[i].toUpperCase().endsWith("(AQ)")) {
+                    diag.aquSystem = true;}
+                else { //does not end with "(aq)"
+                    namn.z[i] = Util.chargeOf(namn.ident[i]);
+                    if(namn.z[i] != 0) {diag.aquSystem = true;}
+                } // ends with "(aq)"?
+        }
+    } // for i=0...Ms-1
+    // The electric charge of two fictive species (Na+ and Cl-)
+    // that are used to ensure electrically neutral aqueous solutions
+    // when calculating the ionic strength and activity coefficients
+    namn.z[mg] = 1;     //electroneutrality "Na+"
+    namn.z[mg+1] =-1;   //electroneutrality "Na+"
+
+    // ---- set Gaseous species to have zero conc
+    //      if it is an aqueous system
+    if(diag.aquSystem) {
+        for(i =0; i < mg; i++) {
+            if(Util.isGas(namn.ident[i])
+                    || Util.isLiquid(namn.ident[i])
+                    || Util.isWater(namn.ident[i])) {cs.noll[i] = true;}
+        } //for i
+    }
+
+    // ---- Remove any reaction product (complex) named "H2O", if found
+    if(diag.aquSystem) {
+      for(i=cs.Na; i<cs.Ms; i++) {
+        if(Util.isWater(namn.ident[i])) {
+            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
+            cs.Ms = cs.Ms -1;
+            if(i >= cs.Ms) {break;}
+            for(j=i; j<cs.Ms; j++) {
+                js = j - cs.Na;
+                cs.lBeta[js] = cs.lBeta[js+1];
+                //for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
+                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
+                namn.ident[j] = namn.ident[j+1];
+                cs.noll[j] = cs.noll[j+1];
+            }
+        } //ident[i]="H2O"
+      } //for i
+    } //if aquSystem
+
+    if(dbg) {cs.printChemSystem(out);}
+
+    // ---- Check that all reactions are charge balanced
+    if(calcActCoeffs) {
+        double zSum;
+        boolean ok = true;
+        for(i=cs.Na; i < mg; i++) {
+            int ix = i - cs.Na;
+            zSum = (double)(-namn.z[i]);
+            for(j=0; j < cs.Na; j++) {
+                zSum = zSum + cs.a[ix][j]*(double)namn.z[j];
+            } //for j
+            if(Math.abs(zSum) > 0.0005) {
+                ok = false;
+                err.format(engl,"--- Warning: %s, z=%3d, charge imbalance:%9.4f",
+                            namn.ident[i],namn.z[i],zSum);
+            }
+        } //for i
+        if(!ok) {
+            if(!showErrMsgBxCancel("There are charge imbalanced reactions in the input file.",1)) {
+                return false;
+            }
+        }
+    } // if calcActCoeffs
+
+    // ---- Check that at least there is one fuid species active
+    boolean foundOne = false;
+    for(i =0; i < mg; i++) {
+        if(!cs.noll[i]) {foundOne = true; break;}
+    } //for i
+    if(!foundOne) {
+        String t = "Error: There are no fluid species active ";
+        if(cs.mSol > 0) {t = t.concat("(Only solids)");}
+        t = t+nl+"This program can not handle such chemical systems.";
+        showErrMsgBx(t, 1);
+        return false;
+    }
+
+    // --------------------
+    //   PLOT INFORMATION
+    // --------------------
+    diag.pInX =0; diag.pInY = 0;
+    //  pInX=0 "normal" X-axis
+    //  pInX=1 pH in X-axis
+    //  pInX=2 pe in X-axis
+    //  pInX=3 Eh in X-axis
+    if(Util.isElectron(namn.identC[diag.compX])) {
+        if(diag.Eh) {diag.pInX = 3;} else {diag.pInX = 2;}
+    } else if(Util.isProton(namn.identC[diag.compX])) {diag.pInX = 1;}
+
+    // ----------------------------------------------
+    //   CHECK THE CONCENTRATION FOR EACH COMPONENT
+    // ----------------------------------------------
+
+    for(int ia =0; ia < cs.Na; ia++) {
+        if(dgrC.hur[ia]==1 && // T
+            ia==diag.compX) {
+                showErrMsgBx("Error: the concentration for component \""+namn.identC[ia]+"\" "+
+                    "must vary, as it belongs to the X-axis!",1);
+                return false;
+                }
+        if(dgrC.hur[ia] >0 && dgrC.hur[ia]<=3) { //T, TV or LTV
+            if(Util.isWater(namn.identC[ia])) {
+                showErrMsgBx("Error: The calculations are made for 1kg H2O"+nl+
+                           "Give log(H2O-activity) instead of a total conc. for water.",1);
+                return false;
+           } // if water
+        } //if T, TV or LTV
+        if(dgrC.hur[ia] ==2 || dgrC.hur[ia] ==3 || dgrC.hur[ia] ==5) { //TV, LTV or LAV
+            if(ia != diag.compX) {
+                String t;
+                if(dgrC.hur[ia] ==5) {t="log(activity)";} else {t="total conc.";}
+                String msg = "Warning: The "+t+" is varied for \""+namn.identC[ia]+"\""+nl+
+                           "   but the component in the X-axis is \""+namn.identC[diag.compX]+"\"";
+                if(!showErrMsgBxCancel(msg,2)) {return false;}
+            }
+        } //if TV, LTV or LAV
+        if((dgrC.hur[ia] ==1 || dgrC.hur[ia] ==4) && //T or LA
+           ia == diag.compX) {
+                String t;
+                if(dgrC.hur[ia] ==4) {t="log(activity)";} else {t="total conc.";}
+                showErrMsgBx("Error: The "+t+" of \""+namn.identC[ia]+"\""+nl+
+                        "can NOT be a fixed value because this component belongs to the X-axis !",1);
+                return false;
+            }
+        if(dgrC.hur[ia] ==1 && // T
+           Math.abs(dgrC.cLow[ia]) >100) {
+                String t = String.format(engl,"Error:  For component: "+namn.identC[ia]+nl+
+                        "   Tot.Conc.=%12.4g mol/kg.  This is not a reasonable value!",dgrC.cLow[ia]);
+                showErrMsgBx(t,1);
+                return false;
+            }
+        if(dgrC.hur[ia] ==4 &&  // LA
+           Util.isProton(namn.identC[ia]) &&
+           (dgrC.cLow[ia] <-14 || dgrC.cLow[ia] >2)) {
+                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f%n"+
+                        "This value could be due to an input error.",(-dgrC.cLow[ia]));
+                if(!showErrMsgBxCancel(msg,2)) {return false;}
+        }
+        if(dgrC.hur[ia] !=1 && dgrC.hur[ia] !=4) {//if TV, LTV or LAV
+            if(dgrC.cLow[ia] == dgrC.cHigh[ia] ||
+                    Math.max(Math.abs(dgrC.cLow[ia]), Math.abs(dgrC.cHigh[ia])) < 1e-15) {
+                showErrMsgBx("Error:  Min-value = Max-value for component \""+namn.identC[ia]+"\"",1);
+                return false;
+            }
+            if(dgrC.cLow[ia] > dgrC.cHigh[ia] && !reversedConcs) {
+                w = dgrC.cLow[ia];
+                dgrC.cLow[ia] = dgrC.cHigh[ia];
+                dgrC.cHigh[ia] = w;
+            }
+            if(!reversedConcs && dgrC.hur[ia] ==5 && // pH/pe/EH varied - LAV
+                   (Util.isProton(namn.identC[ia]) ||
+                    Util.isElectron(namn.identC[ia]))) {
+                w = dgrC.cLow[ia];
+                dgrC.cLow[ia] = dgrC.cHigh[ia];
+                dgrC.cHigh[ia] = w;
+            }
+            if(dgrC.hur[ia] ==5 && // LAV
+                    (Util.isProton(namn.identC[ia])) &&
+                     (dgrC.cLow[ia] <-14.00001 || dgrC.cLow[ia] >2.00001 ||
+                      dgrC.cHigh[ia] <-14.00001 || dgrC.cHigh[ia] >2.00001)) {
+                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f to %7.2f%n"+
+                        "These values could be due to an input error.",(-dgrC.cLow[ia]),(-dgrC.cHigh[ia]));
+                if(!showErrMsgBxCancel(msg,2)) {return false;}
+            }
+            if(dgrC.hur[ia] ==2 && // TV
+                  (Math.max(Math.abs(dgrC.cHigh[ia]),Math.abs(dgrC.cLow[ia]))>100)) {
+                showErrMsgBx("Error:  You give  ABS(TOT.CONC.) > 100  for component: "+namn.identC[ia]+nl+
+                    "This value is too high and perhaps an input error."+nl+
+                    "Set the maximum ABS(TOT.CONC.) value to 100.",1);
+                return false;
+            }
+            if(dgrC.hur[ia] ==3) { // LTV
+                if((Math.min(dgrC.cLow[ia], dgrC.cHigh[ia]) < -7.0001) &&
+                      (Util.isProton(namn.identC[ia]))) {
+                    String msg = "Warning: You give a  LOG (TOT.CONC.) < -7  for component: "+namn.identC[ia]+nl+
+                        "This value is rather low and could be due to an input error."+nl+
+                        "Maybe you meant to set  LOG (ACTIVITY) < -7 ??";
+                    if(!showErrMsgBxCancel(msg,2)) {return false;}
+                }
+                if(Math.max(dgrC.cLow[ia], dgrC.cHigh[ia]) > 2.0001) {
+                    showErrMsgBx("Error: You give a  LOG (TOT.CONC.) > 2  for component: "+namn.identC[ia]+nl+
+                        "This value is too high and it could be due to an input error."+nl+
+                        "Please set the LOG (TOT.CONC.) value to <=2.",1);
+                    return false;
+                }
+            } //if LTV
+        } //if TV, LTV or LAV
+
+    } // for ia = 0... Na-1
+
+    // ----------------
+    //   OTHER CHECKS
+    // ----------------
+
+    // ---- See which components have positive or negative (or both)
+    //      values for the stoichiometric coefficients (a[ix][ia]-values)
+    pos = new boolean[cs.Na];
+    neg = new boolean[cs.Na];
+    for(i =0; i < cs.Na; i++) {
+        pos[i] = false; neg[i] = false;
+        if(!cs.noll[i]) { // if not "e-" and not solid component
+                    pos[i] = true;}
+        for(j = cs.Na; j < cs.Ms; j++) {
+            if(!cs.noll[j]) {
+                if(cs.a[j-cs.Na][i] >0) {pos[i] = true;}
+                if(cs.a[j-cs.Na][i] <0) {neg[i] = true;}
+            } // !noll
+        } //for j
+    } //for i
+    // check POS and NEG with the Tot.Conc. given in the input
+    for(i =0; i < cs.Na; i++) {
+        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
+        if((!pos[i] && !neg[i]) ) { // || cs.nx ==0
+            String msg = "Error: for component \""+namn.identC[i]+"\" give Log(Activity)";
+            if(dgrC.hur[i] !=1) { // not "T", that is: "TV" or "LTV"
+                msg = msg+" to vary";}
+            showErrMsgBx(msg,1);
+            return false;
+        } //if Nx =0 or (!pos[] & !neg[])
+        if((pos[i] && neg[i]) ||
+           (pos[i] && (dgrC.hur[i] ==3 ||  //LTV
+                (dgrC.cLow[i]>0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]>0)))) ||
+           (neg[i] && (dgrC.hur[i] !=3 && //not LTV
+                (dgrC.cLow[i]<0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]<0))))) {
+            continue;
+        }
+        if(pos[i] || neg[i]) {
+            String msg = "Error: Component \"%s\" may not have %s Tot.Conc. values.%s"+
+                    "Give either  Tot.Conc. %s=0.0  or  Log(Activity)%s";
+            if(neg[i] && (dgrC.hur[i] ==3 || // LTV
+                    dgrC.cLow[i]>0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]>0))) {
+                showErrMsgBx(String.format(msg, namn.identC[i], "positive", nl,"<",nl),1);
+                return false;}
+            if(pos[i] && (dgrC.hur[i] !=3 &&  //not LTV
+                    (dgrC.cLow[i]<0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]<0)))) {
+                showErrMsgBx(String.format(msg, namn.identC[i], "negative", nl,">",nl),1);
+                return false;
+            }
+        } //if pos or neg
+    } //for i
+
+    // OK so far. Update "nx" (=nbr of soluble complexes)
+    cs.nx = mg - cs.Na;
+    return true;
+
+  } // checkInput()
+
+//<editor-fold defaultstate="collapsed" desc="getNameLength(species)">
+    private static int getNameLength(String species) {
+        int nameL = Math.max(1, Util.rTrim(species).length());
+        if(nameL < 3) {return nameL;}
+        // Correct name length if there is a space between name and charge
+        // "H +",  "S 2-",  "Q 23+"
+        int sign; int ik;
+        sign =-1;
+        for(ik =nameL-1; ik >= 2; ik--) {
+            char c = species.charAt(ik);
+            if(c == '+' || c == '-' ||
+               // unicode en dash or unicode minus
+               c =='\u2013' || c =='\u2212') {sign = ik; break;}
+            } //for ik
+        if(sign <2) {return nameL;}
+        if(sign < nameL-1 &&
+                (Character.isLetterOrDigit(species.charAt(sign+1)))) {return nameL;}
+        if(species.charAt(sign-1) == ' ')
+                        {nameL = nameL-1; return nameL;}
+        if(nameL >=4) {
+                if(species.charAt(sign-1) >= '2' && species.charAt(sign-1) <= '9' &&
+                   species.charAt(sign-2) == ' ')
+                        {nameL = nameL-1; return nameL;}
+        } //if nameL >=4
+        if(nameL >=5) {
+                if((species.charAt(sign-1) >= '0' && species.charAt(sign-1) <= '9') &&
+                   (species.charAt(sign-2) >= '1' && species.charAt(sign-2) <= '9') &&
+                   species.charAt(sign-3) == ' ')
+                        {nameL = nameL-1;}
+            } //if nameL >=5
+        return nameL;
+    } // getNameLength(species)
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="prepare">
+/** Prepares the calculations after the data file has been read:
+ * sets the temperature, the ionic strength and the model for activity
+ * coefficients, calculates the concentrations at each calculation step,
+ * opens the table file (if <code>tableOutput</code> is true), and
+ * initializes the activity coefficient calculations.
+ * @return false if an error occurs */
+public boolean prepare() {
+    if(dbg) {out.println("--- prepare()");}
+    if(ch == null) {err.println("? Programming error in \"SedDiagram.prepare\": ch=null."); return false;}
+    finishedCalculations = false;
+    haltaError = false;
+    nbrTooLargeConcs = 0; nbrHaltaErrors = 0; nbrHaltaUncertain = 0;
+    failuresMsg.setLength(0);
+    diag.fractionThreshold = threshold;
+    //---- Check if "EH" is needed -----------
+    if(diag.Eh &&
+            diag.pInX != 3 && diag.plotType != 5) { //plotType=5: pe in Y-axis
+        boolean peGiven = false;
+        for(int i =0; i < cs.Na; i++) {
+            if(Util.isElectron(namn.identC[i]) &&
+                csC.kh[i] ==2) { // kh=2  logA given
+                    peGiven = true; break;}
+        } //for i
+        if(!peGiven) {diag.Eh = false;}
+    }
+    //--- temperature ------------------------
+    diag.temperature = temperature;
+    if(Double.isNaN(diag.temperature) && diag.Eh) {
+        String msg = "\"Error: Need to plot Eh values but no temperature is given.";
+        showErrMsgBx(msg,1);
+        finishedCalculations = true;
+        return false;
+    }
+    if(diag.Eh) {peEh = (ln10*8.3144126d*(diag.temperature+273.15d)/96484.56d);} else {peEh = Double.NaN;}
+    // decide if the temperature should be displayed in the diagram
+    if(!diag.Eh && !calcActCoeffs) {
+        if(dbg) {out.println(" (Note: temperature not needed in the diagram)");}
+    }
+    final int nSteps1 = nSteps + 1;
+    if(dbg) {out.println(" "+nSteps1+" caculation points"+nl+
+            "ionic strength = "+ionicStrength+nl+
+            "temperature = "+(float)diag.temperature+nl+
+            "max relative mass-balance tolerance = "+(float)tolHalta);}
+
+    // ---------------------------------------
+    // get an instance of Plot
+    plot = new Plot(this, err, out);
+    //---- set up some arrays
+    plot.preparePlot(ch);
+    // ---------------------------------------
+
+    String msg;
+    // ionic strength
+    diag.ionicStrength = ionicStrength;
+    if(!diag.aquSystem && diag.ionicStrength != 0) {
+        msg = "Warning: This does not appear to be an aqueous system,"+nl+
+                "and yet you give a value for the ionic strength?";
+        showErrMsgBx(msg,2);
+    }
+
+    // model to calculate ion activity coefficients
+    if(calcActCoeffs) {
+        diag.activityCoeffsModel = Math.min(2, Math.max(0, actCoeffsModel));
+        csC.actCoefCalc = true;
+    } else {
+        diag.activityCoeffsModel = -1;
+        csC.actCoefCalc = false;
+    }
+    // height scale for texts in the diagram
+    tHeight = Math.min(10.d,Math.max(tHeight, 0.3));
+
+    // ---- table output?
+    table = null;
+    if(tableOutput && dataFile != null) {
+        table = new Table(this, err, out);
+        String txt = dataFile.getAbsolutePath();
+        if(tblExtension == null) {tblExtension = "";}
+        if(tblExtension.startsWith(".")) {tblExtension = tblExtension.substring(1);}
+        String tableFileN = txt.substring(0,txt.length()-4).concat(".").concat(tblExtension);
+        java.io.File outputTableFile = new java.io.File(tableFileN);
+        if(!table.tableHeader(ch, outputTableFile)) {table = null;}
+    }
+
+    calculationStart = System.nanoTime();
+
+    int j;
+    // ---- Store given conc. ranges in array bt[Na][nSteps+1]
+    bt = new double[cs.Na][nSteps1];
+    for(j =0; j < cs.Na; j++) {
+        if(dgrC.hur[j] ==1 || dgrC.hur[j] ==4) { //T or LA
+            for(int n =0; n < bt[0].length; n++) {bt[j][n] = dgrC.cLow[j];}
+        } //if T or LA
+        else {  //if TV, LTV or LAV
+            double stepX =(dgrC.cHigh[j] - dgrC.cLow[j]) / nSteps;
+            bt[j][0] = dgrC.cLow[j];
+            for(int n =1; n < (bt[0].length-1); n++) {bt[j][n] = bt[j][n-1] + stepX;}
+            bt[j][nSteps] = dgrC.cHigh[j]; // to avoid rounding errors
+            if(dgrC.hur[j] ==3) { // LTV
+                for(int n =0; n < bt[0].length; n++)
+                    {bt[j][n] = Math.exp(ln10*bt[j][n]);}
+            } //if LTV
+        }  //if TV, LTV or LAV
+    } //for j
+
+    // check POS and NEG with the Tot.Conc. given in the input
+    for(j =0; j < cs.Na; j++) {
+        if(csC.kh[j] == 2) {continue;} //only it Tot.conc. is given
+        if(!(pos[j] && neg[j]) && (pos[j] || neg[j])) {
+            if(dgrC.hur[j] !=3 &&  //not LTV
+               dgrC.cLow[j]==0 && (Double.isNaN(dgrC.cHigh[j]) || dgrC.cHigh[j]==0)) {
+                    //it is only POS or NEG and Tot.Conc =0
+                    for(int n =0; n < bt[0].length; n++) {bt[j][n] = -9999.;}
+                    csC.kh[j] =2; //kh=2 means logA given
+                    if(dbg) {out.println("Can not calculate mass-balance for for component \""+namn.identC[j]+"\""+nl+
+                        "   its log(activity) will be set to -9999.");}
+            }
+        }
+    } //for j
+
+    msg = "Starting the calculations...";
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+
+    // ---- Make an instance of Factor
+    String userHome = System.getProperty("user.home");
+    factor = new Factor(ch, pathApp, userHome, pathDef, out);
+    out.flush();
+    // ---- print information on the model used for activity coefficients
+    try {factor.factorPrint(dbg);}
+    catch (Exception ex) {
+        showErrMsgBx(ex.getMessage(),1);
+        factor = null;
+    }
+    if(factor == null) {
+        finishedCalculations = true;
+        return false;
+    }
+    // ---- Initialize variables
+    csC.dbg = dbgHalta;
+    csC.cont = false;
+    csC.tol = tolHalta;
+    for(j =0; j < cs.Na; j++) {
+        if(csC.kh[j] == 1) {
+            csC.tot[j]=bt[j][0];
+            csC.logA[j]=-10;
+            if(csC.tot[j]>0) {csC.logA[j] = Math.log10(csC.tot[j]) -3;}
+        }
+        else {csC.logA[j]=bt[j][0];}
+    } // for j
+    return true;
+} //prepare()
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="calculate">
+/** Calculates the equilibrium composition at each point along the X-axis.
+ * Method <code>prepare</code> must be called first.
+ * The calculations may be stopped from another thread with <code>cancel()</code>.
+ * @return true if no error occurs, false otherwise
+ * @throws Exception */
+public boolean calculate() throws Exception {
+    if(dbg) {out.println("--- calculate()");}
+    finishedCalculations = false;
+    if(nThreads > 1 && !dbg) {return doParallelSweep();}
+    //--- do the HaltaFall calculations
+    // create an instance of class HaltaFall
+    h = null;
+    try {h = new HaltaFall(cs,factor, out);}
+    catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
+        showErrMsgBx(ex);
+        haltaError = true;
+        return false;
+    }
+
+    int nStepX1;
+    double tolHalta0 = csC.tol;
+    final String f = "Calculation failed in \"HaltaFall.haltaCalc\" at point=%d, x=%7.5f"+nl+"%s";
+    nStepX = -1;
+    do_loopX:
+    do {  // -------------------------------------- Loop for X-axis
+        nStepX++;
+        nStepX1 = nStepX+1;
+        progress(nStepX);
+        //if needed for debugging: sleep some milliseconds (wait) at each calculation point
+        //try {Thread.sleep(500);} catch(Exception ex) {}
+
+        // print debug output from HaltaFall only for the 1st point (first point = zero)
+        if(nStepX > 0) {csC.dbg = Chem.DBGHALTA_DEF;}
+        if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+            out.println("Starting calculation point: "+nStepX1+" (of "+(nSteps+1)+"), x="+(float)bt[diag.compX][nStepX]);
+        }
+        // --- input data for this calculation point
+        for(int j =0; j < cs.Na; j++) {
+            if(dgrC.hur[j] >1 && dgrC.hur[j] !=4) { //TV, LTV or LAV
+                if(csC.kh[j] == 1) {csC.tot[j]=bt[j][nStepX];}
+                else {csC.logA[j]=bt[j][nStepX];}
+            } //if TV, LTV or LAV
+        } // for j
+
+        // --- HaltaFall: do the calculations
+        //     calculate the equilibrium composition of the system
+        try {
+            csC.tol = tolHalta0;
+            h.haltaCalc();
+            if(csC.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
+                do {
+                    csC.tol = csC.tol * 0.1; // decrease tolerance and try again
+                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+                        out.println("Too many iterations when solving the mass balance equations"+nl+
+                                "  decreasing tolerance to: "+(float)csC.tol+" and trying again.");
+                    }
+                    h.haltaCalc();
+                } while (csC.isErrFlagsSet(2) && csC.tol >= 1e-9);
+                csC.tol = tolHalta0;
+                if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+                    out.println("Restoring tolerance to: "+(float)tolHalta0+" for next calculations.");
+                }
+            }
+            if(csC.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
+                if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+                    out.println("Failed to find a satisfactory combination of solids. Trying again...");
+                }
+                csC.cont = false;      // try again
+                h.haltaCalc();
+            }
+        }
+        catch (Chem.ChemicalParameterException ex) {
+            String ms = "Error in \"HaltaFall.haltaCalc\", "+ex.getMessage()+nl+
+                    "   at point: "+nStepX1+"  x="+bt[diag.compX][nStepX]+nl+
+                    Util.stack2string(ex);
+            showErrMsgBx(ms, 1);
+            haltaError = true;
+            break; // do_loopX;
+        }
+        // ---
+        if(finishedCalculations) {break;} // do_loopX  // user request exit?
+
+        out.flush();
+
+        if(csC.isErrFlagsSet(5)) {nbrTooLargeConcs++;}
+        else if(csC.isErrFlagsSet(1)) {nbrHaltaUncertain++;}
+        if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
+                            || csC.isErrFlagsSet(6)) {
+            nbrHaltaErrors++;
+            if(failuresMsg.length() >0) {failuresMsg.append(nl);}
+            failuresMsg.append(String.format(engl,f,nStepX1,(float)bt[diag.compX][nStepX],csC.errFlagsGetMessages()));
+        }
+
+        if(dbg) {
+            h.printConcs();
+            factor.printActivityCoeffs(out);
+        }
+
+        if(finishedCalculations) {break;} // do_loopX  // user request exit?
+
+        // store the results for later plotting (and table output)
+        plot.storePlotData(nStepX, ch);
+    } while (nStepX < nSteps); // -------------------------- Loop for X-axis
+    if(!haltaError) {progress(nSteps+1);}
+    return !haltaError;
+} //calculate()
+
+
+  //<editor-fold defaultstate="collapsed" desc="doParallelSweep">
+  /** Performs the calculations on a pool of <code>nThreads</code> threads.
+   * The X-axis is divided in <code>nThreads</code> contiguous segments.
+   * Each segment is calculated by a task having its own copies of
+   * <code>Chem</code>, <code>Factor</code> and <code>HaltaFall</code>, and,
+   * as in the serial calculation, each point in a segment starts from the
+   * equilibrium composition found at the previous point.
+   * The results are stored in the arrays of <code>plot</code>, each
+   * task writing only the points of its own segment.
+   * @return true if no error occurs, false otherwise
+   * @throws Exception */
+  private boolean doParallelSweep() throws Exception {
+    final int nPts = nSteps+1;
+    final int nSegm = Math.min(nPts, nThreads);
+    /** the value of errFlags at each calculated point */
+    final int[] flags = new int[nPts];
+    /** an exception thrown by HaltaFall in a segment, and the point */
+    final Chem.ChemicalParameterException[] segmErr = new Chem.ChemicalParameterException[nSegm];
+    final int[] segmErrPoint = new int[nSegm];
+    final java.util.concurrent.atomic.AtomicInteger nbrPointsDone =
+            new java.util.concurrent.atomic.AtomicInteger(0);
+    if(dbg) {out.println("Calculating "+nPts+" points using "+nThreads+" threads.");}
+    java.util.List<java.util.concurrent.Callable<Boolean>> segments =
+            new java.util.ArrayList<java.util.concurrent.Callable<Boolean>>(nSegm);
+    for(int k=0; k < nSegm; k++) {
+        final int segm = k;
+        final int first = (int)(((long)k*nPts)/nSegm);
+        final int last = (int)(((long)(k+1)*nPts)/nSegm);
+        segments.add(new java.util.concurrent.Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                return calcSegment(segm, first, last, flags, segmErr, segmErrPoint, nbrPointsDone);
+            }});
+    } //for k
+    java.util.concurrent.ExecutorService pool =
+            java.util.concurrent.Executors.newFixedThreadPool(nThreads);
+    try {
+        java.util.List<java.util.concurrent.Future<Boolean>> results = pool.invokeAll(segments);
+        for(java.util.concurrent.Future<Boolean> r : results) {
+            try {r.get();}
+            catch (java.util.concurrent.ExecutionException ex) {
+                if(ex.getCause() instanceof Exception) {throw (Exception)ex.getCause();}
+                throw ex;
+            }
+        }
+    } finally {pool.shutdown();}
+
+    // ---- an error in HaltaFall: report the first one
+    for(int k=0; k < nSegm; k++) {
+        if(segmErr[k] == null) {continue;}
+        int n = segmErrPoint[k];
+        String ms = "Error in \"HaltaFall.haltaCalc\", "+segmErr[k].getMessage()+nl+
+                "   at point: "+(n+1)+"  x="+bt[diag.compX][n]+nl+
+                Util.stack2string(segmErr[k]);
+        showErrMsgBx(ms, 1);
+        haltaError = true;
+        return false;
+    }
+    if(finishedCalculations) {return true;} // user request exit?
+
+    // ---- count the failures, in the order of the X-axis
+    final String f = "Calculation failed in \"HaltaFall.haltaCalc\" at point=%d, x=%7.5f"+nl+"%s";
+    int errFlags0 = csC.errFlags;
+    for(int n=0; n < nPts; n++) {
+        csC.errFlags = flags[n];
+        if(csC.isErrFlagsSet(5)) {nbrTooLargeConcs++;}
+        else if(csC.isErrFlagsSet(1)) {nbrHaltaUncertain++;}
+        if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
+                            || csC.isErrFlagsSet(6)) {
+            nbrHaltaErrors++;
+            if(failuresMsg.length() >0) {failuresMsg.append(nl);}
+            failuresMsg.append(String.format(engl,f,(n+1),(float)bt[diag.compX][n],csC.errFlagsGetMessages()));
+        }
+    } //for n
+    csC.errFlags = errFlags0;
+    // ---- the limits of the Y-axis depend on consecutive points
+    if(diag.plotType ==8) {
+        for(int n=1; n < nPts; n++) {plot.yLimitsHaffinity(n, ch);}
+    }
+    return true;
+  } //doParallelSweep()
+
+  /** Calculates the equilibrium composition at the points of a segment
+   * of the X-axis using new copies of <code>Chem</code>,
+   * <code>Factor</code>, and a <code>HaltaFall</code> object taken from
+   * <code>HaltaFallPool</code>.
+   * This method may be run concurrently by several threads.
+   * @param segm the segment number
+   * @param first the first point of the segment
+   * @param last the point after the last point of the segment
+   * @param flags where the value of errFlags at each point is stored
+   * @param segmErr where an exception thrown by HaltaFall is stored
+   * @param segmErrPoint where the point at which the exception was thrown is stored
+   * @param nbrPointsDone counter of calculated points, used to report progress
+   * @return false if the calculations were interrupted, either by the user
+   * or by an exception in HaltaFall; true otherwise */
+  private boolean calcSegment(final int segm, final int first, final int last,
+          final int[] flags,
+          final Chem.ChemicalParameterException[] segmErr, final int[] segmErrPoint,
+          final java.util.concurrent.atomic.AtomicInteger nbrPointsDone) {
+    Chem chT;
+    HaltaFall hT;
+    try {
+        chT = ch.copy();
+        // print debug output from HaltaFall only for the 1st point
+        if(first > 0) {chT.chemSystem.chemConcs.dbg = Chem.DBGHALTA_DEF;}
+        hT = HaltaFallPool.acquire(chT.chemSystem, factor.copy(chT), out);
+    } catch (Chem.ChemicalParameterException ex) {
+        segmErr[segm] = ex; segmErrPoint[segm] = first;
+        return false;
+    }
+    Chem.ChemSystem.ChemConcs c = chT.chemSystem.chemConcs;
+    double tolHalta0 = c.tol;
+    c.cont = false;
+    for(int n = first; n < last; n++) {
+        if(finishedCalculations) {HaltaFallPool.release(hT); return false;} //user requests exit?
+        if(n > first) {c.dbg = Chem.DBGHALTA_DEF;}
+        // --- input data for this calculation point
+        for(int j =0; j < cs.Na; j++) {
+            if(dgrC.hur[j] >1 && dgrC.hur[j] !=4) { //TV, LTV or LAV
+                if(c.kh[j] == 1) {c.tot[j]=bt[j][n];}
+                else {c.logA[j]=bt[j][n];}
+            } //if TV, LTV or LAV
+        } // for j
+        // --- HaltaFall: do the calculations
+        try {
+            c.tol = tolHalta0;
+            hT.haltaCalc();
+            if(c.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
+                do {
+                    c.tol = c.tol * 0.1; // decrease tolerance and try again
+                    hT.haltaCalc();
+                } while (c.isErrFlagsSet(2) && c.tol >= 1e-9);
+                c.tol = tolHalta0;
+            }
+            if(c.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
+                c.cont = false;      // try again
+                hT.haltaCalc();
+            }
+        } catch (Chem.ChemicalParameterException ex) {
+            flags[n] = c.errFlags;
+            segmErr[segm] = ex; segmErrPoint[segm] = n;
+            HaltaFallPool.release(hT);
+            return false;
+        }
+        flags[n] = c.errFlags;
+        // store the results for later plotting (and table output)
+        plot.storePointData(n, chT);
+        progress(nbrPointsDone.incrementAndGet());
+    } //for n
+    HaltaFallPool.release(hT);
+    return true;
+  } //calcSegment
+  //</editor-fold>
+
+/** Stops the calculations. This may be called from any thread. */
+public void cancel() {
+    finishedCalculations = true;
+    HaltaFall h0 = h;
+    if(h0 != null) {h0.haltaCancel();}
+} //cancel()
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="saveDiagram">
+/** Reports any problems found in the calculations, and saves the diagram
+ * in a plot file (and the results in the table file if requested).
+ * @param pltFile the output plot file
+ * @return false if the calculations were not successful, or if they were
+ * stopped, true otherwise */
+public boolean saveDiagram(java.io.File pltFile) {
+    if(haltaError || finishedCalculations) {return false;}
+    finishedCalculations = true;
+    calculationTime = (System.nanoTime() - calculationStart)
+            /1000000; //convert nano seconds to milli seconds
+    String msg = "--- Calculated "+(nSteps+1)+" points, time="+millisToShortDHMS(calculationTime);
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+    if(nbrTooLargeConcs > 0) {
+        int percent = nbrTooLargeConcs*100 / (nSteps+1);
+        if(percent > 0) {
+            msg = percent+" % of the calculated points had some"+nl+
+                  "concentrations > "+(int)Factor.MAX_CONC+" (molal); impossible in reality."+nl+nl;
+            if(calcActCoeffs) {msg = msg + "The activity coefficients are then WRONG"+nl+
+                  "and the results unrealistic.";}
+            else {msg = msg + "These results are unrealistic.";}
+            showErrMsgBx(msg, 1);
+        }
+    }
+    if(nbrHaltaUncertain >1) {
+        out.println(LINE);
+        out.println(String.format("%d",nbrHaltaUncertain).trim()+" uncertain point(s)");
+        out.println(LINE);
+    }
+    if(failuresMsg.length() >0) {
+        out.println(LINE);
+        out.println(failuresMsg);
+        out.println(LINE);
+    }
+    if(nbrHaltaErrors >0) {
+        msg = String.format("%d",nbrHaltaErrors).trim()+" calculation failure(s)";
+        showErrMsgBx(msg, 1);
+    }
+
+    // a previous plot file might still be written in the background
+    waitForPlotFile();
+    out.println("Saving plot file \""+pltFile.getAbsolutePath()+"\"...");
+    GraphLib g = plot.drawPlot(pltFile, ch);
+    synchronized(this) {plotFileWriter = g; plotFileSaved = pltFile;}
+    if(!plotFileInBackground && !waitForPlotFile()) {return false;}
+    if(table != null) {table.tableBody(ch, plot); table = null;}
+    return true;
+} //saveDiagram
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="waitForPlotFile">
+/** Waits until the plot file has been written, if it is written in the
+ * background (see <code>plotFileInBackground</code>), and reports any error.
+ * @return false if the plot file could not be written, true otherwise */
+public synchronized boolean waitForPlotFile() {
+    GraphLib g = plotFileWriter;
+    java.io.File f = plotFileSaved;
+    plotFileWriter = null; plotFileSaved = null;
+    if(g == null) {return true;}
+    String msg = g.waitForPlotFile();
+    if(msg != null) {showErrMsgBx(msg, 1); return false;}
+    if(f.getName().length()>0) {
+        String msg3 = "Saved plot file: \""+f.getAbsolutePath()+"\"";
+        out.println(msg3);
+        if(consoleOutput) {System.out.println(msg3);}
+    }
+    return true;
+} //waitForPlotFile
+//</editor-fold>
+
+
+//<editor-fold defaultstate="collapsed" desc="millisToShortDHMS">
+/** converts time (in milliseconds) to human-readable format "&lt;dd&gt;hh:mm:ss"
+ * @param duration (in milliseconds)
+ * @return  */
+public static String millisToShortDHMS(long duration) {
+  //adapted from http://www.rgagnon.com
+  String res;
+  int millis = (int)(duration % 1000);
+  duration /= 1000;
+  int seconds = (int) (duration % 60);
+  duration /= 60;
+  int minutes = (int) (duration % 60);
+  duration /= 60;
+  int hours = (int) (duration % 24);
+  int days = (int) (duration / 24);
+  if (days == 0) {
+    res = String.format("%02d:%02d:%02d.%03d", hours, minutes, seconds,millis);
+} else {
+    res = String.format("%dd%02d:%02d:%02d", days, hours, minutes, seconds);
+}
+  return res;
+}
+//</editor-fold>
+
+/** Called during the calculations each time a point has been calculated.
+ * This implementation does nothing.
+ * @param nbrPointsDone the number of points calculated so far (the
+ * total number of points is <code>nSteps+1</code>) */
+protected void progress(int nbrPointsDone) {}
+
+//<editor-fold defaultstate="collapsed" desc="showMsg / showErrMsgBx">
+/** Outputs a message either to <code>out</code> (if type is 1, 2 or 3) or
+ * to <code>err</code> otherwise (type=0).
+ * @param msg the message
+ * @param type =0 error (outputs message to <code>err</code>); =1 error; =2 warning; =3 information */
+protected void showMsg(String msg, int type) {
+    if(msg == null || msg.trim().length() <=0) {return;}
+    final String flag;
+    if(type == 2) {flag = "Warning";} else if(type == 3) {flag = "Message";} else {flag = "Error";}
+    if(type == 1 || type == 2 || type == 3) {
+        out.println("- - - - "+flag+":"+nl+msg+nl+"- - - -");
+        out.flush();
+    } else {
+        err.println("- - - - "+flag+":"+nl+msg+nl+"- - - -");
+        err.flush();
+    }
+}
+/** Outputs the exception message and the stack trace to <code>err</code>
+ * @param ex the exception */
+protected void showMsg(Exception ex) {
+    if(ex == null) {return;}
+    err.println("- - - - Error:"+nl+ex.getMessage()+nl+nl+Util.stack2string(ex)+nl+"- - - -");
+    err.flush();
+}
+/** Outputs a message through a call to <code>showMsg(msg,type)</code>.
+ * In the program window the message is also shown in a message box.
+ * @param msg the message
+ * @param type =1 exception error; =2 warning; =3 information */
+protected void showErrMsgBx(String msg, int type) {showMsg(msg, type);}
+/** Outputs the exception message and the stack trace,
+ * through a call to <code>showMsg(ex)</code>.
+ * @param ex the exception */
+protected void showErrMsgBx(Exception ex) {showMsg(ex);}
+/** Outputs a message through a call to <code>showMsg(msg,type)</code>.
+ * In the program window the message is also shown in an [OK, Cancel] message box.
+ * @param msg the message
+ * @param type =1 exception error; =2 warning; =3 information
+ * @return <code>false</code> if the calculations should not proceed;
+ * this implementation returns always <code>true</code> */
+protected boolean showErrMsgBxCancel(String msg, int type) {showMsg(msg, type); return true;}
+//</editor-fold>
+
+}
@@ -24,7 +24,7 @@ public class Table {
 private java.io.File tf = null;
 private java.io.PrintWriter tPW = null;
 private final static java.util.Locale engl = java.util.Locale.ENGLISH;
-private SED sed = null;
+private SedDiagram sed = null;
 /** Where messages will be printed. It may be <code>System.out</code>.
  * If null, <code>System.out</code> is used. */
 private final java.io.PrintStream out;
@@ -37,12 +37,12 @@ private String commentLineEnd = "\"";
 private static final String SLASH = java.io.File.separator;
 
 /** Constructs an object of this class
- * @param sed0 the program SED frame
+ * @param sed0 the diagram being made
  * @param err0 Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used.
  * @param out0 Where messages will be printed. It may be <code>System.out</code>.
  * If null, <code>System.out</code> is used. */
-public Table(SED sed0, java.io.PrintStream err0, java.io.PrintStream out0) {
+public Table(SedDiagram sed0, java.io.PrintStream err0, java.io.PrintStream out0) {
     this.sed = sed0;
     if(out0 != null) {this.out = out0;} else {this.out = System.out;}
     commentLineStart = sed.tblCommentStart;
@@ -116,7 +116,7 @@ boolean tableHeader(Chem ch, java.io.File tableFile) {
     String t;
     if(diag.ionicStrength < 0)  {t = "calculated at each point";}
     else {t = String.format(engl,"%6.2f",diag.ionicStrength);}
-    if(sed.calcActCoeffs) {tPW.format(engl,"%sActivity coeffs. calculated at t =%5.1f degrees and I = %s M%s%n", commentLineStart, sed.temperature_InCommandLine,t,commentLineEnd);}
+    if(sed.calcActCoeffs) {tPW.format(engl,"%sActivity coeffs. calculated at t =%5.1f degrees and I = %s M%s%n", commentLineStart, diag.temperature,t,commentLineEnd);}
     t = "(program error)";
     if(diag.plotType ==1) {t="fractions";}
     else if(diag.plotType ==2) {t="solubilities";}
@@ -133,7 +133,10 @@ boolean tableHeader(Chem ch, java.io.File tableFile) {
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="tableBody()">
-void tableBody(Chem ch) {
+/** Write the results of the calculations into the table file
+ * @param ch where data on the chemical system are stored
+ * @param plot where the calculated concentrations are stored */
+void tableBody(Chem ch, Plot plot) {
     if(sed.dbg) {out.println("--- tableBody");}
     Chem.ChemSystem cs = ch.chemSystem;
     Chem.ChemSystem.NamesEtc namn = cs.namn;
@@ -145,7 +148,7 @@ void tableBody(Chem ch) {
     if(sed.tblFieldSeparator != null && sed.tblFieldSeparator.length() >0)
         {fs = sed.tblFieldSeparator;}
     else {fs = " ";}
-    tPW.format("%sOutput data (there are %d lines and (1+%d) columns)%s%n", commentLineStart, (sed.nSteps+1),Plot.nbrSpeciesInPlot,commentLineEnd);
+    tPW.format("%sOutput data (there are %d lines and (1+%d) columns)%s%n", commentLineStart, (sed.nSteps+1),plot.nbrSpeciesInPlot,commentLineEnd);
     tPW.println(commentLineStart+"(the first column contains the X-axis values)"+commentLineEnd);
     //--- column captions:
     if(diag.plotType !=2) { //not solubilities
@@ -153,15 +156,15 @@ void tableBody(Chem ch) {
             tPW.println("\""+namn.identC[diag.compX]+"\""+fs+"\"d(H-h)/d(pH)\""+fs);
         } else {
             tPW.print("\""+namn.identC[diag.compX]+"\""+fs);
-            for(int i =0; i < Plot.nbrSpeciesInPlot; i++) {
-                tPW.print("\""+namn.ident[Plot.speciesInPlot[i]]+"\""+fs);
+            for(int i =0; i < plot.nbrSpeciesInPlot; i++) {
+                tPW.print("\""+namn.ident[plot.speciesInPlot[i]]+"\""+fs);
             }
             tPW.println();
         }
     } else { // solubilities
         tPW.print("\""+namn.identC[diag.compX]+"\""+fs);
-        for(int i =0; i < Plot.nbrSpeciesInPlot; i++) {
-            tPW.print("\""+namn.identC[Plot.speciesInPlot[i]]+"\""+fs);
+        for(int i =0; i < plot.nbrSpeciesInPlot; i++) {
+            tPW.print("\""+namn.identC[plot.speciesInPlot[i]]+"\""+fs);
         }
         tPW.println();
     }
@@ -183,81 +186,81 @@ void tableBody(Chem ch) {
         if(dgrC.hur[diag.compX] ==3) {xValue = Math.log10(xValue);} //"LTV"
         else if(diag.pInX !=0) {xValue = -xValue;}
         if(diag.plotType ==1) { //fractions
-            for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-                int i = Plot.speciesInPlot[k];
+            for(int k=0; k < plot.nbrSpeciesInPlot; k++) {
+                int i = plot.speciesInPlot[k];
                 if(i >= cs.Ms) {continue;}
-                if(Math.abs(Plot.tot0[diag.compY][np])>1.e-30) {
+                if(Math.abs(plot.tot0[diag.compY][np])>1.e-30) {
                     double o;
                     if(i < cs.Na) {if(i==diag.compY) {o=1;} else {o=0;}}
                     else {o =cs.a[i-cs.Na][diag.compY];}
-                    y[i]=o*Plot.c0[i][np]/Plot.tot0[diag.compY][np];}
+                    y[i]=o*plot.c0[i][np]/plot.tot0[diag.compY][np];}
                 else {y[i] = 0;}
                 if(y[i] >1d && y[i] < 1.01d) {y[i] = 1;}
 
             } //for i
         } //plotType =1 (fractions)
         else if(diag.plotType ==2) { //solubilities
-            for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-                int i = Plot.speciesInPlot[k];
+            for(int k=0; k < plot.nbrSpeciesInPlot; k++) {
+                int i = plot.speciesInPlot[k];
                 if(i >= cs.Ms) {continue;}
-                if(Plot.tot0[i][np]>1.e-35) {y[i] = Math.log10(Plot.tot0[i][np]);}
+                if(plot.tot0[i][np]>1.e-35) {y[i] = Math.log10(plot.tot0[i][np]);}
                 else {y[i] = -50;}
             } //for i
         } //plotType =2 (solubilities)
         else if(diag.plotType ==3) { //log(concs.)
-            for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-                int i = Plot.speciesInPlot[k];
+            for(int k=0; k < plot.nbrSpeciesInPlot; k++) {
+                int i = plot.speciesInPlot[k];
                 if(i >= cs.Ms) {continue;}
-                if(Plot.c0[i][np]>1.e-35) {y[i] = Math.log10(Plot.c0[i][np]);}
+                if(plot.c0[i][np]>1.e-35) {y[i] = Math.log10(plot.c0[i][np]);}
                 else {y[i] = -99;}
             } //for i
         } //plotType =3 (log(concs.))
         else if(diag.plotType ==4) { //log(ai/ar)
-            for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-                int i = Plot.speciesInPlot[k];
+            for(int k=0; k < plot.nbrSpeciesInPlot; k++) {
+                int i = plot.speciesInPlot[k];
                 if(i >= cs.Ms) {continue;}
-                y[i] = Plot.c0[i][np] - Plot.c0[diag.compY][np];
+                y[i] = plot.c0[i][np] - plot.c0[diag.compY][np];
             } //for i
         } //plotType =4 (log(ai/ar))
         else if(diag.plotType ==5 || diag.plotType ==6) { //pe or pH
-            for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-                int i = Plot.speciesInPlot[k];
+            for(int k=0; k < plot.nbrSpeciesInPlot; k++) {
+                int i = plot.speciesInPlot[k];
                 if(i >= cs.Ms) {continue;}
-                y[i] = -Plot.c0[i][np];
+                y[i] = -plot.c0[i][np];
             } //for i
         } //plotType =5|6 (pe or pH)
         else if(diag.plotType ==7) { //log(act.)
-            for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-                int i = Plot.speciesInPlot[k];
+            for(int k=0; k < plot.nbrSpeciesInPlot; k++) {
+                int i = plot.speciesInPlot[k];
                 if(i >= cs.Ms) {continue;}
-                y[i] = Plot.c0[i][np];
+                y[i] = plot.c0[i][np];
             } //for i
         } //plotType =7 (log(act.))
         else if(diag.plotType ==8) { //Proton affinity
             //Note:  c0[0][nSp] =c[Hplus]   c0[1][nSp] =logA[Hplus]   c0[2][nSp] =c[OHmin]
             if(np ==0) {
-                w1 = Plot.c0[1][np+1]-Plot.c0[1][np];
-                w2 = (Plot.tot0[diag.Hplus][np+1]-Plot.c0[0][np+1]+Plot.c0[2][np+1])
-                     - (Plot.tot0[diag.Hplus][np]-Plot.c0[0][np]+Plot.c0[2][np]);
+                w1 = plot.c0[1][np+1]-plot.c0[1][np];
+                w2 = (plot.tot0[diag.Hplus][np+1]-plot.c0[0][np+1]+plot.c0[2][np+1])
+                     - (plot.tot0[diag.Hplus][np]-plot.c0[0][np]+plot.c0[2][np]);
                 y[0] =0;
                 if(Math.abs(w1) >= 1.E-35) y[0]=( w2 / w1);
             } //first point
             else if(np < sed.nSteps) {
-                w1 = Plot.c0[1][np]-Plot.c0[1][np-1];
-                w2 = (Plot.tot0[diag.Hplus][np]-Plot.c0[0][np]+Plot.c0[2][np])
-                        - (Plot.tot0[diag.Hplus][np-1]-Plot.c0[0][np-1]+Plot.c0[2][np-1]);
+                w1 = plot.c0[1][np]-plot.c0[1][np-1];
+                w2 = (plot.tot0[diag.Hplus][np]-plot.c0[0][np]+plot.c0[2][np])
+                        - (plot.tot0[diag.Hplus][np-1]-plot.c0[0][np-1]+plot.c0[2][np-1]);
                 y1 = 0;
                 if(Math.abs(w1) >= 1.E-35) y1= ( w2 / w1);
-                w1 = Plot.c0[1][np]-Plot.c0[1][np+1];
-                w2 = (Plot.tot0[diag.Hplus][np]-Plot.c0[0][np]+Plot.c0[2][np])
-                        - (Plot.tot0[diag.Hplus][np+1]-Plot.c0[0][np+1]+Plot.c0[2][np+1]);
+                w1 = plot.c0[1][np]-plot.c0[1][np+1];
+                w2 = (plot.tot0[diag.Hplus][np]-plot.c0[0][np]+plot.c0[2][np])
+                        - (plot.tot0[diag.Hplus][np+1]-plot.c0[0][np+1]+plot.c0[2][np+1]);
                 y2 = 0;
                 if(Math.abs(w1) >= 1.E-35) y2= ( w2 / w1);
                 y[0] = ((y1+y2)/0.5d);
             } else {
-                w1 = Plot.c0[1][np]-Plot.c0[1][np-1];
-                w2 = (Plot.tot0[diag.Hplus][np]-Plot.c0[0][np]+Plot.c0[2][np])
-                        - (Plot.tot0[diag.Hplus][np-1]-Plot.c0[0][np-1]+Plot.c0[2][np-1]);
+                w1 = plot.c0[1][np]-plot.c0[1][np-1];
+                w2 = (plot.tot0[diag.Hplus][np]-plot.c0[0][np]+plot.c0[2][np])
+                        - (plot.tot0[diag.Hplus][np-1]-plot.c0[0][np-1]+plot.c0[2][np-1]);
                 if(Math.abs(w1) >= 1.E-35) y[0] = ( w2 / w1);
             } //last point
         } //plotType =8 (Proton affinity)
@@ -265,8 +268,8 @@ void tableBody(Chem ch) {
             for(int k=0; k < y.length; k++) {
                 y[k] = -9999.9999;}}
         tPW.format(engl,"%13.5g",xValue);
-        for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-                int i = Plot.speciesInPlot[k];
+        for(int k=0; k < plot.nbrSpeciesInPlot; k++) {
+                int i = plot.speciesInPlot[k];
                 if(i >= cs.Ms) {continue;}
                 tPW.format(engl,fs+"%13.5g",y[i]);
             } //for i
@@ -0,0 +1,406 @@
+package spana;
+
+import lib.common.Util;
+import lib.kemi.chem.Chem;
+import predominanceAreaDiagrams.PredomDiagram;
+import simpleEquilibriumDiagrams.SedDiagram;
+
+/** A queue of diagrams to be made by SED or Predom within this Java virtual
+ * machine. The diagrams are calculated by a fixed pool of worker threads
+ * (one for each processor), using the classes <code>SedDiagram</code> and
+ * <code>PredomDiagram</code> directly. In this way the classes of SED, Predom
+ * and HaltaFall are loaded (and compiled by the JIT compiler) only once for
+ * all the diagrams made during a session, instead of once for each diagram.
+ * <br>
+ * Each diagram is a <code>Job</code>: the data file is read when the job is
+ * submitted, and the calculations are performed later by one of the threads
+ * of the pool. The progress of each job may be followed, and each job may be
+ * cancelled, see <code>DiagrJobsFrame</code>.
+ * <br>
+ * Copyright (C) 2014-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see DiagrJobsFrame DiagrJobsFrame
+ * @author Ignasi Puigdomenech */
+public class DiagrJobQueue {
+  private static DiagrJobQueue queue = null;
+  /** the worker threads */
+  private final java.util.concurrent.ExecutorService pool;
+  /** the number of worker threads */
+  private final int nbrThreads;
+  /** all jobs: queued, running and finished */
+  private final java.util.List<Job> jobs = new java.util.concurrent.CopyOnWriteArrayList<Job>();
+  private final java.util.List<javax.swing.event.ChangeListener> listeners =
+          new java.util.concurrent.CopyOnWriteArrayList<javax.swing.event.ChangeListener>();
+  private static final String nl = System.getProperty("line.separator");
+
+  private DiagrJobQueue() {
+    nbrThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+    final java.util.concurrent.atomic.AtomicInteger count = new java.util.concurrent.atomic.AtomicInteger(0);
+    pool = java.util.concurrent.Executors.newFixedThreadPool(nbrThreads,
+        new java.util.concurrent.ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "DiagrJob-"+count.incrementAndGet());
+                t.setDaemon(true);
+                // keep the program window responsive while diagrams are calculated
+                t.setPriority(Math.max(Thread.MIN_PRIORITY, Thread.NORM_PRIORITY-1));
+                return t;
+            }});
+  }
+
+  /** Returns the queue of diagram jobs, creating it (and its pool of
+   * worker threads) the first time this method is called.
+   * @return the queue of diagram jobs */
+  public static synchronized DiagrJobQueue getInstance() {
+    if(queue == null) {queue = new DiagrJobQueue();}
+    return queue;
+  }
+
+  /** Cancels all jobs and stops the worker threads, if the queue has been created. */
+  public static synchronized void shutdown() {
+    if(queue == null) {return;}
+    queue.cancelAll();
+    queue.pool.shutdownNow();
+    queue = null;
+  }
+
+  /** @return true if the queue has been created and some job is either
+   * waiting in the queue or running */
+  public static synchronized boolean jobsRunning() {
+    return queue != null && queue.isBusy();
+  }
+
+  /** @return the number of worker threads */
+  public int getNbrThreads() {return nbrThreads;}
+
+  /** @return a list with all the jobs, in the order they were submitted.
+   * Finished jobs are kept until <code>removeFinished</code> is called. */
+  public java.util.List<Job> getJobs() {
+    return java.util.Collections.unmodifiableList(jobs);
+  }
+
+  /** @return true if some job is either waiting in the queue or running */
+  public boolean isBusy() {
+    for(Job j : jobs) {if(!j.isFinished()) {return true;}}
+    return false;
+  }
+
+  /** Removes from the list of jobs those that are finished. */
+  public void removeFinished() {
+    for(Job j : jobs) {if(j.isFinished()) {jobs.remove(j);}}
+    fireChanged();
+  }
+
+  /** Cancels all jobs that are either waiting in the queue or running. */
+  public void cancelAll() {
+    for(Job j : jobs) {j.cancel();}
+  }
+
+  /** Adds a listener that is notified, in the event dispatch thread,
+   * each time a job is added, removed, or changes its status or progress.
+   * @param l the listener */
+  public void addChangeListener(javax.swing.event.ChangeListener l) {listeners.add(l);}
+  public void removeChangeListener(javax.swing.event.ChangeListener l) {listeners.remove(l);}
+
+  private void fireChanged() {
+    if(listeners.isEmpty()) {return;}
+    final javax.swing.event.ChangeEvent e = new javax.swing.event.ChangeEvent(this);
+    javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
+        for(javax.swing.event.ChangeListener l : listeners) {l.stateChanged(e);}
+    }});
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="submit">
+  /** Reads the data file of a job and, if there are no errors, puts the job
+   * in the queue. The data file is read in the calling thread, so that it may
+   * be modified once this method returns. Any earlier job that is not yet
+   * finished and that writes the same plot file is cancelled.
+   * @param job the diagram to make
+   * @return false if the data file could not be read. The job is then
+   * finished (with status <code>Job.FAILED</code>) and its method
+   * <code>done()</code> will be called */
+  public boolean submit(final Job job) {
+    if(job.dbg) {System.out.println("DiagrJobQueue.submit(\""+job.dataFile.getName()+"\")");}
+    for(Job j : jobs) {
+        if(!j.isFinished() && j.pltFile.equals(job.pltFile)) {j.cancel();}
+    }
+    jobs.add(job);
+    job.queue = this;
+    job.engine = job.predom ? job.newPredomEngine() : job.newSedEngine();
+    if(!job.engine.readDataFile(job.dataFile)) {
+        job.finish(Job.FAILED);
+        return false;
+    }
+    job.future = pool.submit(new Runnable() {@Override public void run() {job.run();}});
+    fireChanged();
+    return true;
+  } //submit
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="interface Engine">
+  /** The methods of <code>SedDiagram</code> and <code>PredomDiagram</code>
+   * used to make a diagram */
+  private interface Engine {
+    boolean readDataFile(java.io.File dataFile);
+    boolean prepare();
+    boolean calculate() throws Exception;
+    boolean saveDiagram(java.io.File pltFile);
+    void cancel();
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="class Job">
+  /** A diagram to be made by either SED or Predom. The options are given
+   * by setting the values of the fields before calling
+   * <code>DiagrJobQueue.submit</code>; they have the same meaning as the
+   * command-line options of the programs SED and Predom. The method
+   * <code>done()</code> may be overridden to do something (in the event
+   * dispatch thread) when the job is finished. */
+  public static class Job {
+    /** status of a job */
+    public static final int QUEUED = 0, RUNNING = 1, DONE = 2, FAILED = 3, CANCELLED = 4;
+    /** the input data file */
+    public final java.io.File dataFile;
+    /** the output plot file */
+    public final java.io.File pltFile;
+    /** true for a Predominance Area Diagram (program Predom), false for program SED */
+    public final boolean predom;
+    //<editor-fold defaultstate="collapsed" desc="options">
+    /** output debug information */
+    public boolean dbg = false;
+    /** output debug reporting in HaltaFall */
+    public int dbgHalta = Chem.DBGHALTA_DEF;
+    /** allow reversed concentration ranges in the axes */
+    public boolean reversedConcs = false;
+    /** the number of calculation steps. If zero or negative, the default
+     * value of SED or Predom is used */
+    public int nSteps = 0;
+    /** the temperature in degrees Celsius, or NaN */
+    public double temperature = Double.NaN;
+    /** the ionic strength, or -1 if it has to be calculated at each calculation step */
+    public double ionicStrength = 0;
+    /** the model to calculate activity coefficients: 0 = Davies eqn; 1 = SIT; 2 = simplified HKF */
+    public int actCoeffsModel = 2;
+    /** tolerance when solving the mass-balance equations in HaltaFall */
+    public double tolHalta = Chem.TOL_HALTA_DEF;
+    /** SED only: the minimum fraction for a species to be displayed in a fraction diagram */
+    public float threshold = 0.03f;
+    /** SED only: write also a table file with the calculated values */
+    public boolean tableOutput = false;
+    public String tblExtension = "csv";
+    public String tblFieldSeparator = ";";
+    public String tblCommentStart = "\"";
+    public String tblCommentEnd = "\"";
+    /** write also a binary plot file (".pltb") */
+    public boolean binaryPlotFile = false;
+    /** Predom only: show only aqueous species */
+    public boolean aqu = false;
+    /** Predom only: draw a dashed line at the neutral pH */
+    public boolean neutral_pH = false;
+    /** directories where a file with SIT-coefficients is searched for. They may be null */
+    public String pathApp = null;
+    public String pathDef = null;
+    //</editor-fold>
+
+    private DiagrJobQueue queue = null;
+    private volatile Engine engine = null;
+    private java.util.concurrent.Future<?> future = null;
+    private volatile int status = QUEUED;
+    private volatile boolean cancelled = false;
+    private volatile int nbrPointsDone = 0;
+    /** the number of calculation points, set when the data file is read */
+    private volatile int nbrPoints = 1;
+    /** the errors and warnings from SED or Predom */
+    private final StringBuffer messages = new StringBuffer();
+    private final java.io.PrintStream out;
+
+    /** Constructor
+     * @param dataFile the input data file
+     * @param pltFile the output plot file
+     * @param predom true for a Predominance Area Diagram (program Predom), false for program SED */
+    public Job(java.io.File dataFile, java.io.File pltFile, boolean predom) {
+        this.dataFile = dataFile;
+        this.pltFile = pltFile;
+        this.predom = predom;
+        // the messages from the calculations are discarded unless debugging
+        this.out = new java.io.PrintStream(new java.io.OutputStream() {
+            @Override public void write(int b) {if(Job.this.dbg) {System.out.write(b);}}
+            @Override public void write(byte[] b, int off, int len) {if(Job.this.dbg) {System.out.write(b, off, len);}}
+            @Override public void flush() {if(Job.this.dbg) {System.out.flush();}}
+        });
+    }
+
+    /** @return the status of the job: QUEUED, RUNNING, DONE, FAILED or CANCELLED */
+    public int getStatus() {return status;}
+    /** @return a short text describing the status of the job */
+    public String getStatusText() {
+        switch (status) {
+            case QUEUED: return "waiting";
+            case RUNNING: return "running";
+            case DONE: return "done";
+            case FAILED: return "failed";
+            case CANCELLED: return "cancelled";
+            default: return "?";
+        }
+    }
+    /** @return true if the job has finished (either done, failed or cancelled) */
+    public boolean isFinished() {return status >= DONE;}
+    /** @return the percentage (0 to 100) of the calculation points done */
+    public int getProgress() {
+        if(status == DONE) {return 100;}
+        return Math.min(100, (100*nbrPointsDone)/Math.max(1,nbrPoints));
+    }
+    /** @return the errors and warnings reported by SED or Predom, if any */
+    public String getMessages() {return messages.toString();}
+
+    /** Cancels the job: it is removed from the queue if it has not started,
+     * otherwise the calculations are stopped. Nothing happens if the job is finished. */
+    public void cancel() {
+        if(isFinished()) {return;}
+        cancelled = true;
+        java.util.concurrent.Future<?> f = future;
+        if(f != null && f.cancel(false)) { // it had not started
+            finish(CANCELLED);
+            return;
+        }
+        Engine e = engine;
+        if(e != null) {e.cancel();}
+    }
+
+    /** Called in the event dispatch thread when the job is finished
+     * (either done, failed or cancelled).
+     * This implementation does nothing. */
+    protected void done() {}
+
+    /** Makes the calculations and saves the plot file. Runs in a worker thread. */
+    private void run() {
+        if(cancelled) {finish(CANCELLED); return;}
+        status = RUNNING;
+        if(queue != null) {queue.fireChanged();}
+        boolean ok = false;
+        try {
+            if(engine.prepare()) {
+                if(engine.calculate() && !cancelled) {ok = engine.saveDiagram(pltFile);}
+            }
+        } catch (Exception ex) {
+            messages.append(ex.toString()).append(nl).append(Util.stack2string(ex)).append(nl);
+        }
+        if(cancelled) {finish(CANCELLED);} else if(ok) {finish(DONE);} else {finish(FAILED);}
+    }
+
+    /** Sets the final status, releases the calculation engine, and calls <code>done()</code> */
+    private synchronized void finish(int status0) {
+        if(isFinished()) {return;}
+        status = status0;
+        engine = null;
+        out.flush();
+        if(queue != null) {queue.fireChanged();}
+        javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {done();}});
+    }
+
+    /** Called by the engine each time a calculation point is done. The
+     * listeners are only notified if the percentage done has changed. */
+    private void progress(int nbrPointsDone0) {
+        int p0 = getProgress();
+        nbrPointsDone = nbrPointsDone0;
+        if(getProgress() != p0 && queue != null) {queue.fireChanged();}
+    }
+
+    private void addMessage(String msg, int type) {
+        if(type == 2) {messages.append("Warning: ");}
+        messages.append(msg).append(nl);
+    }
+
+    private Engine newSedEngine() {
+        final SedDiagram sd = new SedDiagram(System.err, out) {
+            @Override protected void showMsg(String msg, int type) {
+                if(type != 3) {addMessage(msg, type);}
+                super.showMsg(msg, type);
+            }
+            @Override protected void showMsg(Exception ex) {
+                addMessage(ex.getMessage(), 1);
+                super.showMsg(ex);
+            }
+            @Override protected void progress(int n) {Job.this.progress(n);}
+        };
+        sd.dbg = dbg;
+        sd.dbgHalta = dbgHalta;
+        sd.reversedConcs = reversedConcs;
+        if(nSteps > 0) {sd.nSteps = Math.min(SedDiagram.NSTP_MAX, Math.max(SedDiagram.NSTP_MIN, nSteps));}
+        sd.nThreads = 1; // the jobs themselves run in parallel
+        sd.temperature = temperature;
+        sd.ionicStrength = ionicStrength;
+        sd.calcActCoeffs = Math.abs(ionicStrength) > 1e-10;
+        sd.actCoeffsModel = actCoeffsModel;
+        sd.tolHalta = tolHalta;
+        sd.threshold = threshold;
+        sd.tableOutput = tableOutput;
+        sd.tblExtension = tblExtension;
+        sd.tblFieldSeparator = tblFieldSeparator;
+        sd.tblCommentStart = tblCommentStart;
+        sd.tblCommentEnd = tblCommentEnd;
+        sd.binaryPlotFile = binaryPlotFile;
+        sd.pathApp = pathApp;
+        sd.pathDef = pathDef;
+        nbrPoints = sd.nSteps + 1;
+        return new Engine() {
+            @Override public boolean readDataFile(java.io.File f) {return sd.readDataFile(f);}
+            @Override public boolean prepare() {return sd.prepare();}
+            @Override public boolean calculate() throws Exception {return sd.calculate();}
+            @Override public boolean saveDiagram(java.io.File f) {return sd.saveDiagram(f);}
+            @Override public void cancel() {sd.cancel();}
+        };
+    }
+
+    private Engine newPredomEngine() {
+        final PredomDiagram pd = new PredomDiagram(System.err, out) {
+            @Override protected void showMsg(String msg, int type) {
+                if(type != 3) {addMessage(msg, type);}
+                super.showMsg(msg, type);
+            }
+            @Override protected void showMsg(Exception ex) {
+                addMessage(ex.getMessage(), 1);
+                super.showMsg(ex);
+            }
+            @Override protected void progress(int n) {Job.this.progress(n);}
+        };
+        pd.dbg = dbg;
+        pd.dbgHalta = dbgHalta;
+        pd.reversedConcs = reversedConcs;
+        if(nSteps > 0) {pd.nSteps = Math.min(PredomDiagram.NSTP_MAX, Math.max(PredomDiagram.NSTP_MIN, nSteps));}
+        pd.nThreads = 1; // the jobs themselves run in parallel
+        pd.temperature = temperature;
+        pd.ionicStrength = ionicStrength;
+        pd.calcActCoeffs = Math.abs(ionicStrength) > 1e-10;
+        pd.actCoeffsModel = actCoeffsModel;
+        pd.tolHalta = tolHalta;
+        pd.aqu = aqu;
+        pd.neutral_pH = neutral_pH;
+        pd.binaryPlotFile = binaryPlotFile;
+        pd.pathApp = pathApp;
+        pd.pathDef = pathDef;
+        nbrPoints = pd.nSteps + 1;
+        return new Engine() {
+            @Override public boolean readDataFile(java.io.File f) {return pd.readDataFile(f);}
+            @Override public boolean prepare() {return pd.prepare();}
+            @Override public boolean calculate() throws Exception {return pd.calculate();}
+            @Override public boolean saveDiagram(java.io.File f) {return pd.saveDiagram(f);}
+            @Override public void cancel() {pd.cancel();}
+        };
+    }
+  } //class Job
+  //</editor-fold>
+
+}
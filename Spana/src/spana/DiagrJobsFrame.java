@@ -0,0 +1,179 @@
+package spana;
+
+/** A window showing the diagrams being calculated in the
+ * <code>DiagrJobQueue</code>: the progress of each job, and buttons to
+ * cancel a job and to remove the finished jobs from the list.
+ * <br>
+ * Copyright (C) 2014-2018 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @see DiagrJobQueue DiagrJobQueue
+ * @author Ignasi Puigdomenech */
+public class DiagrJobsFrame extends javax.swing.JFrame {
+  private static final long serialVersionUID = 1L;
+  private static DiagrJobsFrame frame = null;
+  private final DiagrJobQueue queue;
+  private final JobsTableModel model;
+  private final javax.swing.JTable jTable;
+  private final javax.swing.JButton jButtonCancel;
+  private final javax.swing.JButton jButtonRemove;
+  private final javax.swing.event.ChangeListener listener;
+  private static final String[] COLUMNS = {"Plot file", "Program", "Progress", "Status"};
+
+  //<editor-fold defaultstate="collapsed" desc="showJobs">
+  /** Displays the window with the list of diagram jobs, creating it if needed.
+   * @param parent the main window, used to position this window */
+  public static void showJobs(final java.awt.Component parent) {
+    java.awt.EventQueue.invokeLater(new Runnable() {@Override public void run() {
+        if(frame == null) {
+            frame = new DiagrJobsFrame(DiagrJobQueue.getInstance());
+            if(parent != null) {
+                frame.setLocation(parent.getX()+parent.getWidth()/4, parent.getY()+parent.getHeight()/3);
+            } else {frame.setLocationByPlatform(true);}
+        }
+        frame.setVisible(true);
+        frame.toFront();
+    }});
+  } //showJobs
+  //</editor-fold>
+
+  /** Creates new form DiagrJobsFrame
+   * @param queue0 the queue of diagram jobs */
+  private DiagrJobsFrame(DiagrJobQueue queue0) {
+    queue = queue0;
+    setTitle("Diagrams being made ("+queue.getNbrThreads()+" at a time)");
+    setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+    java.net.URL imgURL = this.getClass().getResource("images/Spana_icon_32x32.gif");
+    if(imgURL != null) {setIconImage(new javax.swing.ImageIcon(imgURL).getImage());}
+
+    model = new JobsTableModel();
+    jTable = new javax.swing.JTable(model);
+    jTable.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+    jTable.setFillsViewportHeight(true);
+    jTable.getColumnModel().getColumn(0).setPreferredWidth(200);
+    jTable.getColumnModel().getColumn(2).setCellRenderer(new ProgressRenderer());
+    jTable.getSelectionModel().addListSelectionListener(new javax.swing.event.ListSelectionListener() {
+        @Override public void valueChanged(javax.swing.event.ListSelectionEvent e) {updateButtons();}
+    });
+    javax.swing.JScrollPane jScrollPane = new javax.swing.JScrollPane(jTable);
+    jScrollPane.setPreferredSize(new java.awt.Dimension(480, 160));
+
+    jButtonCancel = new javax.swing.JButton("Cancel");
+    jButtonCancel.setMnemonic('c');
+    jButtonCancel.setToolTipText("stop the calculations of the selected diagram");
+    jButtonCancel.addActionListener(new java.awt.event.ActionListener() {
+        @Override public void actionPerformed(java.awt.event.ActionEvent e) {
+            int i = jTable.getSelectedRow();
+            java.util.List<DiagrJobQueue.Job> jobs = queue.getJobs();
+            if(i >= 0 && i < jobs.size()) {jobs.get(i).cancel();}
+        }});
+    jButtonRemove = new javax.swing.JButton("Remove finished");
+    jButtonRemove.setMnemonic('r');
+    jButtonRemove.addActionListener(new java.awt.event.ActionListener() {
+        @Override public void actionPerformed(java.awt.event.ActionEvent e) {queue.removeFinished();}
+    });
+    javax.swing.JButton jButtonClose = new javax.swing.JButton("Close");
+    jButtonClose.setToolTipText("close this window (the calculations continue)");
+    jButtonClose.addActionListener(new java.awt.event.ActionListener() {
+        @Override public void actionPerformed(java.awt.event.ActionEvent e) {closeWindow();}
+    });
+    javax.swing.JPanel jPanelButtons = new javax.swing.JPanel(new java.awt.FlowLayout(java.awt.FlowLayout.RIGHT));
+    jPanelButtons.add(jButtonCancel);
+    jPanelButtons.add(jButtonRemove);
+    jPanelButtons.add(jButtonClose);
+    getContentPane().add(jScrollPane, java.awt.BorderLayout.CENTER);
+    getContentPane().add(jPanelButtons, java.awt.BorderLayout.SOUTH);
+
+    //--- Close window on ESC key
+    javax.swing.KeyStroke escKeyStroke = javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_ESCAPE,0, false);
+    getRootPane().getInputMap(javax.swing.JComponent.WHEN_IN_FOCUSED_WINDOW).put(escKeyStroke,"ESCAPE");
+    getRootPane().getActionMap().put("ESCAPE", new javax.swing.AbstractAction() {
+        @Override public void actionPerformed(java.awt.event.ActionEvent e) {closeWindow();}
+    });
+    addWindowListener(new java.awt.event.WindowAdapter() {
+        @Override public void windowClosed(java.awt.event.WindowEvent e) {
+            queue.removeChangeListener(listener);
+            frame = null;
+        }});
+
+    listener = new javax.swing.event.ChangeListener() {
+        @Override public void stateChanged(javax.swing.event.ChangeEvent e) {jobsChanged();}
+    };
+    queue.addChangeListener(listener);
+    pack();
+    jobsChanged();
+  } // constructor
+
+  private void closeWindow() {this.dispose();}
+
+  /** Updates the table keeping the selected row, if possible */
+  private void jobsChanged() {
+    int i = jTable.getSelectedRow();
+    int n = model.rows;
+    model.rows = queue.getJobs().size();
+    if(model.rows == n) {
+        if(n > 0) {model.fireTableRowsUpdated(0, n-1);}
+    } else {
+        model.fireTableDataChanged();
+        if(i >= 0 && i < model.rows) {jTable.getSelectionModel().setSelectionInterval(i, i);}
+    }
+    updateButtons();
+  }
+
+  private void updateButtons() {
+    java.util.List<DiagrJobQueue.Job> jobs = queue.getJobs();
+    int i = jTable.getSelectedRow();
+    jButtonCancel.setEnabled(i >= 0 && i < jobs.size() && !jobs.get(i).isFinished());
+    boolean finished = false;
+    for(DiagrJobQueue.Job j : jobs) {if(j.isFinished()) {finished = true; break;}}
+    jButtonRemove.setEnabled(finished);
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="class JobsTableModel">
+  private class JobsTableModel extends javax.swing.table.AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    /** the number of rows shown, updated in <code>jobsChanged()</code> */
+    int rows = 0;
+    @Override public int getRowCount() {return rows;}
+    @Override public int getColumnCount() {return COLUMNS.length;}
+    @Override public String getColumnName(int col) {return COLUMNS[col];}
+    @Override public Object getValueAt(int row, int col) {
+        java.util.List<DiagrJobQueue.Job> jobs = queue.getJobs();
+        if(row >= jobs.size()) {return "";}
+        DiagrJobQueue.Job j = jobs.get(row);
+        switch (col) {
+            case 0: return j.pltFile.getName();
+            case 1: return j.predom ? "Predom" : "SED";
+            case 2: return j.getProgress();
+            default: return j.getStatusText();
+        }
+    }
+  } //class JobsTableModel
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="class ProgressRenderer">
+  private static class ProgressRenderer extends javax.swing.JProgressBar
+          implements javax.swing.table.TableCellRenderer {
+    private static final long serialVersionUID = 1L;
+    ProgressRenderer() {super(0, 100); setStringPainted(true);}
+    @Override public java.awt.Component getTableCellRendererComponent(javax.swing.JTable table,
+            Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+        setValue((value instanceof Integer) ? (Integer)value : 0);
+        return this;
+    }
+  } //class ProgressRenderer
+  //</editor-fold>
+
+}
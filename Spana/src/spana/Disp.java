@@ -6,6 +6,7 @@ import lib.huvud.Div;
 import lib.huvud.ProgramConf;
 import lib.kemi.graph_lib.DiagrPaintUtility;
 import lib.kemi.graph_lib.GraphLib;
+import lib.kemi.graph_lib.PltFile;
 
 /** Displays a "plt"-file. The user coordinate units are in 0.01 cm.
  * The diagram is displayed in a JPanel using the method
@@ -74,7 +75,7 @@ public class Disp extends javax.swing.JFrame {
             super.paint(g);
             // org.freehep.graphics2d.VectorGraphics g2D = org.freehep.graphics2d.VectorGraphics.create(g);
             java.awt.Graphics2D g2D = (java.awt.Graphics2D)g;
-            diagrPaintUtil.paintDiagram(g2D, jPanelDispPlot.getSize(), dd, false);
+            diagrPaintUtil.paintDiagramBuffered(g2D, jPanelDispPlot, dd);
         }
     };
     jPanelDispPlot.addMouseListener(new java.awt.event.MouseAdapter() {
@@ -694,176 +695,109 @@ public class Disp extends javax.swing.JFrame {
         this.dd = new GraphLib.PltData();
         dd.pltFile_Name = f.getPath();
         dd.fileLastModified = new java.util.Date(f.lastModified());
-        java.io.BufferedReader bufReader;
-        try{bufReader = new java.io.BufferedReader(new java.io.FileReader(f));}
-        catch (java.io.FileNotFoundException e) {
+        PltFile pf;
+        try {pf = PltFile.read(f);}
+        catch (java.io.IOException e) {
             String msg = "Error: \""+e.toString()+"\""+nl+nl+
                 "For plot file:"+f.getPath();
             MsgExceptn.exception(msg);
             javax.swing.JOptionPane.showMessageDialog(this, msg,
                 pc.progName, javax.swing.JOptionPane.ERROR_MESSAGE);
-        return false;}
+            return false;
+        }
+        if(pc.dbg && pf.fromBinary) {System.out.println("Plot file read from \""+PltFile.binaryFile(f).getName()+"\"");}
 
         dd.axisInfo = false;
         dd.xAxisL=0f; dd.yAxisL=0f;
         dd.xAxis0=0f; dd.yAxis0=0f;
+        if(pf.predom) {icon_type = 2;} else {icon_type = 1;}
+        //---- axis information if available
+        if(pf.axisInfo) {
+            dd.axisInfo = true;
+            dd.xAxisL = pf.xAxisL; dd.yAxisL = pf.yAxisL;
+            dd.xAxis0 = pf.xAxis0; dd.yAxis0 = pf.yAxis0;
+            //these are used when displaying the xy-label
+            // when the user click the mouse button on a diagram
+            dd.xAxisMin = pf.xAxisMin;
+            dd.xAxisMax = pf.xAxisMax;
+            dd.yAxisMin = pf.yAxisMin;
+            dd.yAxisMax = pf.yAxisMax;
+            float tmp;
+            dd.xAxisMin_true = dd.xAxisMin;
+            dd.xAxisMax_true = dd.xAxisMax;
+            if (dd.xAxisMin_true > dd.xAxisMax_true)
+                {tmp = dd.xAxisMax_true;
+                    dd.xAxisMax_true = dd.xAxisMin_true;
+                    dd.xAxisMin_true = tmp;}
+            dd.yAxisMin_true = dd.yAxisMin;
+            dd.yAxisMax_true = dd.yAxisMax;
+            if (dd.yAxisMin_true > dd.yAxisMax_true)
+                {tmp = dd.yAxisMax_true;
+                    dd.yAxisMax_true = dd.yAxisMin_true;
+                    dd.yAxisMin_true = tmp;}
+            float x = Math.abs(dd.xAxisMax - dd.xAxisMin) * 0.01f;
+            dd.xAxisMin_true = dd.xAxisMin_true - x;
+            dd.xAxisMax_true = dd.xAxisMax_true + x;
+            float y = Math.abs(dd.yAxisMax - dd.yAxisMin) * 0.01f;
+            dd.yAxisMin_true = dd.yAxisMin_true - y;
+            dd.yAxisMax_true = dd.yAxisMax_true + y;
+            dd.xAxisScale = (dd.xAxisMax - dd.xAxisMin) / dd.xAxisL;
+            dd.yAxisScale = (dd.yAxisMax - dd.yAxisMin) / dd.yAxisL;
+        } // axisInfo
+
         boolean readingText = false;
-        int align = 0;
-        icon_type = 1;
-        boolean axisInfo1 = false; boolean axisInfo2 = false;
         int i0, i1, i2;
-        StringBuilder line = new StringBuilder();
-        String comment;
         int penColour = 5; int currentColour = 1;
-        // ----- read all lines
-        String l;
-        do {
-            try {l = bufReader.readLine();}
-            catch (java.io.IOException e) {
-                String msg = "Error: \""+e.toString()+"\""+nl+nl+
-                    "For plot file:"+f.getPath();
-                javax.swing.JOptionPane.showMessageDialog(this,msg,
-                        pc.progName, javax.swing.JOptionPane.ERROR_MESSAGE);
-                return false;} //catch
-            if (line.length()>0) {line.delete(0, line.length());}
-            if (l != null) {
-                line.append(l);
-                String s0, s1, s2;
-                if (line.length() > 0) {s0= line.substring(0,1).trim();} else {s0 = "";}
-                if (line.length() > 4) {s1= line.substring(1,5).trim();} else {s1 = "";}
-                if (line.length() > 8) {s2= line.substring(5,9).trim();} else {s2 = "";}
-                // get comments
-                if (line.length() > 9) {
-                    comment= line.substring(9).trim();
-                    if (comment.length()>12 && (comment.substring(0, 12).equals("-- PREDOM DI") ||
-                            comment.substring(0, 12).equals("-- PREDOM2 D")))
-                        {icon_type = 2;}
-                } else {comment = "";}
-
-                if (s0.length() > 0) {i0 = readInt(s0);} else {i0 = -1;}
-                if (s1.length() > 0) {i1 = readInt(s1);} else {i1 = 0;}
-                if (s2.length() > 0) {i2 = readInt(s2);} else {i2 = 0;}
-
-                if (i0==0 || i0==1) {
-                    if(i1<dd.userSpaceMin.x) {dd.userSpaceMin.x = i1;}
-                    if(i1>dd.userSpaceMax.x) {dd.userSpaceMax.x = i1;}
-                    if(i2<dd.userSpaceMin.y) {dd.userSpaceMin.y = i2;}
-                    if(i2>dd.userSpaceMax.y) {dd.userSpaceMax.y = i2;}
-                    if (!diagrPaintUtil.textWithFonts || !readingText)
-                        {dd.pltFileAList.add(new GraphLib.PltData.PlotStep(i0, i1, i2));
-                        // for non-static class use:
-                        //dd.plt_fileAList.add(dd.new PlotStep(I0, I1, I2));
-                        }
-                } // if draw/move line
-                if (i0==5 || i0==8) {
-                    penColour = i0; currentColour = i1;
-                    dd.pltFileAList.add(new GraphLib.PltData.PlotStep(i0,i1,i2));
-                } // if colour/pen change
-
-                //---- read axis information if available
-                if (comment.equals("-- AXIS --")) {axisInfo1 = true;}
-                if (axisInfo1 && i0 == 8 &&
-                        comment.length()>64 &&
-                        comment.substring(0,9).equals("Size, X/Y"))
-                {axisInfo2 = true;
-                 dd.xAxisL = readFloat(comment.substring(34,42));
-                 dd.yAxisL = readFloat(comment.substring(42,50));
-                 dd.xAxis0 = readFloat(comment.substring(50,58));
-                 dd.yAxis0 = readFloat(comment.substring(58,comment.length()));
-                }
-                if (axisInfo1 && axisInfo2 && i0 == 0 &&
-                        comment.length()>60 &&
-                        comment.substring(0,9).equals("X/Y low a"))
-                {dd.axisInfo = true;
-                //these are used when displaying the xy-label
-                // when the user click the mouse button on a diagram
-                dd.xAxisMin = readFloat(comment.substring(18,29));
-                dd.xAxisMax = readFloat(comment.substring(29,40));
-                dd.yAxisMin = readFloat(comment.substring(40,51));
-                dd.yAxisMax = readFloat(comment.substring(51,comment.length()));
-                float tmp;
-                dd.xAxisMin_true = dd.xAxisMin;
-                dd.xAxisMax_true = dd.xAxisMax;
-                if (dd.xAxisMin_true > dd.xAxisMax_true)
-                    {tmp = dd.xAxisMax_true;
-                        dd.xAxisMax_true = dd.xAxisMin_true;
-                        dd.xAxisMin_true = tmp;}
-                dd.yAxisMin_true = dd.yAxisMin;
-                dd.yAxisMax_true = dd.yAxisMax;
-                if (dd.yAxisMin_true > dd.yAxisMax_true)
-                    {tmp = dd.yAxisMax_true;
-                        dd.yAxisMax_true = dd.yAxisMin_true;
-                        dd.yAxisMin_true = tmp;}
-                float x = Math.abs(dd.xAxisMax - dd.xAxisMin) * 0.01f;
-                dd.xAxisMin_true = dd.xAxisMin_true - x;
-                dd.xAxisMax_true = dd.xAxisMax_true + x;
-                float y = Math.abs(dd.yAxisMax - dd.yAxisMin) * 0.01f;
-                dd.yAxisMin_true = dd.yAxisMin_true - y;
-                dd.yAxisMax_true = dd.yAxisMax_true + y;
-                dd.xAxisScale = (dd.xAxisMax - dd.xAxisMin) / dd.xAxisL;
-                dd.yAxisScale = (dd.yAxisMax - dd.yAxisMin) / dd.yAxisL;
-                } // axisInfo
-                //---- end of reading axis information
-
-                if (diagrPaintUtil.textWithFonts) {
-                // read a TextBegin-TextEnd
-                boolean isFormula; float txtSize; float txtAngle;
-                if (comment.equals("-- HEADING --")) {align = -1;}
-                if (i0 == 0 && comment.length()>41 && comment.startsWith("TextBegin")) {
-                    isFormula = comment.substring(9,10).equals("C");
-                    txtSize = readFloat(comment.substring(17,24));
-                    txtAngle = readFloat(comment.substring(35,42));
+        // the steps are triples (i0, i1, i2)
+        final int[] steps = pf.steps.array();
+        final int n = pf.steps.size();
+        // ----- go through all steps
+        for(int j=0; j < n; j++) {
+            i0 = steps[3*j]; i1 = steps[3*j+1]; i2 = steps[3*j+2];
+            if (i0==0 || i0==1) {
+                if(i1<dd.userSpaceMin.x) {dd.userSpaceMin.x = i1;}
+                if(i1>dd.userSpaceMax.x) {dd.userSpaceMax.x = i1;}
+                if(i2<dd.userSpaceMin.y) {dd.userSpaceMin.y = i2;}
+                if(i2>dd.userSpaceMax.y) {dd.userSpaceMax.y = i2;}
+                if (!diagrPaintUtil.textWithFonts || !readingText)
+                    {dd.pltFileAList.add(i0, i1, i2);}
+            } // if draw/move line
+            if (i0==5 || i0==8) {
+                penColour = i0; currentColour = i1;
+                dd.pltFileAList.add(i0,i1,i2);
+            } // if colour/pen change
+
+            if (diagrPaintUtil.textWithFonts) {
+                // a TextBegin-TextEnd
+                PltFile.Text t = pf.text(j);
+                if(t != null) {
+                    float txtSize = (float)t.txtSize;
+                    float txtAngle = (float)t.txtAngle;
                     //get angles between +180 and -180
                     while (txtAngle>360) {txtAngle=txtAngle-360f;}
                     while (txtAngle<-360) {txtAngle=txtAngle+360f;}
                     if(txtAngle>180) {txtAngle=txtAngle-360f;}
                     if(txtAngle<-180) {txtAngle=txtAngle+360f;}
-                    // get alignment
-                    if(comment.length() > 42) {
-                        String t = comment.substring(55,56);
-                        if(t.equalsIgnoreCase("L")) {align = -1;}
-                        else if(t.equalsIgnoreCase("R")) {align = 1;}
-                        else if(t.equalsIgnoreCase("C")) {align = 0;}                     
-                    }
-                    // the text is in next line
-                    if(line.length()>0) {line.delete(0, line.length());}
-                    try {l = bufReader.readLine();}
-                    catch (java.io.IOException e) {
-                        String msg = "Error: \""+e.toString()+"\""+nl+nl+
-                                    "For plot file:"+f.getPath();
-                                    javax.swing.JOptionPane.showMessageDialog(this, msg,
-                                    pc.progName, javax.swing.JOptionPane.ERROR_MESSAGE);
-                                    return false;
-                    } //catch
-                    if(l != null) {line.append(l);} else {line.append("null");}
-                    if(!line.toString().equals("null")) {
-                        if (line.length()>9) {
-                            comment= Util.rTrim(line.substring(9));
-                            if(comment.startsWith(" ")) {comment = comment.substring(1);}
-                        } else {comment = "";}
-                        // addjust userSpaceMax and userSpaceMin
-                        textBoxMinMax(i1, i2, (txtSize * 100f),
-                            (txtSize*100f*comment.length()), txtAngle, dd);
-                        // exchange "-" for minus sign
-                        if(isFormula) {comment = replaceMinusSign(comment);}
-                        // save the text to print
-                        dd.pltTextAList.add(new GraphLib.PltData.PlotText(i1, i2,
-                            isFormula, align, txtSize,txtAngle, comment,
-                            penColour, currentColour));
-                    } // if line != null
-                    // ------ read all lines until "TextEnd"
+                    String txt = t.txtLine;
+                    // addjust userSpaceMax and userSpaceMin
+                    textBoxMinMax(i1, i2, (txtSize * 100f),
+                        (txtSize*100f*txt.length()), txtAngle, dd);
+                    // exchange "-" for minus sign
+                    if(t.isFormula) {txt = replaceMinusSign(txt);}
+                    // save the text to print
+                    dd.pltTextAList.add(new GraphLib.PltData.PlotText(i1, i2,
+                        t.isFormula, t.alignment, txtSize, txtAngle, txt,
+                        penColour, currentColour));
+                    // the text is in next step
+                    j++;
+                    // ------ skip all steps until "TextEnd"
                     readingText = true;
+                    continue;
                 } // end reading a TextBegin - TextEnd
-                if (comment.equals("TextEnd")) {readingText = false;}
-                } // if textWithFonts
-            } // if line != null
-        } while (l != null); // do-while
-    try {bufReader.close();}
-    catch (java.io.IOException ex) {
-        String msg = "Error: \""+ex.toString()+"\""+nl+nl+"For plot file: "+f.getPath();
-        javax.swing.JOptionPane.showMessageDialog(this, msg,
-                        pc.progName, javax.swing.JOptionPane.ERROR_MESSAGE);
-    }
+                if ("TextEnd".equals(pf.comment(j))) {readingText = false;}
+            } // if textWithFonts
+        } // for j
+    dd.pltFileAList.trimToSize();
     // set the "UserSpace" dimensions
     if (dd.userSpaceMax.x == Integer.MIN_VALUE) {dd.userSpaceMax.x = 2100;}
     if (dd.userSpaceMin.x == Integer.MAX_VALUE) {dd.userSpaceMin.x = 0;}
@@ -936,29 +870,6 @@ public class Disp extends javax.swing.JFrame {
   }
   //</editor-fold>
 
-  //<editor-fold defaultstate="collapsed" desc="readInt(String)">
-    private static int readInt(String t) {
-      int i;
-      try{i = Integer.parseInt(t);}
-      catch (NumberFormatException ex) {
-          MsgExceptn.exception("Error: "+ex.toString()+nl+
-                  "   while reading an integer from String: \""+t+"\"");
-          i = 0;}
-      return i;
-    } //readFloat(T)
-  //</editor-fold>
-  //<editor-fold defaultstate="collapsed" desc="readFloat(String)">
-    private static float readFloat(String t) {
-      float f;
-      try{f = Float.parseFloat(t);}
-      catch (NumberFormatException ex) {
-          MsgExceptn.exception("Error: "+ex.toString()+nl+
-                  "   while reading a \"float\" from String: \""+t+"\"");
-          f = 0f;}
-      return f;
-    } //readFloat(T)
-  //</editor-fold>
-
   //<editor-fold defaultstate="collapsed" desc="replaceMinusSign (String)">
    /** replace hyphen "-" by minus, except betwen two letters */
     private static String replaceMinusSign (String t) {
@@ -1351,6 +1351,16 @@ public class MainFrame extends javax.swing.JFrame {
             if(modifyDiagramWindow != null && modifyDiagramWindow.isModified()) {return;}
         }
       }
+      if(DiagrJobQueue.jobsRunning()) {
+        Object[] opt = {"Quit", "Cancel"};
+        int n= javax.swing.JOptionPane.showOptionDialog(this,
+                "Some diagrams are still being calculated."+nl+
+                "Quit anyway?",
+                pc.progName,javax.swing.JOptionPane.OK_CANCEL_OPTION,
+                javax.swing.JOptionPane.QUESTION_MESSAGE, null, opt, opt[1]);
+        if(n != javax.swing.JOptionPane.OK_OPTION) {return;}
+      }
+      DiagrJobQueue.shutdown();
       if(helpAboutFrame != null) {helpAboutFrame.closeWindow();}
       if(fileIni != null) {saveIni(fileIni);}
       this.dispose();
@@ -2278,6 +2288,7 @@ public class MainFrame extends javax.swing.JFrame {
         pd.keepFrame = Boolean.parseBoolean(propertiesIni.getProperty("Calc_keepFrame"));
         pd.SED_nbrSteps = Integer.parseInt(propertiesIni.getProperty("Calc_SED_nbrSteps"));
         pd.SED_tableOutput = Boolean.parseBoolean(propertiesIni.getProperty("Calc_SED_tableOutput"));
+        pd.binaryPlotFile = Boolean.parseBoolean(propertiesIni.getProperty("Calc_binaryPlotFile"));
         pd.Predom_nbrSteps = Integer.parseInt(propertiesIni.getProperty("Calc_Predom_nbrSteps"));
         pd.ionicStrength = Double.parseDouble(propertiesIni.getProperty("Calc_ionicStrength"));
         pd.actCoeffsMethod = Integer.parseInt(propertiesIni.getProperty("Calc_activityCoefficientsMethod"));
@@ -2577,6 +2588,7 @@ public class MainFrame extends javax.swing.JFrame {
       pd.useEh = true;
       pd.SED_nbrSteps = NSTEPS_DEF;
       pd.SED_tableOutput = false;
+      pd.binaryPlotFile = false;
       pd.Predom_nbrSteps = NSTEPS_DEF*2;
       pd.tblExtension = "csv";
       pd.tblFieldSeparator = ';';
@@ -2691,6 +2703,7 @@ public class MainFrame extends javax.swing.JFrame {
     propertiesIni.setProperty("Calc_keepFrame",String.valueOf(pd.keepFrame));
     propertiesIni.setProperty("Calc_SED_nbrSteps",String.valueOf(pd.SED_nbrSteps));
     propertiesIni.setProperty("Calc_SED_tableOutput",String.valueOf(pd.SED_tableOutput));
+    propertiesIni.setProperty("Calc_binaryPlotFile",String.valueOf(pd.binaryPlotFile));
     propertiesIni.setProperty("Calc_Predom_nbrSteps",String.valueOf(pd.Predom_nbrSteps));
     propertiesIni.setProperty("Calc_Predom_aquSpeciesOnly",String.valueOf(pd.aquSpeciesOnly));
     propertiesIni.setProperty("Calc_allowReversedConcRanges",String.valueOf(pd.reversedConcs));
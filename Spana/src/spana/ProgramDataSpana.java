@@ -34,6 +34,9 @@ public class ProgramDataSpana {
   public int SED_nbrSteps = 50;
   /** true if SED should also create a table with output data */
   public boolean SED_tableOutput = false;
+  /** true if SED and PREDOM should also write a binary plot file (".pltb"),
+   * which is displayed faster */
+  public boolean binaryPlotFile = false;
   /** number of calculation steps for program PREDOM.
    * The number of calculation points is the number of steps plus one. */
   public int Predom_nbrSteps = 50;
@@ -4285,6 +4285,7 @@ private boolean runSedPredom() {
   if(!Double.isNaN(pd.tolHalta) && pd.tolHalta != Chem.TOL_HALTA_DEF) {
     options.add("-tol="+Math.min(1e-2,Math.max(pd.tolHalta, 1e-9)));
   }
+  if(pd.binaryPlotFile && !oldProg) {options.add("-pltb");}
   if(runPredomSED ==2 && runTbl) { //for SED
     options.add("-tbl");
     if(!oldProg) {
@@ -4323,6 +4324,11 @@ private boolean runSedPredom() {
     }
   } //if "keep"
 
+  if(!oldProg && !pd.keepFrame) {
+    // make the diagram within this java virtual machine
+    return submitDiagrJob(prog_name);
+  }
+
   args = new String[options.size()];
   args = options.toArray(args);
 
@@ -4401,6 +4407,66 @@ private boolean runSedPredom() {
 
 } // runSedPredom()
 
+/** Puts the diagram in the queue of diagrams made by SED or Predom within
+ * this java virtual machine, and shows the window with the list of diagrams
+ * being made. When the calculations are finished the plot file is displayed.
+ * @param prog_name either "SED" or "Predom"
+ * @return false if the data file can not be read
+ * @see DiagrJobQueue DiagrJobQueue */
+private boolean submitDiagrJob(final String prog_name) {
+  final java.io.File plotFile = pltFile;
+  DiagrJobQueue.Job job = new DiagrJobQueue.Job(dataFile, plotFile, (runPredomSED ==1)) {
+    @Override protected void done() {
+        if(getStatus() == DONE) {
+            MainFrame.getInstance().displayPlotFile(plotFile.getPath(), null);
+        } else if(getStatus() == FAILED) {
+            String msg = "Apparently the program \""+prog_name+"\" has"+nl+
+                         "failed the calculations, and the plot-file:"+nl+
+                         "    \""+plotFile.getName()+"\""+nl+
+                         "has NOT been generated.";
+            String m = getMessages().trim();
+            if(m.length() > 0) {
+                if(m.length() > 1000) {m = m.substring(0, 1000)+" ...";}
+                msg = msg + nl + nl + m;
+            }
+            if(dbg) {System.out.println(msg);}
+            javax.swing.JOptionPane.showMessageDialog(MainFrame.getInstance(), msg,
+                                pc.progName, javax.swing.JOptionPane.INFORMATION_MESSAGE);
+        }
+    } // done()
+  };
+  job.dbg = pc.dbg || pd.calcDbg;
+  job.dbgHalta = pd.calcDbgHalta;
+  job.reversedConcs = runRevs;
+  job.temperature = diag.temperature;
+  if(!Double.isNaN(diag.ionicStrength) && diag.ionicStrength != 0) {
+    job.ionicStrength = diag.ionicStrength;
+    if(runActCoeffsMethod >=0 && runActCoeffsMethod <=2) {job.actCoeffsModel = runActCoeffsMethod;}
+  }
+  if(!Double.isNaN(pd.tolHalta)) {job.tolHalta = Math.min(1e-2,Math.max(pd.tolHalta, 1e-9));}
+  job.binaryPlotFile = pd.binaryPlotFile;
+  if(runPredomSED ==2) { //for SED
+    job.nSteps = runNbrStepsSED;
+    if(diag.plotType == 1) {job.threshold = pd.fractionThreshold;} // "fraction"
+    if(runTbl) {
+        job.tableOutput = true;
+        if(pd.tblExtension != null && pd.tblExtension.length() >0) {job.tblExtension = pd.tblExtension;}
+        job.tblFieldSeparator = String.valueOf(pd.tblFieldSeparator);
+        if(pd.tblCommentLineStart != null) {job.tblCommentStart = pd.tblCommentLineStart;}
+        if(pd.tblCommentLineEnd != null) {job.tblCommentEnd = pd.tblCommentLineEnd;}
+    }
+  } else { //for Predom
+    job.nSteps = runNbrStepsPred;
+    job.aqu = runAqu;
+    job.neutral_pH = runPHline;
+  }
+  job.pathApp = MainFrame.pathSedPredom;
+  job.pathDef = pc.pathDef.toString();
+  if(!DiagrJobQueue.getInstance().submit(job)) {return false;}
+  DiagrJobsFrame.showJobs(MainFrame.getInstance());
+  return true;
+} // submitDiagrJob()
+
  /** returns true if the "old" Fortran program SED.exe exists
   * in the executable-path, <u>and</u> if "SED.jar" is not found. False otherwise  */
   private static boolean isOldSED() {